@@ -0,0 +1,101 @@
+package com.jp.aircall.domain.benchmark;
+
+import com.jp.aircall.domain.adapters.EPAdapter;
+import com.jp.aircall.domain.benchmark.BenchmarkAdapters.NoOpMailAdapter;
+import com.jp.aircall.domain.benchmark.BenchmarkAdapters.NoOpSmsAdapter;
+import com.jp.aircall.domain.benchmark.BenchmarkAdapters.NoOpTimerAdapter;
+import com.jp.aircall.domain.benchmark.BenchmarkAdapters.StubPersistenceAdapter;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import com.jp.aircall.domain.service.AlertService;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single threaded cost of every AlertService entry point for different escalation policy shapes.
+ * Run with -prof gc to get gc.alloc.rate.norm
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlertServiceBenchmark {
+
+  private static final String SERVICE_ID = "service1";
+
+  @Param({"1", "5", "10"})
+  private int levels;
+
+  @Param({"1", "10", "100"})
+  private int targets;
+
+  private AlertService alertService;
+  private StubPersistenceAdapter persistenceAdapter;
+  private Service healthyService;
+  private Service unhealthyService;
+  private PagerAlert pagerAlert;
+  private AlertEvent healthyAlertEvent;
+  private AlertEvent unhealthyAlertEvent;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    persistenceAdapter = new StubPersistenceAdapter(false);
+    Optional<EscalationPolicy> policy = Optional.of(BenchmarkAdapters.policy(SERVICE_ID, levels, targets));
+    EPAdapter epAdapter = serviceId -> policy;
+    alertService = new AlertService(epAdapter, persistenceAdapter, new NoOpMailAdapter(), new NoOpSmsAdapter(), new NoOpTimerAdapter());
+
+    healthyService = persistenceAdapter.addService(SERVICE_ID, SERVICE_STATUS.HEALTHY);
+    unhealthyService = persistenceAdapter.addService("unhealthy", SERVICE_STATUS.UNHEALTHY);
+    pagerAlert = persistenceAdapter.addOpenAlert(SERVICE_ID);
+    healthyAlertEvent = new AlertEvent("alert message", SERVICE_ID);
+    unhealthyAlertEvent = new AlertEvent("alert message", unhealthyService.getId());
+  }
+
+  @Benchmark
+  public void newAlert() {
+    alertService.newAlert(healthyAlertEvent);
+    healthyService.setStatus(SERVICE_STATUS.HEALTHY);
+  }
+
+  @Benchmark
+  public void newAlertUnhealthyService() {
+    alertService.newAlert(unhealthyAlertEvent);
+  }
+
+  @Benchmark
+  public void alertAcknowledgement() {
+    alertService.alertAcknowledgement(pagerAlert.getId());
+    pagerAlert.setStatus(ALERT_STATUS.OPEN);
+  }
+
+  @Benchmark
+  public void acknowledgementTimeout() {
+    alertService.acknowledgementTimeout(pagerAlert.getId());
+    pagerAlert.setLevelNotified(0);
+    pagerAlert.setLastNotificationTs(0);
+  }
+
+  @Benchmark
+  public void serviceHealthy() {
+    alertService.serviceHealthy(SERVICE_ID);
+    healthyService.setStatus(SERVICE_STATUS.UNHEALTHY);
+  }
+}
@@ -0,0 +1,159 @@
+package com.jp.aircall.domain.benchmark;
+
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.adapters.TimerAdapter;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.EmailTarget;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Level;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.SmsTarget;
+import com.jp.aircall.domain.model.policy.Target;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory adapter stubs driving the AlertService without any I/O
+ */
+final class BenchmarkAdapters {
+
+  private BenchmarkAdapters() {
+  }
+
+  /**
+   * escalation policy with the given number of levels and targets per level, half of them sms and half emails
+   */
+  static EscalationPolicy policy(String serviceId, int levels, int targetsPerLevel) {
+    List<Level> policyLevels = new ArrayList<>(levels);
+    for (int level = 1; level <= levels; level++) {
+      Set<Target> targets = new HashSet<>();
+      for (int i = 0; i < targetsPerLevel; i++) {
+        targets.add(i % 2 == 0 ? new SmsTarget("+34" + (600000000 + level * 1000 + i)) : new EmailTarget("user" + level + "-" + i + "@mail.com"));
+      }
+      policyLevels.add(new Level(targets));
+    }
+    return new EscalationPolicy(serviceId, policyLevels);
+  }
+
+
+  /**
+   * Keeps services and semaphores in memory. Saved pager alerts are only kept when retainAlerts is set, so benchmarks
+   * creating alerts on every operation don't grow the heap
+   */
+  static class StubPersistenceAdapter implements PersistenceAdapter {
+
+    private final Map<String, Boolean> alertingServices = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> ackSemaphores = new ConcurrentHashMap<>();
+    private final Map<String, Service> services = new ConcurrentHashMap<>();
+    private final Map<String, PagerAlert> pagerAlerts = new ConcurrentHashMap<>();
+    private final boolean retainAlerts;
+
+    StubPersistenceAdapter(boolean retainAlerts) {
+      this.retainAlerts = retainAlerts;
+    }
+
+    Service addService(String serviceId, Service.SERVICE_STATUS status) {
+      Service service = new Service(serviceId, status);
+      services.put(serviceId, service);
+      return service;
+    }
+
+    PagerAlert addOpenAlert(String serviceId) {
+      PagerAlert pagerAlert = new PagerAlert(serviceId, "benchmark alert", ALERT_STATUS.OPEN, 0, 0, 0);
+      pagerAlerts.put(pagerAlert.getId(), pagerAlert);
+      return pagerAlert;
+    }
+
+    @Override
+    public void addAlertingService(String serviceId) throws ServiceAlertingAlreadyException {
+      if (alertingServices.putIfAbsent(serviceId, Boolean.TRUE) != null) {
+        throw new ServiceAlertingAlreadyException(serviceId);
+      }
+    }
+
+    @Override
+    public void removeAlertingService(String serviceId) {
+      alertingServices.remove(serviceId);
+    }
+
+    @Override
+    public void addAckSempahore(String pagerAlertId) throws AckAlertingAlreadyException {
+      if (ackSemaphores.putIfAbsent(pagerAlertId, Boolean.TRUE) != null) {
+        throw new AckAlertingAlreadyException(pagerAlertId);
+      }
+    }
+
+    @Override
+    public void removeAckSemaphore(String pagerAlertId) {
+      ackSemaphores.remove(pagerAlertId);
+    }
+
+    @Override
+    public Optional<Service> getService(String serviceId) {
+      return Optional.ofNullable(services.get(serviceId));
+    }
+
+    @Override
+    public void updateService(Service service) {
+      services.put(service.getId(), service);
+    }
+
+    @Override
+    public void savePagerAlert(PagerAlert pagerAlert) {
+      if (retainAlerts) {
+        pagerAlerts.put(pagerAlert.getId(), pagerAlert);
+      }
+    }
+
+    @Override
+    public Optional<PagerAlert> getPagerAlert(String pagerAlertId) {
+      return Optional.ofNullable(pagerAlerts.get(pagerAlertId));
+    }
+
+    @Override
+    public void updatePagerAlert(PagerAlert pagerAlert) {
+      pagerAlerts.put(pagerAlert.getId(), pagerAlert);
+    }
+
+    @Override
+    public List<String> closeAllServiceAlerts(String serviceId) {
+      List<String> closed = new ArrayList<>();
+      for (PagerAlert pagerAlert : pagerAlerts.values()) {
+        if (pagerAlert.getServiceId().equals(serviceId) && pagerAlert.getStatus() != ALERT_STATUS.CLOSED) {
+          pagerAlert.setStatus(ALERT_STATUS.CLOSED);
+          closed.add(pagerAlert.getId());
+        }
+      }
+      return closed;
+    }
+  }
+
+
+  static class NoOpSmsAdapter implements SmsAdapter {
+    @Override
+    public void sendNotification(String phone) {
+    }
+  }
+
+  static class NoOpMailAdapter implements MailAdapter {
+    @Override
+    public void sendNotification(String mail) {
+    }
+  }
+
+  static class NoOpTimerAdapter implements TimerAdapter {
+    @Override
+    public void add15MinutesTimer(String id) {
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package com.jp.aircall.domain.benchmark;
+
+import com.jp.aircall.domain.adapters.EPAdapter;
+import com.jp.aircall.domain.adapters.semaphore.InMemorySemaphoreAdapter;
+import com.jp.aircall.domain.benchmark.BenchmarkAdapters.NoOpMailAdapter;
+import com.jp.aircall.domain.benchmark.BenchmarkAdapters.NoOpSmsAdapter;
+import com.jp.aircall.domain.benchmark.BenchmarkAdapters.NoOpTimerAdapter;
+import com.jp.aircall.domain.benchmark.BenchmarkAdapters.StubPersistenceAdapter;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import com.jp.aircall.domain.service.AlertService;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of newAlert with many threads, either all of them hitting the same service or each one its own service.
+ * Run with -prof gc to get gc.alloc.rate.norm
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ContendedAlertServiceBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Pager {
+
+    @Param({"3"})
+    private int levels;
+
+    @Param({"10"})
+    private int targets;
+
+    private AlertService alertService;
+    private StubPersistenceAdapter persistenceAdapter;
+    private final AtomicInteger serviceIds = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      persistenceAdapter = new StubPersistenceAdapter(false);
+      Optional<EscalationPolicy> policy = Optional.of(BenchmarkAdapters.policy("service", levels, targets));
+      EPAdapter epAdapter = serviceId -> policy;
+      alertService = AlertService.builder()
+          .epAdapter(epAdapter)
+          .persistenceAdapter(persistenceAdapter)
+          .mailAdapter(new NoOpMailAdapter())
+          .smsAdapter(new NoOpSmsAdapter())
+          .timerAdapter(new NoOpTimerAdapter())
+          .semaphoreAdapter(new InMemorySemaphoreAdapter())
+          .build();
+    }
+
+    Service newService(String serviceId) {
+      return persistenceAdapter.addService(serviceId, SERVICE_STATUS.HEALTHY);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class SharedService {
+    private Service service;
+    private AlertEvent alertEvent;
+
+    @Setup(Level.Trial)
+    public void setUp(Pager pager) {
+      service = pager.newService("shared");
+      alertEvent = new AlertEvent("alert message", service.getId());
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadService {
+    private Service service;
+    private AlertEvent alertEvent;
+
+    @Setup(Level.Trial)
+    public void setUp(Pager pager) {
+      service = pager.newService("service-" + pager.serviceIds.incrementAndGet());
+      alertEvent = new AlertEvent("alert message", service.getId());
+    }
+  }
+
+  @Benchmark
+  public void sameService(Pager pager, SharedService sharedService) {
+    pager.alertService.newAlert(sharedService.alertEvent);
+    sharedService.service.setStatus(SERVICE_STATUS.HEALTHY);
+  }
+
+  @Benchmark
+  public void spreadServices(Pager pager, ThreadService threadService) {
+    pager.alertService.newAlert(threadService.alertEvent);
+    threadService.service.setStatus(SERVICE_STATUS.HEALTHY);
+  }
+}
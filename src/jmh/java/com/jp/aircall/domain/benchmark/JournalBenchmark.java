@@ -0,0 +1,66 @@
+package com.jp.aircall.domain.benchmark;
+
+import com.jp.aircall.domain.adapters.persistence.JournalPersistenceAdapter;
+import com.jp.aircall.domain.adapters.persistence.JournalPersistenceAdapter.DURABILITY;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of appending a pager alert update to the journal
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+
+  @Param({"ASYNC", "SYNC"})
+  private DURABILITY durability;
+
+  private Path directory;
+  private JournalPersistenceAdapter journal;
+  private PagerAlert pagerAlert;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("journal-benchmark");
+    journal = JournalPersistenceAdapter.builder().directory(directory).durability(durability).build();
+    pagerAlert = new PagerAlert("service1", "benchmark alert", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    journal.savePagerAlert(pagerAlert);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    journal.close();
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  @Benchmark
+  public void updatePagerAlert() {
+    pagerAlert.setLevelNotified(pagerAlert.getLevelNotified() + 1);
+    journal.updatePagerAlert(pagerAlert);
+  }
+}
@@ -0,0 +1,13 @@
+package com.jp.aircall.domain.adapters;
+
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non blocking version of {@link EPAdapter}
+ */
+public interface AsyncEPAdapter {
+
+  CompletionStage<Optional<EscalationPolicy>> getEpByServiceId(String serviceId);
+}
@@ -0,0 +1,57 @@
+package com.jp.aircall.domain.adapters;
+
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.policy.Service;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non blocking version of {@link PersistenceAdapter}: every method has the same contract than its synchronous version,
+ * the errors are reported by completing the returned stage exceptionally
+ */
+public interface AsyncPersistenceAdapter {
+
+  //semaphore methods
+  /**
+   * @param serviceId
+   * @return completed exceptionally with a {@link ServiceAlertingAlreadyException} if the service already exists
+   */
+  CompletionStage<Void> addAlertingService(String serviceId);
+
+  CompletionStage<Void> removeAlertingService(String serviceId);
+
+  /**
+   * @param pagerAlertId
+   * @return completed exceptionally with an {@link AckAlertingAlreadyException} if the alert id already exists
+   */
+  CompletionStage<Void> addAckSempahore(String pagerAlertId);
+
+  CompletionStage<Void> removeAckSemaphore(String pagerAlertId);
+
+
+
+  //Service methods
+
+  CompletionStage<Optional<Service>> getService(String serviceId);
+
+  CompletionStage<Void> updateService(Service service);
+
+
+
+  //pager alert methods
+  CompletionStage<Void> savePagerAlert(PagerAlert pagerAlert);
+
+  CompletionStage<Optional<PagerAlert>> getPagerAlert(String pagerAlertId);
+
+  CompletionStage<Void> updatePagerAlert(PagerAlert pagerAlert);
+
+  /**
+   * See {@link PersistenceAdapter#closeAllServiceAlerts(String)}
+   * @param serviceId
+   * @return the ids of the alerts closed by this call
+   */
+  CompletionStage<List<String>> closeAllServiceAlerts(String serviceId);
+}
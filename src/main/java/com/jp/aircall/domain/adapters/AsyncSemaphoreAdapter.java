@@ -0,0 +1,45 @@
+package com.jp.aircall.domain.adapters;
+
+import com.jp.aircall.domain.adapters.semaphore.SemaphoreLease;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non blocking version of {@link SemaphoreAdapter}. Every acquired lease must be released with
+ * {@link #release(SemaphoreLease)}
+ */
+public interface AsyncSemaphoreAdapter {
+
+  /**
+   * Closes the alerting semaphore of the given service.
+   * @param serviceId
+   * @return the lease holding the semaphore, completed exceptionally with a {@link ServiceAlertingAlreadyException} if
+   * the semaphore is already held by someone else
+   */
+  CompletionStage<SemaphoreLease> acquireAlertingService(String serviceId);
+
+  /**
+   * Closes the ack semaphore of the given pager alert.
+   * @param pagerAlertId
+   * @return the lease holding the semaphore, completed exceptionally with an {@link AckAlertingAlreadyException} if the
+   * semaphore is already held by someone else
+   */
+  CompletionStage<SemaphoreLease> acquireAck(String pagerAlertId);
+
+  /**
+   * Extends the given lease before a write it guards, see {@link SemaphoreAdapter#renew(SemaphoreLease)}
+   * @param lease
+   * @return completed with false if the lease is no longer the holder of the semaphore
+   */
+  default CompletionStage<Boolean> renew(SemaphoreLease lease) {
+    return CompletableFuture.completedFuture(true);
+  }
+
+  /**
+   * Opens the semaphore held by the given lease. Does nothing if the lease is no longer the holder of the semaphore
+   * @param lease
+   */
+  CompletionStage<Void> release(SemaphoreLease lease);
+}
@@ -0,0 +1,15 @@
+package com.jp.aircall.domain.adapters;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non blocking version of {@link SmsAdapter}
+ */
+public interface AsyncSmsAdapter {
+
+  /**
+   * @param phone
+   * @return completed when the notification has been sent, exceptionally if it couldn't be sent
+   */
+  CompletionStage<Void> sendNotification(String phone);
+}
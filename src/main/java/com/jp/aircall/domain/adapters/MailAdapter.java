@@ -1,6 +1,18 @@
 package com.jp.aircall.domain.adapters;
 
+import java.util.Collection;
+
 public interface MailAdapter {
 
   void sendNotification(String mail);
+
+  /**
+   * Sends a single notification to the given mail on behalf of several services, e.g. listing them in the message.
+   * The default implementation sends a plain notification, so the target is notified once anyway
+   * @param mail
+   * @param serviceIds the services whose alerts triggered the notification
+   */
+  default void sendDigestNotification(String mail, Collection<String> serviceIds) {
+    sendNotification(mail);
+  }
 }
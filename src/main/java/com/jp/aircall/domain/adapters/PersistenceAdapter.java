@@ -4,6 +4,10 @@ import com.jp.aircall.domain.error.AckAlertingAlreadyException;
 import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
 import com.jp.aircall.domain.model.alert.PagerAlert;
 import com.jp.aircall.domain.model.policy.Service;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface PersistenceAdapter {
@@ -39,14 +43,86 @@ public interface PersistenceAdapter {
    */
   void removeAckSemaphore(String pagerAlertId);
 
+  /**
+   * removes all the alerting service and ack semaphores, e.g. the ones left by a JVM that died while holding them.
+   * Only safe when no other JVM is processing events. Adapters whose semaphores don't survive a restart must still
+   * implement it, returning 0: the default one fails so a recovery over an adapter without it is not silently a no-op
+   * @return number of semaphores removed
+   * @throws UnsupportedOperationException if the adapter does not implement it
+   */
+  default int removeAllSemaphores() {
+    throw new UnsupportedOperationException("Removing all the semaphores not supported");
+  }
+
 
 
+  /**
+   * True if every write increments the version of the written service or alert and the *IfVersion methods are
+   * implemented. Then the AlertService guards its read-modify-writes with them instead of the semaphores, saving the
+   * semaphore round-trips. The default implementation returns false, so the semaphores are always used
+   * @return
+   */
+  default boolean supportsVersionedUpdates() {
+    return false;
+  }
+
+  /**
+   * Called by the AlertService before releasing any semaphore, whatever the SemaphoreAdapter holding it, so whoever
+   * takes it next reads the writes it guarded. The default implementation does nothing, as the writes are already done
+   */
+  default void beforeSemaphoreRelease() {
+  }
+
   //Service methods
 
   Optional<Service> getService(String serviceId);
 
   void updateService(Service service);
 
+  /**
+   * Bulk version of {@link #getService(String)}. Implementations should read all the services in a single round-trip
+   * @param serviceIds
+   * @return the found services by id. Not found ids are not present in the map
+   */
+  default Map<String, Service> getServices(Collection<String> serviceIds) {
+    Map<String, Service> services = new HashMap<>();
+    for (String serviceId : serviceIds) {
+      getService(serviceId).ifPresent(service -> services.put(serviceId, service));
+    }
+    return services;
+  }
+
+  /**
+   * Bulk version of {@link #updateService(Service)}. Implementations should write all the services in a single round-trip
+   * @param services
+   */
+  default void updateServices(Collection<Service> services) {
+    for (Service service : services) {
+      updateService(service);
+    }
+  }
+
+  /**
+   * Compare-and-set update: writes the given service only if the stored one still has the expected version, i.e. nobody
+   * wrote it since it was read. On success the stored service, and the given one, get version expectedVersion + 1.
+   * Only called when {@link #supportsVersionedUpdates()}
+   * @param service
+   * @param expectedVersion the version of the service when it was read
+   * @return false if the service was written meanwhile or doesn't exist, and nothing was written
+   */
+  default boolean updateServiceIfVersion(Service service, long expectedVersion) {
+    throw new UnsupportedOperationException("Versioned updates not supported");
+  }
+
+  /**
+   * Ids of all the UNHEALTHY services. Used to warm up in-memory indexes, so the default implementation, which returns
+   * none, is always safe
+   * @return
+   */
+  default Collection<String> getUnhealthyServiceIds() {
+    return List.of();
+  }
+
 
 
 
@@ -58,8 +134,56 @@ public interface PersistenceAdapter {
   void updatePagerAlert(PagerAlert pagerAlert);
 
   /**
-   * Set status to CLOSED to all alerts where :serviceId is equals than the given serviceId
+   * Bulk version of {@link #getPagerAlert(String)}. Implementations should read all the alerts in a single round-trip
+   * @param pagerAlertIds
+   * @return the found alerts by id. Not found ids are not present in the map
+   */
+  default Map<String, PagerAlert> getPagerAlerts(Collection<String> pagerAlertIds) {
+    Map<String, PagerAlert> pagerAlerts = new HashMap<>();
+    for (String pagerAlertId : pagerAlertIds) {
+      getPagerAlert(pagerAlertId).ifPresent(pagerAlert -> pagerAlerts.put(pagerAlertId, pagerAlert));
+    }
+    return pagerAlerts;
+  }
+
+  /**
+   * Compare-and-set version of {@link #updatePagerAlert(PagerAlert)}, see {@link #updateServiceIfVersion(Service, long)}
+   * @param pagerAlert
+   * @param expectedVersion the version of the alert when it was read
+   * @return false if the alert was written meanwhile or doesn't exist, and nothing was written
+   */
+  default boolean updatePagerAlertIfVersion(PagerAlert pagerAlert, long expectedVersion) {
+    throw new UnsupportedOperationException("Versioned updates not supported");
+  }
+
+  /**
+   * Bulk version of {@link #updatePagerAlert(PagerAlert)}. Implementations should write all the alerts in a single round-trip
+   * @param pagerAlerts
+   */
+  default void updatePagerAlerts(Collection<PagerAlert> pagerAlerts) {
+    for (PagerAlert pagerAlert : pagerAlerts) {
+      updatePagerAlert(pagerAlert);
+    }
+  }
+
+  /**
+   * Set status to CLOSED (and closedTs) to all the not closed alerts where :serviceId is equals than the given serviceId.
+   * Implementations should only touch the not closed alerts of the service instead of scanning all the alerts
    * @param serviceId
+   * @return the ids of the alerts closed by this call
+   */
+  List<String> closeAllServiceAlerts(String serviceId);
+
+  /**
+   * Page of the OPEN alerts ordered by id, e.g. to re-arm their timers on start up. Paged by key, so the next page is
+   * the one after the id of the last alert of the previous page, and no alert is read twice
+   * @param afterId id of the last alert of the previous page, null for the first page
+   * @param limit max alerts of the page
+   * @return the page. Shorter than limit when it is the last one
+   * @throws UnsupportedOperationException if the adapter does not implement it, so a recovery over it fails instead of
+   *                                       finding no alert
    */
-  void closeAllServiceAlerts(String serviceId);
+  default List<PagerAlert> getOpenPagerAlerts(String afterId, int limit) {
+    throw new UnsupportedOperationException("Paging the open alerts not supported");
+  }
 }
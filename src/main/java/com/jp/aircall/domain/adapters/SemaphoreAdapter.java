@@ -0,0 +1,45 @@
+package com.jp.aircall.domain.adapters;
+
+import com.jp.aircall.domain.adapters.semaphore.SemaphoreLease;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+
+/**
+ * Semaphores used by the pager to avoid processing two alerts of the same service (or two acks of the same alert) at the
+ * same time. Every acquired lease must be released with {@link #release(SemaphoreLease)}
+ */
+public interface SemaphoreAdapter {
+
+  /**
+   * Closes the alerting semaphore of the given service.
+   * @param serviceId
+   * @return the lease holding the semaphore
+   * @throws ServiceAlertingAlreadyException if the semaphore is already held by someone else
+   */
+  SemaphoreLease acquireAlertingService(String serviceId) throws ServiceAlertingAlreadyException;
+
+  /**
+   * Closes the ack semaphore of the given pager alert.
+   * @param pagerAlertId
+   * @return the lease holding the semaphore
+   * @throws AckAlertingAlreadyException if the semaphore is already held by someone else
+   */
+  SemaphoreLease acquireAck(String pagerAlertId) throws AckAlertingAlreadyException;
+
+  /**
+   * Extends the given lease before a write it guards, so a holder whose lease has expired and was taken over doesn't
+   * write alongside the new holder. Semaphores whose leases don't expire on this side are always renewed
+   * @param lease
+   * @return false if the lease is no longer the holder of the semaphore
+   */
+  default boolean renew(SemaphoreLease lease) {
+    return true;
+  }
+
+  /**
+   * Opens the semaphore held by the given lease. Does nothing if the lease is no longer the holder of the semaphore
+   * (i.e. it has expired and was taken by someone else)
+   * @param lease
+   */
+  void release(SemaphoreLease lease);
+}
@@ -1,6 +1,18 @@
 package com.jp.aircall.domain.adapters;
 
+import java.util.Collection;
+
 public interface SmsAdapter {
 
   void sendNotification(String phone);
+
+  /**
+   * Sends a single notification to the given phone on behalf of several services, e.g. listing them in the message.
+   * The default implementation sends a plain notification, so the target is notified once anyway
+   * @param phone
+   * @param serviceIds the services whose alerts triggered the notification
+   */
+  default void sendDigestNotification(String phone, Collection<String> serviceIds) {
+    sendNotification(phone);
+  }
 }
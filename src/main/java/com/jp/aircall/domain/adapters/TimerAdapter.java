@@ -3,4 +3,22 @@ package com.jp.aircall.domain.adapters;
 public interface TimerAdapter {
 
   void add15MinutesTimer(String id);
+
+  /**
+   * sets a timer of the given id that expires at the given time, e.g. to re-arm the timers lost on a restart. The default
+   * implementation, for adapters unable to set arbitrary timers, sets a 15 minutes timer: the timeout comes later than
+   * due but it is not lost
+   * @param id
+   * @param dueTs
+   */
+  default void addTimerAt(String id, long dueTs) {
+    add15MinutesTimer(id);
+  }
+
+  /**
+   * cancels the pending timer of the given id. Does nothing if there is no pending timer for it
+   * @param id
+   */
+  default void cancelTimer(String id) {
+  }
 }
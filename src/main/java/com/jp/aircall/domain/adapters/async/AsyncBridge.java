@@ -0,0 +1,36 @@
+package com.jp.aircall.domain.adapters.async;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs blocking calls on an executor, reporting their exceptions (checked ones included, as they are) through the
+ * returned stage
+ */
+final class AsyncBridge {
+
+  /** runs the calls on the caller thread, for adapters that don't block (e.g. in-memory ones) */
+  static final Executor DIRECT = Runnable::run;
+
+  private AsyncBridge() {
+  }
+
+  static <T> CompletionStage<T> call(Executor executor, Callable<T> call) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        try {
+          future.complete(call.call());
+        } catch (Exception e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+}
@@ -0,0 +1,34 @@
+package com.jp.aircall.domain.adapters.async;
+
+import com.jp.aircall.domain.adapters.AsyncEPAdapter;
+import com.jp.aircall.domain.adapters.EPAdapter;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link AsyncEPAdapter} running a blocking {@link EPAdapter} on the given executor
+ */
+public class AsyncEPAdapterBridge implements AsyncEPAdapter {
+
+  private final EPAdapter epAdapter;
+  private final Executor executor;
+
+  /**
+   * Calls the adapter on the caller thread, only for adapters that don't block
+   */
+  public AsyncEPAdapterBridge(EPAdapter epAdapter) {
+    this(epAdapter, AsyncBridge.DIRECT);
+  }
+
+  public AsyncEPAdapterBridge(EPAdapter epAdapter, Executor executor) {
+    this.epAdapter = epAdapter;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletionStage<Optional<EscalationPolicy>> getEpByServiceId(String serviceId) {
+    return AsyncBridge.call(executor, () -> epAdapter.getEpByServiceId(serviceId));
+  }
+}
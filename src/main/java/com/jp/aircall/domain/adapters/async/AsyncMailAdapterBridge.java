@@ -0,0 +1,35 @@
+package com.jp.aircall.domain.adapters.async;
+
+import com.jp.aircall.domain.adapters.AsyncMailAdapter;
+import com.jp.aircall.domain.adapters.MailAdapter;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link AsyncMailAdapter} running a blocking {@link MailAdapter} on the given executor
+ */
+public class AsyncMailAdapterBridge implements AsyncMailAdapter {
+
+  private final MailAdapter mailAdapter;
+  private final Executor executor;
+
+  /**
+   * Calls the adapter on the caller thread, only for adapters that don't block
+   */
+  public AsyncMailAdapterBridge(MailAdapter mailAdapter) {
+    this(mailAdapter, AsyncBridge.DIRECT);
+  }
+
+  public AsyncMailAdapterBridge(MailAdapter mailAdapter, Executor executor) {
+    this.mailAdapter = mailAdapter;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletionStage<Void> sendNotification(String mail) {
+    return AsyncBridge.call(executor, () -> {
+      mailAdapter.sendNotification(mail);
+      return null;
+    });
+  }
+}
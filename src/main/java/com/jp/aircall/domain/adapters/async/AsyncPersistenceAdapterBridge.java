@@ -0,0 +1,103 @@
+package com.jp.aircall.domain.adapters.async;
+
+import com.jp.aircall.domain.adapters.AsyncPersistenceAdapter;
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.policy.Service;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link AsyncPersistenceAdapter} running a blocking {@link PersistenceAdapter} on the given executor. The semaphore
+ * exceptions are reported as they are, so callers can tell a closed semaphore from an error
+ */
+public class AsyncPersistenceAdapterBridge implements AsyncPersistenceAdapter {
+
+  private final PersistenceAdapter persistenceAdapter;
+  private final Executor executor;
+
+  /**
+   * Calls the adapter on the caller thread, only for adapters that don't block (e.g. the in-memory one)
+   */
+  public AsyncPersistenceAdapterBridge(PersistenceAdapter persistenceAdapter) {
+    this(persistenceAdapter, AsyncBridge.DIRECT);
+  }
+
+  public AsyncPersistenceAdapterBridge(PersistenceAdapter persistenceAdapter, Executor executor) {
+    this.persistenceAdapter = persistenceAdapter;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletionStage<Void> addAlertingService(String serviceId) {
+    return AsyncBridge.call(executor, () -> {
+      persistenceAdapter.addAlertingService(serviceId);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletionStage<Void> removeAlertingService(String serviceId) {
+    return AsyncBridge.call(executor, () -> {
+      persistenceAdapter.removeAlertingService(serviceId);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletionStage<Void> addAckSempahore(String pagerAlertId) {
+    return AsyncBridge.call(executor, () -> {
+      persistenceAdapter.addAckSempahore(pagerAlertId);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletionStage<Void> removeAckSemaphore(String pagerAlertId) {
+    return AsyncBridge.call(executor, () -> {
+      persistenceAdapter.removeAckSemaphore(pagerAlertId);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletionStage<Optional<Service>> getService(String serviceId) {
+    return AsyncBridge.call(executor, () -> persistenceAdapter.getService(serviceId));
+  }
+
+  @Override
+  public CompletionStage<Void> updateService(Service service) {
+    return AsyncBridge.call(executor, () -> {
+      persistenceAdapter.updateService(service);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletionStage<Void> savePagerAlert(PagerAlert pagerAlert) {
+    return AsyncBridge.call(executor, () -> {
+      persistenceAdapter.savePagerAlert(pagerAlert);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletionStage<Optional<PagerAlert>> getPagerAlert(String pagerAlertId) {
+    return AsyncBridge.call(executor, () -> persistenceAdapter.getPagerAlert(pagerAlertId));
+  }
+
+  @Override
+  public CompletionStage<Void> updatePagerAlert(PagerAlert pagerAlert) {
+    return AsyncBridge.call(executor, () -> {
+      persistenceAdapter.updatePagerAlert(pagerAlert);
+      return null;
+    });
+  }
+
+  @Override
+  public CompletionStage<List<String>> closeAllServiceAlerts(String serviceId) {
+    return AsyncBridge.call(executor, () -> persistenceAdapter.closeAllServiceAlerts(serviceId));
+  }
+}
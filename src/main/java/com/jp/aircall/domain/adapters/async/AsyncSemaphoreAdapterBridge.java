@@ -0,0 +1,52 @@
+package com.jp.aircall.domain.adapters.async;
+
+import com.jp.aircall.domain.adapters.AsyncSemaphoreAdapter;
+import com.jp.aircall.domain.adapters.SemaphoreAdapter;
+import com.jp.aircall.domain.adapters.semaphore.SemaphoreLease;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link AsyncSemaphoreAdapter} running a {@link SemaphoreAdapter} on the given executor. The in-memory semaphores don't
+ * block, so they can be run on the caller thread
+ */
+public class AsyncSemaphoreAdapterBridge implements AsyncSemaphoreAdapter {
+
+  private final SemaphoreAdapter semaphoreAdapter;
+  private final Executor executor;
+
+  /**
+   * Calls the adapter on the caller thread, only for adapters that don't block
+   */
+  public AsyncSemaphoreAdapterBridge(SemaphoreAdapter semaphoreAdapter) {
+    this(semaphoreAdapter, AsyncBridge.DIRECT);
+  }
+
+  public AsyncSemaphoreAdapterBridge(SemaphoreAdapter semaphoreAdapter, Executor executor) {
+    this.semaphoreAdapter = semaphoreAdapter;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletionStage<SemaphoreLease> acquireAlertingService(String serviceId) {
+    return AsyncBridge.call(executor, () -> semaphoreAdapter.acquireAlertingService(serviceId));
+  }
+
+  @Override
+  public CompletionStage<SemaphoreLease> acquireAck(String pagerAlertId) {
+    return AsyncBridge.call(executor, () -> semaphoreAdapter.acquireAck(pagerAlertId));
+  }
+
+  @Override
+  public CompletionStage<Boolean> renew(SemaphoreLease lease) {
+    return AsyncBridge.call(executor, () -> semaphoreAdapter.renew(lease));
+  }
+
+  @Override
+  public CompletionStage<Void> release(SemaphoreLease lease) {
+    return AsyncBridge.call(executor, () -> {
+      semaphoreAdapter.release(lease);
+      return null;
+    });
+  }
+}
@@ -0,0 +1,35 @@
+package com.jp.aircall.domain.adapters.async;
+
+import com.jp.aircall.domain.adapters.AsyncSmsAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link AsyncSmsAdapter} running a blocking {@link SmsAdapter} on the given executor
+ */
+public class AsyncSmsAdapterBridge implements AsyncSmsAdapter {
+
+  private final SmsAdapter smsAdapter;
+  private final Executor executor;
+
+  /**
+   * Calls the adapter on the caller thread, only for adapters that don't block
+   */
+  public AsyncSmsAdapterBridge(SmsAdapter smsAdapter) {
+    this(smsAdapter, AsyncBridge.DIRECT);
+  }
+
+  public AsyncSmsAdapterBridge(SmsAdapter smsAdapter, Executor executor) {
+    this.smsAdapter = smsAdapter;
+    this.executor = executor;
+  }
+
+  @Override
+  public CompletionStage<Void> sendNotification(String phone) {
+    return AsyncBridge.call(executor, () -> {
+      smsAdapter.sendNotification(phone);
+      return null;
+    });
+  }
+}
@@ -0,0 +1,95 @@
+package com.jp.aircall.domain.adapters.failover;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consecutive failures circuit breaker. After failureThreshold failures in a row it opens and rejects the calls for
+ * openMs. Then it lets a single trial call through (half open): a success closes it, a failure opens it again.
+ * Times are given by the caller, so it never reads the clock by itself.
+ */
+public class CircuitBreaker {
+
+  public enum STATE {CLOSED, OPEN, HALF_OPEN}
+
+  private final int failureThreshold;
+  private final long openMs;
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private final AtomicLong openUntilTs = new AtomicLong(); //0 when closed
+  private final AtomicLong trialTs = new AtomicLong(); //when the running trial call was allowed, 0 if none
+
+  public CircuitBreaker(int failureThreshold, long openMs) {
+    if (failureThreshold <= 0 || openMs <= 0) {
+      throw new IllegalArgumentException("failureThreshold and openMs must be positive");
+    }
+    this.failureThreshold = failureThreshold;
+    this.openMs = openMs;
+  }
+
+  /**
+   * @param now
+   * @return true if a call can be done now. While half open only the first caller gets true, the rest wait for its
+   * result. A trial that doesn't report its result in openMs is given up and another one is allowed
+   */
+  public boolean allowRequest(long now) {
+    long openUntil = openUntilTs.get();
+    if (openUntil == 0) {
+      return true;
+    }
+    if (now < openUntil) {
+      return false;
+    }
+    long trial = trialTs.get();
+    return (trial == 0 || now - trial >= openMs) && trialTs.compareAndSet(trial, now);
+  }
+
+  /**
+   * @param now
+   * @return true if {@link #allowRequest(long)} would let a call through now. Unlike it, it doesn't take the trial call
+   * while half open, so it can be asked without calling (e.g. to sort the providers)
+   */
+  public boolean isCallable(long now) {
+    long openUntil = openUntilTs.get();
+    if (openUntil == 0) {
+      return true;
+    }
+    if (now < openUntil) {
+      return false;
+    }
+    long trial = trialTs.get();
+    return trial == 0 || now - trial >= openMs;
+  }
+
+  public void onSuccess() {
+    consecutiveFailures.set(0);
+    openUntilTs.set(0);
+    trialTs.set(0);
+  }
+
+  /**
+   * @param now
+   * @return true if this failure opened the breaker
+   */
+  public boolean onFailure(long now) {
+    if (openUntilTs.get() != 0) {
+      //a failed trial (or a late failure of a call allowed before opening) keeps it open
+      openUntilTs.set(now + openMs);
+      trialTs.set(0);
+      return false;
+    }
+    if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+      openUntilTs.set(now + openMs);
+      trialTs.set(0);
+      return true;
+    }
+    return false;
+  }
+
+  public STATE getState(long now) {
+    long openUntil = openUntilTs.get();
+    if (openUntil == 0) {
+      return STATE.CLOSED;
+    }
+    return now < openUntil ? STATE.OPEN : STATE.HALF_OPEN;
+  }
+}
@@ -0,0 +1,353 @@
+package com.jp.aircall.domain.adapters.failover;
+
+import com.jp.aircall.domain.metrics.LatencyHistogram;
+import com.jp.aircall.domain.metrics.MetricsRegistry;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends every notification through several redundant providers of the same channel (e.g. two SMS gateways):
+ * <ul>
+ *   <li>the notification goes to the fastest healthy provider, the one with the lowest p95 over its last
+ *   {@link #WINDOW} calls. Providers without enough calls yet keep the configured order, after the measured ones</li>
+ *   <li>if it hasn't answered when its p95 has passed (hedgeDelayMs while it is not measured) it is hedged: the next
+ *   provider is called too, and the first one succeeding wins. The target may get the notification twice, which is
+ *   better than paging late</li>
+ *   <li>a failed call fails over to the next provider straight away</li>
+ *   <li>a provider failing failureThreshold times in a row is skipped for openMs by its {@link CircuitBreaker}</li>
+ * </ul>
+ * The send fails when all the providers fail or when none succeeds in timeoutMs. The calls run on the given executor,
+ * so a slow provider only blocks its own thread.
+ * @param <A> adapter of the channel, e.g. SmsAdapter
+ */
+@Slf4j
+public class HedgedChannel<A> implements AutoCloseable {
+
+  /** calls per provider the p95 is computed over */
+  public static final int WINDOW = 256;
+  /** calls a provider needs before its p95 is used */
+  public static final int MIN_SAMPLES = 20;
+  public static final long DEFAULT_HEDGE_DELAY_MS = 500;
+  public static final long DEFAULT_MIN_HEDGE_DELAY_MS = 10;
+  public static final long DEFAULT_TIMEOUT_MS = 10_000;
+  public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  public static final long DEFAULT_OPEN_MS = 30_000;
+
+  private final List<Provider> providers;
+  private final ExecutorService executor;
+  private final Clock clock;
+  private final long hedgeDelayNanos;
+  private final long minHedgeDelayNanos;
+  private final long timeoutNanos;
+  private final LongAdder hedged;
+  private final LongAdder failedOver;
+  private final LongAdder breakerOpened;
+
+  /**
+   * @param name of the channel, e.g. sms. Prefix of the metrics: channel.name.provider for the latency of every provider,
+   *             channel.name.hedged, channel.name.failedOver and channel.name.breakerOpened
+   * @param providers by name, in order of preference. At least one
+   * @param executor optional. Runs the calls to the providers. A daemon cached pool by default
+   * @param clock optional. For the circuit breakers. System UTC by default
+   * @param hedgeDelayMs optional. Hedge delay of the providers without enough calls to know their p95.
+   *                     {@link #DEFAULT_HEDGE_DELAY_MS} by default
+   * @param minHedgeDelayMs optional. Floor of the hedge delay, so a very fast provider is not hedged on every jitter.
+   *                        {@link #DEFAULT_MIN_HEDGE_DELAY_MS} by default
+   * @param timeoutMs optional. Max time of a send. {@link #DEFAULT_TIMEOUT_MS} by default
+   * @param failureThreshold optional. {@link #DEFAULT_FAILURE_THRESHOLD} by default
+   * @param openMs optional. {@link #DEFAULT_OPEN_MS} by default
+   * @param registry optional. Where the latencies and counters are registered. A private one by default
+   */
+  @Builder
+  private HedgedChannel(String name, @Singular Map<String, A> providers, ExecutorService executor, Clock clock,
+      Long hedgeDelayMs, Long minHedgeDelayMs, Long timeoutMs, Integer failureThreshold, Long openMs,
+      MetricsRegistry registry) {
+    if (providers.isEmpty()) {
+      throw new IllegalArgumentException("At least one provider is required");
+    }
+    MetricsRegistry metrics = registry != null ? registry : new MetricsRegistry();
+    String prefix = "channel." + (name != null ? name : "default");
+    int threshold = failureThreshold != null ? failureThreshold : DEFAULT_FAILURE_THRESHOLD;
+    long open = openMs != null ? openMs : DEFAULT_OPEN_MS;
+    this.providers = new ArrayList<>(providers.size());
+    for (Map.Entry<String, A> provider : providers.entrySet()) {
+      this.providers.add(new Provider(this.providers.size(), provider.getKey(), provider.getValue(),
+          metrics.timer(prefix + "." + provider.getKey()), new CircuitBreaker(threshold, open)));
+    }
+    this.executor = executor != null ? executor : newDaemonExecutor(prefix);
+    this.clock = clock != null ? clock : Clock.systemUTC();
+    this.hedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedgeDelayMs != null ? hedgeDelayMs : DEFAULT_HEDGE_DELAY_MS);
+    this.minHedgeDelayNanos =
+        TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMs != null ? minHedgeDelayMs : DEFAULT_MIN_HEDGE_DELAY_MS);
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs != null ? timeoutMs : DEFAULT_TIMEOUT_MS);
+    this.hedged = metrics.counter(prefix + ".hedged");
+    this.failedOver = metrics.counter(prefix + ".failedOver");
+    this.breakerOpened = metrics.counter(prefix + ".breakerOpened");
+  }
+
+  /**
+   * sends the notification to the given target through the providers
+   * @param target phone, mail...
+   * @param call how to send it with a provider
+   * @throws IllegalStateException if no provider sent it
+   */
+  public void send(String target, BiConsumer<A, String> call) {
+    List<Provider> candidates = candidates(clock.millis());
+    if (candidates.isEmpty()) {
+      throw new IllegalStateException("All the providers are open, not sending to [" + target + "]");
+    }
+
+    BlockingQueue<Attempt> done = new LinkedBlockingQueue<>();
+    List<Attempt> running = new ArrayList<>(candidates.size());
+    IllegalStateException failure = null;
+    long deadline = System.nanoTime() + timeoutNanos;
+    int next = launchNext(candidates, 0, target, call, done, running);
+    if (running.isEmpty()) {
+      throw new IllegalStateException("All the providers are open, not sending to [" + target + "]");
+    }
+    try {
+      while (!running.isEmpty()) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          break;
+        }
+        boolean canHedge = next < candidates.size();
+        long wait = canHedge ? Math.min(remaining, candidates.get(next - 1).hedgeDelayNanos()) : remaining;
+        Attempt attempt = done.poll(wait, TimeUnit.NANOSECONDS);
+        if (attempt == null) {
+          if (canHedge) {
+            int launched = running.size();
+            next = launchNext(candidates, next, target, call, done, running);
+            if (running.size() > launched) {
+              hedged.increment();
+              log.debug("Hedged [{}] to provider [{}]", target, candidates.get(next - 1).name);
+            }
+          }
+          continue;
+        }
+        running.remove(attempt);
+        if (attempt.error == null) {
+          return;
+        }
+        if (failure == null) {
+          failure = new IllegalStateException("No provider could send to [" + target + "]");
+        }
+        failure.addSuppressed(attempt.error);
+        if (next < candidates.size()) {
+          int launched = running.size();
+          next = launchNext(candidates, next, target, call, done, running);
+          if (running.size() > launched) {
+            failedOver.increment();
+            log.debug("Failed over [{}] to provider [{}]", target, candidates.get(next - 1).name);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted sending to [" + target + "]", e);
+    }
+
+    if (running.isEmpty() && failure != null) {
+      throw failure;
+    }
+    //the providers that didn't answer on time count as failed, and their late answer is not counted again
+    long now = clock.millis();
+    for (Attempt attempt : running) {
+      if (attempt.settle()) {
+        attempt.provider.onFailure(now);
+      }
+    }
+    IllegalStateException timeout =
+        new IllegalStateException("No provider sent to [" + target + "] in " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+    if (failure != null) {
+      Arrays.stream(failure.getSuppressed()).forEach(timeout::addSuppressed);
+    }
+    throw timeout;
+  }
+
+  /**
+   * @return the names of the providers, fastest healthy first, as the next send would try them. It doesn't take the
+   * trial call of the half open ones
+   */
+  public List<String> getProviderOrder() {
+    List<String> names = new ArrayList<>();
+    candidates(clock.millis()).forEach(provider -> names.add(provider.name));
+    return names;
+  }
+
+  public CircuitBreaker.STATE getBreakerState(String providerName) {
+    for (Provider provider : providers) {
+      if (provider.name.equals(providerName)) {
+        return provider.breaker.getState(clock.millis());
+      }
+    }
+    throw new IllegalArgumentException("Unknown provider: " + providerName);
+  }
+
+  public long getHedged() {
+    return hedged.sum();
+  }
+
+  public long getFailedOver() {
+    return failedOver.sum();
+  }
+
+  public long getBreakerOpened() {
+    return breakerOpened.sum();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+
+  /**
+   * @return the providers whose breaker would let a call through, in the order they are tried. The trial call of a half
+   * open one is only taken when it is launched, as most sends never get past the first provider
+   */
+  private List<Provider> candidates(long now) {
+    List<Provider> candidates = new ArrayList<>(providers.size());
+    for (Provider provider : providers) {
+      if (provider.breaker.isCallable(now)) {
+        candidates.add(provider);
+      }
+    }
+    //measured ones by p95, then the rest in the configured order
+    candidates.sort(Comparator.comparingLong((Provider provider) -> {
+      long p95 = provider.p95Nanos;
+      return p95 < 0 ? Long.MAX_VALUE : p95;
+    }).thenComparingInt(provider -> provider.order));
+    return candidates;
+  }
+
+  /**
+   * launches the first of the candidates from the given index whose breaker lets the call through now
+   * @return the index of the next candidate to launch, candidates.size() if there are no more
+   */
+  private int launchNext(List<Provider> candidates, int from, String target, BiConsumer<A, String> call,
+      BlockingQueue<Attempt> done, List<Attempt> running) {
+    long now = clock.millis();
+    for (int i = from; i < candidates.size(); i++) {
+      if (candidates.get(i).breaker.allowRequest(now)) {
+        launch(candidates.get(i), target, call, done, running);
+        return i + 1;
+      }
+    }
+    return candidates.size();
+  }
+
+  private void launch(Provider provider, String target, BiConsumer<A, String> call, BlockingQueue<Attempt> done,
+      List<Attempt> running) {
+    Attempt attempt = new Attempt(provider);
+    running.add(attempt);
+    try {
+      executor.execute(() -> {
+        long start = System.nanoTime();
+        try {
+          call.accept(provider.adapter, target);
+          if (attempt.settle()) {
+            provider.onSuccess(System.nanoTime() - start);
+          }
+        } catch (RuntimeException e) {
+          attempt.error = e;
+          if (attempt.settle()) {
+            provider.latency.recordSince(start);
+            provider.onFailure(clock.millis());
+          }
+        }
+        done.add(attempt);
+      });
+    } catch (RejectedExecutionException e) {
+      attempt.error = e;
+      attempt.settle();
+      done.add(attempt);
+    }
+  }
+
+  private static ExecutorService newDaemonExecutor(String prefix) {
+    AtomicInteger count = new AtomicInteger();
+    return Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /** a call to a provider. Its result is reported to the provider once, by the call or by the send giving it up */
+  private class Attempt {
+    private final Provider provider;
+    private final AtomicBoolean settled = new AtomicBoolean();
+    private volatile RuntimeException error;
+
+    private Attempt(Provider provider) {
+      this.provider = provider;
+    }
+
+    /** @return true for the first caller, which reports the result */
+    private boolean settle() {
+      return settled.compareAndSet(false, true);
+    }
+  }
+
+  private class Provider {
+    private final int order;
+    private final String name;
+    private final A adapter;
+    private final LatencyHistogram latency;
+    private final CircuitBreaker breaker;
+    private final long[] window = new long[WINDOW];
+    private long samples;
+    private volatile long p95Nanos = -1; //-1 while there are not enough samples
+
+    private Provider(int order, String name, A adapter, LatencyHistogram latency, CircuitBreaker breaker) {
+      this.order = order;
+      this.name = name;
+      this.adapter = adapter;
+      this.latency = latency;
+      this.breaker = breaker;
+    }
+
+    private long hedgeDelayNanos() {
+      long p95 = p95Nanos;
+      return p95 < 0 ? hedgeDelayNanos : Math.max(p95, minHedgeDelayNanos);
+    }
+
+    private void onSuccess(long nanos) {
+      latency.recordNanos(nanos);
+      breaker.onSuccess();
+      synchronized (window) {
+        window[(int) (samples++ % WINDOW)] = nanos;
+        //recomputed every 8 calls, not worth sorting the window on every one
+        if (samples == MIN_SAMPLES || (samples > MIN_SAMPLES && samples % 8 == 0)) {
+          long[] sorted = Arrays.copyOf(window, (int) Math.min(samples, WINDOW));
+          Arrays.sort(sorted);
+          p95Nanos = sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+        }
+      }
+    }
+
+    private void onFailure(long now) {
+      if (breaker.onFailure(now)) {
+        breakerOpened.increment();
+        log.warn("Circuit breaker of provider [{}] opened", name);
+      }
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.jp.aircall.domain.adapters.failover;
+
+import com.jp.aircall.domain.adapters.MailAdapter;
+import java.util.Collection;
+
+/**
+ * MailAdapter sending through several redundant mail providers, see {@link HedgedChannel}. A send that no provider
+ * completes throws an IllegalStateException, reported as a failed notification by the dispatchers
+ */
+public class HedgedMailAdapter implements MailAdapter, AutoCloseable {
+
+  private final HedgedChannel<MailAdapter> channel;
+
+  public HedgedMailAdapter(HedgedChannel<MailAdapter> channel) {
+    this.channel = channel;
+  }
+
+  @Override
+  public void sendNotification(String mail) {
+    channel.send(mail, MailAdapter::sendNotification);
+  }
+
+  @Override
+  public void sendDigestNotification(String mail, Collection<String> serviceIds) {
+    channel.send(mail, (provider, target) -> provider.sendDigestNotification(target, serviceIds));
+  }
+
+  public HedgedChannel<MailAdapter> getChannel() {
+    return channel;
+  }
+
+  @Override
+  public void close() {
+    channel.close();
+  }
+}
@@ -0,0 +1,36 @@
+package com.jp.aircall.domain.adapters.failover;
+
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import java.util.Collection;
+
+/**
+ * SmsAdapter sending through several redundant SMS providers, see {@link HedgedChannel}. A send that no provider
+ * completes throws an IllegalStateException, reported as a failed notification by the dispatchers
+ */
+public class HedgedSmsAdapter implements SmsAdapter, AutoCloseable {
+
+  private final HedgedChannel<SmsAdapter> channel;
+
+  public HedgedSmsAdapter(HedgedChannel<SmsAdapter> channel) {
+    this.channel = channel;
+  }
+
+  @Override
+  public void sendNotification(String phone) {
+    channel.send(phone, SmsAdapter::sendNotification);
+  }
+
+  @Override
+  public void sendDigestNotification(String phone, Collection<String> serviceIds) {
+    channel.send(phone, (provider, target) -> provider.sendDigestNotification(target, serviceIds));
+  }
+
+  public HedgedChannel<SmsAdapter> getChannel() {
+    return channel;
+  }
+
+  @Override
+  public void close() {
+    channel.close();
+  }
+}
@@ -0,0 +1,36 @@
+package com.jp.aircall.domain.adapters.metrics;
+
+import com.jp.aircall.domain.adapters.EPAdapter;
+import com.jp.aircall.domain.metrics.LatencyHistogram;
+import com.jp.aircall.domain.metrics.MetricsRegistry;
+import com.jp.aircall.domain.metrics.jfr.AdapterCallEvent;
+import com.jp.aircall.domain.metrics.jfr.AlertTracing;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import java.util.Optional;
+
+/**
+ * Records the latency of the given EPAdapter as ep.getEpByServiceId. Note it hides the PolicyPlanProvider of a
+ * CachingEPAdapter, so wrap the adapter the CachingEPAdapter reads from instead to time the misses only
+ */
+public class InstrumentedEPAdapter implements EPAdapter {
+
+  private final EPAdapter epAdapter;
+  private final LatencyHistogram getEpByServiceId;
+
+  public InstrumentedEPAdapter(EPAdapter epAdapter, MetricsRegistry registry) {
+    this.epAdapter = epAdapter;
+    this.getEpByServiceId = registry.timer("ep.getEpByServiceId");
+  }
+
+  @Override
+  public Optional<EscalationPolicy> getEpByServiceId(String serviceId) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return epAdapter.getEpByServiceId(serviceId);
+    } finally {
+      getEpByServiceId.recordSince(start);
+      AlertTracing.adapterCall(event, "ep.getEpByServiceId", serviceId);
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package com.jp.aircall.domain.adapters.metrics;
+
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.metrics.LatencyHistogram;
+import com.jp.aircall.domain.metrics.MetricsRegistry;
+import com.jp.aircall.domain.metrics.jfr.AdapterCallEvent;
+import com.jp.aircall.domain.metrics.jfr.AlertTracing;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of the given MailAdapter as mail.sendNotification and mail.sendDigestNotification, and counts the failed
+ * notifications of both as mail.errors
+ */
+public class InstrumentedMailAdapter implements MailAdapter {
+
+  private final MailAdapter mailAdapter;
+  private final LatencyHistogram sendNotification;
+  private final LatencyHistogram sendDigestNotification;
+  private final LongAdder errors;
+
+  public InstrumentedMailAdapter(MailAdapter mailAdapter, MetricsRegistry registry) {
+    this.mailAdapter = mailAdapter;
+    this.sendNotification = registry.timer("mail.sendNotification");
+    this.sendDigestNotification = registry.timer("mail.sendDigestNotification");
+    this.errors = registry.counter("mail.errors");
+  }
+
+  @Override
+  public void sendNotification(String mail) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      mailAdapter.sendNotification(mail);
+    } catch (RuntimeException e) {
+      errors.increment();
+      throw e;
+    } finally {
+      sendNotification.recordSince(start);
+      AlertTracing.adapterCall(event, "mail.sendNotification", mail);
+    }
+  }
+
+  @Override
+  public void sendDigestNotification(String mail, Collection<String> serviceIds) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      mailAdapter.sendDigestNotification(mail, serviceIds);
+    } catch (RuntimeException e) {
+      errors.increment();
+      throw e;
+    } finally {
+      sendDigestNotification.recordSince(start);
+      AlertTracing.adapterCall(event, "mail.sendDigestNotification", mail);
+    }
+  }
+}
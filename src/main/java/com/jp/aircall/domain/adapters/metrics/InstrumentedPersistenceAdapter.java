@@ -0,0 +1,313 @@
+package com.jp.aircall.domain.adapters.metrics;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.metrics.LatencyHistogram;
+import com.jp.aircall.domain.metrics.MetricsRegistry;
+import com.jp.aircall.domain.metrics.jfr.AdapterCallEvent;
+import com.jp.aircall.domain.metrics.jfr.AlertTracing;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.policy.Service;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Records the latency of every method of the given PersistenceAdapter as persistence.&lt;method&gt;
+ * (e.g. persistence.getService). The bulk methods are delegated too, so the round-trips saved by the delegate are kept
+ */
+public class InstrumentedPersistenceAdapter implements PersistenceAdapter {
+
+  private final PersistenceAdapter persistenceAdapter;
+  private final LatencyHistogram addAlertingService;
+  private final LatencyHistogram removeAlertingService;
+  private final LatencyHistogram addAckSempahore;
+  private final LatencyHistogram removeAckSemaphore;
+  private final LatencyHistogram getService;
+  private final LatencyHistogram updateService;
+  private final LatencyHistogram updateServiceIfVersion;
+  private final LatencyHistogram getServices;
+  private final LatencyHistogram updateServices;
+  private final LatencyHistogram getUnhealthyServiceIds;
+  private final LatencyHistogram savePagerAlert;
+  private final LatencyHistogram getPagerAlert;
+  private final LatencyHistogram updatePagerAlert;
+  private final LatencyHistogram updatePagerAlertIfVersion;
+  private final LatencyHistogram getPagerAlerts;
+  private final LatencyHistogram getOpenPagerAlerts;
+  private final LatencyHistogram removeAllSemaphores;
+  private final LatencyHistogram updatePagerAlerts;
+  private final LatencyHistogram closeAllServiceAlerts;
+  private final LatencyHistogram beforeSemaphoreRelease;
+
+  public InstrumentedPersistenceAdapter(PersistenceAdapter persistenceAdapter, MetricsRegistry registry) {
+    this.persistenceAdapter = persistenceAdapter;
+    this.addAlertingService = registry.timer("persistence.addAlertingService");
+    this.removeAlertingService = registry.timer("persistence.removeAlertingService");
+    this.addAckSempahore = registry.timer("persistence.addAckSempahore");
+    this.removeAckSemaphore = registry.timer("persistence.removeAckSemaphore");
+    this.getService = registry.timer("persistence.getService");
+    this.updateService = registry.timer("persistence.updateService");
+    this.updateServiceIfVersion = registry.timer("persistence.updateServiceIfVersion");
+    this.getServices = registry.timer("persistence.getServices");
+    this.updateServices = registry.timer("persistence.updateServices");
+    this.getUnhealthyServiceIds = registry.timer("persistence.getUnhealthyServiceIds");
+    this.savePagerAlert = registry.timer("persistence.savePagerAlert");
+    this.getPagerAlert = registry.timer("persistence.getPagerAlert");
+    this.updatePagerAlert = registry.timer("persistence.updatePagerAlert");
+    this.updatePagerAlertIfVersion = registry.timer("persistence.updatePagerAlertIfVersion");
+    this.getPagerAlerts = registry.timer("persistence.getPagerAlerts");
+    this.getOpenPagerAlerts = registry.timer("persistence.getOpenPagerAlerts");
+    this.removeAllSemaphores = registry.timer("persistence.removeAllSemaphores");
+    this.updatePagerAlerts = registry.timer("persistence.updatePagerAlerts");
+    this.closeAllServiceAlerts = registry.timer("persistence.closeAllServiceAlerts");
+    this.beforeSemaphoreRelease = registry.timer("persistence.beforeSemaphoreRelease");
+  }
+
+  @Override
+  public void addAlertingService(String serviceId) throws ServiceAlertingAlreadyException {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      persistenceAdapter.addAlertingService(serviceId);
+    } finally {
+      addAlertingService.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.addAlertingService", serviceId);
+    }
+  }
+
+  @Override
+  public void removeAlertingService(String serviceId) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      persistenceAdapter.removeAlertingService(serviceId);
+    } finally {
+      removeAlertingService.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.removeAlertingService", serviceId);
+    }
+  }
+
+  @Override
+  public void addAckSempahore(String pagerAlertId) throws AckAlertingAlreadyException {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      persistenceAdapter.addAckSempahore(pagerAlertId);
+    } finally {
+      addAckSempahore.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.addAckSempahore", pagerAlertId);
+    }
+  }
+
+  @Override
+  public void removeAckSemaphore(String pagerAlertId) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      persistenceAdapter.removeAckSemaphore(pagerAlertId);
+    } finally {
+      removeAckSemaphore.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.removeAckSemaphore", pagerAlertId);
+    }
+  }
+
+  @Override
+  public Optional<Service> getService(String serviceId) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return persistenceAdapter.getService(serviceId);
+    } finally {
+      getService.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.getService", serviceId);
+    }
+  }
+
+  @Override
+  public boolean supportsVersionedUpdates() {
+    return persistenceAdapter.supportsVersionedUpdates();
+  }
+
+  @Override
+  public void beforeSemaphoreRelease() {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      persistenceAdapter.beforeSemaphoreRelease();
+    } finally {
+      beforeSemaphoreRelease.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.beforeSemaphoreRelease", null);
+    }
+  }
+
+  @Override
+  public boolean updateServiceIfVersion(Service service, long expectedVersion) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return persistenceAdapter.updateServiceIfVersion(service, expectedVersion);
+    } finally {
+      updateServiceIfVersion.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.updateServiceIfVersion", service.getId());
+    }
+  }
+
+  @Override
+  public void updateService(Service service) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      persistenceAdapter.updateService(service);
+    } finally {
+      updateService.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.updateService", service.getId());
+    }
+  }
+
+  @Override
+  public Map<String, Service> getServices(Collection<String> serviceIds) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return persistenceAdapter.getServices(serviceIds);
+    } finally {
+      getServices.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.getServices", null);
+    }
+  }
+
+  @Override
+  public void updateServices(Collection<Service> services) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      persistenceAdapter.updateServices(services);
+    } finally {
+      updateServices.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.updateServices", null);
+    }
+  }
+
+  @Override
+  public Collection<String> getUnhealthyServiceIds() {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return persistenceAdapter.getUnhealthyServiceIds();
+    } finally {
+      getUnhealthyServiceIds.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.getUnhealthyServiceIds", null);
+    }
+  }
+
+  @Override
+  public void savePagerAlert(PagerAlert pagerAlert) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      persistenceAdapter.savePagerAlert(pagerAlert);
+    } finally {
+      savePagerAlert.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.savePagerAlert", pagerAlert.getId());
+    }
+  }
+
+  @Override
+  public Optional<PagerAlert> getPagerAlert(String pagerAlertId) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return persistenceAdapter.getPagerAlert(pagerAlertId);
+    } finally {
+      getPagerAlert.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.getPagerAlert", pagerAlertId);
+    }
+  }
+
+  @Override
+  public boolean updatePagerAlertIfVersion(PagerAlert pagerAlert, long expectedVersion) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return persistenceAdapter.updatePagerAlertIfVersion(pagerAlert, expectedVersion);
+    } finally {
+      updatePagerAlertIfVersion.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.updatePagerAlertIfVersion", pagerAlert.getId());
+    }
+  }
+
+  @Override
+  public void updatePagerAlert(PagerAlert pagerAlert) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      persistenceAdapter.updatePagerAlert(pagerAlert);
+    } finally {
+      updatePagerAlert.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.updatePagerAlert", pagerAlert.getId());
+    }
+  }
+
+  @Override
+  public Map<String, PagerAlert> getPagerAlerts(Collection<String> pagerAlertIds) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return persistenceAdapter.getPagerAlerts(pagerAlertIds);
+    } finally {
+      getPagerAlerts.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.getPagerAlerts", null);
+    }
+  }
+
+  @Override
+  public List<PagerAlert> getOpenPagerAlerts(String afterId, int limit) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return persistenceAdapter.getOpenPagerAlerts(afterId, limit);
+    } finally {
+      getOpenPagerAlerts.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.getOpenPagerAlerts", afterId);
+    }
+  }
+
+  @Override
+  public int removeAllSemaphores() {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return persistenceAdapter.removeAllSemaphores();
+    } finally {
+      removeAllSemaphores.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.removeAllSemaphores", null);
+    }
+  }
+
+  @Override
+  public void updatePagerAlerts(Collection<PagerAlert> pagerAlerts) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      persistenceAdapter.updatePagerAlerts(pagerAlerts);
+    } finally {
+      updatePagerAlerts.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.updatePagerAlerts", null);
+    }
+  }
+
+  @Override
+  public List<String> closeAllServiceAlerts(String serviceId) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return persistenceAdapter.closeAllServiceAlerts(serviceId);
+    } finally {
+      closeAllServiceAlerts.recordSince(start);
+      AlertTracing.adapterCall(event, "persistence.closeAllServiceAlerts", serviceId);
+    }
+  }
+}
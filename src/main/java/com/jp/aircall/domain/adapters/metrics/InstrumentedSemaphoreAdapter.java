@@ -0,0 +1,79 @@
+package com.jp.aircall.domain.adapters.metrics;
+
+import com.jp.aircall.domain.adapters.SemaphoreAdapter;
+import com.jp.aircall.domain.adapters.semaphore.SemaphoreLease;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.metrics.LatencyHistogram;
+import com.jp.aircall.domain.metrics.MetricsRegistry;
+import com.jp.aircall.domain.metrics.jfr.AdapterCallEvent;
+import com.jp.aircall.domain.metrics.jfr.AlertTracing;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latencies of the given SemaphoreAdapter as semaphore.acquireAlertingService, semaphore.acquireAck and
+ * semaphore.release, and counts the failed acquisitions as semaphore.contended
+ */
+public class InstrumentedSemaphoreAdapter implements SemaphoreAdapter {
+
+  private final SemaphoreAdapter semaphoreAdapter;
+  private final LatencyHistogram acquireAlertingService;
+  private final LatencyHistogram acquireAck;
+  private final LatencyHistogram release;
+  private final LongAdder contended;
+
+  public InstrumentedSemaphoreAdapter(SemaphoreAdapter semaphoreAdapter, MetricsRegistry registry) {
+    this.semaphoreAdapter = semaphoreAdapter;
+    this.acquireAlertingService = registry.timer("semaphore.acquireAlertingService");
+    this.acquireAck = registry.timer("semaphore.acquireAck");
+    this.release = registry.timer("semaphore.release");
+    this.contended = registry.counter("semaphore.contended");
+  }
+
+  @Override
+  public SemaphoreLease acquireAlertingService(String serviceId) throws ServiceAlertingAlreadyException {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return semaphoreAdapter.acquireAlertingService(serviceId);
+    } catch (ServiceAlertingAlreadyException e) {
+      contended.increment();
+      throw e;
+    } finally {
+      acquireAlertingService.recordSince(start);
+      AlertTracing.adapterCall(event, "semaphore.acquireAlertingService", serviceId);
+    }
+  }
+
+  @Override
+  public SemaphoreLease acquireAck(String pagerAlertId) throws AckAlertingAlreadyException {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      return semaphoreAdapter.acquireAck(pagerAlertId);
+    } catch (AckAlertingAlreadyException e) {
+      contended.increment();
+      throw e;
+    } finally {
+      acquireAck.recordSince(start);
+      AlertTracing.adapterCall(event, "semaphore.acquireAck", pagerAlertId);
+    }
+  }
+
+  @Override
+  public boolean renew(SemaphoreLease lease) {
+    return semaphoreAdapter.renew(lease);
+  }
+
+  @Override
+  public void release(SemaphoreLease lease) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      semaphoreAdapter.release(lease);
+    } finally {
+      release.recordSince(start);
+      AlertTracing.adapterCall(event, "semaphore.release", lease.getKey());
+    }
+  }
+}
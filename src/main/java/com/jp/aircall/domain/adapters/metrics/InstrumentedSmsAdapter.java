@@ -0,0 +1,58 @@
+package com.jp.aircall.domain.adapters.metrics;
+
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.metrics.LatencyHistogram;
+import com.jp.aircall.domain.metrics.MetricsRegistry;
+import com.jp.aircall.domain.metrics.jfr.AdapterCallEvent;
+import com.jp.aircall.domain.metrics.jfr.AlertTracing;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of the given SmsAdapter as sms.sendNotification and sms.sendDigestNotification, and counts the failed
+ * notifications of both as sms.errors
+ */
+public class InstrumentedSmsAdapter implements SmsAdapter {
+
+  private final SmsAdapter smsAdapter;
+  private final LatencyHistogram sendNotification;
+  private final LatencyHistogram sendDigestNotification;
+  private final LongAdder errors;
+
+  public InstrumentedSmsAdapter(SmsAdapter smsAdapter, MetricsRegistry registry) {
+    this.smsAdapter = smsAdapter;
+    this.sendNotification = registry.timer("sms.sendNotification");
+    this.sendDigestNotification = registry.timer("sms.sendDigestNotification");
+    this.errors = registry.counter("sms.errors");
+  }
+
+  @Override
+  public void sendNotification(String phone) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      smsAdapter.sendNotification(phone);
+    } catch (RuntimeException e) {
+      errors.increment();
+      throw e;
+    } finally {
+      sendNotification.recordSince(start);
+      AlertTracing.adapterCall(event, "sms.sendNotification", phone);
+    }
+  }
+
+  @Override
+  public void sendDigestNotification(String phone, Collection<String> serviceIds) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      smsAdapter.sendDigestNotification(phone, serviceIds);
+    } catch (RuntimeException e) {
+      errors.increment();
+      throw e;
+    } finally {
+      sendDigestNotification.recordSince(start);
+      AlertTracing.adapterCall(event, "sms.sendDigestNotification", phone);
+    }
+  }
+}
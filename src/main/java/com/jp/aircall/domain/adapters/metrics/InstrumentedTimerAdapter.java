@@ -0,0 +1,61 @@
+package com.jp.aircall.domain.adapters.metrics;
+
+import com.jp.aircall.domain.adapters.TimerAdapter;
+import com.jp.aircall.domain.metrics.LatencyHistogram;
+import com.jp.aircall.domain.metrics.MetricsRegistry;
+import com.jp.aircall.domain.metrics.jfr.AdapterCallEvent;
+import com.jp.aircall.domain.metrics.jfr.AlertTracing;
+
+/**
+ * Records the latencies of the given TimerAdapter as timer.add15MinutesTimer, timer.addTimerAt and timer.cancelTimer
+ */
+public class InstrumentedTimerAdapter implements TimerAdapter {
+
+  private final TimerAdapter timerAdapter;
+  private final LatencyHistogram add15MinutesTimer;
+  private final LatencyHistogram addTimerAt;
+  private final LatencyHistogram cancelTimer;
+
+  public InstrumentedTimerAdapter(TimerAdapter timerAdapter, MetricsRegistry registry) {
+    this.timerAdapter = timerAdapter;
+    this.add15MinutesTimer = registry.timer("timer.add15MinutesTimer");
+    this.addTimerAt = registry.timer("timer.addTimerAt");
+    this.cancelTimer = registry.timer("timer.cancelTimer");
+  }
+
+  @Override
+  public void add15MinutesTimer(String id) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      timerAdapter.add15MinutesTimer(id);
+    } finally {
+      add15MinutesTimer.recordSince(start);
+      AlertTracing.adapterCall(event, "timer.add15MinutesTimer", id);
+    }
+  }
+
+  @Override
+  public void addTimerAt(String id, long dueTs) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      timerAdapter.addTimerAt(id, dueTs);
+    } finally {
+      addTimerAt.recordSince(start);
+      AlertTracing.adapterCall(event, "timer.addTimerAt", id);
+    }
+  }
+
+  @Override
+  public void cancelTimer(String id) {
+    long start = System.nanoTime();
+    AdapterCallEvent event = AlertTracing.beginAdapterCall();
+    try {
+      timerAdapter.cancelTimer(id);
+    } finally {
+      cancelTimer.recordSince(start);
+      AlertTracing.adapterCall(event, "timer.cancelTimer", id);
+    }
+  }
+}
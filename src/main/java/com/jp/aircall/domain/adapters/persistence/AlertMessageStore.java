@@ -0,0 +1,76 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Side store of the alert messages of an {@link OffHeapPagerAlertStore}, so its records keep a 4 bytes code instead of
+ * the message and the messages are kept whole whatever their length. Every record holding a code holds a reference to
+ * it: the records with the same message (e.g. the repeated alerts of a flapping service) share it, and a message is
+ * evicted, and its code reused, as soon as no record references it.
+ */
+public class AlertMessageStore {
+
+  private final Map<String, Integer> codes = new HashMap<>();  //guarded by this
+  private volatile String[] values = new String[64];
+  private int[] references = new int[64];  //guarded by this
+  private int[] freeCodes = new int[16];   //guarded by this
+  private int freeCount;                   //guarded by this
+  private int nextCode;                    //guarded by this
+
+  /**
+   * takes a reference to the given message, adding it to the store if it is not there
+   * @param message
+   * @return its code. -1 for null
+   */
+  public synchronized int acquire(String message) {
+    if (message == null) {
+      return -1;
+    }
+    Integer code = codes.get(message);
+    if (code != null) {
+      references[code]++;
+      return code;
+    }
+    int newCode = freeCount > 0 ? freeCodes[--freeCount] : nextCode++;
+    if (newCode == values.length) {
+      values = Arrays.copyOf(values, newCode * 2);
+      references = Arrays.copyOf(references, newCode * 2);
+    }
+    values[newCode] = message;
+    references[newCode] = 1;
+    codes.put(message, newCode);
+    return newCode;
+  }
+
+  /**
+   * drops a reference taken by {@link #acquire(String)}, evicting the message when it was the last one
+   * @param code -1 is ignored
+   */
+  public synchronized void release(int code) {
+    if (code < 0 || --references[code] > 0) {
+      return;
+    }
+    codes.remove(values[code]);
+    values[code] = null;
+    if (freeCount == freeCodes.length) {
+      freeCodes = Arrays.copyOf(freeCodes, freeCount * 2);
+    }
+    freeCodes[freeCount++] = code;
+  }
+
+  /**
+   * The caller must hold a reference to the code, or read it from a record under the lock it was written with
+   * @param code
+   * @return the message with the given code. null for -1
+   */
+  public String valueOf(int code) {
+    return code < 0 ? null : values[code];
+  }
+
+  /** @return number of distinct messages kept */
+  public synchronized int size() {
+    return codes.size();
+  }
+}
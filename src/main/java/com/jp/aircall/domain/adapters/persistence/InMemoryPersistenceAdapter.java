@@ -0,0 +1,251 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Reference PersistenceAdapter keeping everything in memory. Like a DB it stores and returns copies, so changes to a
+ * returned object are not visible until it is updated.
+ * It keeps an index serviceId -> ids of its not closed alerts, so {@link #closeAllServiceAlerts(String)} only touches
+ * the k open alerts of the service instead of scanning all the alerts, and a sorted index of the OPEN alert ids for
+ * {@link #getOpenPagerAlerts(String, int)}.
+ * Every write increments the version of the written row, so it supports the versioned updates.
+ */
+public class InMemoryPersistenceAdapter implements PersistenceAdapter {
+
+  private final Set<String> alertingServices = ConcurrentHashMap.newKeySet();
+  private final Set<String> ackSemaphores = ConcurrentHashMap.newKeySet();
+  private final Map<String, Service> services = new ConcurrentHashMap<>();
+  private final Map<String, PagerAlert> pagerAlerts = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> openAlertsByService = new ConcurrentHashMap<>();
+  private final NavigableSet<String> openAlertIds = new ConcurrentSkipListSet<>();
+  private final Clock clock;
+
+  public InMemoryPersistenceAdapter() {
+    this(Clock.systemUTC());
+  }
+
+  public InMemoryPersistenceAdapter(Clock clock) {
+    this.clock = clock;
+  }
+
+  @Override
+  public void addAlertingService(String serviceId) throws ServiceAlertingAlreadyException {
+    if (!alertingServices.add(serviceId)) {
+      throw new ServiceAlertingAlreadyException("Duplicated PK:" + serviceId);
+    }
+  }
+
+  @Override
+  public void removeAlertingService(String serviceId) {
+    alertingServices.remove(serviceId);
+  }
+
+  @Override
+  public void addAckSempahore(String pagerAlertId) throws AckAlertingAlreadyException {
+    if (!ackSemaphores.add(pagerAlertId)) {
+      throw new AckAlertingAlreadyException("Duplicated PK:" + pagerAlertId);
+    }
+  }
+
+  @Override
+  public void removeAckSemaphore(String pagerAlertId) {
+    ackSemaphores.remove(pagerAlertId);
+  }
+
+  @Override
+  public int removeAllSemaphores() {
+    int removed = alertingServices.size() + ackSemaphores.size();
+    alertingServices.clear();
+    ackSemaphores.clear();
+    return removed;
+  }
+
+  @Override
+  public Optional<Service> getService(String serviceId) {
+    Service service = services.get(serviceId);
+    return service == null ? Optional.empty() : Optional.of(copy(service));
+  }
+
+  @Override
+  public boolean supportsVersionedUpdates() {
+    return true;
+  }
+
+  @Override
+  public void updateService(Service service) {
+    Service stored = copy(service);
+    services.compute(stored.getId(), (id, current) -> {
+      stored.setVersion(current == null ? 1 : current.getVersion() + 1);
+      return stored;
+    });
+  }
+
+  @Override
+  public boolean updateServiceIfVersion(Service service, long expectedVersion) {
+    Service stored = copy(service);
+    stored.setVersion(expectedVersion + 1);
+    boolean updated = services.computeIfPresent(stored.getId(),
+        (id, current) -> current.getVersion() == expectedVersion ? stored : current) == stored;
+    if (updated) {
+      service.setVersion(stored.getVersion());
+    }
+    return updated;
+  }
+
+  @Override
+  public Collection<String> getUnhealthyServiceIds() {
+    return services.values().stream()
+        .filter(service -> service.getStatus() == SERVICE_STATUS.UNHEALTHY)
+        .map(Service::getId)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public void savePagerAlert(PagerAlert pagerAlert) {
+    updatePagerAlert(pagerAlert);
+  }
+
+  @Override
+  public Optional<PagerAlert> getPagerAlert(String pagerAlertId) {
+    PagerAlert pagerAlert = pagerAlerts.get(pagerAlertId);
+    return pagerAlert == null ? Optional.empty() : Optional.of(copy(pagerAlert));
+  }
+
+  @Override
+  public void updatePagerAlert(PagerAlert pagerAlert) {
+    PagerAlert stored = copy(pagerAlert);
+    pagerAlerts.compute(stored.getId(), (id, current) -> {
+      stored.setVersion(current == null ? 1 : current.getVersion() + 1);
+      return index(stored);
+    });
+  }
+
+  @Override
+  public boolean updatePagerAlertIfVersion(PagerAlert pagerAlert, long expectedVersion) {
+    PagerAlert stored = copy(pagerAlert);
+    stored.setVersion(expectedVersion + 1);
+    boolean updated = pagerAlerts.computeIfPresent(stored.getId(),
+        (id, current) -> current.getVersion() == expectedVersion ? index(stored) : current) == stored;
+    if (updated) {
+      pagerAlert.setVersion(stored.getVersion());
+    }
+    return updated;
+  }
+
+  /** updates the indexes with the alert about to be stored. Called while computing its entry */
+  private PagerAlert index(PagerAlert stored) {
+    String id = stored.getId();
+    if (stored.getStatus() == ALERT_STATUS.CLOSED) {
+      removeOpenAlert(stored.getServiceId(), id);
+    } else {
+      openAlertsByService.computeIfAbsent(stored.getServiceId(), serviceId -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+    if (stored.getStatus() == ALERT_STATUS.OPEN) {
+      openAlertIds.add(id);
+    } else {
+      openAlertIds.remove(id);
+    }
+    return stored;
+  }
+
+  @Override
+  public List<String> closeAllServiceAlerts(String serviceId) {
+    return closeAllServiceAlerts(serviceId, clock.millis());
+  }
+
+  List<String> closeAllServiceAlerts(String serviceId, long closedTs) {
+    Set<String> serviceAlertIds = openAlertsByService.remove(serviceId);
+    if (serviceAlertIds == null) {
+      return List.of();
+    }
+    List<String> closed = new ArrayList<>(serviceAlertIds.size());
+    for (String pagerAlertId : serviceAlertIds) {
+      pagerAlerts.computeIfPresent(pagerAlertId, (id, pagerAlert) -> {
+        if (pagerAlert.getStatus() != ALERT_STATUS.CLOSED) {
+          PagerAlert closedAlert = copy(pagerAlert);
+          closedAlert.setStatus(ALERT_STATUS.CLOSED);
+          closedAlert.setClosedTs(closedTs);
+          closedAlert.setVersion(pagerAlert.getVersion() + 1);
+          closed.add(id);
+          openAlertIds.remove(id);
+          return closedAlert;
+        }
+        return pagerAlert;
+      });
+    }
+    return closed;
+  }
+
+  @Override
+  public List<PagerAlert> getOpenPagerAlerts(String afterId, int limit) {
+    List<PagerAlert> page = new ArrayList<>(Math.min(limit, 1024));
+    for (String pagerAlertId : afterId == null ? openAlertIds : openAlertIds.tailSet(afterId, false)) {
+      PagerAlert pagerAlert = pagerAlerts.get(pagerAlertId);
+      if (pagerAlert != null && pagerAlert.getStatus() == ALERT_STATUS.OPEN) {
+        page.add(copy(pagerAlert));
+        if (page.size() == limit) {
+          break;
+        }
+      }
+    }
+    return page;
+  }
+
+  /**
+   * @param serviceId
+   * @return number of not closed alerts of the given service
+   */
+  public int countOpenAlerts(String serviceId) {
+    Set<String> openAlertIds = openAlertsByService.get(serviceId);
+    return openAlertIds == null ? 0 : openAlertIds.size();
+  }
+
+  /** @return number of OPEN alerts of all the services, as indexed for {@link #getOpenPagerAlerts} */
+  int countOpenAlerts() {
+    return openAlertIds.size();
+  }
+
+  void forEachService(Consumer<Service> consumer) {
+    services.values().forEach(consumer);
+  }
+
+  void forEachPagerAlert(Consumer<PagerAlert> consumer) {
+    pagerAlerts.values().forEach(consumer);
+  }
+
+  private void removeOpenAlert(String serviceId, String pagerAlertId) {
+    openAlertsByService.computeIfPresent(serviceId, (id, openAlertIds) -> {
+      openAlertIds.remove(pagerAlertId);
+      return openAlertIds.isEmpty() ? null : openAlertIds;
+    });
+  }
+
+  static Service copy(Service service) {
+    Service copy = new Service(service.getId(), service.getStatus());
+    copy.setDescription(service.getDescription());
+    copy.setVersion(service.getVersion());
+    return copy;
+  }
+
+  static PagerAlert copy(PagerAlert pagerAlert) {
+    return new PagerAlert(pagerAlert);
+  }
+}
@@ -0,0 +1,157 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Binary layout of the journal and snapshot records:
+ * [int payload length][byte type][payload][int crc32 of type and payload].
+ * A zero length marks the end of the written records and a wrong crc a torn write.
+ */
+final class JournalCodec {
+
+  static final byte PUT_SERVICE = 1;
+  static final byte PUT_ALERT = 2;
+  static final byte CLOSE_SERVICE_ALERTS = 3;
+  static final byte SNAPSHOT_END = 4;
+
+  static final int RECORD_OVERHEAD = 4 + 1 + 4;
+
+  private static final ALERT_STATUS[] ALERT_STATUSES = ALERT_STATUS.values();
+  private static final SERVICE_STATUS[] SERVICE_STATUSES = SERVICE_STATUS.values();
+
+  private JournalCodec() {
+  }
+
+  /** a decoded record. The payload is a view positioned at its start */
+  static class Record {
+    final byte type;
+    final ByteBuffer payload;
+
+    Record(byte type, ByteBuffer payload) {
+      this.type = type;
+      this.payload = payload;
+    }
+  }
+
+  static void writeService(ByteBuffer payload, Service service) {
+    writeString(payload, service.getId());
+    writeString(payload, service.getDescription());
+    payload.put(service.getStatus() == null ? -1 : (byte) service.getStatus().ordinal());
+  }
+
+  static Service readService(ByteBuffer payload) {
+    String id = readString(payload);
+    String description = readString(payload);
+    byte status = payload.get();
+    Service service = new Service(id, status < 0 ? null : SERVICE_STATUSES[status]);
+    service.setDescription(description);
+    return service;
+  }
+
+  static void writePagerAlert(ByteBuffer payload, PagerAlert pagerAlert) {
+    writeString(payload, pagerAlert.getId());
+    writeString(payload, pagerAlert.getServiceId());
+    writeString(payload, pagerAlert.getAlertMessage());
+    payload.put(pagerAlert.getStatus() == null ? -1 : (byte) pagerAlert.getStatus().ordinal());
+    payload.putInt(pagerAlert.getLevelNotified());
+    payload.putLong(pagerAlert.getCreationTs());
+    payload.putLong(pagerAlert.getLastNotificationTs());
+    payload.putLong(pagerAlert.getAcknowledgmentTs());
+    payload.putLong(pagerAlert.getClosedTs());
+  }
+
+  static PagerAlert readPagerAlert(ByteBuffer payload) {
+    String id = readString(payload);
+    String serviceId = readString(payload);
+    String message = readString(payload);
+    byte status = payload.get();
+    int level = payload.getInt();
+    long creationTs = payload.getLong();
+    long lastNotificationTs = payload.getLong();
+    PagerAlert pagerAlert = new PagerAlert(serviceId, message, status < 0 ? null : ALERT_STATUSES[status], level,
+        creationTs, lastNotificationTs);
+    pagerAlert.setId(id);
+    pagerAlert.setAcknowledgmentTs(payload.getLong());
+    pagerAlert.setClosedTs(payload.getLong());
+    return pagerAlert;
+  }
+
+  /** reads the service id of a CLOSE_SERVICE_ALERTS record, followed by its long closedTs */
+  static String readServiceId(ByteBuffer payload) {
+    return readString(payload);
+  }
+
+  static void writeCloseServiceAlerts(ByteBuffer payload, String serviceId, long closedTs) {
+    writeString(payload, serviceId);
+    payload.putLong(closedTs);
+  }
+
+  /**
+   * writes the record with the given type and payload (from its position to its limit) at the position of the target
+   */
+  static void writeRecord(ByteBuffer target, byte type, ByteBuffer payload) {
+    CRC32 crc = new CRC32();
+    crc.update(type);
+    crc.update(payload.duplicate());
+    target.putInt(payload.remaining());
+    target.put(type);
+    target.put(payload);
+    target.putInt((int) crc.getValue());
+  }
+
+  /**
+   * reads the record at the position of the source and moves the position after it
+   * @return the record or null if there are no more valid records
+   */
+  static Record readRecord(ByteBuffer source) {
+    if (source.remaining() < RECORD_OVERHEAD) {
+      return null;
+    }
+    int start = source.position();
+    int length = source.getInt(start);
+    if (length < 0 || length > source.remaining() - RECORD_OVERHEAD || (length == 0 && source.get(start + 4) == 0)) {
+      return null;
+    }
+    byte type = source.get(start + 4);
+    ByteBuffer payload = source.duplicate();
+    payload.position(start + 5).limit(start + 5 + length);
+    CRC32 crc = new CRC32();
+    crc.update(type);
+    crc.update(payload.duplicate());
+    if ((int) crc.getValue() != source.getInt(start + 5 + length)) {
+      return null;
+    }
+    source.position(start + RECORD_OVERHEAD + length);
+    return new Record(type, payload);
+  }
+
+  static int sizeOf(String value) {
+    return 4 + (value == null ? 0 : value.length() * 3);
+  }
+
+  private static void writeString(ByteBuffer payload, String value) {
+    if (value == null) {
+      payload.putInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    payload.putInt(bytes.length);
+    payload.put(bytes);
+  }
+
+  private static String readString(ByteBuffer payload) {
+    int length = payload.getInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    payload.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,567 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.adapters.persistence.JournalCodec.Record;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.policy.Service;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local durable PersistenceAdapter. The state lives in an {@link InMemoryPersistenceAdapter} and every change of it is
+ * appended as a binary record to a memory-mapped journal segment, so appending is a memory copy. On startup the last
+ * snapshot is loaded and only the segments written after it are replayed.
+ * <ul>
+ *   <li>SYNC durability: a write returns once its record is forced to disk. Writers waiting at the same time share a
+ *   single force (group commit)</li>
+ *   <li>ASYNC durability: the segment is forced every flushIntervalMs, so a crash may lose the writes of that window</li>
+ * </ul>
+ * A snapshot is taken every snapshotEverySegments segments (or calling {@link #snapshot()}) and the segments it covers are
+ * deleted. It is written while the pager keeps writing: records are full states, so replaying the segments written after
+ * the snapshot started leaves every entry as its last record says.
+ * Semaphores are kept in memory only: they are gone after a restart, so no TTL is needed to clear them.
+ * Versions are not journaled either: the versioned updates only order the writes of a running pager, and the recovered
+ * rows get the versions of their replayed writes.
+ */
+@Slf4j
+public class JournalPersistenceAdapter implements PersistenceAdapter, AutoCloseable {
+
+  public enum DURABILITY {SYNC, ASYNC}
+
+  private static final Pattern SEGMENT_FILE = Pattern.compile("journal-(\\d+)\\.log");
+  private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.snap");
+
+  private final InMemoryPersistenceAdapter state;
+  private final Path directory;
+  private final int segmentSize;
+  private final DURABILITY durability;
+  private final int snapshotEverySegments;
+  private final Clock clock;
+  private final ScheduledExecutorService background;
+
+  private final Object appendLock = new Object();
+  private final Object syncLock = new Object();
+  private final Object snapshotLock = new Object();
+  private ByteBuffer scratch = ByteBuffer.allocate(4096);
+  private volatile Segment current;
+  private volatile long appendedPosition;
+  private long forcedPosition;   //guarded by syncLock
+  private int segmentsSinceSnapshot;
+
+  /**
+   * @param directory where the journal segments and snapshots are kept
+   * @param segmentSize size in bytes of every segment file. Defaults to 64MB
+   * @param durability defaults to SYNC
+   * @param flushIntervalMs how often the journal is forced on ASYNC durability. Defaults to 10ms
+   * @param snapshotEverySegments 0 to take snapshots only on demand. Defaults to 4
+   * @param clock defaults to the system clock
+   */
+  @Builder
+  private JournalPersistenceAdapter(Path directory, Integer segmentSize, DURABILITY durability, Long flushIntervalMs,
+      Integer snapshotEverySegments, Clock clock) throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize != null ? segmentSize : 64 * 1024 * 1024;
+    this.durability = durability != null ? durability : DURABILITY.SYNC;
+    this.snapshotEverySegments = snapshotEverySegments != null ? snapshotEverySegments : 4;
+    this.clock = clock != null ? clock : Clock.systemUTC();
+    this.state = new InMemoryPersistenceAdapter(this.clock);
+    Files.createDirectories(directory);
+    recover();
+    //one thread for the flushes and one for the snapshots, so a snapshot does not delay the flushes
+    this.background = Executors.newScheduledThreadPool(2, r -> {
+      Thread thread = new Thread(r, "journal-" + directory.getFileName());
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (this.durability == DURABILITY.ASYNC) {
+      long interval = flushIntervalMs != null ? flushIntervalMs : 10;
+      background.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  //semaphores are not journaled
+
+  @Override
+  public void addAlertingService(String serviceId) throws ServiceAlertingAlreadyException {
+    state.addAlertingService(serviceId);
+  }
+
+  @Override
+  public void removeAlertingService(String serviceId) {
+    state.removeAlertingService(serviceId);
+  }
+
+  @Override
+  public void addAckSempahore(String pagerAlertId) throws AckAlertingAlreadyException {
+    state.addAckSempahore(pagerAlertId);
+  }
+
+  @Override
+  public void removeAckSemaphore(String pagerAlertId) {
+    state.removeAckSemaphore(pagerAlertId);
+  }
+
+  @Override
+  public int removeAllSemaphores() {
+    return state.removeAllSemaphores();
+  }
+
+  @Override
+  public Optional<Service> getService(String serviceId) {
+    return state.getService(serviceId);
+  }
+
+  @Override
+  public boolean supportsVersionedUpdates() {
+    return true;
+  }
+
+  @Override
+  public void updateService(Service service) {
+    long position;
+    synchronized (appendLock) {
+      state.updateService(service);
+      ByteBuffer payload = scratch(JournalCodec.sizeOf(service.getId()) + JournalCodec.sizeOf(service.getDescription()) + 1);
+      JournalCodec.writeService(payload, service);
+      position = append(JournalCodec.PUT_SERVICE, payload.flip());
+    }
+    commit(position);
+  }
+
+  /**
+   * only the successful updates are journaled, as plain service records
+   */
+  @Override
+  public boolean updateServiceIfVersion(Service service, long expectedVersion) {
+    long position;
+    synchronized (appendLock) {
+      if (!state.updateServiceIfVersion(service, expectedVersion)) {
+        return false;
+      }
+      ByteBuffer payload = scratch(JournalCodec.sizeOf(service.getId()) + JournalCodec.sizeOf(service.getDescription()) + 1);
+      JournalCodec.writeService(payload, service);
+      position = append(JournalCodec.PUT_SERVICE, payload.flip());
+    }
+    commit(position);
+    return true;
+  }
+
+  /**
+   * appends all the services and waits for the durability of the last one only
+   */
+  @Override
+  public void updateServices(Collection<Service> services) {
+    if (services.isEmpty()) {
+      return;
+    }
+    long position = 0;
+    synchronized (appendLock) {
+      for (Service service : services) {
+        state.updateService(service);
+        ByteBuffer payload = scratch(JournalCodec.sizeOf(service.getId()) + JournalCodec.sizeOf(service.getDescription()) + 1);
+        JournalCodec.writeService(payload, service);
+        position = append(JournalCodec.PUT_SERVICE, payload.flip());
+      }
+    }
+    commit(position);
+  }
+
+  @Override
+  public Collection<String> getUnhealthyServiceIds() {
+    return state.getUnhealthyServiceIds();
+  }
+
+  @Override
+  public void savePagerAlert(PagerAlert pagerAlert) {
+    updatePagerAlert(pagerAlert);
+  }
+
+  @Override
+  public Optional<PagerAlert> getPagerAlert(String pagerAlertId) {
+    return state.getPagerAlert(pagerAlertId);
+  }
+
+  @Override
+  public void updatePagerAlert(PagerAlert pagerAlert) {
+    long position;
+    synchronized (appendLock) {
+      state.updatePagerAlert(pagerAlert);
+      position = append(JournalCodec.PUT_ALERT, encode(pagerAlert));
+    }
+    commit(position);
+  }
+
+  /**
+   * only the successful updates are journaled, as plain alert records
+   */
+  @Override
+  public boolean updatePagerAlertIfVersion(PagerAlert pagerAlert, long expectedVersion) {
+    long position;
+    synchronized (appendLock) {
+      if (!state.updatePagerAlertIfVersion(pagerAlert, expectedVersion)) {
+        return false;
+      }
+      position = append(JournalCodec.PUT_ALERT, encode(pagerAlert));
+    }
+    commit(position);
+    return true;
+  }
+
+  /**
+   * appends all the alerts and waits for the durability of the last one only
+   */
+  @Override
+  public void updatePagerAlerts(Collection<PagerAlert> pagerAlerts) {
+    if (pagerAlerts.isEmpty()) {
+      return;
+    }
+    long position = 0;
+    synchronized (appendLock) {
+      for (PagerAlert pagerAlert : pagerAlerts) {
+        state.updatePagerAlert(pagerAlert);
+        position = append(JournalCodec.PUT_ALERT, encode(pagerAlert));
+      }
+    }
+    commit(position);
+  }
+
+  @Override
+  public List<PagerAlert> getOpenPagerAlerts(String afterId, int limit) {
+    return state.getOpenPagerAlerts(afterId, limit);
+  }
+
+  @Override
+  public List<String> closeAllServiceAlerts(String serviceId) {
+    List<String> closed;
+    long position;
+    synchronized (appendLock) {
+      long closedTs = clock.millis();
+      closed = state.closeAllServiceAlerts(serviceId, closedTs);
+      if (closed.isEmpty()) {
+        return closed;
+      }
+      ByteBuffer payload = scratch(JournalCodec.sizeOf(serviceId) + 8);
+      JournalCodec.writeCloseServiceAlerts(payload, serviceId, closedTs);
+      position = append(JournalCodec.CLOSE_SERVICE_ALERTS, payload.flip());
+    }
+    commit(position);
+    return closed;
+  }
+
+  /**
+   * forces the appended records to disk
+   */
+  public void flush() {
+    awaitDurable(appendedPosition);
+  }
+
+  /**
+   * writes a snapshot of the current state and deletes the segments and snapshots it makes unnecessary
+   */
+  public void snapshot() throws IOException {
+    synchronized (snapshotLock) {
+      long snapshotIndex;
+      synchronized (appendLock) {
+        roll();
+        segmentsSinceSnapshot = 0;
+        snapshotIndex = current.index;
+      }
+      Path tmp = directory.resolve(snapshotFileName(snapshotIndex) + ".tmp");
+      try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.WRITE)) {
+        SnapshotWriter writer = new SnapshotWriter(channel);
+        state.forEachService(writer::write);
+        state.forEachPagerAlert(writer::write);
+        writer.end();
+        channel.force(true);
+      }
+      Files.move(tmp, directory.resolve(snapshotFileName(snapshotIndex)), StandardCopyOption.ATOMIC_MOVE);
+      deleteFilesBefore(snapshotIndex);
+      log.info("Journal snapshot [{}] written", snapshotIndex);
+    }
+  }
+
+  @Override
+  public void close() {
+    background.shutdown();
+    flush();
+    synchronized (appendLock) {
+      current.close();
+    }
+  }
+
+  private ByteBuffer encode(PagerAlert pagerAlert) {
+    ByteBuffer payload = scratch(JournalCodec.sizeOf(pagerAlert.getId()) + JournalCodec.sizeOf(pagerAlert.getServiceId())
+        + JournalCodec.sizeOf(pagerAlert.getAlertMessage()) + 1 + 4 + 4 * 8);
+    JournalCodec.writePagerAlert(payload, pagerAlert);
+    return payload.flip();
+  }
+
+  /** reusable buffer for the payloads. Only used while holding the appendLock */
+  private ByteBuffer scratch(int maxSize) {
+    if (scratch.capacity() < maxSize) {
+      scratch = ByteBuffer.allocate(Math.max(maxSize, scratch.capacity() * 2));
+    }
+    return scratch.clear();
+  }
+
+  /** must be called holding the appendLock. Returns the journal position after the record */
+  private long append(byte type, ByteBuffer payload) {
+    int size = JournalCodec.RECORD_OVERHEAD + payload.remaining();
+    if (size > segmentSize) {
+      throw new IllegalArgumentException("Record of " + size + " bytes does not fit in a journal segment");
+    }
+    if (current.buffer.remaining() < size) {
+      roll();
+      if (snapshotEverySegments > 0 && ++segmentsSinceSnapshot >= snapshotEverySegments) {
+        segmentsSinceSnapshot = 0;
+        background.execute(() -> {
+          try {
+            snapshot();
+          } catch (IOException | RuntimeException e) {
+            log.error("Error writing journal snapshot", e);
+          }
+        });
+      }
+    }
+    JournalCodec.writeRecord(current.buffer, type, payload);
+    appendedPosition += size;
+    return appendedPosition;
+  }
+
+  private void commit(long position) {
+    if (durability == DURABILITY.SYNC) {
+      awaitDurable(position);
+    }
+  }
+
+  private void awaitDurable(long position) {
+    synchronized (syncLock) {
+      if (forcedPosition >= position) {
+        return; //forced by the writer that held the lock before
+      }
+      long target = appendedPosition;
+      current.buffer.force(); //older segments were forced when rolled
+      forcedPosition = target;
+    }
+  }
+
+  /** must be called holding the appendLock */
+  private void roll() {
+    Segment previous = current;
+    previous.buffer.force();
+    current = openSegment(previous.index + 1);
+    previous.close();
+  }
+
+  private Segment openSegment(long index) {
+    try {
+      return new Segment(index, directory.resolve(segmentFileName(index)), segmentSize);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error opening journal segment " + index, e);
+    }
+  }
+
+  private void recover() throws IOException {
+    TreeMap<Long, Path> snapshots = list(SNAPSHOT_FILE);
+    TreeMap<Long, Path> segments = list(SEGMENT_FILE);
+    long firstSegment = 0;
+    for (Long index : snapshots.descendingKeySet()) {
+      if (loadSnapshot(snapshots.get(index))) {
+        firstSegment = index;
+        break;
+      }
+      log.warn("Ignoring incomplete journal snapshot [{}]", snapshots.get(index));
+    }
+
+    long replayed = 0;
+    Segment segment = null;
+    for (Long index : segments.tailMap(firstSegment).keySet()) {
+      if (segment != null) {
+        segment.close();
+      }
+      segment = openSegment(index);
+      Record record;
+      while ((record = JournalCodec.readRecord(segment.buffer)) != null) {
+        apply(record);
+        replayed++;
+      }
+    }
+    if (segment == null) {
+      segment = openSegment(firstSegment);
+    }
+    //clear whatever a crash left after the last valid record
+    ByteBuffer tail = segment.buffer.duplicate();
+    while (tail.hasRemaining()) {
+      tail.put((byte) 0);
+    }
+    current = segment;
+    log.info("Journal recovered from [{}]: [{}] records replayed after snapshot [{}]", directory, replayed, firstSegment);
+  }
+
+  private boolean loadSnapshot(Path snapshot) throws IOException {
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      Record record;
+      while ((record = JournalCodec.readRecord(buffer)) != null) {
+        if (record.type == JournalCodec.SNAPSHOT_END) {
+          return true;
+        }
+        apply(record);
+      }
+      return false;
+    }
+  }
+
+  private void apply(Record record) {
+    switch (record.type) {
+      case JournalCodec.PUT_SERVICE:
+        state.updateService(JournalCodec.readService(record.payload));
+        break;
+      case JournalCodec.PUT_ALERT:
+        state.updatePagerAlert(JournalCodec.readPagerAlert(record.payload));
+        break;
+      case JournalCodec.CLOSE_SERVICE_ALERTS:
+        String serviceId = JournalCodec.readServiceId(record.payload);
+        state.closeAllServiceAlerts(serviceId, record.payload.getLong());
+        break;
+      default:
+        log.warn("Ignoring unknown journal record type [{}]", record.type);
+    }
+  }
+
+  private TreeMap<Long, Path> list(Pattern pattern) throws IOException {
+    TreeMap<Long, Path> files = new TreeMap<>();
+    try (Stream<Path> paths = Files.list(directory)) {
+      paths.forEach(path -> {
+        Matcher matcher = pattern.matcher(path.getFileName().toString());
+        if (matcher.matches()) {
+          files.put(Long.parseLong(matcher.group(1)), path);
+        }
+      });
+    }
+    return files;
+  }
+
+  private void deleteFilesBefore(long index) throws IOException {
+    for (Pattern pattern : List.of(SEGMENT_FILE, SNAPSHOT_FILE)) {
+      for (Path path : list(pattern).headMap(index).values()) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+
+  private static String segmentFileName(long index) {
+    return String.format("journal-%020d.log", index);
+  }
+
+  private static String snapshotFileName(long index) {
+    return String.format("snapshot-%020d.snap", index);
+  }
+
+
+  private static class Segment {
+    final long index;
+    final FileChannel channel;
+    final MappedByteBuffer buffer;
+
+    Segment(long index, Path path, int size) throws IOException {
+      this.index = index;
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.buffer = channel.map(MapMode.READ_WRITE, 0, size);
+    }
+
+    void close() {
+      try {
+        channel.close(); //the mapping stays valid until the buffer is collected
+      } catch (IOException e) {
+        log.warn("Error closing journal segment [{}]", index, e);
+      }
+    }
+  }
+
+
+  /** writes the snapshot records through a buffer */
+  private static class SnapshotWriter {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+    private ByteBuffer payload = ByteBuffer.allocate(4096);
+
+    SnapshotWriter(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    void write(Service service) {
+      ByteBuffer target = payload(JournalCodec.sizeOf(service.getId()) + JournalCodec.sizeOf(service.getDescription()) + 1);
+      JournalCodec.writeService(target, service);
+      write(JournalCodec.PUT_SERVICE, target.flip());
+    }
+
+    void write(PagerAlert pagerAlert) {
+      ByteBuffer target = payload(JournalCodec.sizeOf(pagerAlert.getId()) + JournalCodec.sizeOf(pagerAlert.getServiceId())
+          + JournalCodec.sizeOf(pagerAlert.getAlertMessage()) + 1 + 4 + 4 * 8);
+      JournalCodec.writePagerAlert(target, pagerAlert);
+      write(JournalCodec.PUT_ALERT, target.flip());
+    }
+
+    void end() throws IOException {
+      write(JournalCodec.SNAPSHOT_END, ByteBuffer.allocate(0));
+      drain();
+    }
+
+    private ByteBuffer payload(int maxSize) {
+      if (payload.capacity() < maxSize) {
+        payload = ByteBuffer.allocate(maxSize);
+      }
+      return payload.clear();
+    }
+
+    private void write(byte type, ByteBuffer recordPayload) {
+      try {
+        if (buffer.remaining() < JournalCodec.RECORD_OVERHEAD + recordPayload.remaining()) {
+          drain();
+        }
+        if (buffer.remaining() < JournalCodec.RECORD_OVERHEAD + recordPayload.remaining()) {
+          ByteBuffer big = ByteBuffer.allocate(JournalCodec.RECORD_OVERHEAD + recordPayload.remaining());
+          JournalCodec.writeRecord(big, type, recordPayload);
+          channel.write(big.flip());
+          return;
+        }
+        JournalCodec.writeRecord(buffer, type, recordPayload);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Error writing journal snapshot", e);
+      }
+    }
+
+    private void drain() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+  }
+}
@@ -0,0 +1,286 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps the pager alerts off-heap as {@link PagerAlertCodec} records of 72 bytes, allocated in slabs of direct buffers.
+ * The id -> record index is an open addressing table over primitive arrays, so the whole store is a handful of objects
+ * whatever the number of alerts and it does not add work to the GC. Service ids are interned, so alerts of the same
+ * service share them, and the messages are kept whole in an {@link AlertMessageStore}, shared by the records with the
+ * same message and evicted when no record references them.
+ * {@link #get(String)}, {@link #put(PagerAlert)} and {@link #versionOf(String)} are thread safe. A
+ * {@link PagerAlertView} reads and writes the record in place without any copy, without synchronization (but for its
+ * message), so it is meant for a single writer (e.g. a partition of the PartitionedAlertExecutor).
+ * {@link OffHeapPersistenceAdapter} keeps the alerts in it.
+ */
+public class OffHeapPagerAlertStore {
+
+  private static final int LOCK_STRIPES = 64;
+
+  private final StringDictionary serviceIds = new StringDictionary();
+  private final AlertMessageStore messages = new AlertMessageStore();
+  private final int slabRecords;
+  private final Object[] recordLocks = new Object[LOCK_STRIPES];
+  private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+  private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+  private long[] keys;   //most and least significant bits of the ids, guarded by indexLock
+  private int[] slots;   //record slot + 1 of every key, 0 when empty. Guarded by indexLock
+  private int size;
+
+  public OffHeapPagerAlertStore() {
+    this(16 * 1024, 1024);
+  }
+
+  /**
+   * @param slabRecords number of records of every slab
+   * @param initialCapacity expected number of alerts
+   */
+  public OffHeapPagerAlertStore(int slabRecords, int initialCapacity) {
+    if (slabRecords <= 0 || initialCapacity <= 0) {
+      throw new IllegalArgumentException("slabRecords and initialCapacity must be positive");
+    }
+    this.slabRecords = slabRecords;
+    int tableSize = Integer.highestOneBit(Math.max(initialCapacity * 2 - 1, 1)) << 1;
+    this.keys = new long[tableSize * 2];
+    this.slots = new int[tableSize];
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      recordLocks[i] = new Object();
+    }
+  }
+
+  /**
+   * inserts or replaces the record of the given alert
+   * @param pagerAlert its id must be a UUID
+   */
+  public void put(PagerAlert pagerAlert) {
+    put(pagerAlert, pagerAlert.getVersion());
+  }
+
+  /**
+   * inserts or replaces the record of the given alert, storing the given version instead of its own one
+   * @param pagerAlert its id must be a UUID
+   * @param version
+   */
+  public void put(PagerAlert pagerAlert, long version) {
+    long most = PagerAlertCodec.mostSignificantBits(pagerAlert.getId());
+    long least = PagerAlertCodec.leastSignificantBits(pagerAlert.getId());
+    int slot = slotOf(most, least);
+    if (slot < 0) {
+      slot = insertIfAbsent(most, least, pagerAlert, version);
+      if (slot < 0) {
+        return;
+      }
+    }
+    encode(pagerAlert, version, slot, true);
+  }
+
+  /**
+   * @param pagerAlertId
+   * @return a copy of the stored alert
+   */
+  public Optional<PagerAlert> get(String pagerAlertId) {
+    int slot = slotOf(pagerAlertId);
+    if (slot < 0) {
+      return Optional.empty();
+    }
+    ByteBuffer slab = slabs[slot / slabRecords];
+    synchronized (recordLocks[slot & (LOCK_STRIPES - 1)]) {
+      return Optional.of(PagerAlertCodec.decode(slab, offsetOf(slot), serviceIds, messages));
+    }
+  }
+
+  /**
+   * @param pagerAlertId
+   * @return the version of the stored alert, -1 if there is no such alert
+   */
+  public long versionOf(String pagerAlertId) {
+    int slot = slotOf(pagerAlertId);
+    if (slot < 0) {
+      return -1;
+    }
+    ByteBuffer slab = slabs[slot / slabRecords];
+    synchronized (recordLocks[slot & (LOCK_STRIPES - 1)]) {
+      return slab.getLong(offsetOf(slot) + PagerAlertCodec.VERSION);
+    }
+  }
+
+  /**
+   * points the given view to the record of the given alert
+   * @param pagerAlertId
+   * @param view
+   * @return false if there is no such alert
+   */
+  public boolean view(String pagerAlertId, PagerAlertView view) {
+    int slot = slotOf(pagerAlertId);
+    if (slot < 0) {
+      return false;
+    }
+    view.wrap(slabs[slot / slabRecords], offsetOf(slot), slot);
+    return true;
+  }
+
+  public PagerAlertView newView() {
+    return new PagerAlertView(this, serviceIds, messages);
+  }
+
+  public int size() {
+    indexLock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      indexLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @return bytes allocated off-heap by the slabs
+   */
+  public long getOffHeapBytes() {
+    return (long) slabs.length * slabRecords * PagerAlertCodec.RECORD_SIZE;
+  }
+
+  /**
+   * @return number of distinct messages kept
+   */
+  public int getMessageCount() {
+    return messages.size();
+  }
+
+  /**
+   * @return bytes used by the index arrays on heap
+   */
+  public long getIndexBytes() {
+    indexLock.readLock().lock();
+    try {
+      return keys.length * 8L + slots.length * 4L;
+    } finally {
+      indexLock.readLock().unlock();
+    }
+  }
+
+  private int slotOf(String pagerAlertId) {
+    try {
+      return slotOf(PagerAlertCodec.mostSignificantBits(pagerAlertId), PagerAlertCodec.leastSignificantBits(pagerAlertId));
+    } catch (IllegalArgumentException e) {
+      return -1; //not a UUID, so it can't be stored
+    }
+  }
+
+  private int slotOf(long most, long least) {
+    indexLock.readLock().lock();
+    try {
+      int mask = slots.length - 1;
+      for (int i = hash(most, least) & mask; slots[i] != 0; i = (i + 1) & mask) {
+        if (keys[2 * i] == most && keys[2 * i + 1] == least) {
+          return slots[i] - 1;
+        }
+      }
+      return -1;
+    } finally {
+      indexLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * adds the record of the given alert, encoding it before its slot is published in the index, so a concurrent reader
+   * never finds a record not written yet
+   * @return -1 if it has been added, the slot of the alert if it was inserted meanwhile
+   */
+  private int insertIfAbsent(long most, long least, PagerAlert pagerAlert, long version) {
+    indexLock.writeLock().lock();
+    try {
+      int mask = slots.length - 1;
+      int i = hash(most, least) & mask;
+      for (; slots[i] != 0; i = (i + 1) & mask) {
+        if (keys[2 * i] == most && keys[2 * i + 1] == least) {
+          return slots[i] - 1; //inserted meanwhile
+        }
+      }
+      int slot = size;
+      if (slot / slabRecords == slabs.length) {
+        ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+        grown[slabs.length] = ByteBuffer.allocateDirect(slabRecords * PagerAlertCodec.RECORD_SIZE);
+        slabs = grown;
+      }
+      encode(pagerAlert, version, slot, false);
+      keys[2 * i] = most;
+      keys[2 * i + 1] = least;
+      slots[i] = slot + 1;
+      size++;
+      if (size * 2 > slots.length) {
+        resize();
+      }
+      return -1;
+    } finally {
+      indexLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @param replacing false when the slot has no record yet, so it holds no message reference to release
+   */
+  private void encode(PagerAlert pagerAlert, long version, int slot, boolean replacing) {
+    ByteBuffer slab = slabs[slot / slabRecords];
+    int offset = offsetOf(slot);
+    synchronized (recordLocks[slot & (LOCK_STRIPES - 1)]) {
+      int oldCode = replacing ? slab.getInt(offset + PagerAlertCodec.MESSAGE) : -1;
+      int code = sameMessage(oldCode, pagerAlert.getAlertMessage()) ? oldCode : messages.acquire(pagerAlert.getAlertMessage());
+      PagerAlertCodec.encode(pagerAlert, slab, offset, serviceIds, code, version);
+      if (code != oldCode) {
+        messages.release(oldCode);
+      }
+    }
+  }
+
+  /** replaces the message of the record in the given slot, releasing the previous one. Used by the views */
+  void setMessage(int slot, String alertMessage) {
+    ByteBuffer slab = slabs[slot / slabRecords];
+    int offset = offsetOf(slot);
+    synchronized (recordLocks[slot & (LOCK_STRIPES - 1)]) {
+      int oldCode = slab.getInt(offset + PagerAlertCodec.MESSAGE);
+      if (!sameMessage(oldCode, alertMessage)) {
+        slab.putInt(offset + PagerAlertCodec.MESSAGE, messages.acquire(alertMessage));
+        messages.release(oldCode);
+      }
+    }
+  }
+
+  private boolean sameMessage(int code, String alertMessage) {
+    String message = messages.valueOf(code);
+    return message == null ? alertMessage == null : message.equals(alertMessage);
+  }
+
+  private void resize() {
+    long[] oldKeys = keys;
+    int[] oldSlots = slots;
+    keys = new long[oldKeys.length * 2];
+    slots = new int[oldSlots.length * 2];
+    int mask = slots.length - 1;
+    for (int j = 0; j < oldSlots.length; j++) {
+      if (oldSlots[j] != 0) {
+        int i = hash(oldKeys[2 * j], oldKeys[2 * j + 1]) & mask;
+        while (slots[i] != 0) {
+          i = (i + 1) & mask;
+        }
+        keys[2 * i] = oldKeys[2 * j];
+        keys[2 * i + 1] = oldKeys[2 * j + 1];
+        slots[i] = oldSlots[j];
+      }
+    }
+  }
+
+  private int offsetOf(int slot) {
+    return (slot % slabRecords) * PagerAlertCodec.RECORD_SIZE;
+  }
+
+  private static int hash(long most, long least) {
+    long hash = (most ^ least) * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+}
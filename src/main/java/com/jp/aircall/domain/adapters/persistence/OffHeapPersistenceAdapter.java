@@ -0,0 +1,221 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.Service;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * PersistenceAdapter keeping the pager alerts off-heap in an {@link OffHeapPagerAlertStore}, so millions of alerts are
+ * a few slabs of direct buffers instead of millions of objects for the GC to trace. Only the not closed alerts have
+ * their ids on heap, in the same indexes as {@link InMemoryPersistenceAdapter}; a closed alert is just its record.
+ * The services and the semaphores, which are few, are kept by an InMemoryPersistenceAdapter.
+ * Like a DB it stores and returns copies, and every write increments the version of the written row, so it supports
+ * the versioned updates. The alert ids must be UUIDs, as the PagerAlert constructor creates them: saving any other id
+ * throws an IllegalArgumentException.
+ */
+public class OffHeapPersistenceAdapter implements PersistenceAdapter {
+
+  private static final int LOCK_STRIPES = 64;
+
+  private final InMemoryPersistenceAdapter services;
+  private final OffHeapPagerAlertStore pagerAlerts;
+  private final Object[] alertLocks = new Object[LOCK_STRIPES];
+  private final Map<String, Set<String>> openAlertsByService = new ConcurrentHashMap<>();
+  private final NavigableSet<String> openAlertIds = new ConcurrentSkipListSet<>();
+  private final Clock clock;
+
+  public OffHeapPersistenceAdapter() {
+    this(Clock.systemUTC());
+  }
+
+  public OffHeapPersistenceAdapter(Clock clock) {
+    this(clock, new OffHeapPagerAlertStore());
+  }
+
+  /**
+   * @param clock
+   * @param pagerAlerts store to keep the alerts in, e.g. sized for the expected number of alerts
+   */
+  public OffHeapPersistenceAdapter(Clock clock, OffHeapPagerAlertStore pagerAlerts) {
+    this.services = new InMemoryPersistenceAdapter(clock);
+    this.pagerAlerts = pagerAlerts;
+    this.clock = clock;
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      alertLocks[i] = new Object();
+    }
+  }
+
+  @Override
+  public void addAlertingService(String serviceId) throws ServiceAlertingAlreadyException {
+    services.addAlertingService(serviceId);
+  }
+
+  @Override
+  public void removeAlertingService(String serviceId) {
+    services.removeAlertingService(serviceId);
+  }
+
+  @Override
+  public void addAckSempahore(String pagerAlertId) throws AckAlertingAlreadyException {
+    services.addAckSempahore(pagerAlertId);
+  }
+
+  @Override
+  public void removeAckSemaphore(String pagerAlertId) {
+    services.removeAckSemaphore(pagerAlertId);
+  }
+
+  @Override
+  public int removeAllSemaphores() {
+    return services.removeAllSemaphores();
+  }
+
+  @Override
+  public boolean supportsVersionedUpdates() {
+    return true;
+  }
+
+  @Override
+  public Optional<Service> getService(String serviceId) {
+    return services.getService(serviceId);
+  }
+
+  @Override
+  public void updateService(Service service) {
+    services.updateService(service);
+  }
+
+  @Override
+  public boolean updateServiceIfVersion(Service service, long expectedVersion) {
+    return services.updateServiceIfVersion(service, expectedVersion);
+  }
+
+  @Override
+  public Collection<String> getUnhealthyServiceIds() {
+    return services.getUnhealthyServiceIds();
+  }
+
+  @Override
+  public void savePagerAlert(PagerAlert pagerAlert) {
+    updatePagerAlert(pagerAlert);
+  }
+
+  @Override
+  public Optional<PagerAlert> getPagerAlert(String pagerAlertId) {
+    return pagerAlerts.get(pagerAlertId);
+  }
+
+  @Override
+  public void updatePagerAlert(PagerAlert pagerAlert) {
+    synchronized (lockOf(pagerAlert.getId())) {
+      long version = pagerAlerts.versionOf(pagerAlert.getId());
+      pagerAlerts.put(pagerAlert, version < 0 ? 1 : version + 1);
+      index(pagerAlert);
+    }
+  }
+
+  @Override
+  public boolean updatePagerAlertIfVersion(PagerAlert pagerAlert, long expectedVersion) {
+    synchronized (lockOf(pagerAlert.getId())) {
+      long version = pagerAlerts.versionOf(pagerAlert.getId());
+      if (version < 0 || version != expectedVersion) {
+        return false;
+      }
+      pagerAlerts.put(pagerAlert, expectedVersion + 1);
+      index(pagerAlert);
+    }
+    pagerAlert.setVersion(expectedVersion + 1);
+    return true;
+  }
+
+  /** updates the indexes with the alert just stored. Called holding its lock */
+  private void index(PagerAlert stored) {
+    String id = stored.getId();
+    if (stored.getStatus() == ALERT_STATUS.CLOSED) {
+      removeOpenAlert(stored.getServiceId(), id);
+    } else {
+      openAlertsByService.computeIfAbsent(stored.getServiceId(), serviceId -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+    if (stored.getStatus() == ALERT_STATUS.OPEN) {
+      openAlertIds.add(id);
+    } else {
+      openAlertIds.remove(id);
+    }
+  }
+
+  @Override
+  public List<String> closeAllServiceAlerts(String serviceId) {
+    Set<String> serviceAlertIds = openAlertsByService.remove(serviceId);
+    if (serviceAlertIds == null) {
+      return List.of();
+    }
+    long closedTs = clock.millis();
+    List<String> closed = new ArrayList<>(serviceAlertIds.size());
+    for (String pagerAlertId : serviceAlertIds) {
+      synchronized (lockOf(pagerAlertId)) {
+        PagerAlert pagerAlert = pagerAlerts.get(pagerAlertId).orElse(null);
+        if (pagerAlert != null && pagerAlert.getStatus() != ALERT_STATUS.CLOSED) {
+          pagerAlert.setStatus(ALERT_STATUS.CLOSED);
+          pagerAlert.setClosedTs(closedTs);
+          pagerAlerts.put(pagerAlert, pagerAlert.getVersion() + 1);
+          closed.add(pagerAlertId);
+          openAlertIds.remove(pagerAlertId);
+        }
+      }
+    }
+    return closed;
+  }
+
+  @Override
+  public List<PagerAlert> getOpenPagerAlerts(String afterId, int limit) {
+    List<PagerAlert> page = new ArrayList<>(Math.min(limit, 1024));
+    for (String pagerAlertId : afterId == null ? openAlertIds : openAlertIds.tailSet(afterId, false)) {
+      Optional<PagerAlert> pagerAlert = pagerAlerts.get(pagerAlertId);
+      if (pagerAlert.isPresent() && pagerAlert.get().getStatus() == ALERT_STATUS.OPEN) {
+        page.add(pagerAlert.get());
+        if (page.size() == limit) {
+          break;
+        }
+      }
+    }
+    return page;
+  }
+
+  /**
+   * @param serviceId
+   * @return number of not closed alerts of the given service
+   */
+  public int countOpenAlerts(String serviceId) {
+    Set<String> openAlertIds = openAlertsByService.get(serviceId);
+    return openAlertIds == null ? 0 : openAlertIds.size();
+  }
+
+  /** @return the store keeping the alerts, e.g. to read its footprint */
+  public OffHeapPagerAlertStore getPagerAlertStore() {
+    return pagerAlerts;
+  }
+
+  private Object lockOf(String pagerAlertId) {
+    return alertLocks[pagerAlertId.hashCode() & (LOCK_STRIPES - 1)];
+  }
+
+  private void removeOpenAlert(String serviceId, String pagerAlertId) {
+    openAlertsByService.computeIfPresent(serviceId, (id, openAlertIds) -> {
+      openAlertIds.remove(pagerAlertId);
+      return openAlertIds.isEmpty() ? null : openAlertIds;
+    });
+  }
+}
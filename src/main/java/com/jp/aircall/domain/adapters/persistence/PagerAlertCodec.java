@@ -0,0 +1,120 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Fixed width (72 bytes) binary layout of a PagerAlert. The id must be a UUID and is kept as two longs, the serviceId is
+ * kept as its code on a {@link StringDictionary}, as there are few services, and the message as its code on an
+ * {@link AlertMessageStore}, so the record stays compact whatever the length of the message:
+ * <pre>
+ *  0 id most significant bits   (long)
+ *  8 id least significant bits  (long)
+ * 16 serviceId code             (int)
+ * 20 alertMessage code          (int, -1 for null)
+ * 24 levelNotified              (int)
+ * 28 status ordinal             (byte, -1 for null) + 3 bytes padding
+ * 32 version                    (long)
+ * 40 creationTs                 (long)
+ * 48 lastNotificationTs         (long)
+ * 56 acknowledgmentTs           (long)
+ * 64 closedTs                   (long)
+ * </pre>
+ */
+public final class PagerAlertCodec {
+
+  public static final int RECORD_SIZE = 72;
+
+  static final int ID_MOST = 0;
+  static final int ID_LEAST = 8;
+  static final int SERVICE_ID = 16;
+  static final int MESSAGE = 20;
+  static final int LEVEL_NOTIFIED = 24;
+  static final int STATUS = 28;
+  static final int VERSION = 32;
+  static final int CREATION_TS = 40;
+  static final int LAST_NOTIFICATION_TS = 48;
+  static final int ACKNOWLEDGMENT_TS = 56;
+  static final int CLOSED_TS = 64;
+
+  private static final ALERT_STATUS[] STATUSES = ALERT_STATUS.values();
+
+  private PagerAlertCodec() {
+  }
+
+  /**
+   * writes the given alert at the given offset of the buffer
+   * @param messageCode code of its message on the AlertMessageStore of the record
+   * @param version version to store instead of the one of the alert
+   */
+  public static void encode(PagerAlert pagerAlert, ByteBuffer buffer, int offset, StringDictionary serviceIds,
+      int messageCode, long version) {
+    String id = pagerAlert.getId();
+    buffer.putLong(offset + ID_MOST, mostSignificantBits(id));
+    buffer.putLong(offset + ID_LEAST, leastSignificantBits(id));
+    buffer.putInt(offset + SERVICE_ID, serviceIds.intern(pagerAlert.getServiceId()));
+    buffer.putInt(offset + MESSAGE, messageCode);
+    buffer.putInt(offset + LEVEL_NOTIFIED, pagerAlert.getLevelNotified());
+    buffer.put(offset + STATUS, encodeStatus(pagerAlert.getStatus()));
+    buffer.putLong(offset + VERSION, version);
+    buffer.putLong(offset + CREATION_TS, pagerAlert.getCreationTs());
+    buffer.putLong(offset + LAST_NOTIFICATION_TS, pagerAlert.getLastNotificationTs());
+    buffer.putLong(offset + ACKNOWLEDGMENT_TS, pagerAlert.getAcknowledgmentTs());
+    buffer.putLong(offset + CLOSED_TS, pagerAlert.getClosedTs());
+  }
+
+  /**
+   * @return a new PagerAlert with the record at the given offset of the buffer
+   */
+  public static PagerAlert decode(ByteBuffer buffer, int offset, StringDictionary serviceIds, AlertMessageStore messages) {
+    PagerAlert pagerAlert = new PagerAlert(serviceIds.valueOf(buffer.getInt(offset + SERVICE_ID)),
+        messages.valueOf(buffer.getInt(offset + MESSAGE)), decodeStatus(buffer.get(offset + STATUS)),
+        buffer.getInt(offset + LEVEL_NOTIFIED), buffer.getLong(offset + CREATION_TS), buffer.getLong(offset + LAST_NOTIFICATION_TS));
+    pagerAlert.setId(new UUID(buffer.getLong(offset + ID_MOST), buffer.getLong(offset + ID_LEAST)).toString());
+    pagerAlert.setAcknowledgmentTs(buffer.getLong(offset + ACKNOWLEDGMENT_TS));
+    pagerAlert.setClosedTs(buffer.getLong(offset + CLOSED_TS));
+    pagerAlert.setVersion(buffer.getLong(offset + VERSION));
+    return pagerAlert;
+  }
+
+  static byte encodeStatus(ALERT_STATUS status) {
+    return status == null ? -1 : (byte) status.ordinal();
+  }
+
+  static ALERT_STATUS decodeStatus(byte status) {
+    return status < 0 ? null : STATUSES[status];
+  }
+
+  /** parses the first half of a canonical UUID string without allocating */
+  static long mostSignificantBits(String uuid) {
+    checkUuid(uuid);
+    return hex(uuid, 0, 8) << 32 | hex(uuid, 9, 13) << 16 | hex(uuid, 14, 18);
+  }
+
+  /** parses the second half of a canonical UUID string without allocating */
+  static long leastSignificantBits(String uuid) {
+    checkUuid(uuid);
+    return hex(uuid, 19, 23) << 48 | hex(uuid, 24, 36);
+  }
+
+  private static void checkUuid(String uuid) {
+    if (uuid.length() != 36 || uuid.charAt(8) != '-' || uuid.charAt(13) != '-' || uuid.charAt(18) != '-'
+        || uuid.charAt(23) != '-') {
+      throw new IllegalArgumentException("Pager alert id is not a UUID: " + uuid);
+    }
+  }
+
+  private static long hex(String value, int from, int to) {
+    long result = 0;
+    for (int i = from; i < to; i++) {
+      int digit = Character.digit(value.charAt(i), 16);
+      if (digit < 0) {
+        throw new IllegalArgumentException("Pager alert id is not a UUID: " + value);
+      }
+      result = result << 4 | digit;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,141 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Flyweight PagerAlert over a record of an {@link OffHeapPagerAlertStore}: getters decode the fields from the record and
+ * setters write them into it, so it can be pointed to another record without allocating. Not thread safe, but for the
+ * message, which is replaced through the store so the message references of the record stay consistent.
+ */
+public class PagerAlertView extends PagerAlert {
+
+  private final OffHeapPagerAlertStore store;
+  private final StringDictionary serviceIds;
+  private final AlertMessageStore messages;
+  private ByteBuffer slab;
+  private int offset;
+  private int slot;
+
+  PagerAlertView(OffHeapPagerAlertStore store, StringDictionary serviceIds, AlertMessageStore messages) {
+    super(null, null, null, 0, 0, 0);
+    this.store = store;
+    this.serviceIds = serviceIds;
+    this.messages = messages;
+  }
+
+  void wrap(ByteBuffer slab, int offset, int slot) {
+    this.slab = slab;
+    this.offset = offset;
+    this.slot = slot;
+  }
+
+  public long getIdMostSignificantBits() {
+    return slab.getLong(offset + PagerAlertCodec.ID_MOST);
+  }
+
+  public long getIdLeastSignificantBits() {
+    return slab.getLong(offset + PagerAlertCodec.ID_LEAST);
+  }
+
+  @Override
+  public String getId() {
+    return new UUID(getIdMostSignificantBits(), getIdLeastSignificantBits()).toString();
+  }
+
+  @Override
+  public void setId(String id) {
+    throw new UnsupportedOperationException("The id of a stored pager alert can't be changed");
+  }
+
+  @Override
+  public String getServiceId() {
+    return serviceIds.valueOf(slab.getInt(offset + PagerAlertCodec.SERVICE_ID));
+  }
+
+  @Override
+  public void setServiceId(String serviceId) {
+    slab.putInt(offset + PagerAlertCodec.SERVICE_ID, serviceIds.intern(serviceId));
+  }
+
+  @Override
+  public String getAlertMessage() {
+    return messages.valueOf(slab.getInt(offset + PagerAlertCodec.MESSAGE));
+  }
+
+  @Override
+  public void setAlertMessage(String alertMessage) {
+    store.setMessage(slot, alertMessage);
+  }
+
+  @Override
+  public ALERT_STATUS getStatus() {
+    return PagerAlertCodec.decodeStatus(slab.get(offset + PagerAlertCodec.STATUS));
+  }
+
+  @Override
+  public void setStatus(ALERT_STATUS status) {
+    slab.put(offset + PagerAlertCodec.STATUS, PagerAlertCodec.encodeStatus(status));
+  }
+
+  @Override
+  public int getLevelNotified() {
+    return slab.getInt(offset + PagerAlertCodec.LEVEL_NOTIFIED);
+  }
+
+  @Override
+  public void setLevelNotified(int levelNotified) {
+    slab.putInt(offset + PagerAlertCodec.LEVEL_NOTIFIED, levelNotified);
+  }
+
+  @Override
+  public long getCreationTs() {
+    return slab.getLong(offset + PagerAlertCodec.CREATION_TS);
+  }
+
+  @Override
+  public void setCreationTs(long creationTs) {
+    slab.putLong(offset + PagerAlertCodec.CREATION_TS, creationTs);
+  }
+
+  @Override
+  public long getLastNotificationTs() {
+    return slab.getLong(offset + PagerAlertCodec.LAST_NOTIFICATION_TS);
+  }
+
+  @Override
+  public void setLastNotificationTs(long lastNotificationTs) {
+    slab.putLong(offset + PagerAlertCodec.LAST_NOTIFICATION_TS, lastNotificationTs);
+  }
+
+  @Override
+  public long getAcknowledgmentTs() {
+    return slab.getLong(offset + PagerAlertCodec.ACKNOWLEDGMENT_TS);
+  }
+
+  @Override
+  public void setAcknowledgmentTs(long acknowledgmentTs) {
+    slab.putLong(offset + PagerAlertCodec.ACKNOWLEDGMENT_TS, acknowledgmentTs);
+  }
+
+  @Override
+  public long getClosedTs() {
+    return slab.getLong(offset + PagerAlertCodec.CLOSED_TS);
+  }
+
+  @Override
+  public void setClosedTs(long closedTs) {
+    slab.putLong(offset + PagerAlertCodec.CLOSED_TS, closedTs);
+  }
+
+  @Override
+  public long getVersion() {
+    return slab.getLong(offset + PagerAlertCodec.VERSION);
+  }
+
+  @Override
+  public void setVersion(long version) {
+    slab.putLong(offset + PagerAlertCodec.VERSION, version);
+  }
+}
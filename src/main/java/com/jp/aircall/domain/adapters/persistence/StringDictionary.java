@@ -0,0 +1,61 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns strings as consecutive int codes, so a record can keep a repeated string (e.g. a serviceId) as 4 bytes
+ */
+public class StringDictionary {
+
+  private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+  private volatile String[] values = new String[64];
+  private int size;  //guarded by this
+
+  /**
+   * @param value
+   * @return the code of the given value, adding it to the dictionary if it is not there. -1 for null
+   */
+  public int intern(String value) {
+    if (value == null) {
+      return -1;
+    }
+    Integer code = codes.get(value);
+    return code != null ? code : add(value);
+  }
+
+  /**
+   * @param value
+   * @return the code of the given value or -1 if it is not in the dictionary
+   */
+  public int codeOf(String value) {
+    Integer code = value == null ? null : codes.get(value);
+    return code != null ? code : -1;
+  }
+
+  /**
+   * @param code
+   * @return the value with the given code. null for -1
+   */
+  public String valueOf(int code) {
+    return code < 0 ? null : values[code];
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  private synchronized int add(String value) {
+    Integer code = codes.get(value);
+    if (code != null) {
+      return code;
+    }
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    values[size] = value;
+    codes.put(value, size); //published after the value, so a reader finding the code always finds the value
+    return size++;
+  }
+}
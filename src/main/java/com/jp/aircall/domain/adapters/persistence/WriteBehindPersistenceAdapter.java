@@ -0,0 +1,363 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.metrics.LatencyHistogram;
+import com.jp.aircall.domain.metrics.MetricsRegistry;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.policy.Service;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-behind decorator of a {@link PersistenceAdapter}: service and alert writes are kept in a dirty buffer, served
+ * from it to the reads, and written to the decorated adapter in batches (one {@link #updateServices} and one
+ * {@link #updatePagerAlerts} call) every flushIntervalMs or when maxPending writes are buffered. The writes to the same
+ * service or alert before a flush are coalesced into the last one, e.g. saving an alert and escalating it.
+ * Semaphore writes always go straight to the decorated adapter. On ON_SEMAPHORE_RELEASE durability the buffered writes are
+ * flushed on {@link #beforeSemaphoreRelease()}, which the AlertService calls before releasing any semaphore (persistence
+ * or in-memory ones), so whoever takes it next (e.g. another JVM) reads them; on ASYNC durability a crash may lose the
+ * writes of the last flush interval.
+ * {@link #closeAllServiceAlerts}, {@link #getUnhealthyServiceIds()} and {@link #getOpenPagerAlerts} are queries over all
+ * the rows, so they flush first.
+ * Buffered writes can't be compared with the stored versions, so it doesn't support the versioned updates and the
+ * AlertService keeps using the semaphores on top of it.
+ */
+@Slf4j
+public class WriteBehindPersistenceAdapter implements PersistenceAdapter, AutoCloseable {
+
+  public enum DURABILITY {ON_SEMAPHORE_RELEASE, ASYNC}
+
+  private final PersistenceAdapter persistenceAdapter;
+  private final DURABILITY durability;
+  private final int maxPending;
+  private final ScheduledExecutorService flusher;
+
+  private final Map<String, Service> dirtyServices = new ConcurrentHashMap<>();
+  private final Map<String, DirtyAlert> dirtyAlerts = new ConcurrentHashMap<>();
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  private final LatencyHistogram flushLatency;
+  private final LongAdder writes;
+  private final LongAdder flushedWrites;
+  private final LongAdder flushErrors;
+
+  /**
+   * @param persistenceAdapter the decorated adapter
+   * @param durability defaults to ON_SEMAPHORE_RELEASE
+   * @param maxPending buffered writes that trigger a flush. Defaults to 512
+   * @param flushIntervalMs max time a write is buffered. Defaults to 50ms
+   * @param registry where the flush latency and the write counters are registered. Defaults to a private one
+   */
+  @Builder
+  private WriteBehindPersistenceAdapter(PersistenceAdapter persistenceAdapter, DURABILITY durability, Integer maxPending,
+      Long flushIntervalMs, MetricsRegistry registry) {
+    this.persistenceAdapter = persistenceAdapter;
+    this.durability = durability != null ? durability : DURABILITY.ON_SEMAPHORE_RELEASE;
+    this.maxPending = maxPending != null ? maxPending : 512;
+    MetricsRegistry metrics = registry != null ? registry : new MetricsRegistry();
+    this.flushLatency = metrics.timer("writeBehind.flush");
+    this.writes = metrics.counter("writeBehind.writes");
+    this.flushedWrites = metrics.counter("writeBehind.flushedWrites");
+    this.flushErrors = metrics.counter("writeBehind.flushErrors");
+    this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "write-behind");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long interval = flushIntervalMs != null ? flushIntervalMs : 50;
+    flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  //semaphores are written through
+
+  @Override
+  public void addAlertingService(String serviceId) throws ServiceAlertingAlreadyException {
+    persistenceAdapter.addAlertingService(serviceId);
+  }
+
+  @Override
+  public void removeAlertingService(String serviceId) {
+    persistenceAdapter.removeAlertingService(serviceId);
+  }
+
+  @Override
+  public void addAckSempahore(String pagerAlertId) throws AckAlertingAlreadyException {
+    persistenceAdapter.addAckSempahore(pagerAlertId);
+  }
+
+  @Override
+  public void removeAckSemaphore(String pagerAlertId) {
+    persistenceAdapter.removeAckSemaphore(pagerAlertId);
+  }
+
+  @Override
+  public int removeAllSemaphores() {
+    return persistenceAdapter.removeAllSemaphores();
+  }
+
+  @Override
+  public void beforeSemaphoreRelease() {
+    if (durability == DURABILITY.ON_SEMAPHORE_RELEASE) {
+      try {
+        flush();
+      } catch (RuntimeException e) {
+        //the semaphore must be released anyway. The writes keep buffered
+        log.error("Error flushing the buffered writes before releasing a semaphore", e);
+      }
+    }
+  }
+
+  @Override
+  public Optional<Service> getService(String serviceId) {
+    Service dirty = dirtyServices.get(serviceId);
+    return dirty != null ? Optional.of(InMemoryPersistenceAdapter.copy(dirty)) : persistenceAdapter.getService(serviceId);
+  }
+
+  @Override
+  public void updateService(Service service) {
+    dirtyServices.put(service.getId(), InMemoryPersistenceAdapter.copy(service));
+    written(1);
+  }
+
+  @Override
+  public Map<String, Service> getServices(Collection<String> serviceIds) {
+    List<String> clean = new ArrayList<>(serviceIds.size());
+    Map<String, Service> services = new HashMap<>();
+    for (String serviceId : serviceIds) {
+      Service dirty = dirtyServices.get(serviceId);
+      if (dirty != null) {
+        services.put(serviceId, InMemoryPersistenceAdapter.copy(dirty));
+      } else {
+        clean.add(serviceId);
+      }
+    }
+    if (!clean.isEmpty()) {
+      services.putAll(persistenceAdapter.getServices(clean));
+    }
+    return services;
+  }
+
+  @Override
+  public void updateServices(Collection<Service> services) {
+    for (Service service : services) {
+      dirtyServices.put(service.getId(), InMemoryPersistenceAdapter.copy(service));
+    }
+    written(services.size());
+  }
+
+  @Override
+  public Collection<String> getUnhealthyServiceIds() {
+    flush();
+    return persistenceAdapter.getUnhealthyServiceIds();
+  }
+
+  @Override
+  public void savePagerAlert(PagerAlert pagerAlert) {
+    dirtyAlerts.put(pagerAlert.getId(), new DirtyAlert(InMemoryPersistenceAdapter.copy(pagerAlert), true));
+    written(1);
+  }
+
+  @Override
+  public Optional<PagerAlert> getPagerAlert(String pagerAlertId) {
+    DirtyAlert dirty = dirtyAlerts.get(pagerAlertId);
+    return dirty != null ? Optional.of(InMemoryPersistenceAdapter.copy(dirty.pagerAlert)) : persistenceAdapter.getPagerAlert(pagerAlertId);
+  }
+
+  @Override
+  public void updatePagerAlert(PagerAlert pagerAlert) {
+    bufferUpdate(pagerAlert);
+    written(1);
+  }
+
+  @Override
+  public Map<String, PagerAlert> getPagerAlerts(Collection<String> pagerAlertIds) {
+    List<String> clean = new ArrayList<>(pagerAlertIds.size());
+    Map<String, PagerAlert> pagerAlerts = new HashMap<>();
+    for (String pagerAlertId : pagerAlertIds) {
+      DirtyAlert dirty = dirtyAlerts.get(pagerAlertId);
+      if (dirty != null) {
+        pagerAlerts.put(pagerAlertId, InMemoryPersistenceAdapter.copy(dirty.pagerAlert));
+      } else {
+        clean.add(pagerAlertId);
+      }
+    }
+    if (!clean.isEmpty()) {
+      pagerAlerts.putAll(persistenceAdapter.getPagerAlerts(clean));
+    }
+    return pagerAlerts;
+  }
+
+  @Override
+  public void updatePagerAlerts(Collection<PagerAlert> pagerAlerts) {
+    for (PagerAlert pagerAlert : pagerAlerts) {
+      bufferUpdate(pagerAlert);
+    }
+    written(pagerAlerts.size());
+  }
+
+  @Override
+  public List<String> closeAllServiceAlerts(String serviceId) {
+    flush();
+    return persistenceAdapter.closeAllServiceAlerts(serviceId);
+  }
+
+  @Override
+  public List<PagerAlert> getOpenPagerAlerts(String afterId, int limit) {
+    flush();
+    return persistenceAdapter.getOpenPagerAlerts(afterId, limit);
+  }
+
+  /**
+   * writes all the buffered writes to the decorated adapter. The writes that fail are kept buffered to be retried on the
+   * next flush
+   * @throws RuntimeException the error of the decorated adapter
+   */
+  public void flush() {
+    flushLock.lock();
+    try {
+      if (dirtyServices.isEmpty() && dirtyAlerts.isEmpty()) {
+        return;
+      }
+      long start = System.nanoTime();
+      try {
+        flushServices();
+        flushAlerts();
+      } catch (RuntimeException e) {
+        flushErrors.increment();
+        throw e;
+      } finally {
+        flushLatency.recordSince(start);
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * @return buffered writes not flushed yet
+   */
+  public int getPending() {
+    return dirtyServices.size() + dirtyAlerts.size();
+  }
+
+  public long getWrites() {
+    return writes.sum();
+  }
+
+  public long getFlushedWrites() {
+    return flushedWrites.sum();
+  }
+
+  /**
+   * @return fraction of the writes saved by coalescing, 0 if nothing has been flushed yet
+   */
+  public double getCoalesceRatio() {
+    long flushed = flushedWrites.sum();
+    long total = writes.sum() - getPending();
+    return flushed == 0 || total <= 0 ? 0 : 1 - (double) flushed / total;
+  }
+
+  public LatencyHistogram getFlushLatency() {
+    return flushLatency;
+  }
+
+  /**
+   * stops the periodic flushes and flushes the buffered writes
+   */
+  @Override
+  public void close() {
+    flusher.shutdownNow();
+    flush();
+  }
+
+  private void bufferUpdate(PagerAlert pagerAlert) {
+    PagerAlert stored = InMemoryPersistenceAdapter.copy(pagerAlert);
+    //an update of an alert not saved yet is still an insert
+    dirtyAlerts.compute(stored.getId(), (id, dirty) -> new DirtyAlert(stored, dirty != null && dirty.insert && !dirty.flushed));
+  }
+
+  private void written(int count) {
+    writes.add(count);
+    if (getPending() >= maxPending && flushScheduled.compareAndSet(false, true)) {
+      try {
+        flusher.execute(() -> {
+          flushScheduled.set(false);
+          flushQuietly();
+        });
+      } catch (RuntimeException e) {
+        flushScheduled.set(false); //closed
+      }
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      log.error("Error flushing the buffered writes. They will be retried", e);
+    }
+  }
+
+  private void flushServices() {
+    List<Service> services = new ArrayList<>(dirtyServices.values());
+    if (services.isEmpty()) {
+      return;
+    }
+    persistenceAdapter.updateServices(services);
+    flushedWrites.add(services.size());
+    //a service written again meanwhile keeps dirty
+    services.forEach(service -> dirtyServices.remove(service.getId(), service));
+  }
+
+  private void flushAlerts() {
+    List<DirtyAlert> alerts = new ArrayList<>(dirtyAlerts.values());
+    if (alerts.isEmpty()) {
+      return;
+    }
+    List<PagerAlert> updates = new ArrayList<>(alerts.size());
+    for (DirtyAlert alert : alerts) {
+      if (alert.insert) {
+        persistenceAdapter.savePagerAlert(alert.pagerAlert);
+        alert.flushed = true;
+        //it is clean, or its next writes are updates
+        dirtyAlerts.computeIfPresent(alert.pagerAlert.getId(),
+            (id, dirty) -> dirty == alert ? null : new DirtyAlert(dirty.pagerAlert, false));
+      } else {
+        updates.add(alert.pagerAlert);
+      }
+    }
+    if (!updates.isEmpty()) {
+      persistenceAdapter.updatePagerAlerts(updates);
+    }
+    flushedWrites.add(alerts.size());
+    alerts.forEach(alert -> dirtyAlerts.remove(alert.pagerAlert.getId(), alert));
+  }
+
+  private static class DirtyAlert {
+    final PagerAlert pagerAlert;
+    final boolean insert;
+    /** set once inserted, so the updates buffered meanwhile are not inserted again */
+    volatile boolean flushed;
+
+    DirtyAlert(PagerAlert pagerAlert, boolean insert) {
+      this.pagerAlert = pagerAlert;
+      this.insert = insert;
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package com.jp.aircall.domain.adapters.policy;
+
+import com.jp.aircall.domain.adapters.EPAdapter;
+import com.jp.aircall.domain.model.policy.CompiledPolicy;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import java.time.Clock;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches the escalation policies of the decorated EPAdapter together with their compiled plan. Missing policies are
+ * cached too. Entries live up to ttlMs and when there are more than maxSize entries the oldest loaded ones are evicted.
+ * A miss is loaded only once even when several threads ask for the same service at the same time: the first one loads
+ * it, outside of any lock of the map, and the others wait for its in-flight load.
+ * Policies must be invalidated with {@link #invalidate(String)} when they change if ttlMs is not short enough.
+ */
+public class CachingEPAdapter implements EPAdapter, PolicyPlanProvider {
+
+  private final EPAdapter epAdapter;
+  private final int maxSize;
+  private final long ttlMs;
+  private final Clock clock;
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Map<String, CompletableFuture<Entry>> loads = new ConcurrentHashMap<>();
+  private final Queue<Entry> loadOrder = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger loadOrderSize = new AtomicInteger();
+
+  public CachingEPAdapter(EPAdapter epAdapter, int maxSize, long ttlMs) {
+    this(epAdapter, maxSize, ttlMs, Clock.systemUTC());
+  }
+
+  public CachingEPAdapter(EPAdapter epAdapter, int maxSize, long ttlMs, Clock clock) {
+    if (maxSize <= 0 || ttlMs <= 0) {
+      throw new IllegalArgumentException("maxSize and ttlMs must be positive");
+    }
+    this.epAdapter = epAdapter;
+    this.maxSize = maxSize;
+    this.ttlMs = ttlMs;
+    this.clock = clock;
+  }
+
+  @Override
+  public Optional<EscalationPolicy> getEpByServiceId(String serviceId) {
+    return entry(serviceId).policy;
+  }
+
+  @Override
+  public Optional<CompiledPolicy> getPlanByServiceId(String serviceId) {
+    return entry(serviceId).plan;
+  }
+
+  /**
+   * removes the cached policy of the given service. A load in flight is not cached, only handed to its waiters
+   */
+  public void invalidate(String serviceId) {
+    loads.remove(serviceId);
+    entries.remove(serviceId);
+  }
+
+  public void invalidateAll() {
+    loads.clear();
+    entries.clear();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  private Entry entry(String serviceId) {
+    long now = clock.millis();
+    Entry entry = entries.get(serviceId);
+    if (entry != null && !entry.isExpired(now)) {
+      return entry;
+    }
+    CompletableFuture<Entry> load = new CompletableFuture<>();
+    CompletableFuture<Entry> inFlight = loads.putIfAbsent(serviceId, load);
+    if (inFlight != null) {
+      return await(inFlight);
+    }
+    try {
+      //loaded meanwhile by a load that just ended
+      Entry current = entries.get(serviceId);
+      Entry loaded = current != null && !current.isExpired(now) ? current : load(serviceId, now);
+      //cached only if it was not invalidated while loading
+      loads.computeIfPresent(serviceId, (id, pending) -> {
+        if (pending != load) {
+          return pending;
+        }
+        entries.put(id, loaded);
+        return null;
+      });
+      load.complete(loaded);
+      evictOverflow();
+      return loaded;
+    } catch (RuntimeException e) {
+      loads.remove(serviceId, load);
+      load.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private Entry load(String serviceId, long now) {
+    Optional<EscalationPolicy> policy = epAdapter.getEpByServiceId(serviceId);
+    Entry entry = new Entry(serviceId, policy, policy.map(CompiledPolicy::compile), now + ttlMs);
+    loadOrder.offer(entry);
+    loadOrderSize.incrementAndGet();
+    return entry;
+  }
+
+  /**
+   * waits for the load of another thread, failing with its error if it failed
+   */
+  private static Entry await(CompletableFuture<Entry> load) {
+    try {
+      return load.join();
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+  }
+
+  private void evictOverflow() {
+    while (loadOrderSize.get() > maxSize) {
+      Entry oldest = loadOrder.poll();
+      if (oldest == null) {
+        return;
+      }
+      loadOrderSize.decrementAndGet();
+      entries.remove(oldest.serviceId, oldest); //no-op if it was already invalidated or reloaded
+    }
+  }
+
+
+  private static class Entry {
+    final String serviceId;
+    final Optional<EscalationPolicy> policy;
+    final Optional<CompiledPolicy> plan;
+    final long expirationTs;
+
+    Entry(String serviceId, Optional<EscalationPolicy> policy, Optional<CompiledPolicy> plan, long expirationTs) {
+      this.serviceId = serviceId;
+      this.policy = policy;
+      this.plan = plan;
+      this.expirationTs = expirationTs;
+    }
+
+    boolean isExpired(long now) {
+      return now >= expirationTs;
+    }
+  }
+}
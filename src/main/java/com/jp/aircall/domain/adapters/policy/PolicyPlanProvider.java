@@ -0,0 +1,13 @@
+package com.jp.aircall.domain.adapters.policy;
+
+import com.jp.aircall.domain.model.policy.CompiledPolicy;
+import java.util.Optional;
+
+/**
+ * Provides the compiled escalation policy of a service
+ */
+@FunctionalInterface
+public interface PolicyPlanProvider {
+
+  Optional<CompiledPolicy> getPlanByServiceId(String serviceId);
+}
@@ -0,0 +1,42 @@
+package com.jp.aircall.domain.adapters.semaphore;
+
+import com.jp.aircall.domain.adapters.AsyncPersistenceAdapter;
+import com.jp.aircall.domain.adapters.AsyncSemaphoreAdapter;
+import com.jp.aircall.domain.adapters.semaphore.SemaphoreLease.SEMAPHORE_TYPE;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Non blocking version of {@link PersistenceSemaphoreAdapter}: semaphores backed by the PK-insert tables of the
+ * {@link AsyncPersistenceAdapter}
+ */
+@RequiredArgsConstructor
+public class AsyncPersistenceSemaphoreAdapter implements AsyncSemaphoreAdapter {
+
+  private final AsyncPersistenceAdapter persistenceAdapter;
+  private final AtomicLong fencingTokens = new AtomicLong();
+
+  @Override
+  public CompletionStage<SemaphoreLease> acquireAlertingService(String serviceId) {
+    return persistenceAdapter.addAlertingService(serviceId).thenApply(inserted ->
+        new SemaphoreLease(SEMAPHORE_TYPE.ALERTING_SERVICE, serviceId, fencingTokens.incrementAndGet(), Long.MAX_VALUE));
+  }
+
+  @Override
+  public CompletionStage<SemaphoreLease> acquireAck(String pagerAlertId) {
+    return persistenceAdapter.addAckSempahore(pagerAlertId).thenApply(inserted ->
+        new SemaphoreLease(SEMAPHORE_TYPE.ACK, pagerAlertId, fencingTokens.incrementAndGet(), Long.MAX_VALUE));
+  }
+
+  @Override
+  public CompletionStage<Void> release(SemaphoreLease lease) {
+    switch (lease.getType()) {
+      case ALERTING_SERVICE:
+        return persistenceAdapter.removeAlertingService(lease.getKey());
+      case ACK:
+      default:
+        return persistenceAdapter.removeAckSemaphore(lease.getKey());
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package com.jp.aircall.domain.adapters.semaphore;
+
+import com.jp.aircall.domain.adapters.SemaphoreAdapter;
+import com.jp.aircall.domain.adapters.semaphore.SemaphoreLease.SEMAPHORE_TYPE;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Data;
+
+/**
+ * In-process semaphores without any I/O. Each semaphore is an entry of a ConcurrentHashMap and is taken with a CAS
+ * (putIfAbsent / replace), so there is no global lock. Leases expire after the configured time: a lease whose holder got
+ * stuck (or died) can be taken over by the next acquirer, which replaces the DB TTL the persistence semaphores rely on.
+ * The holder is told apart by its fencing token: a lease that was taken over can neither be renewed nor release the
+ * semaphore of its new holder. Only valid when a single JVM processes the alerts of a service.
+ */
+public class InMemorySemaphoreAdapter implements SemaphoreAdapter {
+
+  public static final long DEFAULT_LEASE_MS = 60 * 1000;
+  /** shared and without stack trace, as the contention is the busiest path of an alert storm */
+  private static final ServiceAlertingAlreadyException ALERTING_SERVICE_HELD =
+      new ServiceAlertingAlreadyException("Alerting semaphore already held", false);
+  private static final AckAlertingAlreadyException ACK_HELD =
+      new AckAlertingAlreadyException("Ack semaphore already held", false);
+
+  private final Map<String, SemaphoreLease> alertingServices = new ConcurrentHashMap<>();
+  private final Map<String, SemaphoreLease> acks = new ConcurrentHashMap<>();
+  private final AtomicLong fencingTokens = new AtomicLong();
+  private final long leaseMs;
+  private final Clock clock;
+
+  private final LongAdder acquired = new LongAdder();
+  private final LongAdder contended = new LongAdder();
+  private final LongAdder expiredTakeovers = new LongAdder();
+  private final LongAdder staleReleases = new LongAdder();
+  private final LongAdder lostLeases = new LongAdder();
+
+  public InMemorySemaphoreAdapter() {
+    this(DEFAULT_LEASE_MS, Clock.systemUTC());
+  }
+
+  public InMemorySemaphoreAdapter(long leaseMs, Clock clock) {
+    if (leaseMs <= 0) {
+      throw new IllegalArgumentException("leaseMs must be positive: " + leaseMs);
+    }
+    this.leaseMs = leaseMs;
+    this.clock = clock;
+  }
+
+  @Override
+  public SemaphoreLease acquireAlertingService(String serviceId) throws ServiceAlertingAlreadyException {
+    SemaphoreLease lease = tryAcquire(alertingServices, SEMAPHORE_TYPE.ALERTING_SERVICE, serviceId);
+    if (lease == null) {
+      throw ALERTING_SERVICE_HELD;
+    }
+    return lease;
+  }
+
+  @Override
+  public SemaphoreLease acquireAck(String pagerAlertId) throws AckAlertingAlreadyException {
+    SemaphoreLease lease = tryAcquire(acks, SEMAPHORE_TYPE.ACK, pagerAlertId);
+    if (lease == null) {
+      throw ACK_HELD;
+    }
+    return lease;
+  }
+
+  @Override
+  public boolean renew(SemaphoreLease lease) {
+    Map<String, SemaphoreLease> semaphores = semaphores(lease.getType());
+    SemaphoreLease renewed =
+        new SemaphoreLease(lease.getType(), lease.getKey(), lease.getFencingToken(), clock.millis() + leaseMs);
+    //replace only the current holder, so a concurrent takeover of the expired lease and the renewal can't both win
+    for (SemaphoreLease current = semaphores.get(lease.getKey()); isHolder(lease, current);
+        current = semaphores.get(lease.getKey())) {
+      if (semaphores.replace(lease.getKey(), current, renewed)) {
+        return true;
+      }
+    }
+    lostLeases.increment();
+    return false;
+  }
+
+  @Override
+  public void release(SemaphoreLease lease) {
+    //remove only if the lease is still the holder, so a holder that outlived its lease can't open someone else's semaphore
+    Map<String, SemaphoreLease> semaphores = semaphores(lease.getType());
+    for (SemaphoreLease current = semaphores.get(lease.getKey()); isHolder(lease, current);
+        current = semaphores.get(lease.getKey())) {
+      if (semaphores.remove(lease.getKey(), current)) {
+        return;
+      }
+    }
+    staleReleases.increment();
+  }
+
+  /**
+   * @param lease
+   * @return true if the given lease still holds its semaphore and has not expired
+   */
+  public boolean isHeld(SemaphoreLease lease) {
+    SemaphoreLease current = semaphores(lease.getType()).get(lease.getKey());
+    return isHolder(lease, current) && !current.isExpired(clock.millis());
+  }
+
+  /**
+   * removes the expired leases so abandoned keys don't stay in memory
+   * @return number of removed leases
+   */
+  public int purgeExpired() {
+    long now = clock.millis();
+    int purged = 0;
+    for (Map<String, SemaphoreLease> semaphores : List.of(alertingServices, acks)) {
+      for (SemaphoreLease lease : semaphores.values()) {
+        if (lease.isExpired(now) && semaphores.remove(lease.getKey(), lease)) {
+          purged++;
+        }
+      }
+    }
+    return purged;
+  }
+
+  public SemaphoreStats getStats() {
+    return new SemaphoreStats(acquired.sum(), contended.sum(), expiredTakeovers.sum(), staleReleases.sum(),
+        lostLeases.sum(), alertingServices.size() + acks.size());
+  }
+
+  private SemaphoreLease tryAcquire(Map<String, SemaphoreLease> semaphores, SEMAPHORE_TYPE type, String key) {
+    long now = clock.millis();
+    SemaphoreLease current = semaphores.get(key);
+    if (current == null || current.isExpired(now)) {
+      //the lease is only created when the semaphore looks free, so a contended acquire doesn't allocate
+      SemaphoreLease lease = new SemaphoreLease(type, key, fencingTokens.incrementAndGet(), now + leaseMs);
+      if (current == null) {
+        if (semaphores.putIfAbsent(key, lease) == null) {
+          acquired.increment();
+          return lease;
+        }
+      } else if (semaphores.replace(key, current, lease)) {
+        acquired.increment();
+        expiredTakeovers.increment();
+        return lease;
+      }
+    }
+    contended.increment();
+    return null;
+  }
+
+  /**
+   * the renewals replace the held lease by a copy with the same fencing token, so the holder is matched by its token
+   */
+  private static boolean isHolder(SemaphoreLease lease, SemaphoreLease current) {
+    return current != null && current.getFencingToken() == lease.getFencingToken();
+  }
+
+  private Map<String, SemaphoreLease> semaphores(SEMAPHORE_TYPE type) {
+    return type == SEMAPHORE_TYPE.ALERTING_SERVICE ? alertingServices : acks;
+  }
+
+  @Data
+  public static class SemaphoreStats {
+    private final long acquired;
+    private final long contended;
+    private final long expiredTakeovers;
+    private final long staleReleases;
+    private final long lostLeases;
+    private final int held;
+  }
+}
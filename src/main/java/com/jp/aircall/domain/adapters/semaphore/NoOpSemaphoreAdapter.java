@@ -0,0 +1,26 @@
+package com.jp.aircall.domain.adapters.semaphore;
+
+import com.jp.aircall.domain.adapters.SemaphoreAdapter;
+import com.jp.aircall.domain.adapters.semaphore.SemaphoreLease.SEMAPHORE_TYPE;
+import com.jp.aircall.domain.service.PartitionedAlertExecutor;
+
+/**
+ * Always grants the semaphores. Only valid when the events of a service are already serialized by other means, e.g. when
+ * the AlertService is only called from a {@link PartitionedAlertExecutor}
+ */
+public class NoOpSemaphoreAdapter implements SemaphoreAdapter {
+
+  @Override
+  public SemaphoreLease acquireAlertingService(String serviceId) {
+    return new SemaphoreLease(SEMAPHORE_TYPE.ALERTING_SERVICE, serviceId, 0, Long.MAX_VALUE);
+  }
+
+  @Override
+  public SemaphoreLease acquireAck(String pagerAlertId) {
+    return new SemaphoreLease(SEMAPHORE_TYPE.ACK, pagerAlertId, 0, Long.MAX_VALUE);
+  }
+
+  @Override
+  public void release(SemaphoreLease lease) {
+  }
+}
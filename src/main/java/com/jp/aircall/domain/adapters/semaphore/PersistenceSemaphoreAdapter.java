@@ -0,0 +1,44 @@
+package com.jp.aircall.domain.adapters.semaphore;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.adapters.SemaphoreAdapter;
+import com.jp.aircall.domain.adapters.semaphore.SemaphoreLease.SEMAPHORE_TYPE;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Semaphores backed by the PK-insert tables of the {@link PersistenceAdapter}. Leases never expire on this side: we rely
+ * on the DB TTL to clear the rows of a JVM that went down while holding them
+ */
+@RequiredArgsConstructor
+public class PersistenceSemaphoreAdapter implements SemaphoreAdapter {
+
+  private final PersistenceAdapter persistenceAdapter;
+  private final AtomicLong fencingTokens = new AtomicLong();
+
+  @Override
+  public SemaphoreLease acquireAlertingService(String serviceId) throws ServiceAlertingAlreadyException {
+    persistenceAdapter.addAlertingService(serviceId);
+    return new SemaphoreLease(SEMAPHORE_TYPE.ALERTING_SERVICE, serviceId, fencingTokens.incrementAndGet(), Long.MAX_VALUE);
+  }
+
+  @Override
+  public SemaphoreLease acquireAck(String pagerAlertId) throws AckAlertingAlreadyException {
+    persistenceAdapter.addAckSempahore(pagerAlertId);
+    return new SemaphoreLease(SEMAPHORE_TYPE.ACK, pagerAlertId, fencingTokens.incrementAndGet(), Long.MAX_VALUE);
+  }
+
+  @Override
+  public void release(SemaphoreLease lease) {
+    switch (lease.getType()) {
+      case ALERTING_SERVICE:
+        persistenceAdapter.removeAlertingService(lease.getKey());
+        break;
+      case ACK:
+        persistenceAdapter.removeAckSemaphore(lease.getKey());
+        break;
+    }
+  }
+}
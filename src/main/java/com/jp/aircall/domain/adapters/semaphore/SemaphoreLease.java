@@ -0,0 +1,24 @@
+package com.jp.aircall.domain.adapters.semaphore;
+
+import lombok.Data;
+
+/**
+ * A held semaphore. The fencing token is strictly increasing for every acquisition, so a holder whose lease has expired
+ * can be told apart from the one that took the semaphore after it: the semaphore adapter checks it when the lease is
+ * renewed (see {@link com.jp.aircall.domain.adapters.SemaphoreAdapter#renew(SemaphoreLease)}) or released. The
+ * expiration is the one at acquisition, a renewal doesn't update it
+ */
+@Data
+public class SemaphoreLease {
+
+  public enum SEMAPHORE_TYPE {ALERTING_SERVICE, ACK}
+
+  private final SEMAPHORE_TYPE type;
+  private final String key;
+  private final long fencingToken;
+  private final long expirationTs;
+
+  public boolean isExpired(long now) {
+    return now >= expirationTs;
+  }
+}
@@ -0,0 +1,211 @@
+package com.jp.aircall.domain.adapters.timer;
+
+import static com.jp.aircall.domain.service.AlertService.ACK_TIMEOUT_MS;
+
+import com.jp.aircall.domain.adapters.TimerAdapter;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Escalation driver that, instead of one timer per alert, keeps the OPEN alerts in an index ordered by their
+ * acknowledgement deadline (lastNotificationTs + ACK_TIMEOUT_MS) and on every sweep hands all the due alerts over in a
+ * single batch (e.g. to {@code alertService::acknowledgementTimeouts}). Tracking or cancelling an alert is a skip list
+ * insertion or removal, and an alert has at most one deadline: tracking it again replaces the previous one, so a
+ * timeout can't fire twice for the same notification.
+ * As a {@link TimerAdapter} every timer set by the AlertService right after notifying a level is a deadline of now +
+ * ACK_TIMEOUT_MS. On start up the open alerts can be tracked with {@link #track(PagerAlert)}.
+ * A batch whose handler fails is tracked again, due right away, so those alerts are retried on the next sweep.
+ */
+@Slf4j
+public class SweepTimeoutEngine implements TimerAdapter, AutoCloseable {
+
+  public static final long DEFAULT_SWEEP_MS = 1000;
+
+  /** the sequence keeps apart the deadlines with the same due time, including the replaced ones of the same alert */
+  private static final Comparator<Deadline> DUE_ORDER =
+      Comparator.<Deadline>comparingLong(deadline -> deadline.dueTs).thenComparingLong(deadline -> deadline.sequence);
+
+  private final Clock clock;
+  private final NavigableSet<Deadline> index = new ConcurrentSkipListSet<>(DUE_ORDER);
+  private final Map<String, Deadline> deadlines = new ConcurrentHashMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+
+  private ScheduledExecutorService sweeper;
+
+  public SweepTimeoutEngine() {
+    this(Clock.systemUTC());
+  }
+
+  public SweepTimeoutEngine(Clock clock) {
+    this.clock = clock;
+  }
+
+  @Override
+  public void add15MinutesTimer(String id) {
+    track(id, clock.millis());
+  }
+
+  @Override
+  public void addTimerAt(String id, long dueTs) {
+    track(id, dueTs - ACK_TIMEOUT_MS);
+  }
+
+  @Override
+  public void cancelTimer(String id) {
+    Deadline deadline = deadlines.remove(id);
+    if (deadline != null) {
+      index.remove(deadline);
+    }
+  }
+
+  /**
+   * tracks an OPEN alert, e.g. when loading the open alerts on start up. Alerts in other status are untracked
+   * @param pagerAlert
+   */
+  public void track(PagerAlert pagerAlert) {
+    if (pagerAlert.getStatus() == ALERT_STATUS.OPEN) {
+      track(pagerAlert.getId(), pagerAlert.getLastNotificationTs());
+    } else {
+      cancelTimer(pagerAlert.getId());
+    }
+  }
+
+  /**
+   * sets the deadline of the given alert to lastNotificationTs + ACK_TIMEOUT_MS, replacing its previous one if any
+   * @param id
+   * @param lastNotificationTs
+   */
+  public void track(String id, long lastNotificationTs) {
+    Deadline deadline = new Deadline(id, lastNotificationTs + ACK_TIMEOUT_MS, sequence.incrementAndGet());
+    Deadline replaced = deadlines.put(id, deadline);
+    index.add(deadline);
+    if (replaced != null) {
+      index.remove(replaced);
+    }
+  }
+
+  /**
+   * @return number of tracked alerts
+   */
+  public int size() {
+    return deadlines.size();
+  }
+
+  /**
+   * @return the earliest deadline or Long.MAX_VALUE if no alert is tracked
+   */
+  public long getNextDueTs() {
+    Deadline first = index.isEmpty() ? null : index.first();
+    return first != null ? first.dueTs : Long.MAX_VALUE;
+  }
+
+  /**
+   * untracks all the alerts whose deadline has passed. It is called by the thread started by {@link #start(Consumer)},
+   * or by the caller when the engine is driven manually
+   * @return the ids of the due alerts, in deadline order
+   */
+  public synchronized List<String> sweep() {
+    long now = clock.millis();
+    Deadline first = index.isEmpty() ? null : index.first();
+    if (first == null || first.dueTs > now) {
+      return Collections.emptyList();
+    }
+    List<String> due = new ArrayList<>();
+    Deadline deadline;
+    while ((deadline = index.pollFirst()) != null) {
+      if (deadline.dueTs > now) {
+        index.add(deadline); //not due yet, put it back
+        break;
+      }
+      //a replaced deadline is no longer in the map
+      if (deadlines.remove(deadline.id, deadline)) {
+        due.add(deadline.id);
+      }
+    }
+    return due;
+  }
+
+  /**
+   * tracks again the given swept alerts, due right away, when handling them failed. The alerts tracked again meanwhile
+   * keep their new deadline; the ones acknowledged meanwhile are ignored by the AlertService when they are due again
+   * @param due
+   */
+  public void retry(List<String> due) {
+    long now = clock.millis();
+    for (String id : due) {
+      Deadline deadline = new Deadline(id, now, sequence.incrementAndGet());
+      if (deadlines.putIfAbsent(id, deadline) == null) {
+        index.add(deadline);
+      }
+    }
+  }
+
+  /**
+   * starts a daemon thread that sweeps every sweepMs and hands every non-empty batch of due alerts to the given handler
+   * (e.g. {@code alertService::acknowledgementTimeouts})
+   * @param sweepMs
+   * @param dueHandler
+   */
+  public synchronized void start(long sweepMs, Consumer<List<String>> dueHandler) {
+    if (sweeper != null) {
+      throw new IllegalStateException("Sweep timeout engine already started");
+    }
+    sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "timeout-sweeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sweeper.scheduleWithFixedDelay(() -> {
+      List<String> due = Collections.emptyList();
+      try {
+        due = sweep();
+        if (!due.isEmpty()) {
+          dueHandler.accept(due);
+        }
+      } catch (RuntimeException e) {
+        //an exception would cancel the periodic task, so the remaining alerts would never escalate
+        log.error("Error processing due alerts, retrying them on the next sweep", e);
+        retry(due);
+      }
+    }, sweepMs, sweepMs, TimeUnit.MILLISECONDS);
+  }
+
+  public void start(Consumer<List<String>> dueHandler) {
+    start(DEFAULT_SWEEP_MS, dueHandler);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (sweeper != null) {
+      sweeper.shutdownNow();
+      sweeper = null;
+    }
+  }
+
+  private static class Deadline {
+    final String id;
+    final long dueTs;
+    final long sequence;
+
+    Deadline(String id, long dueTs, long sequence) {
+      this.id = id;
+      this.dueTs = dueTs;
+      this.sequence = sequence;
+    }
+  }
+}
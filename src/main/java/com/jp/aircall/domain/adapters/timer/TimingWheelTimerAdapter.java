@@ -0,0 +1,268 @@
+package com.jp.aircall.domain.adapters.timer;
+
+import static com.jp.aircall.domain.service.AlertService.ACK_TIMEOUT_MS;
+
+import com.jp.aircall.domain.adapters.TimerAdapter;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hashed timing wheel. Scheduling and cancelling are O(1): callers only enqueue the timer (or the cancellation) and the
+ * tick thread moves it into its bucket, so the wheel itself is only touched by one thread. On every tick the ids of all
+ * the timers expired in that tick are handed over in a single batch.
+ * Timers further than one revolution of the wheel wait in their bucket for the remaining rounds; sizing the wheel so
+ * that tickMs * wheelSize covers the ack timeout makes every timer to be visited only once.
+ * Scheduling an id that already has a pending timer replaces it, so an id has at most one pending timer.
+ */
+@Slf4j
+public class TimingWheelTimerAdapter implements TimerAdapter, AutoCloseable {
+
+  public static final long DEFAULT_TICK_MS = 1000;
+  public static final int DEFAULT_WHEEL_SIZE = 1024;
+
+  private final long tickMs;
+  private final Clock clock;
+  private final long startTs;
+  private final Bucket[] wheel;
+  private final int mask;
+
+  private final Map<String, Timeout> pending = new ConcurrentHashMap<>();
+  private final Queue<Timeout> newTimeouts = new ConcurrentLinkedQueue<>();
+  private final Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+  private long processedTick = -1;  //only accessed by the ticking thread
+
+  private ScheduledExecutorService ticker;
+
+  public TimingWheelTimerAdapter() {
+    this(DEFAULT_TICK_MS, DEFAULT_WHEEL_SIZE, Clock.systemUTC());
+  }
+
+  /**
+   * @param tickMs resolution of the timers
+   * @param wheelSize number of buckets. Rounded up to the next power of two
+   * @param clock
+   */
+  public TimingWheelTimerAdapter(long tickMs, int wheelSize, Clock clock) {
+    if (tickMs <= 0 || wheelSize <= 0) {
+      throw new IllegalArgumentException("tickMs and wheelSize must be positive");
+    }
+    int size = Integer.highestOneBit(wheelSize - 1) << 1;
+    this.tickMs = tickMs;
+    this.clock = clock;
+    this.startTs = clock.millis();
+    this.wheel = new Bucket[Math.max(size, 1)];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = wheel.length - 1;
+  }
+
+  @Override
+  public void add15MinutesTimer(String id) {
+    schedule(id, ACK_TIMEOUT_MS);
+  }
+
+  @Override
+  public void addTimerAt(String id, long dueTs) {
+    schedule(id, Math.max(0, dueTs - clock.millis()));
+  }
+
+  @Override
+  public void cancelTimer(String id) {
+    Timeout timeout = pending.remove(id);
+    if (timeout != null && timeout.cancel()) {
+      cancelledTimeouts.offer(timeout);
+    }
+  }
+
+  /**
+   * schedules a timer for the given id that expires after delayMs. Replaces the pending timer of the id if any
+   * @param id
+   * @param delayMs
+   */
+  public void schedule(String id, long delayMs) {
+    long deadlineTick = Math.max(0, ceilDiv(clock.millis() + delayMs - startTs, tickMs));
+    Timeout timeout = new Timeout(id, deadlineTick);
+    Timeout replaced = pending.put(id, timeout);
+    if (replaced != null && replaced.cancel()) {
+      cancelledTimeouts.offer(replaced);
+    }
+    newTimeouts.offer(timeout);
+  }
+
+  /**
+   * @return number of pending timers
+   */
+  public int size() {
+    return pending.size();
+  }
+
+  /**
+   * processes all the ticks elapsed until now. It is called by the thread started by {@link #start(Consumer)}, or by the
+   * caller when the wheel is driven manually
+   * @return the ids of the timers expired, in expiration order
+   */
+  public synchronized List<String> advance() {
+    long currentTick = (clock.millis() - startTs) / tickMs;
+    if (currentTick <= processedTick) {
+      return Collections.emptyList();
+    }
+    List<String> expired = new ArrayList<>();
+    while (processedTick < currentTick) {
+      processedTick++;
+      unlinkCancelled();
+      placeNewTimeouts();
+      wheel[(int) (processedTick & mask)].expire(processedTick, expired);
+    }
+    return expired;
+  }
+
+  /**
+   * starts a daemon thread that advances the wheel every tick and hands every non-empty batch of expired ids to the
+   * given handler (e.g. {@code alertService::acknowledgementTimeouts})
+   * @param expiredHandler
+   */
+  public synchronized void start(Consumer<List<String>> expiredHandler) {
+    if (ticker != null) {
+      throw new IllegalStateException("Timing wheel already started");
+    }
+    ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "timing-wheel");
+      thread.setDaemon(true);
+      return thread;
+    });
+    ticker.scheduleAtFixedRate(() -> {
+      try {
+        List<String> expired = advance();
+        if (!expired.isEmpty()) {
+          expiredHandler.accept(expired);
+        }
+      } catch (RuntimeException e) {
+        //an exception would cancel the periodic task, so the remaining timers would never expire
+        log.error("Error processing expired timers", e);
+      }
+    }, tickMs, tickMs, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (ticker != null) {
+      ticker.shutdownNow();
+      ticker = null;
+    }
+  }
+
+  private void unlinkCancelled() {
+    Timeout timeout;
+    while ((timeout = cancelledTimeouts.poll()) != null) {
+      if (timeout.bucket != null) {
+        timeout.bucket.remove(timeout);
+      }
+    }
+  }
+
+  private void placeNewTimeouts() {
+    Timeout timeout;
+    while ((timeout = newTimeouts.poll()) != null) {
+      if (timeout.state.get() != Timeout.PENDING) {
+        continue;
+      }
+      long tick = Math.max(timeout.deadlineTick, processedTick);
+      timeout.remainingRounds = (tick - processedTick) / wheel.length;
+      wheel[(int) (tick & mask)].add(timeout);
+    }
+  }
+
+  private boolean expire(Timeout timeout) {
+    return timeout.state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED) && pending.remove(timeout.id, timeout);
+  }
+
+  private static long ceilDiv(long x, long y) {
+    return -Math.floorDiv(-x, y);
+  }
+
+
+  private static class Timeout {
+    static final int PENDING = 0;
+    static final int CANCELLED = 1;
+    static final int EXPIRED = 2;
+
+    final String id;
+    final long deadlineTick;
+    final AtomicInteger state = new AtomicInteger(PENDING);
+    long remainingRounds;
+    Bucket bucket;
+    Timeout prev;
+    Timeout next;
+
+    Timeout(String id, long deadlineTick) {
+      this.id = id;
+      this.deadlineTick = deadlineTick;
+    }
+
+    boolean cancel() {
+      return state.compareAndSet(PENDING, CANCELLED);
+    }
+  }
+
+
+  /** doubly linked list of timeouts so they can be unlinked in O(1) */
+  private class Bucket {
+    private Timeout head;
+    private Timeout tail;
+
+    void add(Timeout timeout) {
+      timeout.bucket = this;
+      if (head == null) {
+        head = tail = timeout;
+      } else {
+        tail.next = timeout;
+        timeout.prev = tail;
+        tail = timeout;
+      }
+    }
+
+    void remove(Timeout timeout) {
+      if (timeout.prev != null) {
+        timeout.prev.next = timeout.next;
+      } else {
+        head = timeout.next;
+      }
+      if (timeout.next != null) {
+        timeout.next.prev = timeout.prev;
+      } else {
+        tail = timeout.prev;
+      }
+      timeout.prev = timeout.next = null;
+      timeout.bucket = null;
+    }
+
+    void expire(long tick, List<String> expired) {
+      Timeout timeout = head;
+      while (timeout != null) {
+        Timeout next = timeout.next;
+        if (timeout.remainingRounds <= 0 && timeout.deadlineTick <= tick) {
+          remove(timeout);
+          if (TimingWheelTimerAdapter.this.expire(timeout)) {
+            expired.add(timeout.id);
+          }
+        } else {
+          timeout.remainingRounds--;
+        }
+        timeout = next;
+      }
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package com.jp.aircall.domain.cluster;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.error.NodeUnreachableException;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.AlertEvent.ALERT_DISPOSITION;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.service.AlertService;
+import java.time.Clock;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A pager node of a cluster. The serviceIds are hashed into a fixed number of partitions and every live node owns, through
+ * a renewable lease of the {@link CoordinationStore}, the partitions that the consistent hash ring of the live nodes
+ * gives it. The events of a service are processed by the node owning its partition, so the nodes don't contend on the
+ * semaphores of the same services: the events received by a node not owning the service are forwarded to the owner
+ * through the {@link PagerTransport}.
+ * Every {@link #rebalance()} (every leaseMs / 3 once started) renews the membership and the owned leases, releases the
+ * partitions that the ring gives to other nodes and acquires the ones it gives to this node. A partition moves to its new
+ * owner once the old one releases it, or once its lease expires when the old owner died.
+ * The semaphores are still taken, so while partitions move (no owner, or an unreachable one) the events are processed
+ * locally without breaking the one alert per service guarantee. The errors of a reachable owner processing an event are
+ * thrown to the caller instead, as the owner may have processed part of it. Acknowledgement timeouts are processed by the node that
+ * set their timer.
+ */
+@Slf4j
+public class ClusterNode implements AutoCloseable {
+
+  public static final int DEFAULT_PARTITIONS = 256;
+  public static final int DEFAULT_VIRTUAL_NODES = 64;
+  public static final long DEFAULT_LEASE_MS = 10_000;
+
+  @Getter private final String nodeId;
+  private final AlertService alertService;
+  private final PersistenceAdapter persistenceAdapter;
+  private final CoordinationStore coordinationStore;
+  private final PagerTransport transport;
+  private final Clock clock;
+  private final int partitions;
+  private final int virtualNodes;
+  private final long leaseMs;
+
+  /** replaced, never modified, on every rebalance so the events read it without locking */
+  private volatile BitSet owned = new BitSet();
+  private ScheduledExecutorService renewer;
+
+  /**
+   * @param nodeId unique id of the node in the cluster
+   * @param alertService processes the events of the owned services
+   * @param persistenceAdapter used to find the service of the alerts on acks
+   * @param coordinationStore shared by all the nodes
+   * @param transport to forward the events to their owners
+   * @param clock defaults to the system UTC clock. All the nodes must share the same time source
+   * @param partitions same on all the nodes. Defaults to 256
+   * @param virtualNodes points of every node in the hash ring. Same on all the nodes. Defaults to 64
+   * @param leaseMs duration of the membership and partition leases. Defaults to 10s
+   */
+  @Builder
+  private ClusterNode(String nodeId, AlertService alertService, PersistenceAdapter persistenceAdapter,
+      CoordinationStore coordinationStore, PagerTransport transport, Clock clock, Integer partitions, Integer virtualNodes,
+      Long leaseMs) {
+    this.nodeId = nodeId;
+    this.alertService = alertService;
+    this.persistenceAdapter = persistenceAdapter;
+    this.coordinationStore = coordinationStore;
+    this.transport = transport;
+    this.clock = clock != null ? clock : Clock.systemUTC();
+    this.partitions = partitions != null ? partitions : DEFAULT_PARTITIONS;
+    this.virtualNodes = virtualNodes != null ? virtualNodes : DEFAULT_VIRTUAL_NODES;
+    this.leaseMs = leaseMs != null ? leaseMs : DEFAULT_LEASE_MS;
+  }
+
+  public ALERT_DISPOSITION newAlert(AlertEvent alertEvent) {
+    String owner = ownerOf(alertEvent.getServiceId());
+    if (owner != null) {
+      try {
+        return transport.forwardNewAlert(owner, alertEvent);
+      } catch (NodeUnreachableException e) {
+        log.warn("Error forwarding alert [{}] to node [{}]. Processing it locally", alertEvent, owner, e);
+      }
+    }
+    return alertService.newAlert(alertEvent);
+  }
+
+  public void alertAcknowledgement(String pagerAlertId) {
+    String owner = persistenceAdapter.getPagerAlert(pagerAlertId).map(PagerAlert::getServiceId).map(this::ownerOf).orElse(null);
+    if (owner != null) {
+      try {
+        transport.forwardAlertAcknowledgement(owner, pagerAlertId);
+        return;
+      } catch (NodeUnreachableException e) {
+        log.warn("Error forwarding acknowledgement [{}] to node [{}]. Processing it locally", pagerAlertId, owner, e);
+      }
+    }
+    alertService.alertAcknowledgement(pagerAlertId);
+  }
+
+  public void serviceHealthy(String serviceId) {
+    String owner = ownerOf(serviceId);
+    if (owner != null) {
+      try {
+        transport.forwardServiceHealthy(owner, serviceId);
+        return;
+      } catch (NodeUnreachableException e) {
+        log.warn("Error forwarding service healthy [{}] to node [{}]. Processing it locally", serviceId, owner, e);
+      }
+    }
+    alertService.serviceHealthy(serviceId);
+  }
+
+  /**
+   * joins the cluster and renews the leases every leaseMs / 3
+   */
+  public synchronized void start() {
+    if (renewer != null) {
+      throw new IllegalStateException("Cluster node already started: " + nodeId);
+    }
+    rebalance();
+    renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "cluster-" + nodeId);
+      thread.setDaemon(true);
+      return thread;
+    });
+    long period = Math.max(1, leaseMs / 3);
+    renewer.scheduleWithFixedDelay(() -> {
+      try {
+        rebalance();
+      } catch (RuntimeException e) {
+        //an exception would cancel the periodic task, so the leases would expire
+        log.error("Error renewing the leases of node [{}]", nodeId, e);
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * renews the membership of this node and moves the partitions to the owners given by the ring of the live nodes
+   */
+  public synchronized void rebalance() {
+    long now = clock.millis();
+    long leaseUntilTs = now + leaseMs;
+    coordinationStore.heartbeat(nodeId, leaseUntilTs);
+    Set<String> liveNodes = new HashSet<>(coordinationStore.getLiveNodes(now));
+    liveNodes.add(nodeId);
+    BitSet owning = (BitSet) owned.clone();
+    ConsistentHashRing ring = new ConsistentHashRing(liveNodes, virtualNodes);
+    int acquired = 0;
+    int released = 0;
+    for (int partition = 0; partition < partitions; partition++) {
+      if (nodeId.equals(ring.nodeFor(partition))) {
+        boolean owns = coordinationStore.tryAcquirePartition(partition, nodeId, now, leaseUntilTs);
+        if (owns != owning.get(partition)) {
+          acquired += owns ? 1 : 0;
+          owning.set(partition, owns);
+        }
+      } else if (owning.get(partition)) {
+        coordinationStore.releasePartition(partition, nodeId);
+        owning.clear(partition);
+        released++;
+      }
+    }
+    owned = owning;
+    if (acquired > 0 || released > 0) {
+      log.info("Node [{}] of {} live nodes acquired {} and released {} partitions. It owns {}",
+          nodeId, liveNodes.size(), acquired, released, owning.cardinality());
+    }
+  }
+
+  /**
+   * @return number of partitions owned by this node
+   */
+  public int getOwnedPartitions() {
+    return owned.cardinality();
+  }
+
+  public boolean owns(int partition) {
+    return owned.get(partition);
+  }
+
+  public int partitionOf(String serviceId) {
+    int hash = serviceId.hashCode();
+    return Math.floorMod(hash ^ (hash >>> 16), partitions);
+  }
+
+  /**
+   * leaves the cluster releasing all its partitions, so the rest of nodes take them over on their next rebalance
+   */
+  @Override
+  public synchronized void close() {
+    if (renewer != null) {
+      renewer.shutdownNow();
+      renewer = null;
+    }
+    coordinationStore.leave(nodeId);
+    owned = new BitSet();
+  }
+
+  /**
+   * @return the node the event has to be forwarded to, null if it has to be processed locally
+   */
+  private String ownerOf(String serviceId) {
+    int partition = partitionOf(serviceId);
+    if (owns(partition)) {
+      return null;
+    }
+    Optional<String> owner = coordinationStore.getPartitionOwner(partition, clock.millis());
+    return owner.isPresent() && !owner.get().equals(nodeId) ? owner.get() : null;
+  }
+}
@@ -0,0 +1,61 @@
+package com.jp.aircall.domain.cluster;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring of nodes, every node placed on virtualNodes points so the keys are evenly spread. When a node
+ * joins or leaves only the keys of the ranges next to its points move, about 1/N of them
+ * Immutable: a new ring is built for every membership change
+ */
+public class ConsistentHashRing {
+
+  private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+  public ConsistentHashRing(Collection<String> nodeIds, int virtualNodes) {
+    if (virtualNodes <= 0) {
+      throw new IllegalArgumentException("virtualNodes must be positive: " + virtualNodes);
+    }
+    for (String nodeId : nodeIds) {
+      for (int i = 0; i < virtualNodes; i++) {
+        ring.put(hash(nodeId + '#' + i), nodeId);
+      }
+    }
+  }
+
+  /**
+   * @param key
+   * @return the node owning the given key, null if the ring has no node
+   */
+  public String nodeFor(long key) {
+    if (ring.isEmpty()) {
+      return null;
+    }
+    Map.Entry<Long, String> entry = ring.ceilingEntry(mix(key));
+    return (entry != null ? entry : ring.firstEntry()).getValue();
+  }
+
+  public boolean isEmpty() {
+    return ring.isEmpty();
+  }
+
+  static long hash(String value) {
+    long hash = 1125899906842597L;
+    for (int i = 0; i < value.length(); i++) {
+      hash = 31 * hash + value.charAt(i);
+    }
+    return mix(hash);
+  }
+
+  /** murmur3 finalizer, spreads the keys over all the ring */
+  static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return key;
+  }
+}
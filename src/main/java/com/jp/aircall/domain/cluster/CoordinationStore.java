@@ -0,0 +1,57 @@
+package com.jp.aircall.domain.cluster;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Shared store through which the pager nodes of a cluster agree on who is alive and who owns every partition.
+ * Every entry is a lease with an expiration time, so the node that dies without leaving loses its membership and
+ * partitions once their leases expire. All the timestamps are given by the callers, so they must share a clock
+ * source (e.g. the DB time)
+ */
+public interface CoordinationStore {
+
+  /**
+   * registers the given node or renews its membership
+   * @param nodeId
+   * @param leaseUntilTs when the membership expires if not renewed before
+   */
+  void heartbeat(String nodeId, long leaseUntilTs);
+
+  /**
+   * removes the membership of the given node right away. Its partitions are released too
+   * @param nodeId
+   */
+  void leave(String nodeId);
+
+  /**
+   * @param nowTs
+   * @return the nodes whose membership has not expired
+   */
+  Set<String> getLiveNodes(long nowTs);
+
+  /**
+   * acquires, or renews if the node already owns it, the lease of the given partition. This operation is atomic: it only
+   * succeeds if the partition has no owner, its lease has expired or the owner is the given node
+   * @param partition
+   * @param nodeId
+   * @param nowTs
+   * @param leaseUntilTs when the ownership expires if not renewed before
+   * @return true if the node owns the partition until leaseUntilTs
+   */
+  boolean tryAcquirePartition(int partition, String nodeId, long nowTs, long leaseUntilTs);
+
+  /**
+   * releases the partition if it is owned by the given node. Does nothing otherwise
+   * @param partition
+   * @param nodeId
+   */
+  void releasePartition(int partition, String nodeId);
+
+  /**
+   * @param partition
+   * @param nowTs
+   * @return the node holding a not expired lease of the partition
+   */
+  Optional<String> getPartitionOwner(int partition, long nowTs);
+}
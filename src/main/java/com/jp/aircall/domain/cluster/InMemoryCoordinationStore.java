@@ -0,0 +1,73 @@
+package com.jp.aircall.domain.cluster;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * {@link CoordinationStore} kept in memory, so the nodes of a cluster running in the same JVM (e.g. tests or
+ * simulations) can coordinate. Every operation is synchronized, as the single row transactions of a real store
+ */
+public class InMemoryCoordinationStore implements CoordinationStore {
+
+  private final Map<String, Long> members = new HashMap<>();
+  private final Map<Integer, Lease> partitions = new HashMap<>();
+
+  @Override
+  public synchronized void heartbeat(String nodeId, long leaseUntilTs) {
+    members.put(nodeId, leaseUntilTs);
+  }
+
+  @Override
+  public synchronized void leave(String nodeId) {
+    members.remove(nodeId);
+    partitions.values().removeIf(lease -> lease.nodeId.equals(nodeId));
+  }
+
+  @Override
+  public synchronized Set<String> getLiveNodes(long nowTs) {
+    Set<String> live = new HashSet<>();
+    members.forEach((nodeId, leaseUntilTs) -> {
+      if (leaseUntilTs > nowTs) {
+        live.add(nodeId);
+      }
+    });
+    return live;
+  }
+
+  @Override
+  public synchronized boolean tryAcquirePartition(int partition, String nodeId, long nowTs, long leaseUntilTs) {
+    Lease lease = partitions.get(partition);
+    if (lease != null && lease.leaseUntilTs > nowTs && !lease.nodeId.equals(nodeId)) {
+      return false;
+    }
+    partitions.put(partition, new Lease(nodeId, leaseUntilTs));
+    return true;
+  }
+
+  @Override
+  public synchronized void releasePartition(int partition, String nodeId) {
+    Lease lease = partitions.get(partition);
+    if (lease != null && lease.nodeId.equals(nodeId)) {
+      partitions.remove(partition);
+    }
+  }
+
+  @Override
+  public synchronized Optional<String> getPartitionOwner(int partition, long nowTs) {
+    Lease lease = partitions.get(partition);
+    return lease != null && lease.leaseUntilTs > nowTs ? Optional.of(lease.nodeId) : Optional.empty();
+  }
+
+  private static class Lease {
+    final String nodeId;
+    final long leaseUntilTs;
+
+    Lease(String nodeId, long leaseUntilTs) {
+      this.nodeId = nodeId;
+      this.leaseUntilTs = leaseUntilTs;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.jp.aircall.domain.cluster;
+
+import com.jp.aircall.domain.error.NodeUnreachableException;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.AlertEvent.ALERT_DISPOSITION;
+import com.jp.aircall.domain.service.AlertService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link PagerTransport} between nodes running in the same JVM: the events are handed to the AlertService of the node
+ * on the caller thread, so its errors reach the caller as they are
+ */
+public class InProcessPagerTransport implements PagerTransport {
+
+  private final Map<String, AlertService> nodes = new ConcurrentHashMap<>();
+  private final LongAdder forwarded = new LongAdder();
+
+  public void register(String nodeId, AlertService alertService) {
+    nodes.put(nodeId, alertService);
+  }
+
+  /**
+   * the node is no longer reachable
+   * @param nodeId
+   */
+  public void unregister(String nodeId) {
+    nodes.remove(nodeId);
+  }
+
+  @Override
+  public ALERT_DISPOSITION forwardNewAlert(String nodeId, AlertEvent alertEvent) {
+    return nodeOf(nodeId).newAlert(alertEvent);
+  }
+
+  @Override
+  public void forwardAlertAcknowledgement(String nodeId, String pagerAlertId) {
+    nodeOf(nodeId).alertAcknowledgement(pagerAlertId);
+  }
+
+  @Override
+  public void forwardServiceHealthy(String nodeId, String serviceId) {
+    nodeOf(nodeId).serviceHealthy(serviceId);
+  }
+
+  /**
+   * @return number of events forwarded
+   */
+  public long getForwarded() {
+    return forwarded.sum();
+  }
+
+  private AlertService nodeOf(String nodeId) {
+    AlertService alertService = nodes.get(nodeId);
+    if (alertService == null) {
+      throw new NodeUnreachableException("Unreachable node: " + nodeId);
+    }
+    forwarded.increment();
+    return alertService;
+  }
+}
@@ -0,0 +1,19 @@
+package com.jp.aircall.domain.cluster;
+
+import com.jp.aircall.domain.error.NodeUnreachableException;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.AlertEvent.ALERT_DISPOSITION;
+
+/**
+ * Forwards the pager events to the node owning their service. The receiving node processes them on its own AlertService,
+ * without forwarding them again. Implementations throw a {@link NodeUnreachableException} when the node can't be reached,
+ * and any error of the owner processing the event as it is
+ */
+public interface PagerTransport {
+
+  ALERT_DISPOSITION forwardNewAlert(String nodeId, AlertEvent alertEvent);
+
+  void forwardAlertAcknowledgement(String nodeId, String pagerAlertId);
+
+  void forwardServiceHealthy(String nodeId, String serviceId);
+}
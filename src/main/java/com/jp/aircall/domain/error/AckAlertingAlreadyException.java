@@ -5,4 +5,12 @@ public class AckAlertingAlreadyException extends Exception {
   public AckAlertingAlreadyException(String message) {
     super(message);
   }
+
+  /**
+   * @param message
+   * @param writableStackTrace false to skip filling in the stack trace, for semaphores that report contention often
+   */
+  public AckAlertingAlreadyException(String message, boolean writableStackTrace) {
+    super(message, null, false, writableStackTrace);
+  }
 }
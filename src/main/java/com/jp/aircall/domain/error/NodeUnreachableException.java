@@ -0,0 +1,16 @@
+package com.jp.aircall.domain.error;
+
+/**
+ * A pager event couldn't be forwarded to the node owning its service. Unlike the errors of the owner processing the
+ * event, the event hasn't been processed, so the caller can process it on its own
+ */
+public class NodeUnreachableException extends RuntimeException {
+
+  public NodeUnreachableException(String message) {
+    super(message);
+  }
+
+  public NodeUnreachableException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,48 @@
+package com.jp.aircall.domain.metrics;
+
+/**
+ * Instrumentation points of the AlertService. {@link #DISABLED} does nothing, not even reading the clock, so an
+ * AlertService without metrics pays no more than a call to an empty method the JIT inlines away.
+ */
+public interface AlertMetrics {
+
+  enum OPERATION {
+    NEW_ALERT, NEW_ALERTS, ALERT_ACKNOWLEDGEMENT, ALERT_ACKNOWLEDGEMENTS, SERVICE_HEALTHY, SERVICES_HEALTHY,
+    ACKNOWLEDGEMENT_TIMEOUT, ACKNOWLEDGEMENT_TIMEOUTS
+  }
+
+  enum OUTCOME {
+    IGNORED_UNHEALTHY, SERVICE_NOT_FOUND, SEMAPHORE_CONTENDED, ALERT_RAISED, LEVEL_ESCALATED, ALL_LEVELS_NOTIFIED,
+    POLICY_MISSING, NO_TARGET_NOTIFIED, ACK_ALREADY_ACKNOWLEDGED, ACK_ALREADY_CLOSED, ALERT_NOT_FOUND, VERSION_CONFLICT,
+    LEASE_LOST
+  }
+
+  AlertMetrics DISABLED = new AlertMetrics() {
+    @Override
+    public long start() {
+      return 0;
+    }
+
+    @Override
+    public void record(OPERATION operation, long start) {
+    }
+
+    @Override
+    public void outcome(OUTCOME outcome) {
+    }
+  };
+
+  /**
+   * @return the start of an operation to be given to {@link #record(OPERATION, long)}
+   */
+  long start();
+
+  /**
+   * records the latency of an operation
+   * @param operation
+   * @param start the value returned by {@link #start()} when the operation started
+   */
+  void record(OPERATION operation, long start);
+
+  void outcome(OUTCOME outcome);
+}
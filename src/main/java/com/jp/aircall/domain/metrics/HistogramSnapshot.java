@@ -0,0 +1,18 @@
+package com.jp.aircall.domain.metrics;
+
+import lombok.Data;
+
+/**
+ * Point in time figures of a {@link LatencyHistogram}, all the latencies in nanoseconds
+ */
+@Data
+public class HistogramSnapshot {
+
+  private final long count;
+  private final double meanNanos;
+  private final long p50Nanos;
+  private final long p90Nanos;
+  private final long p99Nanos;
+  private final long p999Nanos;
+  private final long maxNanos;
+}
@@ -0,0 +1,102 @@
+package com.jp.aircall.domain.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of latencies in nanoseconds, in the spirit of HdrHistogram: every power of two range is
+ * split in 64 linear sub-buckets, so any recorded value is reported with an error below 1.6%. Values from 0 to
+ * {@link #MAX_TRACKABLE_NANOS} (about 73 minutes) are tracked, greater values are recorded as the max trackable one.
+ * Recording is a couple of atomic increments and never allocates.
+ */
+public class LatencyHistogram {
+
+  public static final long MAX_TRACKABLE_NANOS = (1L << 42) - 1;
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS; //values below it get their own bucket
+  private static final int BUCKETS = indexOf(MAX_TRACKABLE_NANOS) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  public void recordNanos(long nanos) {
+    long value = Math.min(Math.max(nanos, 0), MAX_TRACKABLE_NANOS);
+    counts.incrementAndGet(indexOf(value));
+    count.increment();
+    totalNanos.add(value);
+    if (value > maxNanos.get()) {
+      maxNanos.accumulateAndGet(value, Math::max);
+    }
+  }
+
+  /**
+   * records the time elapsed since the given {@link System#nanoTime()}
+   * @param startNanos
+   */
+  public void recordSince(long startNanos) {
+    recordNanos(System.nanoTime() - startNanos);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Takes a consistent enough view of the histogram: it is not atomic, so values recorded meanwhile may be missing from
+   * some figures
+   * @return
+   */
+  public HistogramSnapshot snapshot() {
+    long[] snapshotCounts = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshotCounts[i] = counts.get(i);
+      total += snapshotCounts[i];
+    }
+    long max = maxNanos.get();
+    double mean = total == 0 ? 0 : (double) totalNanos.sum() / count.sum();
+    return new HistogramSnapshot(total, mean,
+        percentile(snapshotCounts, total, 0.5, max),
+        percentile(snapshotCounts, total, 0.9, max),
+        percentile(snapshotCounts, total, 0.99, max),
+        percentile(snapshotCounts, total, 0.999, max),
+        max);
+  }
+
+  private static long percentile(long[] counts, long total, double percentile, long max) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile * total));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(highestEquivalentValue(i), max);
+      }
+    }
+    return max;
+  }
+
+  static int indexOf(long value) {
+    if (value < LINEAR_LIMIT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+  }
+
+  static long highestEquivalentValue(int index) {
+    if (index < LINEAR_LIMIT) {
+      return index;
+    }
+    int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+    long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
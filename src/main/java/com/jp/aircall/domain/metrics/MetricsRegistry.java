@@ -0,0 +1,41 @@
+package com.jp.aircall.domain.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named latency histograms and counters. Lookups by name are meant to be done once, when the instrumented component is
+ * built, so recording never touches the maps. Metrics are pulled with {@link #snapshot()}, nothing is pushed or
+ * aggregated in the background.
+ */
+public class MetricsRegistry {
+
+  private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+  /**
+   * @param name
+   * @return the histogram with the given name, created if it doesn't exist
+   */
+  public LatencyHistogram timer(String name) {
+    return timers.computeIfAbsent(name, key -> new LatencyHistogram());
+  }
+
+  /**
+   * @param name
+   * @return the counter with the given name, created if it doesn't exist
+   */
+  public LongAdder counter(String name) {
+    return counters.computeIfAbsent(name, key -> new LongAdder());
+  }
+
+  public MetricsSnapshot snapshot() {
+    Map<String, HistogramSnapshot> latencies = new TreeMap<>();
+    timers.forEach((name, histogram) -> latencies.put(name, histogram.snapshot()));
+    Map<String, Long> counterValues = new TreeMap<>();
+    counters.forEach((name, counter) -> counterValues.put(name, counter.sum()));
+    return new MetricsSnapshot(System.nanoTime(), latencies, counterValues);
+  }
+}
@@ -0,0 +1,48 @@
+package com.jp.aircall.domain.metrics;
+
+import java.util.Map;
+import lombok.Data;
+
+/**
+ * Point in time copy of all the metrics of a {@link MetricsRegistry}
+ */
+@Data
+public class MetricsSnapshot {
+
+  private final long timestampNanos;
+  private final Map<String, HistogramSnapshot> latencies;
+  private final Map<String, Long> counters;
+
+  /**
+   * @param name
+   * @return the value of the counter, 0 if it has never been incremented
+   */
+  public long getCounter(String name) {
+    return counters.getOrDefault(name, 0L);
+  }
+
+  /**
+   * @param name
+   * @return the latencies of the given timer or null if it doesn't exist
+   */
+  public HistogramSnapshot getLatency(String name) {
+    return latencies.get(name);
+  }
+
+  /**
+   * throughput of the given timer since the given older snapshot of the same registry
+   * @param previous
+   * @param name
+   * @return operations per second
+   */
+  public double getThroughputPerSecond(MetricsSnapshot previous, String name) {
+    long elapsedNanos = timestampNanos - previous.timestampNanos;
+    HistogramSnapshot current = latencies.get(name);
+    if (elapsedNanos <= 0 || current == null) {
+      return 0;
+    }
+    HistogramSnapshot before = previous.latencies.get(name);
+    long operations = current.getCount() - (before == null ? 0 : before.getCount());
+    return operations * 1_000_000_000.0 / elapsedNanos;
+  }
+}
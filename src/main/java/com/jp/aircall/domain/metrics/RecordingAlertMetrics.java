@@ -0,0 +1,58 @@
+package com.jp.aircall.domain.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the AlertService metrics into a {@link MetricsRegistry}: a latency histogram per operation named
+ * alertService.&lt;operation&gt; (e.g. alertService.newAlert) and a counter per outcome named alertService.outcome.&lt;outcome&gt;
+ * (e.g. alertService.outcome.semaphoreContended). The histograms and counters are resolved when built, so recording is
+ * just an array access.
+ */
+public class RecordingAlertMetrics implements AlertMetrics {
+
+  public static final String PREFIX = "alertService.";
+
+  private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATION.values().length];
+  private final LongAdder[] outcomes = new LongAdder[OUTCOME.values().length];
+
+  public RecordingAlertMetrics(MetricsRegistry registry) {
+    for (OPERATION operation : OPERATION.values()) {
+      latencies[operation.ordinal()] = registry.timer(nameOf(operation));
+    }
+    for (OUTCOME outcome : OUTCOME.values()) {
+      outcomes[outcome.ordinal()] = registry.counter(nameOf(outcome));
+    }
+  }
+
+  public static String nameOf(OPERATION operation) {
+    return PREFIX + camelCase(operation.name());
+  }
+
+  public static String nameOf(OUTCOME outcome) {
+    return PREFIX + "outcome." + camelCase(outcome.name());
+  }
+
+  @Override
+  public long start() {
+    return System.nanoTime();
+  }
+
+  @Override
+  public void record(OPERATION operation, long start) {
+    latencies[operation.ordinal()].recordSince(start);
+  }
+
+  @Override
+  public void outcome(OUTCOME outcome) {
+    outcomes[outcome.ordinal()].increment();
+  }
+
+  private static String camelCase(String constant) {
+    StringBuilder name = new StringBuilder();
+    for (String word : constant.toLowerCase(Locale.ROOT).split("_")) {
+      name.append(name.length() == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+    }
+    return name.toString();
+  }
+}
@@ -0,0 +1,19 @@
+package com.jp.aircall.domain.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.jp.aircall.AcknowledgementTimeout")
+@Label("Acknowledgement Timeout")
+@Description("An acknowledgement timeout has been processed. The duration is the whole processing time")
+public class AcknowledgementTimeoutEvent extends PagerAlertEvent {
+
+  @Label("Status")
+  @Description("Status of the alert when the timeout was received. NOT_FOUND when the alert doesn't exist")
+  String status;
+
+  @Label("Escalated Level")
+  @Description("Level notified by this timeout, 0 when no level was notified")
+  int escalatedLevel;
+}
@@ -0,0 +1,30 @@
+package com.jp.aircall.domain.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Call to an adapter through its Instrumented* decorator. It isn't a {@link PagerAlertEvent}: the adapters are called
+ * with alert ids, service ids or targets, so the key is whatever the call was made with
+ */
+@Name("com.jp.aircall.AdapterCall")
+@Label("Adapter Call")
+@Description("Call to an adapter, e.g. a persistence read or an SMS sent. The duration is the call time")
+@Category({"Aircall", "Pager"})
+@Enabled(false)
+@StackTrace(false)
+public class AdapterCallEvent extends Event {
+
+  @Label("Call")
+  @Description("Adapter and method, named as their latency metric, e.g. persistence.getPagerAlert")
+  String call;
+
+  @Label("Key")
+  @Description("Alert id, service id or target the adapter was called with. Null for the bulk calls")
+  String key;
+}
@@ -0,0 +1,9 @@
+package com.jp.aircall.domain.metrics.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.jp.aircall.AlertAcknowledged")
+@Label("Alert Acknowledged")
+public class AlertAcknowledgedEvent extends PagerAlertEvent {
+}
@@ -0,0 +1,11 @@
+package com.jp.aircall.domain.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.jp.aircall.AlertClosed")
+@Label("Alert Closed")
+@Description("The alert has been closed because its service is healthy again")
+public class AlertClosedEvent extends PagerAlertEvent {
+}
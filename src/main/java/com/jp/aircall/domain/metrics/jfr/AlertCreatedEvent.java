@@ -0,0 +1,14 @@
+package com.jp.aircall.domain.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.jp.aircall.AlertCreated")
+@Label("Alert Created")
+@Description("A new alert has been raised. Level 0 when no target of the first level could be notified")
+public class AlertCreatedEvent extends PagerAlertEvent {
+
+  @Label("Level Notified")
+  int levelNotified;
+}
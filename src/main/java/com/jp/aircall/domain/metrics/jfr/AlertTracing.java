@@ -0,0 +1,196 @@
+package com.jp.aircall.domain.metrics.jfr;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Emits the JDK Flight Recorder events tracing the lifecycle of every alert: created, level notified, timer set, timeout
+ * processed, semaphore contended, acknowledged and closed. All the lifecycle events carry the alert and service ids.
+ * The Instrumented* adapter decorators emit an adapter call event at every adapter boundary, carrying the id or target
+ * the adapter was called with.
+ * The events are disabled by default. Enable them with the settings shipped in jfr/pager.jfc, e.g.
+ * -XX:StartFlightRecording:settings=default,/path/to/pager.jfc, or with Recording#enable("com.jp.aircall.AlertCreated")...
+ * Until a recording is started nothing is created, not even the event, so the cost is a read of a volatile flag. Once
+ * started, a disabled event costs a read of its enabled flag and is never created either.
+ * The duration events are begun with the begin* methods before the traced call and committed after it. The begin*
+ * methods return null while no recording was started, and the commit methods ignore a null event.
+ */
+public final class AlertTracing {
+
+  public static final String ALERTING_SERVICE_SEMAPHORE = "ALERTING_SERVICE";
+  public static final String ACK_SEMAPHORE = "ACK";
+  public static final String NOT_FOUND = "NOT_FOUND";
+
+  private AlertTracing() {
+  }
+
+  /** registered on first use, so not before a recording is started */
+  private static final class Types {
+    static final EventType ALERT_CREATED = EventType.getEventType(AlertCreatedEvent.class);
+    static final EventType SEMAPHORE_CONTENDED = EventType.getEventType(SemaphoreContendedEvent.class);
+    static final EventType ALERT_ACKNOWLEDGED = EventType.getEventType(AlertAcknowledgedEvent.class);
+    static final EventType ALERT_CLOSED = EventType.getEventType(AlertClosedEvent.class);
+    static final EventType LEVEL_NOTIFIED = EventType.getEventType(LevelNotifiedEvent.class);
+    static final EventType TIMER_SET = EventType.getEventType(TimerSetEvent.class);
+    static final EventType ACKNOWLEDGEMENT_TIMEOUT = EventType.getEventType(AcknowledgementTimeoutEvent.class);
+    static final EventType ADAPTER_CALL = EventType.getEventType(AdapterCallEvent.class);
+  }
+
+  public static void alertCreated(String alertId, String serviceId, int levelNotified) {
+    if (!FlightRecorder.isInitialized() || !Types.ALERT_CREATED.isEnabled()) {
+      return;
+    }
+    AlertCreatedEvent event = new AlertCreatedEvent();
+    if (event.isEnabled()) {
+      event.alertId = alertId;
+      event.serviceId = serviceId;
+      event.levelNotified = levelNotified;
+      event.commit();
+    }
+  }
+
+  public static LevelNotifiedEvent beginLevelNotified() {
+    if (!FlightRecorder.isInitialized() || !Types.LEVEL_NOTIFIED.isEnabled()) {
+      return null;
+    }
+    LevelNotifiedEvent event = new LevelNotifiedEvent();
+    event.begin();
+    return event;
+  }
+
+  public static void levelNotified(LevelNotifiedEvent event, String alertId, String serviceId, int level, int targets,
+      boolean notified) {
+    if (event == null) {
+      return;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.alertId = alertId;
+      event.serviceId = serviceId;
+      event.level = level;
+      event.targets = targets;
+      event.notified = notified;
+      event.commit();
+    }
+  }
+
+  public static TimerSetEvent beginTimerSet() {
+    if (!FlightRecorder.isInitialized() || !Types.TIMER_SET.isEnabled()) {
+      return null;
+    }
+    TimerSetEvent event = new TimerSetEvent();
+    event.begin();
+    return event;
+  }
+
+  public static void timerSet(TimerSetEvent event, String alertId, String serviceId) {
+    if (event == null) {
+      return;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.alertId = alertId;
+      event.serviceId = serviceId;
+      event.commit();
+    }
+  }
+
+  public static AcknowledgementTimeoutEvent beginAcknowledgementTimeout() {
+    if (!FlightRecorder.isInitialized() || !Types.ACKNOWLEDGEMENT_TIMEOUT.isEnabled()) {
+      return null;
+    }
+    AcknowledgementTimeoutEvent event = new AcknowledgementTimeoutEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * @param event the one returned by {@link #beginAcknowledgementTimeout()}
+   * @param alertId
+   * @param serviceId null when the alert is not found
+   * @param status status of the alert when the timeout was received or {@link #NOT_FOUND}
+   * @param escalatedLevel level notified by the timeout, 0 if none
+   */
+  public static void acknowledgementTimeout(AcknowledgementTimeoutEvent event, String alertId, String serviceId,
+      String status, int escalatedLevel) {
+    if (event == null) {
+      return;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.alertId = alertId;
+      event.serviceId = serviceId;
+      event.status = status;
+      event.escalatedLevel = escalatedLevel;
+      event.commit();
+    }
+  }
+
+  /**
+   * @param alertId null for the {@link #ALERTING_SERVICE_SEMAPHORE}
+   * @param serviceId
+   * @param semaphore
+   */
+  public static void semaphoreContended(String alertId, String serviceId, String semaphore) {
+    if (!FlightRecorder.isInitialized() || !Types.SEMAPHORE_CONTENDED.isEnabled()) {
+      return;
+    }
+    SemaphoreContendedEvent event = new SemaphoreContendedEvent();
+    if (event.isEnabled()) {
+      event.alertId = alertId;
+      event.serviceId = serviceId;
+      event.semaphore = semaphore;
+      event.commit();
+    }
+  }
+
+  public static void alertAcknowledged(String alertId, String serviceId) {
+    if (!FlightRecorder.isInitialized() || !Types.ALERT_ACKNOWLEDGED.isEnabled()) {
+      return;
+    }
+    AlertAcknowledgedEvent event = new AlertAcknowledgedEvent();
+    if (event.isEnabled()) {
+      event.alertId = alertId;
+      event.serviceId = serviceId;
+      event.commit();
+    }
+  }
+
+  public static void alertClosed(String alertId, String serviceId) {
+    if (!FlightRecorder.isInitialized() || !Types.ALERT_CLOSED.isEnabled()) {
+      return;
+    }
+    AlertClosedEvent event = new AlertClosedEvent();
+    if (event.isEnabled()) {
+      event.alertId = alertId;
+      event.serviceId = serviceId;
+      event.commit();
+    }
+  }
+
+  public static AdapterCallEvent beginAdapterCall() {
+    if (!FlightRecorder.isInitialized() || !Types.ADAPTER_CALL.isEnabled()) {
+      return null;
+    }
+    AdapterCallEvent event = new AdapterCallEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * @param event the one returned by {@link #beginAdapterCall()}
+   * @param call name of the latency metric of the call, e.g. persistence.getPagerAlert
+   * @param key alert id, service id or target the adapter was called with, null for the bulk calls
+   */
+  public static void adapterCall(AdapterCallEvent event, String call, String key) {
+    if (event == null) {
+      return;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.call = call;
+      event.key = key;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package com.jp.aircall.domain.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.jp.aircall.LevelNotified")
+@Label("Level Notified")
+@Description("Notification of the targets of a level of the escalation policy. The duration is the dispatch time")
+public class LevelNotifiedEvent extends PagerAlertEvent {
+
+  @Label("Level")
+  int level;
+
+  @Label("Targets")
+  int targets;
+
+  @Label("Notified")
+  @Description("Some target has been (or will be, when digested) notified")
+  boolean notified;
+}
@@ -0,0 +1,23 @@
+package com.jp.aircall.domain.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base of the pager Flight Recorder events. All of them carry the alert and service ids, so a recording can be grouped
+ * by alertId to rebuild the timeline of every alert. Disabled by default, see {@link AlertTracing}
+ */
+@Category({"Aircall", "Pager"})
+@Enabled(false)
+@StackTrace(false)
+abstract class PagerAlertEvent extends Event {
+
+  @Label("Alert Id")
+  String alertId;
+
+  @Label("Service Id")
+  String serviceId;
+}
@@ -0,0 +1,15 @@
+package com.jp.aircall.domain.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.jp.aircall.SemaphoreContended")
+@Label("Semaphore Contended")
+@Description("An event has been discarded because another one of the same service or alert was being processed")
+public class SemaphoreContendedEvent extends PagerAlertEvent {
+
+  @Label("Semaphore")
+  @Description("ALERTING_SERVICE or ACK. The alert id is null for the alerting service semaphore")
+  String semaphore;
+}
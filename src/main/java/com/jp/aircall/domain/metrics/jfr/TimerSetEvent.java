@@ -0,0 +1,11 @@
+package com.jp.aircall.domain.metrics.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.jp.aircall.TimerSet")
+@Label("Timer Set")
+@Description("The acknowledgement timer of an alert has been set. The duration is the time spent in the timer adapter")
+public class TimerSetEvent extends PagerAlertEvent {
+}
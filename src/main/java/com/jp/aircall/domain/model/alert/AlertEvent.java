@@ -11,6 +11,16 @@ import lombok.Data;
 @AllArgsConstructor
 public class AlertEvent {
 
+  /** what the pager did with a received alert event */
+  public enum ALERT_DISPOSITION {
+    PROCESSED, //the service became unhealthy and the first level was notified
+    SERVICE_UNHEALTHY, //ignored because the service was already unhealthy
+    ALREADY_PROCESSING, //ignored because another alert of the service was being processed
+    COALESCED, //ignored because an earlier alert of the same service in the same batch was processed
+    SERVICE_NOT_FOUND,
+    FAILED //error while processing it
+  }
+
   @NotEmpty private String message;
   @NotEmpty private String serviceId;
 
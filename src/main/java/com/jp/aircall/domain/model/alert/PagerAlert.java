@@ -2,6 +2,7 @@ package com.jp.aircall.domain.model.alert;
 
 import java.util.UUID;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 /**
  * This class represents the pager internal alert lifecycle
@@ -11,7 +12,16 @@ public class PagerAlert {
 
   public enum ALERT_STATUS {OPEN, ACKNOWLEDGED, CLOSED }
 
-  private String id = UUID.randomUUID().toString();
+  /** what the pager did with a received acknowledgement */
+  public enum ACK_DISPOSITION {
+    ACKNOWLEDGED, //the alert was open and now is acknowledged
+    ALREADY_ACKNOWLEDGED,
+    ALREADY_CLOSED,
+    NOT_FOUND,
+    FAILED //error while processing it
+  }
+
+  private String id;
   private String serviceId;
   private String alertMessage;
   private ALERT_STATUS status;
@@ -20,9 +30,16 @@ public class PagerAlert {
   private long lastNotificationTs;
   private long acknowledgmentTs;
   private long closedTs;
+  /**
+   * set by the persistence, which increments it on every write. See PersistenceAdapter#updatePagerAlertIfVersion. Not part of
+   * equals, as it tells which write stored the state, not the state
+   */
+  @EqualsAndHashCode.Exclude
+  private long version;
 
 
   public PagerAlert(String serviceId, String alertMessage, ALERT_STATUS status, int levelNotified, long creationTs, long lastNotificationTs) {
+    this.id = UUID.randomUUID().toString();
     this.serviceId = serviceId;
     this.alertMessage = alertMessage;
     this.status = status;
@@ -30,4 +47,22 @@ public class PagerAlert {
     this.creationTs = creationTs;
     this.lastNotificationTs = lastNotificationTs;
   }
+
+  /**
+   * Copies all the fields of the given alert, id included. Cheaper than creating a new alert and setting its id, as no
+   * random id is generated
+   * @param pagerAlert
+   */
+  public PagerAlert(PagerAlert pagerAlert) {
+    this.id = pagerAlert.getId();
+    this.serviceId = pagerAlert.getServiceId();
+    this.alertMessage = pagerAlert.getAlertMessage();
+    this.status = pagerAlert.getStatus();
+    this.levelNotified = pagerAlert.getLevelNotified();
+    this.creationTs = pagerAlert.getCreationTs();
+    this.lastNotificationTs = pagerAlert.getLastNotificationTs();
+    this.acknowledgmentTs = pagerAlert.getAcknowledgmentTs();
+    this.closedTs = pagerAlert.getClosedTs();
+    this.version = pagerAlert.getVersion();
+  }
 }
@@ -0,0 +1,96 @@
+package com.jp.aircall.domain.model.policy;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Immutable, ready to dispatch version of an {@link EscalationPolicy}: every level keeps the values of its targets in
+ * flat arrays by channel, so notifying a level does not need to inspect the type of every target again
+ */
+@ToString
+public class CompiledPolicy {
+
+  @Getter private final String serviceId;
+  private final CompiledLevel[] levels;
+
+  private CompiledPolicy(String serviceId, CompiledLevel[] levels) {
+    this.serviceId = serviceId;
+    this.levels = levels;
+  }
+
+  public static CompiledPolicy compile(EscalationPolicy escalationPolicy) {
+    List<Level> policyLevels = escalationPolicy.getLevels();
+    CompiledLevel[] levels = new CompiledLevel[policyLevels.size()];
+    for (int i = 0; i < levels.length; i++) {
+      levels[i] = CompiledLevel.compile(policyLevels.get(i));
+    }
+    return new CompiledPolicy(escalationPolicy.getServiceId(), levels);
+  }
+
+  public int getLevelCount() {
+    return levels.length;
+  }
+
+  /**
+   * @param level first level is 1
+   * @return
+   */
+  public CompiledLevel getLevel(int level) {
+    return levels[level - 1];
+  }
+
+
+  @ToString
+  public static class CompiledLevel {
+
+    private final String[] phones;
+    private final String[] emails;
+
+    private CompiledLevel(String[] phones, String[] emails) {
+      this.phones = phones;
+      this.emails = emails;
+    }
+
+    static CompiledLevel compile(Level level) {
+      List<String> phones = new ArrayList<>();
+      List<String> emails = new ArrayList<>();
+      for (Target target : level.getTargets()) {
+        switch (target.getType()) {
+          case SMS:
+            phones.add(target.getValue());
+            break;
+          case EMAIL:
+            emails.add(target.getValue());
+            break;
+        }
+      }
+      return new CompiledLevel(phones.toArray(new String[0]), emails.toArray(new String[0]));
+    }
+
+    public int getPhoneCount() {
+      return phones.length;
+    }
+
+    public String getPhone(int index) {
+      return phones[index];
+    }
+
+    public int getEmailCount() {
+      return emails.length;
+    }
+
+    public String getEmail(int index) {
+      return emails[index];
+    }
+
+    public int getTargetCount() {
+      return phones.length + emails.length;
+    }
+
+    public boolean isEmpty() {
+      return getTargetCount() == 0;
+    }
+  }
+}
@@ -2,15 +2,30 @@ package com.jp.aircall.domain.model.policy;
 
 import jakarta.validation.constraints.NotEmpty;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 @Data
 public class Service {
 
   public enum SERVICE_STATUS {HEALTHY, UNHEALTHY}
 
+  /** what the pager did with a received healthy event */
+  public enum HEALTHY_DISPOSITION {
+    SET_HEALTHY, //its alerts were closed and the service is healthy again
+    ALREADY_HEALTHY,
+    SERVICE_NOT_FOUND,
+    FAILED //error while processing it
+  }
+
   @NotEmpty private String id;
   private String description;
   private SERVICE_STATUS status;
+  /**
+   * set by the persistence, which increments it on every write. See PersistenceAdapter#updateServiceIfVersion. Not part of
+   * equals, as it tells which write stored the state, not the state
+   */
+  @EqualsAndHashCode.Exclude
+  private long version;
 
   public Service(String id, SERVICE_STATUS status) {
     this.id = id;
@@ -0,0 +1,171 @@
+package com.jp.aircall.domain.service;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.adapters.TimerAdapter;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.service.AlertService.TimeoutsResult;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Start up recovery of the state lost with the JVM: the timers of the OPEN alerts and the semaphores held by the
+ * events being processed when it died.
+ * The OPEN alerts are read page by page with {@link PersistenceAdapter#getOpenPagerAlerts(String, int)} while the
+ * previous pages are processed in parallel, up to 2 pages per worker in flight so a million alerts never are in memory
+ * at once. The timers of the alerts not timed out yet are re-armed at lastNotificationTs + 15 min, and the overdue
+ * alerts are escalated straight away with {@link AlertService#acknowledgementTimeouts}. The overdue alerts it skips
+ * because their ack semaphore is held (e.g. orphaned by the dead JVM when the semaphores are not removed) get their
+ * timer re-armed 15 min from now, so they are escalated once the semaphore is released or expired. So do the ones whose
+ * escalation failed, which are counted as failed.
+ * Must run before the node starts receiving events: clearing the semaphores is only safe when nobody holds them.
+ */
+@Slf4j
+public class AlertRecovery {
+
+  public static final int DEFAULT_PAGE_SIZE = 1000;
+
+  private final AlertService alertService;
+  private final PersistenceAdapter persistenceAdapter;
+  private final TimerAdapter timerAdapter;
+  private final Clock clock;
+  private final int pageSize;
+  private final int parallelism;
+  private final boolean removeSemaphores;
+
+  /**
+   * @param alertService escalates the overdue alerts
+   * @param persistenceAdapter
+   * @param timerAdapter where the timers are re-armed
+   * @param clock optional. System UTC by default
+   * @param pageSize optional. Alerts read and processed together, {@link #DEFAULT_PAGE_SIZE} by default
+   * @param parallelism optional. Pages processed in parallel, the number of cores by default
+   * @param removeSemaphores removes all the semaphores before re-arming the timers. False when other nodes sharing
+   *                         the persistence are already running
+   */
+  @Builder
+  private AlertRecovery(AlertService alertService, PersistenceAdapter persistenceAdapter, TimerAdapter timerAdapter,
+      Clock clock, int pageSize, int parallelism, boolean removeSemaphores) {
+    this.alertService = alertService;
+    this.persistenceAdapter = persistenceAdapter;
+    this.timerAdapter = timerAdapter;
+    this.clock = clock != null ? clock : Clock.systemUTC();
+    this.pageSize = pageSize > 0 ? pageSize : DEFAULT_PAGE_SIZE;
+    this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    this.removeSemaphores = removeSemaphores;
+  }
+
+  @Data
+  public static class RecoveryResult {
+    private final int semaphoresRemoved;
+    private final long openAlerts;
+    private final long rearmed;
+    private final long overdue;
+    private final long deferred;
+    private final long failed;
+    private final long elapsedMs;
+  }
+
+  /**
+   * runs the recovery, blocking until all the pages are processed
+   * @return
+   */
+  public RecoveryResult recover() {
+    long startMs = clock.millis();
+    int semaphoresRemoved = removeSemaphores ? persistenceAdapter.removeAllSemaphores() : 0;
+
+    AtomicLong rearmed = new AtomicLong();
+    AtomicLong overdue = new AtomicLong();
+    AtomicLong deferred = new AtomicLong();
+    AtomicLong failed = new AtomicLong();
+    long openAlerts = 0;
+    //the recovery runs once on start up, so its own pool instead of sharing the common one with the events
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    Semaphore inFlight = new Semaphore(parallelism * 2);
+    try {
+      String afterId = null;
+      List<PagerAlert> page;
+      do {
+        page = persistenceAdapter.getOpenPagerAlerts(afterId, pageSize);
+        if (page.isEmpty()) {
+          break;
+        }
+        openAlerts += page.size();
+        afterId = page.get(page.size() - 1).getId();
+        inFlight.acquireUninterruptibly();
+        List<PagerAlert> alerts = page;
+        pool.execute(() -> {
+          try {
+            recoverPage(alerts, rearmed, overdue, deferred, failed);
+          } finally {
+            inFlight.release();
+          }
+        });
+      } while (page.size() == pageSize);
+    } finally {
+      pool.shutdown();
+      try {
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    RecoveryResult result = new RecoveryResult(semaphoresRemoved, openAlerts, rearmed.get(), overdue.get(),
+        deferred.get(), failed.get(), clock.millis() - startMs);
+    log.info("Recovered open alerts: [{}]", result);
+    return result;
+  }
+
+  private void recoverPage(List<PagerAlert> page, AtomicLong rearmed, AtomicLong overdue, AtomicLong deferred,
+      AtomicLong failed) {
+    long now = clock.millis();
+    List<String> overdueIds = new ArrayList<>();
+    for (PagerAlert pagerAlert : page) {
+      long dueTs = pagerAlert.getLastNotificationTs() + AlertService.ACK_TIMEOUT_MS;
+      if (dueTs <= now) {
+        overdueIds.add(pagerAlert.getId());
+        continue;
+      }
+      if (rearm(pagerAlert.getId(), dueTs)) {
+        rearmed.incrementAndGet();
+      } else {
+        failed.incrementAndGet();
+      }
+    }
+    if (!overdueIds.isEmpty()) {
+      //acknowledgementTimeouts logs and skips the failing alerts by itself
+      TimeoutsResult result = alertService.acknowledgementTimeouts(overdueIds);
+      overdue.addAndGet(overdueIds.size() - result.getContended().size() - result.getFailed().size());
+      for (String pagerAlertId : result.getContended()) {
+        if (rearm(pagerAlertId, now + AlertService.ACK_TIMEOUT_MS)) {
+          deferred.incrementAndGet();
+        } else {
+          failed.incrementAndGet();
+        }
+      }
+      for (String pagerAlertId : result.getFailed()) {
+        //retried by its next timeout
+        rearm(pagerAlertId, now + AlertService.ACK_TIMEOUT_MS);
+        failed.incrementAndGet();
+      }
+    }
+  }
+
+  private boolean rearm(String pagerAlertId, long dueTs) {
+    try {
+      timerAdapter.addTimerAt(pagerAlertId, dueTs);
+      return true;
+    } catch (RuntimeException e) {
+      log.error("Error re-arming the timer of alert: [{}]", pagerAlertId, e);
+      return false;
+    }
+  }
+}
@@ -4,56 +4,256 @@ package com.jp.aircall.domain.service;
 import com.jp.aircall.domain.adapters.EPAdapter;
 import com.jp.aircall.domain.adapters.MailAdapter;
 import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.adapters.SemaphoreAdapter;
 import com.jp.aircall.domain.adapters.SmsAdapter;
 import com.jp.aircall.domain.adapters.TimerAdapter;
+import com.jp.aircall.domain.adapters.policy.CachingEPAdapter;
+import com.jp.aircall.domain.adapters.policy.PolicyPlanProvider;
+import com.jp.aircall.domain.adapters.semaphore.PersistenceSemaphoreAdapter;
+import com.jp.aircall.domain.adapters.semaphore.SemaphoreLease;
 import com.jp.aircall.domain.error.AckAlertingAlreadyException;
 import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.metrics.AlertMetrics;
+import com.jp.aircall.domain.metrics.AlertMetrics.OPERATION;
+import com.jp.aircall.domain.metrics.AlertMetrics.OUTCOME;
+import com.jp.aircall.domain.metrics.jfr.AcknowledgementTimeoutEvent;
+import com.jp.aircall.domain.metrics.jfr.AlertTracing;
+import com.jp.aircall.domain.metrics.jfr.LevelNotifiedEvent;
+import com.jp.aircall.domain.metrics.jfr.TimerSetEvent;
 import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.AlertEvent.ALERT_DISPOSITION;
 import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ACK_DISPOSITION;
 import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
-import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.CompiledPolicy;
+import com.jp.aircall.domain.model.policy.CompiledPolicy.CompiledLevel;
 import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.HEALTHY_DISPOSITION;
 import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import com.jp.aircall.domain.service.notification.NotificationDispatcher;
+import com.jp.aircall.domain.service.notification.NotificationResult;
+import com.jp.aircall.domain.service.notification.SequentialNotificationDispatcher;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import lombok.RequiredArgsConstructor;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import lombok.Builder;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
-@RequiredArgsConstructor
 @Slf4j
 public class AlertService {
-  private static final long ACK_TIMEOUT_MS = 15 * 60 * 1000; //15 min
+  /** conditional writes tried on a service or alert before giving up, when the persistence supports them */
+  static final int MAX_VERSION_CONFLICTS = 5;
+  private static final int ACK_CONTENDED = -1;
+  public static final long ACK_TIMEOUT_MS = 15 * 60 * 1000; //15 min
 
-  private final EPAdapter epAdapter;
+  private final PolicyPlanProvider policyPlanProvider;
   private final PersistenceAdapter persistenceAdapter;
-  private final MailAdapter mailAdapter;
-  private final SmsAdapter smsAdapter;
   private final TimerAdapter timerAdapter;
+  private final SemaphoreAdapter semaphoreAdapter;
+  private final NotificationDispatcher notificationDispatcher;
+  private final ServiceHealthIndex serviceHealthIndex;
+  private final AlertMetrics metrics;
+  private final Clock clock;
+  private final ForkJoinPool bulkPool;
+  private final boolean versioned;
+
+  /** alerts of a batch of acknowledgement timeouts that weren't escalated */
+  @Data
+  public static class TimeoutsResult {
+    /** skipped because some other escalation held their semaphore */
+    private final List<String> contended;
+    /** whose escalation threw */
+    private final List<String> failed;
+  }
+
+  /**
+   * Uses the persistence semaphore tables as semaphores and notifies the targets sequentially on the caller thread
+   */
+  public AlertService(EPAdapter epAdapter, PersistenceAdapter persistenceAdapter, MailAdapter mailAdapter,
+      SmsAdapter smsAdapter, TimerAdapter timerAdapter) {
+    this(epAdapter, persistenceAdapter, mailAdapter, smsAdapter, timerAdapter, null, null, null, null, null, null, null);
+  }
+
+  /**
+   * Optional collaborators left unset get the same defaults than {@link #AlertService(EPAdapter, PersistenceAdapter, MailAdapter, SmsAdapter, TimerAdapter)}.
+   * The mail and sms adapters are not required when a notificationDispatcher is given. When no policyPlanProvider is given
+   * the epAdapter is used as such if it provides plans (e.g. {@link CachingEPAdapter}), otherwise the policy is compiled on
+   * every notification. Without serviceHealthIndex the status of the service is always read from persistence. Without
+   * alertMetrics nothing is measured. Without clock the system UTC clock is used. Without bulkPool the bulk operations
+   * run their independent persistence calls on the common pool; give a dedicated pool when those calls block for long
+   */
+  @Builder
+  private AlertService(EPAdapter epAdapter, PersistenceAdapter persistenceAdapter, MailAdapter mailAdapter,
+      SmsAdapter smsAdapter, TimerAdapter timerAdapter, SemaphoreAdapter semaphoreAdapter,
+      NotificationDispatcher notificationDispatcher, PolicyPlanProvider policyPlanProvider,
+      ServiceHealthIndex serviceHealthIndex, AlertMetrics alertMetrics, Clock clock, ForkJoinPool bulkPool) {
+    if (policyPlanProvider != null) {
+      this.policyPlanProvider = policyPlanProvider;
+    } else if (epAdapter instanceof PolicyPlanProvider) {
+      this.policyPlanProvider = (PolicyPlanProvider) epAdapter;
+    } else {
+      this.policyPlanProvider = serviceId -> epAdapter.getEpByServiceId(serviceId).map(CompiledPolicy::compile);
+    }
+    this.persistenceAdapter = persistenceAdapter;
+    this.timerAdapter = timerAdapter;
+    this.semaphoreAdapter = semaphoreAdapter != null ? semaphoreAdapter : new PersistenceSemaphoreAdapter(persistenceAdapter);
+    this.notificationDispatcher = notificationDispatcher != null ? notificationDispatcher
+        : new SequentialNotificationDispatcher(smsAdapter, mailAdapter);
+    this.serviceHealthIndex = serviceHealthIndex;
+    this.metrics = alertMetrics != null ? alertMetrics : AlertMetrics.DISABLED;
+    this.clock = clock != null ? clock : Clock.systemUTC();
+    this.bulkPool = bulkPool != null ? bulkPool : ForkJoinPool.commonPool();
+    this.versioned = persistenceAdapter != null && persistenceAdapter.supportsVersionedUpdates();
+  }
 
 
   /**
    * Process a new alert event from the Alerting Service.
    * @param alertEvent the received alert
+   * @return what has been done with the alert
    */
-  public void newAlert(AlertEvent alertEvent){
-    log.info("Received new alert event: [{}]", alertEvent);
+  public ALERT_DISPOSITION newAlert(AlertEvent alertEvent) {
+    long start = metrics.start();
+    try {
+      return doNewAlert(alertEvent);
+    } finally {
+      metrics.record(OPERATION.NEW_ALERT, start);
+    }
+  }
+
+  private ALERT_DISPOSITION doNewAlert(AlertEvent alertEvent) {
+    log.debug("Received new alert event: [{}]", alertEvent);
+    if (isKnownUnhealthy(alertEvent.getServiceId())) {
+      log.debug("Service [{}] already unhealthy. Ignoring alert [{}]", alertEvent.getServiceId(), alertEvent);
+      metrics.outcome(OUTCOME.IGNORED_UNHEALTHY);
+      return ALERT_DISPOSITION.SERVICE_UNHEALTHY;
+    }
 
     Optional<Service> serviceOpt = persistenceAdapter.getService(alertEvent.getServiceId());
     if (serviceOpt.isPresent()) {
       Service service = serviceOpt.get();
       switch (service.getStatus()) {
         case HEALTHY:
-          processAlert(alertEvent, service);
-          break;
+          return processAlert(alertEvent, service);
 
         case UNHEALTHY:
-          log.info("Service [{}] already unhealthy. Ignoring alert [{}]", alertEvent.getServiceId(), alertEvent);
-          break;
+        default:
+          /*not indexed: the status may have been read just before a concurrent serviceHealthy, which would be undone.
+          Only the transitions written by this service are indexed*/
+          log.debug("Service [{}] already unhealthy. Ignoring alert [{}]", alertEvent.getServiceId(), alertEvent);
+          metrics.outcome(OUTCOME.IGNORED_UNHEALTHY);
+          return ALERT_DISPOSITION.SERVICE_UNHEALTHY;
       }
     }else {
       log.warn("Service id not found:[{}]", alertEvent.getServiceId());
+      metrics.outcome(OUTCOME.SERVICE_NOT_FOUND);
+      return ALERT_DISPOSITION.SERVICE_NOT_FOUND;
     }
   }
 
+  /**
+   * Process a batch of alert events from the Alerting Service. The events are grouped by service and all the services
+   * are read at once. Only the first event of a healthy service is processed, the rest of events of that service are
+   * coalesced into it.
+   * @param alertEvents
+   * @return the disposition of every event, in the same order than the given events
+   */
+  public List<ALERT_DISPOSITION> newAlerts(List<AlertEvent> alertEvents) {
+    long start = metrics.start();
+    try {
+      return doNewAlerts(alertEvents);
+    } finally {
+      metrics.record(OPERATION.NEW_ALERTS, start);
+    }
+  }
+
+  private List<ALERT_DISPOSITION> doNewAlerts(List<AlertEvent> alertEvents) {
+    log.info("Received batch of [{}] alert events", alertEvents.size());
+    ALERT_DISPOSITION[] dispositions = new ALERT_DISPOSITION[alertEvents.size()];
+    Map<String, List<Integer>> eventsByService = new LinkedHashMap<>();
+    for (int i = 0; i < alertEvents.size(); i++) {
+      eventsByService.computeIfAbsent(alertEvents.get(i).getServiceId(), serviceId -> new ArrayList<>()).add(i);
+    }
+    Set<String> serviceIds = new HashSet<>(eventsByService.keySet());
+    serviceIds.removeIf(this::isKnownUnhealthy);
+    Map<String, Service> services = serviceIds.isEmpty() ? Map.of() : persistenceAdapter.getServices(serviceIds);
+
+    /*close the semaphores of the healthy services first, so all of them are set unhealthy in a single write. With
+    versioned updates every service is set unhealthy with its own conditional write instead, as the single events do,
+    so a batch and a single event of the same service never raise an alert both*/
+    List<Integer> claimedEvents = new ArrayList<>();
+    Map<String, SemaphoreLease> leases = new HashMap<>();
+    List<Service> unhealthyServices = new ArrayList<>();
+    for (Map.Entry<String, List<Integer>> serviceEvents : eventsByService.entrySet()) {
+      List<Integer> events = serviceEvents.getValue();
+      Service service = services.get(serviceEvents.getKey());
+      ALERT_DISPOSITION disposition;
+      if (!serviceIds.contains(serviceEvents.getKey())) {
+        disposition = ALERT_DISPOSITION.SERVICE_UNHEALTHY;
+      } else if (service == null) {
+        log.warn("Service id not found:[{}]", serviceEvents.getKey());
+        disposition = ALERT_DISPOSITION.SERVICE_NOT_FOUND;
+      } else if (service.getStatus() != SERVICE_STATUS.HEALTHY) {
+        //not indexed, see doNewAlert
+        disposition = ALERT_DISPOSITION.SERVICE_UNHEALTHY;
+      } else if (versioned) {
+        disposition = claimUnhealthyOrFail(service);
+        if (disposition == ALERT_DISPOSITION.PROCESSED) {
+          indexUnhealthy(service.getId());
+          claimedEvents.add(events.get(0));
+          disposition = ALERT_DISPOSITION.COALESCED;
+        }
+      } else {
+        SemaphoreLease lease = checkAndCloseAlertingServiceSemaphore(service.getId());
+        if (lease != null) {
+          leases.put(service.getId(), lease);
+          claimedEvents.add(events.get(0));
+          service.setStatus(SERVICE_STATUS.UNHEALTHY);
+          unhealthyServices.add(service);
+          disposition = ALERT_DISPOSITION.COALESCED;
+        } else {
+          disposition = ALERT_DISPOSITION.ALREADY_PROCESSING;
+        }
+      }
+      for (int event : events) {
+        dispositions[event] = disposition;
+        countOutcome(disposition);
+      }
+    }
+
+    try {
+      if (!unhealthyServices.isEmpty()) {
+        persistenceAdapter.updateServices(unhealthyServices);
+        unhealthyServices.forEach(service -> indexUnhealthy(service.getId()));
+      }
+      for (int event : claimedEvents) {
+        AlertEvent alertEvent = alertEvents.get(event);
+        try {
+          boolean raised = raiseAlert(alertEvent, services.get(alertEvent.getServiceId()),
+              leases.get(alertEvent.getServiceId()));
+          dispositions[event] = raised ? ALERT_DISPOSITION.PROCESSED : ALERT_DISPOSITION.ALREADY_PROCESSING;
+        } catch (RuntimeException e) {
+          log.error("Error processing alert [{}]", alertEvent, e);
+          dispositions[event] = ALERT_DISPOSITION.FAILED;
+        }
+      }
+    } finally {
+      leases.values().forEach(this::openSemaphore);
+    }
+    return Arrays.asList(dispositions);
+  }
+
   /**
    * receives an alert acknowledgement. If the alert status was open set it to Acknowledgement and updates it on the DB.
    * If not, ignore acknowledgement.
@@ -62,28 +262,167 @@ public class AlertService {
    * problem to set twice the status to acknowledgement to the same id
    * @param pagerAlertId
    */
-  public void alertAcknowledgement(String pagerAlertId){
-    log.info("Received alert acknowledgement: [{}]", pagerAlertId);
+  public void alertAcknowledgement(String pagerAlertId) {
+    long start = metrics.start();
+    try {
+      doAlertAcknowledgement(pagerAlertId);
+    } finally {
+      metrics.record(OPERATION.ALERT_ACKNOWLEDGEMENT, start);
+    }
+  }
+
+  private void doAlertAcknowledgement(String pagerAlertId) {
+    log.debug("Received alert acknowledgement: [{}]", pagerAlertId);
     Optional<PagerAlert> pagerAlertOpt = persistenceAdapter.getPagerAlert(pagerAlertId);
     if (pagerAlertOpt.isPresent()) {
       PagerAlert pagerAlert = pagerAlertOpt.get();
       switch (pagerAlert.getStatus()) {
         case OPEN:
-          pagerAlert.setAcknowledgmentTs(System.currentTimeMillis());
-          pagerAlert.setStatus(ALERT_STATUS.ACKNOWLEDGED);
-          persistenceAdapter.updatePagerAlert(pagerAlert);
+          if (acknowledge(pagerAlertId, pagerAlert) == ACK_DISPOSITION.ACKNOWLEDGED) {
+            timerAdapter.cancelTimer(pagerAlertId); //the timeout would be ignored anyway
+            AlertTracing.alertAcknowledged(pagerAlertId, pagerAlert.getServiceId());
+          }
           break;
 
         case ACKNOWLEDGED:
           log.debug("Pager alert already acknowledged [{}]", pagerAlert);
+          metrics.outcome(OUTCOME.ACK_ALREADY_ACKNOWLEDGED);
           break;
 
         case CLOSED:
           log.debug("Pager alert already closed [{}]", pagerAlert);
+          metrics.outcome(OUTCOME.ACK_ALREADY_CLOSED);
           break;
       }
     }else {
-      log.warn("Pager alert id not found:"+pagerAlertId);
+      log.warn("Pager alert id not found:[{}]", pagerAlertId);
+      metrics.outcome(OUTCOME.ALERT_NOT_FOUND);
+    }
+  }
+
+
+  /**
+   * sets the given OPEN alert acknowledged. With versioned updates a conflicting write is retried on the re-read alert
+   * while it keeps OPEN
+   * @return ACKNOWLEDGED, or what was found if the alert was acknowledged, closed or removed meanwhile
+   */
+  private ACK_DISPOSITION acknowledge(String pagerAlertId, PagerAlert pagerAlert) {
+    if (!versioned) {
+      pagerAlert.setAcknowledgmentTs(clock.millis());
+      pagerAlert.setStatus(ALERT_STATUS.ACKNOWLEDGED);
+      persistenceAdapter.updatePagerAlert(pagerAlert);
+      return ACK_DISPOSITION.ACKNOWLEDGED;
+    }
+    for (int attempt = 0; attempt < MAX_VERSION_CONFLICTS; attempt++) {
+      long version = pagerAlert.getVersion();
+      pagerAlert.setAcknowledgmentTs(clock.millis());
+      pagerAlert.setStatus(ALERT_STATUS.ACKNOWLEDGED);
+      if (persistenceAdapter.updatePagerAlertIfVersion(pagerAlert, version)) {
+        return ACK_DISPOSITION.ACKNOWLEDGED;
+      }
+      metrics.outcome(OUTCOME.VERSION_CONFLICT);
+      Optional<PagerAlert> current = persistenceAdapter.getPagerAlert(pagerAlertId);
+      if (current.isEmpty()) {
+        return ACK_DISPOSITION.NOT_FOUND;
+      }
+      if (current.get().getStatus() != ALERT_STATUS.OPEN) {
+        log.debug("Pager alert acknowledged or closed meanwhile [{}]", pagerAlertId);
+        return current.get().getStatus() == ALERT_STATUS.ACKNOWLEDGED ? ACK_DISPOSITION.ALREADY_ACKNOWLEDGED
+            : ACK_DISPOSITION.ALREADY_CLOSED;
+      }
+      pagerAlert = current.get();
+    }
+    throw new IllegalStateException("Pager alert [" + pagerAlertId + "] kept changing while acknowledging it");
+  }
+
+
+  /**
+   * Bulk version of {@link #alertAcknowledgement(String)}, e.g. when an incident is resolved: all the alerts are read in a
+   * single call and all the acknowledged ones written in a single call. With versioned updates every alert is
+   * acknowledged with its own conditional write instead, so an escalation claimed meanwhile is not overwritten
+   * @param pagerAlertIds
+   * @return the disposition of every id, in the same order than the given ids
+   */
+  public Map<String, ACK_DISPOSITION> alertAcknowledgements(Collection<String> pagerAlertIds) {
+    long start = metrics.start();
+    try {
+      return doAlertAcknowledgements(pagerAlertIds);
+    } finally {
+      metrics.record(OPERATION.ALERT_ACKNOWLEDGEMENTS, start);
+    }
+  }
+
+  private Map<String, ACK_DISPOSITION> doAlertAcknowledgements(Collection<String> pagerAlertIds) {
+    log.info("Received batch of [{}] alert acknowledgements", pagerAlertIds.size());
+    Map<String, ACK_DISPOSITION> dispositions = new LinkedHashMap<>();
+    Map<String, PagerAlert> pagerAlerts = pagerAlertIds.isEmpty() ? Map.of() : persistenceAdapter.getPagerAlerts(pagerAlertIds);
+    List<PagerAlert> acknowledged = new ArrayList<>();
+    long now = clock.millis();
+    for (String pagerAlertId : pagerAlertIds) {
+      if (dispositions.containsKey(pagerAlertId)) {
+        continue;
+      }
+      PagerAlert pagerAlert = pagerAlerts.get(pagerAlertId);
+      ACK_DISPOSITION disposition;
+      if (pagerAlert == null) {
+        log.warn("Pager alert id not found:[{}]", pagerAlertId);
+        metrics.outcome(OUTCOME.ALERT_NOT_FOUND);
+        disposition = ACK_DISPOSITION.NOT_FOUND;
+      } else {
+        switch (pagerAlert.getStatus()) {
+          case OPEN:
+            if (versioned) {
+              disposition = acknowledgeOrFail(pagerAlertId, pagerAlert);
+              break;
+            }
+            pagerAlert.setAcknowledgmentTs(now);
+            pagerAlert.setStatus(ALERT_STATUS.ACKNOWLEDGED);
+            acknowledged.add(pagerAlert);
+            disposition = ACK_DISPOSITION.ACKNOWLEDGED;
+            break;
+
+          case ACKNOWLEDGED:
+            metrics.outcome(OUTCOME.ACK_ALREADY_ACKNOWLEDGED);
+            disposition = ACK_DISPOSITION.ALREADY_ACKNOWLEDGED;
+            break;
+
+          case CLOSED:
+          default:
+            metrics.outcome(OUTCOME.ACK_ALREADY_CLOSED);
+            disposition = ACK_DISPOSITION.ALREADY_CLOSED;
+            break;
+        }
+      }
+      dispositions.put(pagerAlertId, disposition);
+    }
+
+    if (!acknowledged.isEmpty()) {
+      try {
+        persistenceAdapter.updatePagerAlerts(acknowledged);
+        for (PagerAlert pagerAlert : acknowledged) {
+          timerAdapter.cancelTimer(pagerAlert.getId()); //the timeout would be ignored anyway
+          AlertTracing.alertAcknowledged(pagerAlert.getId(), pagerAlert.getServiceId());
+        }
+      } catch (RuntimeException e) {
+        log.error("Error acknowledging [{}] alerts", acknowledged.size(), e);
+        acknowledged.forEach(pagerAlert -> dispositions.put(pagerAlert.getId(), ACK_DISPOSITION.FAILED));
+      }
+    }
+    return dispositions;
+  }
+
+  /** acknowledges one alert of a batch with versioned updates */
+  private ACK_DISPOSITION acknowledgeOrFail(String pagerAlertId, PagerAlert pagerAlert) {
+    try {
+      ACK_DISPOSITION disposition = acknowledge(pagerAlertId, pagerAlert);
+      if (disposition == ACK_DISPOSITION.ACKNOWLEDGED) {
+        timerAdapter.cancelTimer(pagerAlertId); //the timeout would be ignored anyway
+        AlertTracing.alertAcknowledged(pagerAlertId, pagerAlert.getServiceId());
+      }
+      return disposition;
+    } catch (RuntimeException e) {
+      log.error("Error acknowledging alert [{}]", pagerAlertId, e);
+      return ACK_DISPOSITION.FAILED;
     }
   }
 
@@ -93,29 +432,147 @@ public class AlertService {
    * Note: This method does not care about concurrency because is not a problem to set a service healthy twice
    * @param serviceId
    */
-  public void serviceHealthy(String serviceId){
-    log.info("Received service healthy for service id:[{}]", serviceId);
+  public void serviceHealthy(String serviceId) {
+    long start = metrics.start();
+    try {
+      doServiceHealthy(serviceId);
+    } finally {
+      metrics.record(OPERATION.SERVICE_HEALTHY, start);
+    }
+  }
+
+  private void doServiceHealthy(String serviceId) {
+    log.debug("Received service healthy for service id:[{}]", serviceId);
     Optional<Service> serviceOpt = persistenceAdapter.getService(serviceId);
     if (serviceOpt.isPresent()) {
       Service service = serviceOpt.get();
       switch (service.getStatus()) {
         case HEALTHY:
           log.debug("Service already healthy: [{}]", service);
+          indexHealthy(serviceId);
           break;
 
         case UNHEALTHY:
           /*in order to avoid de-synchronizations between alerts and service status would be better if this fragment of code
           be transactional at DB level. But anyway, if some error occurs between closing alerts and setting service status to healthy won't be
           a real problem for this pager because #acknowledgementTimeout check alert status in order to notify next levels*/
-          persistenceAdapter.closeAllServiceAlerts(serviceId);
+          List<String> closedAlertIds = persistenceAdapter.closeAllServiceAlerts(serviceId);
+          closeAlertTimers(serviceId, closedAlertIds);
 
-          service.setStatus(SERVICE_STATUS.HEALTHY);
-          persistenceAdapter.updateService(service);
+          setHealthy(service);
+          indexHealthy(serviceId);
           break;
       }
     }else {
       log.warn("Service id not found:[{}]", serviceId);
+      metrics.outcome(OUTCOME.SERVICE_NOT_FOUND);
+    }
+  }
+
+
+  /**
+   * sets healthy the given service, whose alerts have been just closed. With versioned updates a conflicting write is
+   * retried on the re-read service, closing again the alerts raised meanwhile, while it keeps UNHEALTHY
+   */
+  private void setHealthy(Service service) {
+    if (!versioned) {
+      service.setStatus(SERVICE_STATUS.HEALTHY);
+      persistenceAdapter.updateService(service);
+      return;
+    }
+    for (int attempt = 0; attempt < MAX_VERSION_CONFLICTS; attempt++) {
+      long version = service.getVersion();
+      service.setStatus(SERVICE_STATUS.HEALTHY);
+      if (persistenceAdapter.updateServiceIfVersion(service, version)) {
+        return;
+      }
+      metrics.outcome(OUTCOME.VERSION_CONFLICT);
+      Optional<Service> current = persistenceAdapter.getService(service.getId());
+      if (current.isEmpty() || current.get().getStatus() == SERVICE_STATUS.HEALTHY) {
+        log.debug("Service set healthy meanwhile [{}]", service.getId());
+        return;
+      }
+      service = current.get();
+      closeAlertTimers(service.getId(), persistenceAdapter.closeAllServiceAlerts(service.getId()));
+    }
+    throw new IllegalStateException("Service [" + service.getId() + "] kept changing while setting it healthy");
+  }
+
+
+  /**
+   * Bulk version of {@link #serviceHealthy(String)}: all the services are read in a single call, the alerts of the
+   * unhealthy ones are closed in parallel on the bulk pool, as every service is independent of the rest, and all of them
+   * are set healthy in a single call. A service whose alerts can't be closed keeps unhealthy. With versioned updates
+   * every service is set healthy with its own conditional write instead, closing again the alerts raised meanwhile
+   * @param serviceIds
+   * @return the disposition of every id, in the same order than the given ids
+   */
+  public Map<String, HEALTHY_DISPOSITION> servicesHealthy(Collection<String> serviceIds) {
+    long start = metrics.start();
+    try {
+      return doServicesHealthy(serviceIds);
+    } finally {
+      metrics.record(OPERATION.SERVICES_HEALTHY, start);
+    }
+  }
+
+  private Map<String, HEALTHY_DISPOSITION> doServicesHealthy(Collection<String> serviceIds) {
+    log.info("Received batch of [{}] service healthy events", serviceIds.size());
+    Map<String, HEALTHY_DISPOSITION> dispositions = new LinkedHashMap<>();
+    Map<String, Service> services = serviceIds.isEmpty() ? Map.of() : persistenceAdapter.getServices(serviceIds);
+    List<Service> unhealthyServices = new ArrayList<>();
+    for (String serviceId : serviceIds) {
+      if (dispositions.containsKey(serviceId)) {
+        continue;
+      }
+      Service service = services.get(serviceId);
+      if (service == null) {
+        log.warn("Service id not found:[{}]", serviceId);
+        metrics.outcome(OUTCOME.SERVICE_NOT_FOUND);
+        dispositions.put(serviceId, HEALTHY_DISPOSITION.SERVICE_NOT_FOUND);
+      } else if (service.getStatus() == SERVICE_STATUS.HEALTHY) {
+        indexHealthy(serviceId);
+        dispositions.put(serviceId, HEALTHY_DISPOSITION.ALREADY_HEALTHY);
+      } else {
+        unhealthyServices.add(service);
+        dispositions.put(serviceId, HEALTHY_DISPOSITION.FAILED); //until it is set healthy
+      }
+    }
+
+    List<ForkJoinTask<List<String>>> closures = new ArrayList<>(unhealthyServices.size());
+    for (Service service : unhealthyServices) {
+      closures.add(bulkPool.submit(() -> persistenceAdapter.closeAllServiceAlerts(service.getId())));
+    }
+    List<Service> healthyServices = new ArrayList<>(unhealthyServices.size());
+    for (int i = 0; i < unhealthyServices.size(); i++) {
+      Service service = unhealthyServices.get(i);
+      try {
+        closeAlertTimers(service.getId(), closures.get(i).join());
+        if (versioned) {
+          setHealthy(service);
+          indexHealthy(service.getId());
+          dispositions.put(service.getId(), HEALTHY_DISPOSITION.SET_HEALTHY);
+        } else {
+          service.setStatus(SERVICE_STATUS.HEALTHY);
+          healthyServices.add(service);
+        }
+      } catch (RuntimeException e) {
+        log.error("Error setting healthy service [{}]", service.getId(), e);
+      }
+    }
+
+    if (!healthyServices.isEmpty()) {
+      try {
+        persistenceAdapter.updateServices(healthyServices);
+        for (Service service : healthyServices) {
+          indexHealthy(service.getId());
+          dispositions.put(service.getId(), HEALTHY_DISPOSITION.SET_HEALTHY);
+        }
+      } catch (RuntimeException e) {
+        log.error("Error setting healthy [{}] services", healthyServices.size(), e);
+      }
     }
+    return dispositions;
   }
 
 
@@ -124,15 +581,32 @@ public class AlertService {
    * @param pagerAlertId
    */
   public void acknowledgementTimeout(String pagerAlertId) {
-    log.info("Received acknowledgement timeout for alert: [{}]", pagerAlertId);
+    timeoutAcknowledgement(pagerAlertId);
+  }
+
+  /** @return true if the timeout was skipped because some other escalation of the alert held its semaphore */
+  private boolean timeoutAcknowledgement(String pagerAlertId) {
+    long start = metrics.start();
+    try {
+      return doAcknowledgementTimeout(pagerAlertId);
+    } finally {
+      metrics.record(OPERATION.ACKNOWLEDGEMENT_TIMEOUT, start);
+    }
+  }
+
+  private boolean doAcknowledgementTimeout(String pagerAlertId) {
+    log.debug("Received acknowledgement timeout for alert: [{}]", pagerAlertId);
+    AcknowledgementTimeoutEvent event = AlertTracing.beginAcknowledgementTimeout();
     Optional<PagerAlert> pagerAlertOpt = persistenceAdapter.getPagerAlert(pagerAlertId);
     if (pagerAlertOpt.isPresent()){
       PagerAlert pagerAlert = pagerAlertOpt.get();
-      switch (pagerAlert.getStatus()){
+      ALERT_STATUS status = pagerAlert.getStatus();
+      int escalatedLevel = 0;
+      switch (status){
         case OPEN:
           //it is not required to check service health status because all service alerts are closed when service healthy event
           //is received. So, if some alert is open means that service is unhealthy
-          processAckTimeout(pagerAlertId, pagerAlert);
+          escalatedLevel = processAckTimeout(pagerAlertId, pagerAlert);
           break;
 
         case ACKNOWLEDGED:
@@ -145,140 +619,401 @@ public class AlertService {
           log.debug("Alert already closed: [{}]", pagerAlert);
           break;
       }
+      AlertTracing.acknowledgementTimeout(event, pagerAlertId, pagerAlert.getServiceId(), status.name(),
+          Math.max(escalatedLevel, 0));
+      return escalatedLevel == ACK_CONTENDED;
 
     }else {
       log.error("Not found pager alert id:[{}]", pagerAlertId);
+      metrics.outcome(OUTCOME.ALERT_NOT_FOUND);
+      AlertTracing.acknowledgementTimeout(event, pagerAlertId, null, AlertTracing.NOT_FOUND, 0);
+      return false;
     }
   }
 
-  private void processAckTimeout(String pagerAlertId, PagerAlert pagerAlert) {
-    if (pagerAlert.getLastNotificationTs() > (System.currentTimeMillis() - ACK_TIMEOUT_MS)){
-      log.warn("This alert [{}] was already notified in the last 15 min. Ignoring ack", pagerAlert);
-      return;
+  /**
+   * process a batch of acknowledgement timeouts, e.g. all the timers expired in the same tick of the timer
+   * @param pagerAlertIds
+   * @return the ids of the alerts skipped because some other escalation held their semaphore, and of the ones whose
+   * escalation failed. The timer of none of them is set again by this call, which is fine for the contended ones when
+   * the holder is alive but leaves them without timer when the semaphore was orphaned by a dead JVM, so callers
+   * re-arming timers (e.g. on start up) may want to set it again
+   */
+  public TimeoutsResult acknowledgementTimeouts(Collection<String> pagerAlertIds) {
+    long start = metrics.start();
+    try {
+      return doAcknowledgementTimeouts(pagerAlertIds);
+    } finally {
+      metrics.record(OPERATION.ACKNOWLEDGEMENT_TIMEOUTS, start);
     }
+  }
 
-    if (checkAndCloseAckSemaphore(pagerAlertId)) {
+  private TimeoutsResult doAcknowledgementTimeouts(Collection<String> pagerAlertIds) {
+    List<String> contended = List.of();
+    List<String> failed = List.of();
+    for (String pagerAlertId : pagerAlertIds) {
+      try {
+        if (timeoutAcknowledgement(pagerAlertId)) {
+          if (contended.isEmpty()) {
+            contended = new ArrayList<>();
+          }
+          contended.add(pagerAlertId);
+        }
+      } catch (RuntimeException e) {
+        //one failing alert must not prevent the escalation of the rest of the batch
+        log.error("Error processing acknowledgement timeout for alert: [{}]", pagerAlertId, e);
+        if (failed.isEmpty()) {
+          failed = new ArrayList<>();
+        }
+        failed.add(pagerAlertId);
+      }
+    }
+    return new TimeoutsResult(contended, failed);
+  }
+
+  /** @return the level notified, 0 if none, {@link #ACK_CONTENDED} if the ack semaphore was held */
+  private int processAckTimeout(String pagerAlertId, PagerAlert pagerAlert) {
+    if (versioned) {
+      return processAckTimeoutVersioned(pagerAlertId, pagerAlert);
+    }
+    if (pagerAlert.getLastNotificationTs() > (clock.millis() - ACK_TIMEOUT_MS)){
+      log.warn("This alert [{}] was already notified in the last 15 min. Ignoring ack", pagerAlertId);
+      return 0;
+    }
+
+    SemaphoreLease lease = checkAndCloseAckSemaphore(pagerAlert);
+    if (lease != null) {
       try {
         int nextLevel = pagerAlert.getLevelNotified() + 1;
+        int escalatedLevel = 0;
 
-        if (notifyLevel(pagerAlert.getServiceId(), nextLevel)) {
-          pagerAlert.setLastNotificationTs(System.currentTimeMillis());
+        boolean notified = notifyLevel(pagerAlertId, pagerAlert.getServiceId(), nextLevel);
+        if (!holdsLease(lease)) {
+          //taken over while notifying: the new holder escalates it, so we don't overwrite it nor set a second timer
+          return 0;
+        }
+        if (notified) {
+          pagerAlert.setLastNotificationTs(clock.millis());
           pagerAlert.setLevelNotified(nextLevel);
           persistenceAdapter.updatePagerAlert(pagerAlert);
+          metrics.outcome(OUTCOME.LEVEL_ESCALATED);
+          escalatedLevel = nextLevel;
         }
 
         /* Note: as it is not clear in the specification how to do with timer in this case I decide to set it up anyway
         because it enables to notify further levels added to the policy meanwhile the alert is not closed    */
-        setTimer(pagerAlertId);
+        setTimer(pagerAlertId, pagerAlert.getServiceId());
+        return escalatedLevel;
       }finally {
-        openAckSemaphore(pagerAlertId);
+        openSemaphore(lease);
       }
     }
+    return ACK_CONTENDED;
   }
 
 
-  private void processAlert(AlertEvent alertEvent, Service service) {
-    if (checkAndCloseAlertingServiceSemaphore(alertEvent.getServiceId())) {
+  /**
+   * Same as the semaphore version but the escalation is claimed with a single conditional write of the next level before
+   * notifying it: only one of several concurrent timeouts of the alert wins it, and an acknowledgement or a closure
+   * written meanwhile makes it lose too. If no target of the level is notified the claim is given back, so the next
+   * timeout tries the level again
+   * @return the level notified, 0 if none
+   */
+  private int processAckTimeoutVersioned(String pagerAlertId, PagerAlert pagerAlert) {
+    for (int attempt = 0; attempt < MAX_VERSION_CONFLICTS; attempt++) {
+      if (pagerAlert.getStatus() != ALERT_STATUS.OPEN) {
+        log.debug("Alert acknowledged or closed meanwhile: [{}]", pagerAlertId);
+        return 0;
+      }
+      if (pagerAlert.getLastNotificationTs() > (clock.millis() - ACK_TIMEOUT_MS)) {
+        log.warn("This alert [{}] was already notified in the last 15 min. Ignoring ack", pagerAlertId);
+        return 0;
+      }
+      long version = pagerAlert.getVersion();
+      int previousLevel = pagerAlert.getLevelNotified();
+      long previousNotificationTs = pagerAlert.getLastNotificationTs();
+      int nextLevel = previousLevel + 1;
+      pagerAlert.setLevelNotified(nextLevel);
+      pagerAlert.setLastNotificationTs(clock.millis());
+      if (persistenceAdapter.updatePagerAlertIfVersion(pagerAlert, version)) {
+        int escalatedLevel = 0;
+        boolean notified;
+        try {
+          notified = notifyLevel(pagerAlertId, pagerAlert.getServiceId(), nextLevel);
+        } catch (RuntimeException e) {
+          //given back, so the level is tried again by the next timeout instead of being skipped
+          giveBackLevel(pagerAlert, previousLevel, previousNotificationTs);
+          throw e;
+        }
+        if (notified) {
+          metrics.outcome(OUTCOME.LEVEL_ESCALATED);
+          escalatedLevel = nextLevel;
+        } else {
+          giveBackLevel(pagerAlert, previousLevel, previousNotificationTs);
+        }
+        //set up anyway, see processAckTimeout
+        setTimer(pagerAlertId, pagerAlert.getServiceId());
+        return escalatedLevel;
+      }
+      metrics.outcome(OUTCOME.VERSION_CONFLICT);
+      Optional<PagerAlert> current = persistenceAdapter.getPagerAlert(pagerAlertId);
+      if (current.isEmpty()) {
+        return 0;
+      }
+      pagerAlert = current.get();
+    }
+    throw new IllegalStateException("Pager alert [" + pagerAlertId + "] kept changing while escalating it");
+  }
+
+
+  private void giveBackLevel(PagerAlert pagerAlert, int previousLevel, long previousNotificationTs) {
+    pagerAlert.setLevelNotified(previousLevel);
+    pagerAlert.setLastNotificationTs(previousNotificationTs);
+    //lost if it has been acknowledged or closed meanwhile, which is fine
+    persistenceAdapter.updatePagerAlertIfVersion(pagerAlert, pagerAlert.getVersion());
+  }
+
+
+  private ALERT_DISPOSITION processAlert(AlertEvent alertEvent, Service service) {
+    if (versioned) {
+      return processAlertVersioned(alertEvent, service);
+    }
+    SemaphoreLease lease = checkAndCloseAlertingServiceSemaphore(alertEvent.getServiceId());
+    if (lease != null) {
       try {
         //mark services as unhealthy
         service.setStatus(SERVICE_STATUS.UNHEALTHY);
         persistenceAdapter.updateService(service);
+        indexUnhealthy(service.getId());
 
-        boolean notified = notifyLevel(service.getId(), 1);
-        String id = savePagerAlert(alertEvent, notified);
-        setTimer(id);
+        return raiseAlert(alertEvent, service, lease) ? ALERT_DISPOSITION.PROCESSED : ALERT_DISPOSITION.ALREADY_PROCESSING;
       }finally {
-        openAlertingSemaphore(alertEvent); //ensure the semaphore is opened at the end
+        openSemaphore(lease); //ensure the semaphore is opened at the end
+      }
+    }
+    return ALERT_DISPOSITION.ALREADY_PROCESSING;
+  }
+
+  /**
+   * Same as the semaphore version but the service is set unhealthy with a conditional write: only one of several
+   * concurrent alerts of the service wins the transition and raises its alert
+   */
+  private ALERT_DISPOSITION processAlertVersioned(AlertEvent alertEvent, Service service) {
+    ALERT_DISPOSITION disposition = claimUnhealthy(service);
+    if (disposition == ALERT_DISPOSITION.PROCESSED) {
+      indexUnhealthy(service.getId());
+      raiseAlert(alertEvent, service, null);
+    } else if (disposition == ALERT_DISPOSITION.SERVICE_NOT_FOUND) {
+      metrics.outcome(OUTCOME.SERVICE_NOT_FOUND);
+    }
+    return disposition;
+  }
+
+  /**
+   * sets unhealthy the given HEALTHY service with a conditional write, retried on the re-read service while it keeps
+   * HEALTHY. The given service is refreshed with the re-read one
+   * @return PROCESSED if this call set it unhealthy, ALREADY_PROCESSING if some other alert did it meanwhile
+   */
+  private ALERT_DISPOSITION claimUnhealthy(Service service) {
+    for (int attempt = 0; attempt < MAX_VERSION_CONFLICTS; attempt++) {
+      long version = service.getVersion();
+      service.setStatus(SERVICE_STATUS.UNHEALTHY);
+      if (persistenceAdapter.updateServiceIfVersion(service, version)) {
+        return ALERT_DISPOSITION.PROCESSED;
+      }
+      metrics.outcome(OUTCOME.VERSION_CONFLICT);
+      Optional<Service> current = persistenceAdapter.getService(service.getId());
+      if (current.isEmpty()) {
+        return ALERT_DISPOSITION.SERVICE_NOT_FOUND;
+      }
+      if (current.get().getStatus() != SERVICE_STATUS.HEALTHY) {
+        log.debug("Some other alert of the given service [{}] has been processed meanwhile so this alert will be discarded",
+            service.getId());
+        return ALERT_DISPOSITION.ALREADY_PROCESSING;
       }
+      service.setStatus(current.get().getStatus());
+      service.setDescription(current.get().getDescription());
+      service.setVersion(current.get().getVersion());
+    }
+    throw new IllegalStateException("Service [" + service.getId() + "] kept changing while processing alert");
+  }
+
+  /** {@link #claimUnhealthy(Service)} for one service of a batch */
+  private ALERT_DISPOSITION claimUnhealthyOrFail(Service service) {
+    try {
+      return claimUnhealthy(service);
+    } catch (RuntimeException e) {
+      log.error("Error setting unhealthy service [{}]", service.getId(), e);
+      return ALERT_DISPOSITION.FAILED;
+    }
+  }
+
+  /**
+   * notifies the first level of an alert whose service has been just set unhealthy
+   * @param lease the alerting service semaphore held, renewed before saving the alert. Null with versioned updates
+   * @return false if the lease was taken over while notifying, so the alert was neither saved nor its timer set
+   */
+  private boolean raiseAlert(AlertEvent alertEvent, Service service, SemaphoreLease lease) {
+    //created before notifying, so the notification is traced with the id of the alert
+    PagerAlert pagerAlert = new PagerAlert(alertEvent.getServiceId(), alertEvent.getMessage(), ALERT_STATUS.OPEN, 0, 0, 0);
+    boolean notified = notifyLevel(pagerAlert.getId(), service.getId(), 1);
+    if (lease != null && !holdsLease(lease)) {
+      return false;
     }
+    savePagerAlert(pagerAlert, notified);
+    AlertTracing.alertCreated(pagerAlert.getId(), pagerAlert.getServiceId(), pagerAlert.getLevelNotified());
+    setTimer(pagerAlert.getId(), pagerAlert.getServiceId());
+    metrics.outcome(OUTCOME.ALERT_RAISED);
+    return true;
   }
 
 
   /**
-   * notify the given level for the given service. Returns true if some target has been notified. False if there are no policies
-   * or all target has been already notified
+   * notify the given level for the given service. Returns true if some target has been (or will be, when digested) notified. False if there are no policies,
+   * all target has been already notified or no target of the level could be notified
+   * @param pagerAlertId only for tracing
    * @param serviceId
    * @param level
    * @return
    */
-  private boolean notifyLevel(String serviceId, int level) {
-    Optional<EscalationPolicy> epOpt = epAdapter.getEpByServiceId(serviceId);
-    if (epOpt.isPresent()) {
-      EscalationPolicy ep = epOpt.get();
-      if (ep.getLevels().size() >= level) {
-        ep.getLevels().get(level - 1).getTargets().forEach(target -> {  //first level is 1
-          switch (target.getType()) {
-            case SMS:
-              smsAdapter.sendNotification(target.getValue());
-              break;
-            case EMAIL:
-              mailAdapter.sendNotification(target.getValue());
-              break;
+  private boolean notifyLevel(String pagerAlertId, String serviceId, int level) {
+    LevelNotifiedEvent event = AlertTracing.beginLevelNotified();
+    Optional<CompiledPolicy> planOpt = policyPlanProvider.getPlanByServiceId(serviceId);
+    if (planOpt.isPresent()) {
+      CompiledPolicy plan = planOpt.get();
+      if (plan.getLevelCount() >= level) {
+        CompiledLevel compiledLevel = plan.getLevel(level);  //first level is 1
+        if (compiledLevel.isEmpty()) {
+          return traceLevel(event, pagerAlertId, serviceId, level, 0, true);
+        }
+        List<NotificationResult> results = notificationDispatcher.dispatch(serviceId, level, compiledLevel);
+        for (int i = 0; i < results.size(); i++) {
+          if (results.get(i).isAccepted()) {
+            return traceLevel(event, pagerAlertId, serviceId, level, compiledLevel.getTargetCount(), true);
           }
-        });
-        return true;
+        }
+        log.error("No target of level [{}] could be notified for service [{}]: {}", level, serviceId, results);
+        metrics.outcome(OUTCOME.NO_TARGET_NOTIFIED);
+        return traceLevel(event, pagerAlertId, serviceId, level, compiledLevel.getTargetCount(), false);
       } else {
-        log.debug("All levels has been notified for service [{}]- EscalationPolicy:][{}]", serviceId, ep);
-        return false;
+        log.debug("All levels has been notified for service [{}]- EscalationPolicy:][{}]", serviceId, plan);
+        metrics.outcome(OUTCOME.ALL_LEVELS_NOTIFIED);
+        return traceLevel(event, pagerAlertId, serviceId, level, 0, false);
       }
     }else {
       log.error("Not found any escalation policy for serviceId:[{}]", serviceId);
-      return false;
+      metrics.outcome(OUTCOME.POLICY_MISSING);
+      return traceLevel(event, pagerAlertId, serviceId, level, 0, false);
     }
   }
 
+  private static boolean traceLevel(LevelNotifiedEvent event, String pagerAlertId, String serviceId, int level,
+      int targets, boolean notified) {
+    AlertTracing.levelNotified(event, pagerAlertId, serviceId, level, targets, notified);
+    return notified;
+  }
+
 
-  private String savePagerAlert(AlertEvent alertEvent, boolean notified) {
-    long now = System.currentTimeMillis();
-    long lastNotifTs = notified ? now : 0;
-    int level = notified ? 1: 0;
-    PagerAlert pagerAlert =
-        new PagerAlert(alertEvent.getServiceId(), alertEvent.getMessage(), ALERT_STATUS.OPEN, level, now, lastNotifTs);
+  private void savePagerAlert(PagerAlert pagerAlert, boolean notified) {
+    long now = clock.millis();
+    pagerAlert.setCreationTs(now);
+    if (notified) {
+      pagerAlert.setLevelNotified(1);
+      pagerAlert.setLastNotificationTs(now);
+    }
     persistenceAdapter.savePagerAlert(pagerAlert);
-    return pagerAlert.getId();
   }
 
-  private void setTimer(String id) {
-    timerAdapter.add15MinutesTimer(id);
+  private boolean isKnownUnhealthy(String serviceId) {
+    return serviceHealthIndex != null && serviceHealthIndex.isUnhealthy(serviceId);
   }
 
+  private void countOutcome(ALERT_DISPOSITION disposition) {
+    if (disposition == ALERT_DISPOSITION.SERVICE_UNHEALTHY) {
+      metrics.outcome(OUTCOME.IGNORED_UNHEALTHY);
+    } else if (disposition == ALERT_DISPOSITION.SERVICE_NOT_FOUND) {
+      metrics.outcome(OUTCOME.SERVICE_NOT_FOUND);
+    }
+  }
 
-  /** alerting service table acts as a semaphore. only permits to process (and notify) one alert at a time for the same service */
-  private boolean checkAndCloseAlertingServiceSemaphore(String serviceId) {
-    try {
-      persistenceAdapter.addAlertingService(serviceId);
-      return true;
+  private void indexUnhealthy(String serviceId) {
+    if (serviceHealthIndex != null) {
+      serviceHealthIndex.markUnhealthy(serviceId);
+    }
+  }
 
-    } catch (ServiceAlertingAlreadyException e) {
-      log.info("Some other alert of the given service ["+serviceId+"] is already being processed so this alert will be discarded");
-      return false;
+  private void indexHealthy(String serviceId) {
+    if (serviceHealthIndex != null) {
+      serviceHealthIndex.markHealthy(serviceId);
     }
   }
 
-  private void openAlertingSemaphore(AlertEvent alertEvent) {
-    persistenceAdapter.removeAlertingService(alertEvent.getServiceId());
+  private void setTimer(String pagerAlertId, String serviceId) {
+    TimerSetEvent event = AlertTracing.beginTimerSet();
+    timerAdapter.add15MinutesTimer(pagerAlertId);
+    AlertTracing.timerSet(event, pagerAlertId, serviceId);
   }
 
+  private void closeAlertTimers(String serviceId, List<String> closedAlertIds) {
+    for (String pagerAlertId : closedAlertIds) {
+      timerAdapter.cancelTimer(pagerAlertId); //the timeout would be ignored anyway
+      AlertTracing.alertClosed(pagerAlertId, serviceId);
+    }
+  }
 
 
+  /**
+   * alerting service semaphore. only permits to process (and notify) one alert at a time for the same service
+   * @return the lease holding the semaphore or null if it is already closed
+   */
+  private SemaphoreLease checkAndCloseAlertingServiceSemaphore(String serviceId) {
+    try {
+      return semaphoreAdapter.acquireAlertingService(serviceId);
+
+    } catch (ServiceAlertingAlreadyException e) {
+      log.debug("Some other alert of the given service [{}] is already being processed so this alert will be discarded", serviceId);
+      metrics.outcome(OUTCOME.SEMAPHORE_CONTENDED);
+      AlertTracing.semaphoreContended(null, serviceId, AlertTracing.ALERTING_SERVICE_SEMAPHORE);
+      return null;
+    }
+  }
+
   /**
    * if due to some error on the timer or anywhere we ensure that only one is processed to avoid notifying twice the targets
-   * @param pagerAlertId
-   * @return
+   * @param pagerAlert
+   * @return the lease holding the semaphore or null if it is already closed
    */
-  private boolean checkAndCloseAckSemaphore(String pagerAlertId) {
+  private SemaphoreLease checkAndCloseAckSemaphore(PagerAlert pagerAlert) {
     try {
-      persistenceAdapter.addAckSempahore(pagerAlertId);
-      return true;
+      return semaphoreAdapter.acquireAck(pagerAlert.getId());
 
     } catch (AckAlertingAlreadyException e) {
-      log.info("Some other ack of the givren alert id ["+pagerAlertId+"] is already being processed so this ack will be discarded");
-      return false;
+      log.debug("Some other ack of the given alert id [{}] is already being processed so this ack will be discarded", pagerAlert.getId());
+      metrics.outcome(OUTCOME.SEMAPHORE_CONTENDED);
+      AlertTracing.semaphoreContended(pagerAlert.getId(), pagerAlert.getServiceId(), AlertTracing.ACK_SEMAPHORE);
+      return null;
     }
   }
 
-  private void openAckSemaphore(String pagerAlertId) {
-    persistenceAdapter.removeAckSemaphore(pagerAlertId);
+  /**
+   * renews the lease before a write it guards
+   * @return false if the lease expired and was taken by someone else meanwhile
+   */
+  private boolean holdsLease(SemaphoreLease lease) {
+    if (semaphoreAdapter.renew(lease)) {
+      return true;
+    }
+    log.warn("Semaphore [{}] was taken over by someone else, discarding this processing", lease);
+    metrics.outcome(OUTCOME.LEASE_LOST);
+    return false;
+  }
+
+  private void openSemaphore(SemaphoreLease lease) {
+    try {
+      persistenceAdapter.beforeSemaphoreRelease();
+    } finally {
+      semaphoreAdapter.release(lease);
+    }
   }
 
 
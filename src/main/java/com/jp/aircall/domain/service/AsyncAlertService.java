@@ -0,0 +1,350 @@
+package com.jp.aircall.domain.service;
+
+import static com.jp.aircall.domain.service.AlertService.ACK_TIMEOUT_MS;
+
+import com.jp.aircall.domain.adapters.AsyncEPAdapter;
+import com.jp.aircall.domain.adapters.AsyncMailAdapter;
+import com.jp.aircall.domain.adapters.AsyncPersistenceAdapter;
+import com.jp.aircall.domain.adapters.AsyncSemaphoreAdapter;
+import com.jp.aircall.domain.adapters.AsyncSmsAdapter;
+import com.jp.aircall.domain.adapters.TimerAdapter;
+import com.jp.aircall.domain.adapters.semaphore.AsyncPersistenceSemaphoreAdapter;
+import com.jp.aircall.domain.adapters.semaphore.SemaphoreLease;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.AlertEvent.ALERT_DISPOSITION;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.CompiledPolicy;
+import com.jp.aircall.domain.model.policy.CompiledPolicy.CompiledLevel;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import java.time.Clock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Non blocking version of {@link AlertService}, with the same behaviour, composing adapters that return
+ * {@link CompletionStage}s, so no thread waits for the I/O of an alert. Every method returns a stage completed when the
+ * event has been processed, exceptionally if some adapter failed. Semaphores are released whatever the outcome of the
+ * work done while holding them.
+ * The existing blocking adapters can be used through the bridges of the adapters.async package.
+ */
+@Slf4j
+public class AsyncAlertService {
+  private static final CompletionStage<Void> DONE = CompletableFuture.completedFuture(null);
+
+  private final AsyncEPAdapter epAdapter;
+  private final AsyncPersistenceAdapter persistenceAdapter;
+  private final AsyncMailAdapter mailAdapter;
+  private final AsyncSmsAdapter smsAdapter;
+  private final TimerAdapter timerAdapter;
+  private final AsyncSemaphoreAdapter semaphoreAdapter;
+  private final Clock clock;
+
+  /**
+   * Uses the persistence semaphore tables as semaphores
+   */
+  public AsyncAlertService(AsyncEPAdapter epAdapter, AsyncPersistenceAdapter persistenceAdapter, AsyncMailAdapter mailAdapter,
+      AsyncSmsAdapter smsAdapter, TimerAdapter timerAdapter) {
+    this(epAdapter, persistenceAdapter, mailAdapter, smsAdapter, timerAdapter, null, null);
+  }
+
+  /**
+   * Optional collaborators left unset get the same defaults than
+   * {@link #AsyncAlertService(AsyncEPAdapter, AsyncPersistenceAdapter, AsyncMailAdapter, AsyncSmsAdapter, TimerAdapter)}.
+   * Without clock the system UTC clock is used
+   */
+  @Builder
+  private AsyncAlertService(AsyncEPAdapter epAdapter, AsyncPersistenceAdapter persistenceAdapter, AsyncMailAdapter mailAdapter,
+      AsyncSmsAdapter smsAdapter, TimerAdapter timerAdapter, AsyncSemaphoreAdapter semaphoreAdapter, Clock clock) {
+    this.epAdapter = epAdapter;
+    this.persistenceAdapter = persistenceAdapter;
+    this.mailAdapter = mailAdapter;
+    this.smsAdapter = smsAdapter;
+    this.timerAdapter = timerAdapter;
+    this.semaphoreAdapter = semaphoreAdapter != null ? semaphoreAdapter : new AsyncPersistenceSemaphoreAdapter(persistenceAdapter);
+    this.clock = clock != null ? clock : Clock.systemUTC();
+  }
+
+
+  /**
+   * See {@link AlertService#newAlert(AlertEvent)}
+   * @param alertEvent the received alert
+   * @return what has been done with the alert
+   */
+  public CompletionStage<ALERT_DISPOSITION> newAlert(AlertEvent alertEvent) {
+    log.debug("Received new alert event: [{}]", alertEvent);
+    return persistenceAdapter.getService(alertEvent.getServiceId()).thenCompose(serviceOpt -> {
+      if (serviceOpt.isEmpty()) {
+        log.warn("Service id not found:[{}]", alertEvent.getServiceId());
+        return CompletableFuture.completedFuture(ALERT_DISPOSITION.SERVICE_NOT_FOUND);
+      }
+      Service service = serviceOpt.get();
+      if (service.getStatus() != SERVICE_STATUS.HEALTHY) {
+        log.debug("Service [{}] already unhealthy. Ignoring alert [{}]", alertEvent.getServiceId(), alertEvent);
+        return CompletableFuture.completedFuture(ALERT_DISPOSITION.SERVICE_UNHEALTHY);
+      }
+      return processAlert(alertEvent, service);
+    });
+  }
+
+  /**
+   * See {@link AlertService#alertAcknowledgement(String)}
+   * @param pagerAlertId
+   */
+  public CompletionStage<Void> alertAcknowledgement(String pagerAlertId) {
+    log.debug("Received alert acknowledgement: [{}]", pagerAlertId);
+    return persistenceAdapter.getPagerAlert(pagerAlertId).thenCompose(pagerAlertOpt -> {
+      if (pagerAlertOpt.isEmpty()) {
+        log.warn("Pager alert id not found:[{}]", pagerAlertId);
+        return DONE;
+      }
+      PagerAlert pagerAlert = pagerAlertOpt.get();
+      switch (pagerAlert.getStatus()) {
+        case OPEN:
+          pagerAlert.setAcknowledgmentTs(clock.millis());
+          pagerAlert.setStatus(ALERT_STATUS.ACKNOWLEDGED);
+          return persistenceAdapter.updatePagerAlert(pagerAlert)
+              .thenRun(() -> timerAdapter.cancelTimer(pagerAlertId)); //the timeout would be ignored anyway
+
+        case ACKNOWLEDGED:
+          log.debug("Pager alert already acknowledged [{}]", pagerAlert);
+          return DONE;
+
+        case CLOSED:
+        default:
+          log.debug("Pager alert already closed [{}]", pagerAlert);
+          return DONE;
+      }
+    });
+  }
+
+  /**
+   * See {@link AlertService#serviceHealthy(String)}
+   * @param serviceId
+   */
+  public CompletionStage<Void> serviceHealthy(String serviceId) {
+    log.debug("Received service healthy for service id:[{}]", serviceId);
+    return persistenceAdapter.getService(serviceId).thenCompose(serviceOpt -> {
+      if (serviceOpt.isEmpty()) {
+        log.warn("Service id not found:[{}]", serviceId);
+        return DONE;
+      }
+      Service service = serviceOpt.get();
+      if (service.getStatus() == SERVICE_STATUS.HEALTHY) {
+        log.debug("Service already healthy: [{}]", service);
+        return DONE;
+      }
+      return persistenceAdapter.closeAllServiceAlerts(serviceId).thenCompose(closedAlertIds -> {
+        closedAlertIds.forEach(timerAdapter::cancelTimer); //their timeouts would be ignored anyway
+        service.setStatus(SERVICE_STATUS.HEALTHY);
+        return persistenceAdapter.updateService(service);
+      });
+    });
+  }
+
+  /**
+   * See {@link AlertService#acknowledgementTimeout(String)}
+   * @param pagerAlertId
+   */
+  public CompletionStage<Void> acknowledgementTimeout(String pagerAlertId) {
+    log.debug("Received acknowledgement timeout for alert: [{}]", pagerAlertId);
+    return persistenceAdapter.getPagerAlert(pagerAlertId).thenCompose(pagerAlertOpt -> {
+      if (pagerAlertOpt.isEmpty()) {
+        log.error("Not found pager alert id:[{}]", pagerAlertId);
+        return DONE;
+      }
+      PagerAlert pagerAlert = pagerAlertOpt.get();
+      switch (pagerAlert.getStatus()) {
+        case OPEN:
+          return processAckTimeout(pagerAlertId, pagerAlert);
+
+        case ACKNOWLEDGED:
+          log.debug("Alert already acknowledged: [{}]", pagerAlert);
+          return DONE;
+
+        case CLOSED:
+        default:
+          log.debug("Alert already closed: [{}]", pagerAlert);
+          return DONE;
+      }
+    });
+  }
+
+  private CompletionStage<Void> processAckTimeout(String pagerAlertId, PagerAlert pagerAlert) {
+    if (pagerAlert.getLastNotificationTs() > (clock.millis() - ACK_TIMEOUT_MS)) {
+      log.warn("This alert [{}] was already notified in the last 15 min. Ignoring ack", pagerAlertId);
+      return DONE;
+    }
+    return acquire(semaphoreAdapter.acquireAck(pagerAlertId), pagerAlertId).thenCompose(lease -> {
+      if (lease == null) {
+        return DONE;
+      }
+      return withLease(lease, () -> {
+        int nextLevel = pagerAlert.getLevelNotified() + 1;
+        return notifyLevel(pagerAlert.getServiceId(), nextLevel).thenCompose(notified ->
+            semaphoreAdapter.renew(lease).thenCompose(held -> {
+              if (!held) {
+                log.warn("Semaphore [{}] was taken over by someone else, discarding this processing", lease);
+                return DONE;
+              }
+              CompletionStage<Void> updated = DONE;
+              if (notified) {
+                pagerAlert.setLastNotificationTs(clock.millis());
+                pagerAlert.setLevelNotified(nextLevel);
+                updated = persistenceAdapter.updatePagerAlert(pagerAlert);
+              }
+              //set anyway, like the AlertService
+              return updated.thenRun(() -> timerAdapter.add15MinutesTimer(pagerAlertId));
+            }));
+      });
+    });
+  }
+
+  private CompletionStage<ALERT_DISPOSITION> processAlert(AlertEvent alertEvent, Service service) {
+    return acquire(semaphoreAdapter.acquireAlertingService(service.getId()), service.getId()).thenCompose(lease -> {
+      if (lease == null) {
+        return CompletableFuture.completedFuture(ALERT_DISPOSITION.ALREADY_PROCESSING);
+      }
+      return withLease(lease, () -> {
+        //mark services as unhealthy
+        service.setStatus(SERVICE_STATUS.UNHEALTHY);
+        return persistenceAdapter.updateService(service)
+            .thenCompose(updated -> notifyLevel(service.getId(), 1))
+            .thenCompose(notified -> semaphoreAdapter.renew(lease).thenCompose(held -> {
+              if (!held) {
+                //taken over while notifying, so neither the alert is saved nor its timer set
+                log.warn("Semaphore [{}] was taken over by someone else, discarding this processing", lease);
+                return CompletableFuture.completedFuture(ALERT_DISPOSITION.ALREADY_PROCESSING);
+              }
+              return savePagerAlert(alertEvent, notified).thenApply(pagerAlertId -> {
+                timerAdapter.add15MinutesTimer(pagerAlertId);
+                return ALERT_DISPOSITION.PROCESSED;
+              });
+            }));
+      });
+    });
+  }
+
+  /**
+   * notifies all the targets of the given level at the same time
+   * @return true if some target has been notified. False if there are no policies, all target has been already
+   * notified or no target of the level could be notified
+   */
+  private CompletionStage<Boolean> notifyLevel(String serviceId, int level) {
+    return epAdapter.getEpByServiceId(serviceId).thenCompose(policyOpt -> {
+      if (policyOpt.isEmpty()) {
+        log.error("Not found any escalation policy for serviceId:[{}]", serviceId);
+        return CompletableFuture.completedFuture(false);
+      }
+      EscalationPolicy policy = policyOpt.get();
+      CompiledPolicy plan = CompiledPolicy.compile(policy);
+      if (plan.getLevelCount() < level) {
+        log.debug("All levels has been notified for service [{}]- EscalationPolicy:][{}]", serviceId, policy);
+        return CompletableFuture.completedFuture(false);
+      }
+      CompiledLevel compiledLevel = plan.getLevel(level);
+      if (compiledLevel.isEmpty()) {
+        return CompletableFuture.completedFuture(true);
+      }
+      @SuppressWarnings("unchecked")
+      CompletableFuture<Boolean>[] sends = new CompletableFuture[compiledLevel.getTargetCount()];
+      for (int i = 0; i < compiledLevel.getPhoneCount(); i++) {
+        sends[i] = sent(smsAdapter.sendNotification(compiledLevel.getPhone(i)), "SMS", compiledLevel.getPhone(i));
+      }
+      for (int i = 0; i < compiledLevel.getEmailCount(); i++) {
+        sends[compiledLevel.getPhoneCount() + i] =
+            sent(mailAdapter.sendNotification(compiledLevel.getEmail(i)), "EMAIL", compiledLevel.getEmail(i));
+      }
+      return CompletableFuture.allOf(sends).thenApply(all -> {
+        for (CompletableFuture<Boolean> send : sends) {
+          if (send.join()) {
+            return true;
+          }
+        }
+        log.error("No target of level [{}] could be notified for service [{}]", level, serviceId);
+        return false;
+      });
+    });
+  }
+
+  private static CompletableFuture<Boolean> sent(CompletionStage<Void> send, String type, String value) {
+    return send.handle((sent, error) -> {
+      if (error != null) {
+        log.warn("Error notifying {} target [{}]", type, value, unwrap(error));
+        return false;
+      }
+      return true;
+    }).toCompletableFuture();
+  }
+
+  private CompletionStage<String> savePagerAlert(AlertEvent alertEvent, boolean notified) {
+    long now = clock.millis();
+    long lastNotifTs = notified ? now : 0;
+    int level = notified ? 1 : 0;
+    PagerAlert pagerAlert =
+        new PagerAlert(alertEvent.getServiceId(), alertEvent.getMessage(), ALERT_STATUS.OPEN, level, now, lastNotifTs);
+    return persistenceAdapter.savePagerAlert(pagerAlert).thenApply(saved -> pagerAlert.getId());
+  }
+
+  /**
+   * @return the lease holding the semaphore or null if it is already closed
+   */
+  private static CompletionStage<SemaphoreLease> acquire(CompletionStage<SemaphoreLease> acquisition, String key) {
+    return acquisition.handle((lease, error) -> {
+      if (error == null) {
+        return lease;
+      }
+      Throwable cause = unwrap(error);
+      if (cause instanceof ServiceAlertingAlreadyException || cause instanceof AckAlertingAlreadyException) {
+        log.debug("Semaphore of [{}] is already held so this event will be discarded", key);
+        return null;
+      }
+      throw new CompletionException(cause);
+    });
+  }
+
+  /**
+   * runs the given work and then releases the lease, whether the work completes normally, exceptionally or fails to
+   * even start
+   */
+  private <T> CompletionStage<T> withLease(SemaphoreLease lease, Supplier<CompletionStage<T>> work) {
+    CompletionStage<T> result;
+    try {
+      result = work.get();
+    } catch (RuntimeException e) {
+      result = CompletableFuture.failedFuture(e);
+    }
+    CompletableFuture<T> released = new CompletableFuture<>();
+    result.whenComplete((value, error) -> release(lease).whenComplete((ignored, releaseError) -> {
+      if (releaseError != null) {
+        log.error("Error releasing semaphore [{}]", lease, unwrap(releaseError));
+      }
+      if (error != null) {
+        released.completeExceptionally(unwrap(error));
+      } else {
+        released.complete(value);
+      }
+    }));
+    return released;
+  }
+
+  private CompletionStage<Void> release(SemaphoreLease lease) {
+    try {
+      return semaphoreAdapter.release(lease);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+  }
+}
@@ -0,0 +1,244 @@
+package com.jp.aircall.domain.service;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.adapters.semaphore.NoOpSemaphoreAdapter;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the AlertService events on N single threaded partitions. Every event is routed by its serviceId (the serviceId of
+ * the alert for acks and timeouts), so all the events of a service are processed one by one by the same thread and the
+ * AlertService can be built with a {@link NoOpSemaphoreAdapter}. Services on different partitions are processed in
+ * parallel.
+ * The submitter of an ack or a timeout (e.g. the timer thread) doesn't read the alert: the event is queued on the
+ * partition of the alert id, whose worker finds the service of the alert and runs the event, or hands it over to the
+ * partition of that service. So an ack or a timeout may be processed after events of its service submitted later, which
+ * the AlertService handles as for any other late ack (e.g. the alert is already closed).
+ * Every partition has a bounded queue. When it is full the submitter waits up to offerTimeoutMs for room (backpressure)
+ * and then the event is rejected with {@link SUBMIT_RESULT#REJECTED_SATURATED}. The acks and timeouts handed over are
+ * always queued, over the capacity if needed, as their submitter already got ACCEPTED and losing them would leave an
+ * acknowledged alert escalating, or an alert without timer. They are bounded anyway by the queues they come from.
+ */
+@Slf4j
+public class PartitionedAlertExecutor implements AutoCloseable {
+
+  public enum SUBMIT_RESULT {ACCEPTED, REJECTED_SATURATED, REJECTED_SHUTDOWN}
+
+  private final AlertService alertService;
+  private final PersistenceAdapter persistenceAdapter;
+  private final long offerTimeoutMs;
+  private final Partition[] partitions;
+  /** acks and timeouts not handed over to the partition of their service yet */
+  private final AtomicInteger pendingRoutes = new AtomicInteger();
+  /** submits that passed the running check and aren't queued yet */
+  private final AtomicInteger pendingSubmits = new AtomicInteger();
+  private volatile boolean running = true;
+
+  /**
+   * @param alertService service processing the events
+   * @param persistenceAdapter used by the partitions to find the service of the alerts on acks and timeouts
+   * @param partitions number of partitions (threads), e.g. the number of cores
+   * @param queueCapacity max number of pending events submitted per partition. The acks and timeouts handed over by
+   * other partitions are queued over it
+   * @param offerTimeoutMs max time a submitter waits for room on a full partition. 0 to reject straight away
+   */
+  public PartitionedAlertExecutor(AlertService alertService, PersistenceAdapter persistenceAdapter, int partitions,
+      int queueCapacity, long offerTimeoutMs) {
+    if (partitions <= 0 || queueCapacity <= 0 || offerTimeoutMs < 0) {
+      throw new IllegalArgumentException("partitions and queueCapacity must be positive and offerTimeoutMs not negative");
+    }
+    this.alertService = alertService;
+    this.persistenceAdapter = persistenceAdapter;
+    this.offerTimeoutMs = offerTimeoutMs;
+    this.partitions = new Partition[partitions];
+    for (int i = 0; i < partitions; i++) {
+      this.partitions[i] = new Partition(i, queueCapacity);
+      this.partitions[i].start();
+    }
+  }
+
+  public SUBMIT_RESULT newAlert(AlertEvent alertEvent) {
+    return submit(alertEvent.getServiceId(), () -> alertService.newAlert(alertEvent));
+  }
+
+  public SUBMIT_RESULT serviceHealthy(String serviceId) {
+    return submit(serviceId, () -> alertService.serviceHealthy(serviceId));
+  }
+
+  public SUBMIT_RESULT alertAcknowledgement(String pagerAlertId) {
+    return submitRouted(pagerAlertId, () -> alertService.alertAcknowledgement(pagerAlertId));
+  }
+
+  public SUBMIT_RESULT acknowledgementTimeout(String pagerAlertId) {
+    return submitRouted(pagerAlertId, () -> alertService.acknowledgementTimeout(pagerAlertId));
+  }
+
+  /**
+   * submits every timeout to its partition, e.g. all the timers expired in the same tick of the timer
+   * @param pagerAlertIds
+   * @return number of rejected timeouts
+   */
+  public int acknowledgementTimeouts(Collection<String> pagerAlertIds) {
+    int rejected = 0;
+    for (String pagerAlertId : pagerAlertIds) {
+      if (acknowledgementTimeout(pagerAlertId) != SUBMIT_RESULT.ACCEPTED) {
+        rejected++;
+      }
+    }
+    return rejected;
+  }
+
+  public int getPartitionCount() {
+    return partitions.length;
+  }
+
+  /**
+   * @param serviceId
+   * @return the partition processing the events of the given service
+   */
+  public int partitionOf(String serviceId) {
+    int hash = serviceId.hashCode();
+    return Math.floorMod(hash ^ (hash >>> 16), partitions.length);
+  }
+
+  /**
+   * @param partition
+   * @return number of events waiting on the given partition, including the acks and timeouts handed over
+   */
+  public int getQueueDepth(int partition) {
+    return partitions[partition].queue.size();
+  }
+
+  /**
+   * @param partition
+   * @return number of events rejected by the given partition because it was full
+   */
+  public long getRejected(int partition) {
+    return partitions[partition].rejected.get();
+  }
+
+  /**
+   * @param partition
+   * @return number of events processed by the given partition, including the acks and timeouts it handed over
+   */
+  public long getProcessed(int partition) {
+    return partitions[partition].processed.get();
+  }
+
+  /**
+   * stops accepting events and waits for the partitions to process the already accepted ones, including the acks and
+   * timeouts handed over meanwhile
+   */
+  @Override
+  public void close() throws InterruptedException {
+    running = false;
+    for (Partition partition : partitions) {
+      partition.join();
+    }
+  }
+
+  private String serviceIdOf(String pagerAlertId) {
+    //unknown alerts are routed by its id, the AlertService will just log them
+    return persistenceAdapter.getPagerAlert(pagerAlertId).map(PagerAlert::getServiceId).orElse(pagerAlertId);
+  }
+
+  private SUBMIT_RESULT submitRouted(String pagerAlertId, Runnable event) {
+    pendingRoutes.incrementAndGet();
+    SUBMIT_RESULT result = submit(pagerAlertId, () -> route(pagerAlertId, event));
+    if (result != SUBMIT_RESULT.ACCEPTED) {
+      pendingRoutes.decrementAndGet();
+    }
+    return result;
+  }
+
+  /**
+   * runs on the partition of the alert id: finds the service of the alert and runs the event on its partition
+   */
+  private void route(String pagerAlertId, Runnable event) {
+    try {
+      String serviceId = serviceIdOf(pagerAlertId);
+      Partition partition = partitions[partitionOf(serviceId)];
+      if (partition == Thread.currentThread()) {
+        event.run();
+      } else {
+        partition.queue.add(event);
+      }
+    } finally {
+      pendingRoutes.decrementAndGet();
+    }
+  }
+
+  private SUBMIT_RESULT submit(String serviceId, Runnable event) {
+    //counted before the running check, so a partition closing meanwhile waits for the event to be queued
+    pendingSubmits.incrementAndGet();
+    try {
+      if (!running) {
+        return SUBMIT_RESULT.REJECTED_SHUTDOWN;
+      }
+      return offer(partitions[partitionOf(serviceId)], serviceId, event);
+    } finally {
+      pendingSubmits.decrementAndGet();
+    }
+  }
+
+  private SUBMIT_RESULT offer(Partition partition, String serviceId, Runnable event) {
+    try {
+      if (partition.slots.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+        partition.queue.add(() -> {
+          partition.slots.release();
+          event.run();
+        });
+        return SUBMIT_RESULT.ACCEPTED;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    partition.rejected.incrementAndGet();
+    log.warn("Partition [{}] saturated. Rejecting event of service [{}]", partition.index, serviceId);
+    return SUBMIT_RESULT.REJECTED_SATURATED;
+  }
+
+
+  private class Partition extends Thread {
+    private final int index;
+    /** unbounded so the acks and timeouts handed over are never lost, the submits are bounded by the slots */
+    private final BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+    private final Semaphore slots;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    Partition(int index, int queueCapacity) {
+      super("alert-partition-" + index);
+      setDaemon(true);
+      this.index = index;
+      this.slots = new Semaphore(queueCapacity);
+    }
+
+    @Override
+    public void run() {
+      //the counters are read before the queues: an event is queued before its counter is decremented
+      while (running || pendingSubmits.get() > 0 || pendingRoutes.get() > 0 || !queue.isEmpty()) {
+        try {
+          Runnable event = queue.poll(100, TimeUnit.MILLISECONDS);
+          if (event != null) {
+            event.run();
+            processed.incrementAndGet();
+          }
+        } catch (InterruptedException e) {
+          return;
+        } catch (RuntimeException e) {
+          //the partition thread must survive the failure of an event
+          log.error("Error processing event on partition [{}]", index, e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.jp.aircall.domain.service;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import java.time.Clock;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index of the services known to be unhealthy, kept up to date by the AlertService on every status change it
+ * writes so alerts of an unhealthy service can be discarded without reading the service. A status just read isn't
+ * indexed, as a concurrent serviceHealthy may have set the service healthy after the read.
+ * An entry is only trusted during stalenessMs since it was written: when other nodes may set the services healthy the
+ * staleness bound is the max time an alert may be ignored because of it. A service missing from the index (or stale) is
+ * always read from persistence, so the index never makes the pager notify an unhealthy service.
+ */
+@Slf4j
+public class ServiceHealthIndex {
+
+  private final Map<String, Long> unhealthyServices = new ConcurrentHashMap<>();
+  private final long stalenessMs;
+  private final Clock clock;
+
+  public ServiceHealthIndex(long stalenessMs) {
+    this(stalenessMs, Clock.systemUTC());
+  }
+
+  public ServiceHealthIndex(long stalenessMs, Clock clock) {
+    if (stalenessMs <= 0) {
+      throw new IllegalArgumentException("stalenessMs must be positive: " + stalenessMs);
+    }
+    this.stalenessMs = stalenessMs;
+    this.clock = clock;
+  }
+
+  /**
+   * @param serviceId
+   * @return true if the service is known to be unhealthy and the information is not stale
+   */
+  public boolean isUnhealthy(String serviceId) {
+    Long recordedTs = unhealthyServices.get(serviceId);
+    return recordedTs != null && clock.millis() - recordedTs < stalenessMs;
+  }
+
+  public void markUnhealthy(String serviceId) {
+    unhealthyServices.put(serviceId, clock.millis());
+  }
+
+  public void markHealthy(String serviceId) {
+    unhealthyServices.remove(serviceId);
+  }
+
+  /**
+   * replaces the content of the index with the unhealthy services of the persistence, e.g. on startup
+   * @param persistenceAdapter
+   */
+  public void resync(PersistenceAdapter persistenceAdapter) {
+    Collection<String> serviceIds = persistenceAdapter.getUnhealthyServiceIds();
+    long now = clock.millis();
+    unhealthyServices.clear();
+    serviceIds.forEach(serviceId -> unhealthyServices.put(serviceId, now));
+    log.info("Service health index resynchronized with [{}] unhealthy services", serviceIds.size());
+  }
+
+  public int size() {
+    return unhealthyServices.size();
+  }
+}
@@ -0,0 +1,226 @@
+package com.jp.aircall.domain.service.notification;
+
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.model.policy.CompiledPolicy.CompiledLevel;
+import com.jp.aircall.domain.model.policy.Target.TARGET_TYPE;
+import com.jp.aircall.domain.service.notification.NotificationResult.DELIVERY_STATUS;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Coalesces the notifications to the same target across alerts of different services, e.g. when a shared dependency
+ * takes down many services whose policies overlap. The first notification to a target is sent right away and opens a
+ * window of windowMs: the notifications to that target during the window are QUEUED and, when the window ends, sent as
+ * a single digest listing all their services ({@link SmsAdapter#sendDigestNotification}). The QUEUED notifications are
+ * taken as accepted by the pager, so a failed digest is retried up to {@link #MAX_DIGEST_ATTEMPTS} times, waiting one
+ * more window before each attempt. Closing the dispatcher runs the pending retries right away.
+ */
+@Slf4j
+public class DigestNotificationDispatcher implements NotificationDispatcher, AutoCloseable {
+
+  public static final long DEFAULT_WINDOW_MS = 2000;
+  public static final int MAX_DIGEST_ATTEMPTS = 3;
+
+  private final SmsAdapter smsAdapter;
+  private final MailAdapter mailAdapter;
+  private final long windowMs;
+  private final ScheduledExecutorService scheduler;
+  private final Map<String, Window> windows = new ConcurrentHashMap<>();
+  private final Set<Window> retries = ConcurrentHashMap.newKeySet();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder digestsSent = new LongAdder();
+  private final LongAdder digestsFailed = new LongAdder();
+
+  public DigestNotificationDispatcher(SmsAdapter smsAdapter, MailAdapter mailAdapter, long windowMs) {
+    if (windowMs <= 0) {
+      throw new IllegalArgumentException("windowMs must be positive: " + windowMs);
+    }
+    this.smsAdapter = smsAdapter;
+    this.mailAdapter = mailAdapter;
+    this.windowMs = windowMs;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "notification-digest");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public List<NotificationResult> dispatch(CompiledLevel level) {
+    return dispatch(null, level);
+  }
+
+  @Override
+  public List<NotificationResult> dispatch(String serviceId, CompiledLevel level) {
+    List<NotificationResult> results = new ArrayList<>(level.getTargetCount());
+    for (int i = 0; i < level.getPhoneCount(); i++) {
+      String phone = level.getPhone(i);
+      results.add(new NotificationResult(TARGET_TYPE.SMS, phone, notify(TARGET_TYPE.SMS, phone, serviceId)));
+    }
+    for (int i = 0; i < level.getEmailCount(); i++) {
+      String email = level.getEmail(i);
+      results.add(new NotificationResult(TARGET_TYPE.EMAIL, email, notify(TARGET_TYPE.EMAIL, email, serviceId)));
+    }
+    return results;
+  }
+
+  /**
+   * @return number of notifications queued into a digest instead of being sent
+   */
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  public long getDigestsSent() {
+    return digestsSent.sum();
+  }
+
+  /**
+   * @return number of digests given up after {@link #MAX_DIGEST_ATTEMPTS} failed attempts
+   */
+  public long getDigestsFailed() {
+    return digestsFailed.sum();
+  }
+
+  /**
+   * sends the digests of all the open windows right away
+   */
+  public void flush() {
+    for (String key : windows.keySet()) {
+      flush(key);
+    }
+  }
+
+  /**
+   * stops the scheduler, sends the pending digests and makes a last attempt of the digests waiting for a retry
+   */
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    flush();
+    for (Window window : retries) {
+      if (retries.remove(window)) {
+        sendDigest(window);
+      }
+    }
+  }
+
+  private DELIVERY_STATUS notify(TARGET_TYPE type, String value, String serviceId) {
+    String key = type.name() + ':' + value;
+    Window opened = new Window(type, value);
+    Window window = windows.putIfAbsent(key, opened);
+    if (window != null && window.add(serviceId)) {
+      coalesced.increment();
+      return DELIVERY_STATUS.QUEUED;
+    }
+    if (window != null) {
+      //the window is being flushed, so a new one can't be opened until it is removed
+      return SequentialNotificationDispatcher.send(smsAdapter, mailAdapter, type, value);
+    }
+    scheduler.schedule(() -> flush(key), windowMs, TimeUnit.MILLISECONDS);
+    return SequentialNotificationDispatcher.send(smsAdapter, mailAdapter, type, value);
+  }
+
+  private void flush(String key) {
+    Window window = windows.get(key);
+    if (window == null) {
+      return;
+    }
+    int pending = window.close();
+    windows.remove(key, window);
+    if (pending == 0) {
+      return;
+    }
+    sendDigest(window);
+  }
+
+  private void sendDigest(Window window) {
+    window.attempts++;
+    try {
+      switch (window.type) {
+        case SMS:
+          smsAdapter.sendDigestNotification(window.value, window.serviceIds);
+          break;
+        case EMAIL:
+          mailAdapter.sendDigestNotification(window.value, window.serviceIds);
+          break;
+      }
+      digestsSent.increment();
+    } catch (RuntimeException e) {
+      if (window.attempts < MAX_DIGEST_ATTEMPTS && retry(window)) {
+        log.warn("Error sending digest to {} target [{}] for services {}, retrying it", window.type, window.value,
+            window.serviceIds, e);
+        return;
+      }
+      digestsFailed.increment();
+      log.error("Error sending digest to {} target [{}] for services {}, giving up after {} attempts", window.type,
+          window.value, window.serviceIds, window.attempts, e);
+    }
+  }
+
+  /**
+   * @return false if the dispatcher is closed and its last attempts are over
+   */
+  private boolean retry(Window window) {
+    retries.add(window);
+    try {
+      scheduler.schedule(() -> {
+        if (retries.remove(window)) {
+          sendDigest(window);
+        }
+      }, windowMs * window.attempts, TimeUnit.MILLISECONDS);
+      return true;
+    } catch (RejectedExecutionException e) {
+      //unless close() took it meanwhile for a last attempt
+      return !retries.remove(window);
+    }
+  }
+
+  private static class Window {
+    final TARGET_TYPE type;
+    final String value;
+    final Set<String> serviceIds = new LinkedHashSet<>();
+    private int pending;
+    private boolean closed;
+    /** only updated by whoever sends the digest, which the retries set hands off */
+    private int attempts;
+
+    Window(TARGET_TYPE type, String value) {
+      this.type = type;
+      this.value = value;
+    }
+
+    /**
+     * @return false if the window is already closed
+     */
+    synchronized boolean add(String serviceId) {
+      if (closed) {
+        return false;
+      }
+      if (serviceId != null) {
+        serviceIds.add(serviceId);
+      }
+      pending++;
+      return true;
+    }
+
+    /**
+     * @return number of notifications queued into the window
+     */
+    synchronized int close() {
+      closed = true;
+      return pending;
+    }
+  }
+}
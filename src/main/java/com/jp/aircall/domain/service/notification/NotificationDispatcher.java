@@ -0,0 +1,40 @@
+package com.jp.aircall.domain.service.notification;
+
+import com.jp.aircall.domain.model.policy.CompiledPolicy.CompiledLevel;
+import java.util.List;
+
+/**
+ * Sends the notifications to the targets of a level
+ */
+public interface NotificationDispatcher {
+
+  /**
+   * notifies all the targets of the given level. Failures of a target don't prevent the rest of targets from being notified
+   * @param level
+   * @return the delivery outcome of every target
+   */
+  List<NotificationResult> dispatch(CompiledLevel level);
+
+  /**
+   * notifies all the targets of the given level on behalf of the given service. Dispatchers that don't care about the
+   * service just {@link #dispatch(CompiledLevel)}
+   * @param serviceId the service whose alert is being notified
+   * @param level
+   * @return the delivery outcome of every target
+   */
+  default List<NotificationResult> dispatch(String serviceId, CompiledLevel level) {
+    return dispatch(level);
+  }
+
+  /**
+   * notifies all the targets of the given level on behalf of the given service. Dispatchers that don't care about the
+   * level number just {@link #dispatch(String, CompiledLevel)}
+   * @param serviceId the service whose alert is being notified
+   * @param levelNumber number of the level in its policy, first level is 1
+   * @param level
+   * @return the delivery outcome of every target
+   */
+  default List<NotificationResult> dispatch(String serviceId, int levelNumber, CompiledLevel level) {
+    return dispatch(serviceId, level);
+  }
+}
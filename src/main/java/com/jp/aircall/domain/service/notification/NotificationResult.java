@@ -0,0 +1,29 @@
+package com.jp.aircall.domain.service.notification;
+
+import com.jp.aircall.domain.model.policy.Target.TARGET_TYPE;
+import lombok.Data;
+
+/**
+ * Delivery outcome of a single target of a level
+ */
+@Data
+public class NotificationResult {
+
+  /** QUEUED means that the notification will be sent later, e.g. within a digest */
+  public enum DELIVERY_STATUS {SENT, QUEUED, FAILED, TIMED_OUT}
+
+  private final TARGET_TYPE type;
+  private final String value;
+  private final DELIVERY_STATUS status;
+
+  public boolean isSent() {
+    return status == DELIVERY_STATUS.SENT;
+  }
+
+  /**
+   * @return true if the target has been or will be notified
+   */
+  public boolean isAccepted() {
+    return status == DELIVERY_STATUS.SENT || status == DELIVERY_STATUS.QUEUED;
+  }
+}
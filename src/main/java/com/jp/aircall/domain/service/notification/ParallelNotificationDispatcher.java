@@ -0,0 +1,125 @@
+package com.jp.aircall.domain.service.notification;
+
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.model.policy.CompiledPolicy.CompiledLevel;
+import com.jp.aircall.domain.model.policy.Target.TARGET_TYPE;
+import com.jp.aircall.domain.service.notification.NotificationResult.DELIVERY_STATUS;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Notifies all the targets of a level at the same time on a bounded executor and waits for them up to the level
+ * deadline. Targets not notified on time are cancelled and reported as TIMED_OUT, so a slow gateway can't keep the
+ * service semaphore closed longer than the deadline. Targets rejected by a saturated executor are reported as FAILED
+ * rather than sent on the caller thread, which would not be bound by the deadline.
+ */
+@Slf4j
+public class ParallelNotificationDispatcher implements NotificationDispatcher, AutoCloseable {
+
+  public static final long DEFAULT_LEVEL_DEADLINE_MS = 5000;
+
+  private final SmsAdapter smsAdapter;
+  private final MailAdapter mailAdapter;
+  private final ExecutorService executor;
+  private final long levelDeadlineMs;
+
+  /**
+   * Creates its own pool of the given number of threads. When the pool and its queue are full the notification is
+   * rejected
+   */
+  public ParallelNotificationDispatcher(SmsAdapter smsAdapter, MailAdapter mailAdapter, int threads, long levelDeadlineMs) {
+    this(smsAdapter, mailAdapter, newBoundedExecutor(threads), levelDeadlineMs);
+  }
+
+  public ParallelNotificationDispatcher(SmsAdapter smsAdapter, MailAdapter mailAdapter, ExecutorService executor, long levelDeadlineMs) {
+    if (levelDeadlineMs <= 0) {
+      throw new IllegalArgumentException("levelDeadlineMs must be positive: " + levelDeadlineMs);
+    }
+    this.smsAdapter = smsAdapter;
+    this.mailAdapter = mailAdapter;
+    this.executor = executor;
+    this.levelDeadlineMs = levelDeadlineMs;
+  }
+
+  @Override
+  public List<NotificationResult> dispatch(CompiledLevel level) {
+    int targetCount = level.getTargetCount();
+    TARGET_TYPE[] types = new TARGET_TYPE[targetCount];
+    String[] values = new String[targetCount];
+    List<Future<DELIVERY_STATUS>> futures = new ArrayList<>(targetCount);
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(levelDeadlineMs);
+    for (int i = 0; i < targetCount; i++) {
+      boolean sms = i < level.getPhoneCount();
+      TARGET_TYPE type = sms ? TARGET_TYPE.SMS : TARGET_TYPE.EMAIL;
+      String value = sms ? level.getPhone(i) : level.getEmail(i - level.getPhoneCount());
+      types[i] = type;
+      values[i] = value;
+      Callable<DELIVERY_STATUS> task = () -> SequentialNotificationDispatcher.send(smsAdapter, mailAdapter, type, value);
+      try {
+        futures.add(executor.submit(task));
+      } catch (RejectedExecutionException e) {
+        futures.add(null);
+      }
+    }
+
+    List<NotificationResult> results = new ArrayList<>(targetCount);
+    for (int i = 0; i < targetCount; i++) {
+      Future<DELIVERY_STATUS> future = futures.get(i);
+      DELIVERY_STATUS status;
+      if (future == null) {
+        log.warn("Notification to {} target [{}] rejected, the dispatcher is saturated", types[i], values[i]);
+        status = DELIVERY_STATUS.FAILED;
+      } else {
+        status = statusOf(future, deadline);
+        if (status == DELIVERY_STATUS.TIMED_OUT) {
+          log.warn("Notification to {} target [{}] not sent in {} ms", types[i], values[i], levelDeadlineMs);
+        }
+      }
+      results.add(new NotificationResult(types[i], values[i], status));
+    }
+    return results;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+
+  /** waits for the given notification up to the deadline, cancelling it if it is not done by then */
+  private static DELIVERY_STATUS statusOf(Future<DELIVERY_STATUS> future, long deadline) {
+    try {
+      return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException | CancellationException e) {
+      future.cancel(true);
+      return DELIVERY_STATUS.TIMED_OUT;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(true);
+      return DELIVERY_STATUS.TIMED_OUT;
+    } catch (ExecutionException e) {
+      return DELIVERY_STATUS.FAILED;
+    }
+  }
+
+  private static ExecutorService newBoundedExecutor(int threads) {
+    AtomicInteger count = new AtomicInteger();
+    return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * 16), r -> {
+      Thread thread = new Thread(r, "notification-dispatcher-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }, new ThreadPoolExecutor.AbortPolicy());
+  }
+}
@@ -0,0 +1,347 @@
+package com.jp.aircall.domain.service.notification;
+
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.model.policy.CompiledPolicy.CompiledLevel;
+import com.jp.aircall.domain.model.policy.Target.TARGET_TYPE;
+import com.jp.aircall.domain.service.notification.NotificationResult.DELIVERY_STATUS;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Delivers the notifications at the pace the SMS and email providers accept, so an alert storm neither fails the sends
+ * nor blocks the pager. Every target is queued (QUEUED) and sent later by the worker thread of its channel when both
+ * the channel token bucket and the destination token bucket have a token, lower levels first: the first level of
+ * an alert is more urgent than the escalation of another one.
+ * The queue of every channel is bounded: when it is full the new notification is shed (FAILED), so the AlertService
+ * knows its level wasn't notified. A QUEUED notification is never dropped, as its level already counts as notified:
+ * failed sends are retried with a jittered exponential backoff for maxAttempts, and then every max backoff until sent.
+ */
+@Slf4j
+public class RateLimitedNotificationDispatcher implements NotificationDispatcher, AutoCloseable {
+
+  public static final double DEFAULT_CHANNEL_RATE_PER_SECOND = 10;
+  public static final int DEFAULT_CHANNEL_BURST = 10;
+  public static final double DEFAULT_DESTINATION_RATE_PER_SECOND = 1d / 60; //one per minute
+  public static final int DEFAULT_DESTINATION_BURST = 3;
+  public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+  public static final int DEFAULT_MAX_ATTEMPTS = 3;
+  public static final long DEFAULT_RETRY_BASE_DELAY_MS = 1000;
+  /** destination buckets kept before dropping the full ones, which are the same as new ones */
+  private static final int MAX_DESTINATION_BUCKETS = 10_000;
+
+  /** level first, then arrival */
+  private static final Comparator<Delivery> PRIORITY =
+      Comparator.<Delivery>comparingInt(delivery -> delivery.levelNumber).thenComparingLong(delivery -> delivery.sequence);
+
+  private final SmsAdapter smsAdapter;
+  private final MailAdapter mailAdapter;
+  private final double destinationRatePerSecond;
+  private final int destinationBurst;
+  private final int queueCapacity;
+  private final int maxAttempts;
+  private final long retryBaseDelayNanos;
+  private final Channel sms;
+  private final Channel email;
+  private final AtomicLong sequence = new AtomicLong();
+  private final LongAdder sent = new LongAdder();
+  private final LongAdder shed = new LongAdder();
+  private final LongAdder retried = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+
+  /**
+   * Rates, bursts and sizes not set (0) get their DEFAULT_ values. The burst applies to both channels
+   */
+  @Builder
+  private RateLimitedNotificationDispatcher(SmsAdapter smsAdapter, MailAdapter mailAdapter, double smsRatePerSecond,
+      double mailRatePerSecond, int channelBurst, double destinationRatePerSecond, int destinationBurst, int queueCapacity,
+      int maxAttempts, long retryBaseDelayMs) {
+    this.smsAdapter = smsAdapter;
+    this.mailAdapter = mailAdapter;
+    this.destinationRatePerSecond = destinationRatePerSecond > 0 ? destinationRatePerSecond : DEFAULT_DESTINATION_RATE_PER_SECOND;
+    this.destinationBurst = destinationBurst > 0 ? destinationBurst : DEFAULT_DESTINATION_BURST;
+    this.queueCapacity = queueCapacity > 0 ? queueCapacity : DEFAULT_QUEUE_CAPACITY;
+    this.maxAttempts = maxAttempts > 0 ? maxAttempts : DEFAULT_MAX_ATTEMPTS;
+    this.retryBaseDelayNanos = TimeUnit.MILLISECONDS.toNanos(retryBaseDelayMs > 0 ? retryBaseDelayMs : DEFAULT_RETRY_BASE_DELAY_MS);
+    int burst = channelBurst > 0 ? channelBurst : DEFAULT_CHANNEL_BURST;
+    this.sms = new Channel(TARGET_TYPE.SMS, smsRatePerSecond > 0 ? smsRatePerSecond : DEFAULT_CHANNEL_RATE_PER_SECOND, burst);
+    this.email = new Channel(TARGET_TYPE.EMAIL, mailRatePerSecond > 0 ? mailRatePerSecond : DEFAULT_CHANNEL_RATE_PER_SECOND, burst);
+  }
+
+  /**
+   * without level number the targets are queued with the lowest priority
+   */
+  @Override
+  public List<NotificationResult> dispatch(CompiledLevel level) {
+    return dispatch(null, Integer.MAX_VALUE, level);
+  }
+
+  @Override
+  public List<NotificationResult> dispatch(String serviceId, CompiledLevel level) {
+    return dispatch(serviceId, Integer.MAX_VALUE, level);
+  }
+
+  @Override
+  public List<NotificationResult> dispatch(String serviceId, int levelNumber, CompiledLevel level) {
+    List<NotificationResult> results = new ArrayList<>(level.getTargetCount());
+    for (int i = 0; i < level.getPhoneCount(); i++) {
+      String phone = level.getPhone(i);
+      results.add(new NotificationResult(TARGET_TYPE.SMS, phone, sms.offer(new Delivery(phone, levelNumber, sequence.incrementAndGet()))));
+    }
+    for (int i = 0; i < level.getEmailCount(); i++) {
+      String mail = level.getEmail(i);
+      results.add(new NotificationResult(TARGET_TYPE.EMAIL, mail, email.offer(new Delivery(mail, levelNumber, sequence.incrementAndGet()))));
+    }
+    return results;
+  }
+
+  /**
+   * @return notifications waiting to be sent, including the ones waiting for a retry
+   */
+  public int getQueueDepth() {
+    return sms.depth() + email.depth();
+  }
+
+  public long getSent() {
+    return sent.sum();
+  }
+
+  /**
+   * @return notifications rejected (FAILED) because the queue of their channel was full
+   */
+  public long getShed() {
+    return shed.sum();
+  }
+
+  public long getRetried() {
+    return retried.sum();
+  }
+
+  /**
+   * @return notifications whose first maxAttempts sends failed. They are still retried every max backoff
+   */
+  public long getFailed() {
+    return failed.sum();
+  }
+
+  /**
+   * stops the workers. The notifications still queued are discarded
+   */
+  @Override
+  public void close() {
+    sms.close();
+    email.close();
+  }
+
+  private static class Delivery {
+    final String value;
+    final int levelNumber;
+    final long sequence;
+    int attempts;
+    long readyAtNanos;
+
+    Delivery(String value, int levelNumber, long sequence) {
+      this.value = value;
+      this.levelNumber = levelNumber;
+      this.sequence = sequence;
+    }
+  }
+
+  private class Channel implements Runnable {
+    private final TARGET_TYPE type;
+    private final TokenBucket bucket;
+    /** only used by the worker thread */
+    private final Map<String, TokenBucket> destinations = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final TreeSet<Delivery> ready = new TreeSet<>(PRIORITY);
+    private final PriorityQueue<Delivery> deferred =
+        new PriorityQueue<>(Comparator.comparingLong(delivery -> delivery.readyAtNanos));
+    private final Thread worker;
+    private boolean closed;
+
+    Channel(TARGET_TYPE type, double ratePerSecond, int burst) {
+      this.type = type;
+      this.bucket = new TokenBucket(ratePerSecond, burst, System.nanoTime());
+      this.worker = new Thread(this, "notification-" + type.name().toLowerCase());
+      worker.setDaemon(true);
+      worker.start();
+    }
+
+    DELIVERY_STATUS offer(Delivery delivery) {
+      lock.lock();
+      try {
+        if (closed) {
+          return DELIVERY_STATUS.FAILED;
+        }
+        if (ready.size() + deferred.size() >= queueCapacity) {
+          //the queued ones are already accepted, so the new one is shed whatever its level
+          shed.increment();
+          log.warn("{} queue full. Shedding notification of level {} to [{}]", type, delivery.levelNumber, delivery.value);
+          return DELIVERY_STATUS.FAILED;
+        }
+        ready.add(delivery);
+        changed.signal();
+        return DELIVERY_STATUS.QUEUED;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    int depth() {
+      lock.lock();
+      try {
+        return ready.size() + deferred.size();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void close() {
+      lock.lock();
+      try {
+        closed = true;
+        if (!ready.isEmpty() || !deferred.isEmpty()) {
+          log.warn("Discarding {} queued {} notifications", ready.size() + deferred.size(), type);
+        }
+        ready.clear();
+        deferred.clear();
+      } finally {
+        lock.unlock();
+      }
+      worker.interrupt();
+    }
+
+    @Override
+    public void run() {
+      try {
+        Delivery delivery;
+        while ((delivery = take()) != null) {
+          long now = System.nanoTime();
+          TokenBucket destination = destinations.get(delivery.value);
+          if (destination == null) {
+            evictIdleDestinations(now);
+            destination = new TokenBucket(destinationRatePerSecond, destinationBurst, now);
+            destinations.put(delivery.value, destination);
+          }
+          long wait = destination.nanosToNextToken(now);
+          if (wait > 0) {
+            //other destinations can go meanwhile
+            requeue(delivery, now + wait);
+            continue;
+          }
+          wait = bucket.nanosToNextToken(now);
+          if (wait > 0) {
+            //give back the delivery so a more urgent one arrived meanwhile goes first
+            awaitToken(delivery, wait);
+            continue;
+          }
+          destination.tryAcquire(now);
+          bucket.tryAcquire(now);
+          send(delivery);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void send(Delivery delivery) {
+      delivery.attempts++;
+      try {
+        switch (type) {
+          case SMS:
+            smsAdapter.sendNotification(delivery.value);
+            break;
+          case EMAIL:
+            mailAdapter.sendNotification(delivery.value);
+            break;
+        }
+        sent.increment();
+      } catch (RuntimeException e) {
+        //never dropped: its level already counts as notified
+        if (delivery.attempts < maxAttempts) {
+          log.warn("Error notifying {} target [{}], attempt {}. Retrying", type, delivery.value, delivery.attempts, e);
+        } else {
+          log.error("Error notifying {} target [{}] after {} attempts. Retrying", type, delivery.value, delivery.attempts, e);
+          if (delivery.attempts == maxAttempts) {
+            failed.increment();
+          }
+        }
+        long backoff = retryBaseDelayNanos << (Math.min(delivery.attempts, maxAttempts) - 1);
+        long jitter = ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        retried.increment();
+        requeue(delivery, System.nanoTime() + backoff / 2 + jitter);
+      }
+    }
+
+    /**
+     * @return the most urgent delivery ready to be sent, null if the channel is closed
+     */
+    private Delivery take() throws InterruptedException {
+      lock.lock();
+      try {
+        while (!closed) {
+          long now = System.nanoTime();
+          while (!deferred.isEmpty() && deferred.peek().readyAtNanos - now <= 0) {
+            ready.add(deferred.poll());
+          }
+          Delivery delivery = ready.pollFirst();
+          if (delivery != null) {
+            return delivery;
+          }
+          if (deferred.isEmpty()) {
+            changed.await();
+          } else {
+            changed.awaitNanos(deferred.peek().readyAtNanos - now);
+          }
+        }
+        return null;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void requeue(Delivery delivery, long readyAtNanos) {
+      lock.lock();
+      try {
+        if (!closed) {
+          delivery.readyAtNanos = readyAtNanos;
+          deferred.add(delivery);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void awaitToken(Delivery delivery, long waitNanos) throws InterruptedException {
+      lock.lock();
+      try {
+        if (!closed) {
+          ready.add(delivery);
+          changed.awaitNanos(waitNanos);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void evictIdleDestinations(long now) {
+      if (destinations.size() >= MAX_DESTINATION_BUCKETS) {
+        destinations.values().removeIf(destination -> destination.isFull(now));
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+package com.jp.aircall.domain.service.notification;
+
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.model.policy.CompiledPolicy.CompiledLevel;
+import com.jp.aircall.domain.model.policy.Target.TARGET_TYPE;
+import com.jp.aircall.domain.service.notification.NotificationResult.DELIVERY_STATUS;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Notifies the targets one by one on the caller thread
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class SequentialNotificationDispatcher implements NotificationDispatcher {
+
+  private final SmsAdapter smsAdapter;
+  private final MailAdapter mailAdapter;
+
+  @Override
+  public List<NotificationResult> dispatch(CompiledLevel level) {
+    List<NotificationResult> results = new ArrayList<>(level.getTargetCount());
+    for (int i = 0; i < level.getPhoneCount(); i++) {
+      String phone = level.getPhone(i);
+      results.add(new NotificationResult(TARGET_TYPE.SMS, phone, send(smsAdapter, mailAdapter, TARGET_TYPE.SMS, phone)));
+    }
+    for (int i = 0; i < level.getEmailCount(); i++) {
+      String email = level.getEmail(i);
+      results.add(new NotificationResult(TARGET_TYPE.EMAIL, email, send(smsAdapter, mailAdapter, TARGET_TYPE.EMAIL, email)));
+    }
+    return results;
+  }
+
+  static DELIVERY_STATUS send(SmsAdapter smsAdapter, MailAdapter mailAdapter, TARGET_TYPE type, String value) {
+    try {
+      switch (type) {
+        case SMS:
+          smsAdapter.sendNotification(value);
+          break;
+        case EMAIL:
+          mailAdapter.sendNotification(value);
+          break;
+      }
+      return DELIVERY_STATUS.SENT;
+
+    } catch (RuntimeException e) {
+      log.warn("Error notifying {} target [{}]", type, value, e);
+      return DELIVERY_STATUS.FAILED;
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package com.jp.aircall.domain.service.notification;
+
+/**
+ * Token bucket refilled at a constant rate up to its burst. Time is given by the caller in nanoseconds, so the same
+ * bucket works with {@link System#nanoTime()} or with a virtual clock. Not thread safe.
+ */
+public class TokenBucket {
+
+  private final double tokensPerNano;
+  private final double burst;
+  private double tokens;
+  private long lastRefillNanos;
+
+  /**
+   * @param ratePerSecond tokens added per second
+   * @param burst max tokens accumulated, the bucket starts full
+   * @param nowNanos
+   */
+  public TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+    if (ratePerSecond <= 0 || burst <= 0) {
+      throw new IllegalArgumentException("ratePerSecond and burst must be positive: " + ratePerSecond + ", " + burst);
+    }
+    this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+    this.burst = burst;
+    this.tokens = burst;
+    this.lastRefillNanos = nowNanos;
+  }
+
+  /**
+   * @return true if a token has been taken
+   */
+  public boolean tryAcquire(long nowNanos) {
+    refill(nowNanos);
+    if (tokens >= 1) {
+      tokens -= 1;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return nanos until a token is available, 0 if there is one already
+   */
+  public long nanosToNextToken(long nowNanos) {
+    refill(nowNanos);
+    return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+  }
+
+  /**
+   * @return true if the bucket is full, so dropping it and creating a new one later makes no difference
+   */
+  public boolean isFull(long nowNanos) {
+    refill(nowNanos);
+    return tokens >= burst;
+  }
+
+  private void refill(long nowNanos) {
+    long elapsed = nowNanos - lastRefillNanos;
+    if (elapsed > 0) {
+      tokens = Math.min(burst, tokens + elapsed * tokensPerNano);
+      lastRefillNanos = nowNanos;
+    }
+  }
+}
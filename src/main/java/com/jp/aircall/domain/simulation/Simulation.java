@@ -0,0 +1,217 @@
+package com.jp.aircall.domain.simulation;
+
+import com.jp.aircall.domain.adapters.EPAdapter;
+import com.jp.aircall.domain.adapters.metrics.InstrumentedMailAdapter;
+import com.jp.aircall.domain.adapters.metrics.InstrumentedPersistenceAdapter;
+import com.jp.aircall.domain.adapters.metrics.InstrumentedSmsAdapter;
+import com.jp.aircall.domain.adapters.persistence.InMemoryPersistenceAdapter;
+import com.jp.aircall.domain.adapters.policy.CachingEPAdapter;
+import com.jp.aircall.domain.adapters.semaphore.InMemorySemaphoreAdapter;
+import com.jp.aircall.domain.adapters.timer.TimingWheelTimerAdapter;
+import com.jp.aircall.domain.metrics.AlertMetrics.OUTCOME;
+import com.jp.aircall.domain.metrics.MetricsRegistry;
+import com.jp.aircall.domain.metrics.MetricsSnapshot;
+import com.jp.aircall.domain.metrics.RecordingAlertMetrics;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import com.jp.aircall.domain.service.AlertService;
+import com.jp.aircall.domain.service.ServiceHealthIndex;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Replays a trace of events through an AlertService wired to the in-memory adapters, all of them on a
+ * {@link VirtualClock}: the clock jumps from an event to the next one, firing on the way the acknowledgement timers
+ * (kept by a {@link TimingWheelTimerAdapter}) as they expire. So a day of traffic with its 15 min escalations replays in
+ * seconds and, as everything runs on the calling thread, always with the same outcome.
+ * Services are registered as HEALTHY the first time the trace mentions them. A simulation can only be run once.
+ */
+@Slf4j
+public class Simulation {
+
+  public static final long DEFAULT_TICK_MS = 1000;
+  public static final long DEFAULT_DRAIN_MS = 2 * AlertService.ACK_TIMEOUT_MS;
+
+  private final VirtualClock clock;
+  private final long tickMs;
+  private final long drainMs;
+  private final MetricsRegistry registry = new MetricsRegistry();
+  private final TrackingPersistenceAdapter persistenceAdapter;
+  private final TimingWheelTimerAdapter timerAdapter;
+  private final AlertService alertService;
+  private final NotificationCounter notifications = new NotificationCounter();
+  private final Map<String, Boolean> knownServices = new HashMap<>();
+  private long events;
+  private long timeoutsFired;
+  private boolean ran;
+
+  /**
+   * @param epAdapter source of the escalation policies
+   * @param startMs initial time of the virtual clock, the trace can't start before it. 0 by default
+   * @param tickMs precision of the acknowledgement timers. 1s by default
+   * @param drainMs time simulated after the last event of the trace, so its alerts get escalated. 30 min by default
+   */
+  @Builder
+  private Simulation(EPAdapter epAdapter, Long startMs, Long tickMs, Long drainMs) {
+    this.clock = new VirtualClock(startMs != null ? startMs : 0);
+    this.tickMs = tickMs != null ? tickMs : DEFAULT_TICK_MS;
+    this.drainMs = drainMs != null ? drainMs : DEFAULT_DRAIN_MS;
+    this.persistenceAdapter = new TrackingPersistenceAdapter(clock);
+    this.timerAdapter = new TimingWheelTimerAdapter(this.tickMs, TimingWheelTimerAdapter.DEFAULT_WHEEL_SIZE, clock);
+    this.alertService = AlertService.builder()
+        .epAdapter(new CachingEPAdapter(epAdapter, Integer.MAX_VALUE, Long.MAX_VALUE / 2, clock))
+        .persistenceAdapter(new InstrumentedPersistenceAdapter(persistenceAdapter, registry))
+        .smsAdapter(new InstrumentedSmsAdapter(notifications::sms, registry))
+        .mailAdapter(new InstrumentedMailAdapter(notifications::mail, registry))
+        .timerAdapter(timerAdapter)
+        .semaphoreAdapter(new InMemorySemaphoreAdapter(InMemorySemaphoreAdapter.DEFAULT_LEASE_MS, clock))
+        .serviceHealthIndex(new ServiceHealthIndex(Long.MAX_VALUE / 2, clock))
+        .alertMetrics(new RecordingAlertMetrics(registry))
+        .clock(clock)
+        .build();
+  }
+
+  /**
+   * runs the whole trace
+   * @param trace events ordered by timestamp
+   * @return
+   * @throws IllegalArgumentException if the trace is not ordered
+   */
+  public SimulationReport run(Iterator<SimulationEvent> trace) {
+    if (ran) {
+      throw new IllegalStateException("Simulation already run");
+    }
+    ran = true;
+    long startMs = clock.millis();
+    long startNanos = System.nanoTime();
+    while (trace.hasNext()) {
+      SimulationEvent event = trace.next();
+      if (event.getTimestampMs() < clock.millis()) {
+        throw new IllegalArgumentException("Trace not ordered: " + event + " is before " + clock.millis());
+      }
+      advanceTo(event.getTimestampMs());
+      process(event);
+      events++;
+    }
+    advanceTo(clock.millis() + drainMs);
+    long wallNanos = System.nanoTime() - startNanos;
+
+    MetricsSnapshot metrics = registry.snapshot();
+    return new SimulationReport(events, timeoutsFired, clock.millis() - startMs, wallNanos,
+        metrics.getCounter(RecordingAlertMetrics.nameOf(OUTCOME.ALERT_RAISED)),
+        metrics.getCounter(RecordingAlertMetrics.nameOf(OUTCOME.LEVEL_ESCALATED)),
+        notifications.sms, notifications.mails, metrics);
+  }
+
+  /**
+   * Replays the csv trace of the given file (see {@link SimulationEvent}) or, without arguments, a synthetic trace of one
+   * million alerts on a thousand services, and logs the report
+   * @param args
+   * @throws IOException
+   */
+  public static void main(String[] args) throws IOException {
+    SimulationReport report;
+    if (args.length > 0) {
+      try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]))) {
+        Simulation simulation = Simulation.builder().epAdapter(SyntheticTrace.escalationPolicies(3, 2, 100)).build();
+        report = simulation.run(reader.lines()
+            .filter(line -> !line.isBlank() && !line.startsWith("#"))
+            .map(SimulationEvent::parse)
+            .iterator());
+      }
+    } else {
+      Simulation simulation = Simulation.builder().epAdapter(SyntheticTrace.escalationPolicies(3, 2, 100)).build();
+      report = simulation.run(SyntheticTrace.builder()
+          .seed(42)
+          .services(1000)
+          .alerts(1_000_000)
+          .meanAlertIntervalMs(50)
+          .ackProbability(0.5)
+          .meanAckDelayMs(20 * 60 * 1000)
+          .meanHealthyDelayMs(60 * 60 * 1000)
+          .build());
+    }
+    log.info("Simulation report: {}", report);
+  }
+
+  private void advanceTo(long targetMs) {
+    //step tick by tick while there are timers, so every timer fires at its own (virtual) time
+    while (timerAdapter.size() > 0 && clock.millis() + tickMs <= targetMs) {
+      clock.advance(tickMs);
+      fireExpiredTimers();
+    }
+    clock.set(targetMs);
+    fireExpiredTimers();
+  }
+
+  private void fireExpiredTimers() {
+    List<String> expired = timerAdapter.advance();
+    if (!expired.isEmpty()) {
+      timeoutsFired += expired.size();
+      alertService.acknowledgementTimeouts(expired);
+    }
+  }
+
+  private void process(SimulationEvent event) {
+    if (event.getServiceId() != null && knownServices.putIfAbsent(event.getServiceId(), Boolean.TRUE) == null) {
+      persistenceAdapter.updateService(new Service(event.getServiceId(), SERVICE_STATUS.HEALTHY));
+    }
+    switch (event.getType()) {
+      case ALERT:
+        alertService.newAlert(new AlertEvent(event.getMessage(), event.getServiceId()));
+        break;
+      case ACK:
+        String pagerAlertId = event.getPagerAlertId() != null ? event.getPagerAlertId()
+            : persistenceAdapter.lastAlertIds.get(event.getServiceId());
+        if (pagerAlertId != null) {
+          alertService.alertAcknowledgement(pagerAlertId);
+        }
+        break;
+      case HEALTHY:
+        alertService.serviceHealthy(event.getServiceId());
+        break;
+      case TIMEOUT:
+        alertService.acknowledgementTimeout(event.getPagerAlertId());
+        break;
+    }
+  }
+
+  /** remembers the last alert of every service, to resolve the acks of the traces that don't know the alert ids */
+  private static class TrackingPersistenceAdapter extends InMemoryPersistenceAdapter {
+    final Map<String, String> lastAlertIds = new HashMap<>();
+
+    TrackingPersistenceAdapter(VirtualClock clock) {
+      super(clock);
+    }
+
+    @Override
+    public void savePagerAlert(PagerAlert pagerAlert) {
+      super.savePagerAlert(pagerAlert);
+      lastAlertIds.put(pagerAlert.getServiceId(), pagerAlert.getId());
+    }
+  }
+
+  /** the sms and mail adapters of the simulation, they only count the notifications */
+  private static class NotificationCounter {
+    long sms;
+    long mails;
+
+    void sms(String phone) {
+      sms++;
+    }
+
+    void mail(String mail) {
+      mails++;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.jp.aircall.domain.simulation;
+
+import lombok.Data;
+
+/**
+ * An event of a simulation trace. Its csv form is timestampMs,type,serviceId,pagerAlertId,message with empty values for
+ * the missing fields, e.g. 1000,ALERT,service1,,Disk full
+ */
+@Data
+public class SimulationEvent {
+
+  /**
+   * ACK without pagerAlertId acknowledges the last alert raised for the service. TIMEOUT is a recorded timer firing, the
+   * timers set by the pager during the simulation fire by themselves
+   */
+  public enum EVENT_TYPE {ALERT, ACK, HEALTHY, TIMEOUT}
+
+  private final long timestampMs;
+  private final EVENT_TYPE type;
+  private final String serviceId;
+  private final String pagerAlertId;
+  private final String message;
+
+  public static SimulationEvent alert(long timestampMs, String serviceId, String message) {
+    return new SimulationEvent(timestampMs, EVENT_TYPE.ALERT, serviceId, null, message);
+  }
+
+  public static SimulationEvent ack(long timestampMs, String serviceId) {
+    return new SimulationEvent(timestampMs, EVENT_TYPE.ACK, serviceId, null, null);
+  }
+
+  public static SimulationEvent healthy(long timestampMs, String serviceId) {
+    return new SimulationEvent(timestampMs, EVENT_TYPE.HEALTHY, serviceId, null, null);
+  }
+
+  /**
+   * @param csv
+   * @return the event of the given csv line
+   * @throws IllegalArgumentException if it is not a valid line
+   */
+  public static SimulationEvent parse(String csv) {
+    String[] fields = csv.split(",", 5);
+    if (fields.length < 3) {
+      throw new IllegalArgumentException("Invalid simulation event: " + csv);
+    }
+    return new SimulationEvent(Long.parseLong(fields[0].trim()), EVENT_TYPE.valueOf(fields[1].trim()), emptyToNull(fields[2]),
+        fields.length > 3 ? emptyToNull(fields[3]) : null, fields.length > 4 ? emptyToNull(fields[4]) : null);
+  }
+
+  public String toCsv() {
+    return timestampMs + "," + type + "," + nullToEmpty(serviceId) + "," + nullToEmpty(pagerAlertId) + "," + nullToEmpty(message);
+  }
+
+  private static String emptyToNull(String value) {
+    String trimmed = value.trim();
+    return trimmed.isEmpty() ? null : trimmed;
+  }
+
+  private static String nullToEmpty(String value) {
+    return value == null ? "" : value;
+  }
+}
@@ -0,0 +1,32 @@
+package com.jp.aircall.domain.simulation;
+
+import com.jp.aircall.domain.metrics.MetricsSnapshot;
+import lombok.Data;
+
+/**
+ * Outcome of a {@link Simulation} run. The per operation latencies of the AlertService and the adapters are in metrics
+ */
+@Data
+public class SimulationReport {
+
+  private final long events;
+  private final long timeoutsFired;
+  private final long simulatedMs;
+  private final long wallNanos;
+  private final long alertsRaised;
+  private final long escalations;
+  private final long smsSent;
+  private final long mailsSent;
+  private final MetricsSnapshot metrics;
+
+  public double getEventsPerSecond() {
+    return wallNanos == 0 ? 0 : events * 1_000_000_000.0 / wallNanos;
+  }
+
+  /**
+   * @return how many times faster than real time the simulation ran
+   */
+  public double getSpeedUp() {
+    return wallNanos == 0 ? 0 : simulatedMs * 1_000_000.0 / wallNanos;
+  }
+}
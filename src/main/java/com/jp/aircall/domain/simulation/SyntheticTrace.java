@@ -0,0 +1,135 @@
+package com.jp.aircall.domain.simulation;
+
+import com.jp.aircall.domain.adapters.EPAdapter;
+import com.jp.aircall.domain.model.policy.EmailTarget;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Level;
+import com.jp.aircall.domain.model.policy.SmsTarget;
+import com.jp.aircall.domain.model.policy.Target;
+import com.jp.aircall.domain.simulation.SimulationEvent.EVENT_TYPE;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import lombok.Builder;
+
+/**
+ * Generates a random but reproducible (for the same seed) trace on the fly: alerts arrive as a Poisson process on
+ * random services. The first alert of a service starts an incident: it may be acknowledged, and the service becomes
+ * healthy again, after exponentially distributed delays. Alerts of a service during its incident are just repeated
+ * alerts. Events are returned ordered by timestamp.
+ */
+public class SyntheticTrace implements Iterator<SimulationEvent> {
+
+  private static final String SERVICE_PREFIX = "service";
+
+  private final Random random;
+  private final int services;
+  private final double meanAlertIntervalMs;
+  private final double ackProbability;
+  private final double meanAckDelayMs;
+  private final double meanHealthyDelayMs;
+  private final PriorityQueue<SimulationEvent> scheduled =
+      new PriorityQueue<>(Comparator.comparingLong(SimulationEvent::getTimestampMs));
+  private final boolean[] inIncident;
+  private long remainingAlerts;
+  private long nextAlertTs;
+
+  /**
+   * @param seed
+   * @param services number of services, named service0, service1...
+   * @param alerts number of alerts of the trace
+   * @param startMs timestamp of the first alert
+   * @param meanAlertIntervalMs mean time between alerts of any service
+   * @param ackProbability probability of an alert to be acknowledged
+   * @param meanAckDelayMs mean time to acknowledge an alert
+   * @param meanHealthyDelayMs mean time for a service to be healthy again after an alert
+   */
+  @Builder
+  private SyntheticTrace(long seed, int services, long alerts, long startMs, double meanAlertIntervalMs,
+      double ackProbability, double meanAckDelayMs, double meanHealthyDelayMs) {
+    if (services <= 0 || alerts < 0 || meanAlertIntervalMs <= 0 || meanAckDelayMs <= 0 || meanHealthyDelayMs <= 0) {
+      throw new IllegalArgumentException("services and the mean delays must be positive");
+    }
+    this.random = new Random(seed);
+    this.services = services;
+    this.inIncident = new boolean[services];
+    this.remainingAlerts = alerts;
+    this.nextAlertTs = startMs;
+    this.meanAlertIntervalMs = meanAlertIntervalMs;
+    this.ackProbability = ackProbability;
+    this.meanAckDelayMs = meanAckDelayMs;
+    this.meanHealthyDelayMs = meanHealthyDelayMs;
+  }
+
+  /**
+   * Policies of levels of targetsPerLevel targets, half sms half email, for any service id. Targets are taken from a pool
+   * shared by all the services, so the policies overlap like real on-call rotations do
+   * @param levels
+   * @param targetsPerLevel
+   * @param targetPool number of distinct phones (and emails)
+   * @return
+   */
+  public static EPAdapter escalationPolicies(int levels, int targetsPerLevel, int targetPool) {
+    return serviceId -> {
+      int seed = Math.floorMod(serviceId.hashCode(), targetPool);
+      List<Level> policyLevels = new ArrayList<>(levels);
+      for (int level = 0; level < levels; level++) {
+        Set<Target> targets = new HashSet<>();
+        for (int target = 0; target < targetsPerLevel; target++) {
+          int index = (seed + level * targetsPerLevel + target) % targetPool;
+          targets.add(target % 2 == 0 ? new SmsTarget("+34600" + index) : new EmailTarget("oncall" + index + "@mail.com"));
+        }
+        policyLevels.add(new Level(targets));
+      }
+      return Optional.of(new EscalationPolicy(serviceId, policyLevels));
+    };
+  }
+
+  @Override
+  public boolean hasNext() {
+    return remainingAlerts > 0 || !scheduled.isEmpty();
+  }
+
+  @Override
+  public SimulationEvent next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    if (remainingAlerts == 0 || (!scheduled.isEmpty() && scheduled.peek().getTimestampMs() < nextAlertTs)) {
+      SimulationEvent event = scheduled.poll();
+      if (event.getType() == EVENT_TYPE.HEALTHY) {
+        inIncident[serviceIndex(event.getServiceId())] = false;
+      }
+      return event;
+    }
+    long ts = nextAlertTs;
+    int service = random.nextInt(services);
+    String serviceId = SERVICE_PREFIX + service;
+    if (!inIncident[service]) {
+      inIncident[service] = true;
+      long healthyTs = ts + exponential(meanHealthyDelayMs);
+      if (random.nextDouble() < ackProbability) {
+        scheduled.add(SimulationEvent.ack(Math.min(ts + exponential(meanAckDelayMs), healthyTs), serviceId));
+      }
+      scheduled.add(SimulationEvent.healthy(healthyTs, serviceId));
+    }
+    remainingAlerts--;
+    nextAlertTs += exponential(meanAlertIntervalMs);
+    return SimulationEvent.alert(ts, serviceId, "Synthetic alert");
+  }
+
+  private static int serviceIndex(String serviceId) {
+    return Integer.parseInt(serviceId.substring(SERVICE_PREFIX.length()));
+  }
+
+  private long exponential(double mean) {
+    return (long) (-mean * Math.log(1 - random.nextDouble()));
+  }
+}
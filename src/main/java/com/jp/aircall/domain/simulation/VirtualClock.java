@@ -0,0 +1,54 @@
+package com.jp.aircall.domain.simulation;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Clock whose time only moves when told to, so simulations run as fast as the CPU allows whatever the simulated time.
+ * Not thread safe: it is meant to be moved by the thread driving the simulation
+ */
+public class VirtualClock extends Clock {
+
+  private long millis;
+
+  public VirtualClock(long startMillis) {
+    this.millis = startMillis;
+  }
+
+  @Override
+  public long millis() {
+    return millis;
+  }
+
+  @Override
+  public Instant instant() {
+    return Instant.ofEpochMilli(millis);
+  }
+
+  @Override
+  public ZoneId getZone() {
+    return ZoneOffset.UTC;
+  }
+
+  @Override
+  public Clock withZone(ZoneId zone) {
+    throw new UnsupportedOperationException("A virtual clock is always UTC");
+  }
+
+  public void advance(long deltaMs) {
+    set(millis + deltaMs);
+  }
+
+  /**
+   * @param millis
+   * @throws IllegalArgumentException if it is in the past, time never goes back
+   */
+  public void set(long millis) {
+    if (millis < this.millis) {
+      throw new IllegalArgumentException("Virtual clock can't go back from " + this.millis + " to " + millis);
+    }
+    this.millis = millis;
+  }
+}
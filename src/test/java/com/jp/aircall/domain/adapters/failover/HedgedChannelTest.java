@@ -0,0 +1,192 @@
+package com.jp.aircall.domain.adapters.failover;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.adapters.failover.CircuitBreaker.STATE;
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HedgedChannelTest {
+
+  private Clock clock;
+  private FakeSmsProvider primary;
+  private FakeSmsProvider secondary;
+  private HedgedSmsAdapter smsAdapter;
+
+  @Before
+  public void setUp() {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(1000L);
+    primary = new FakeSmsProvider();
+    secondary = new FakeSmsProvider();
+    smsAdapter = new HedgedSmsAdapter(HedgedChannel.<SmsAdapter>builder()
+        .name("sms")
+        .provider("primary", primary)
+        .provider("secondary", secondary)
+        .clock(clock)
+        //well over the time a failing provider takes to fail, so its failures are always failed over and not hedged
+        .hedgeDelayMs(100L)
+        .timeoutMs(2000L)
+        .failureThreshold(3)
+        .openMs(10_000L)
+        .build());
+  }
+
+  @After
+  public void tearDown() {
+    smsAdapter.close();
+  }
+
+  @Test
+  public void slowPrimaryIsHedgedToTheSecondary() {
+    primary.latencyMs = 500;
+
+    long start = System.nanoTime();
+    smsAdapter.sendNotification("+34666666666");
+
+    assertTrue((System.nanoTime() - start) / 1_000_000 < 400);
+    assertEquals(1, secondary.sent.get());
+    assertEquals(1, smsAdapter.getChannel().getHedged());
+  }
+
+  @Test
+  public void failingPrimaryFailsOverAndOpensItsBreaker() {
+    primary.failing = true;
+    for (int i = 0; i < 3; i++) {
+      smsAdapter.sendNotification("+34666666666");
+    }
+    assertEquals(3, smsAdapter.getChannel().getFailedOver());
+    assertEquals(STATE.OPEN, smsAdapter.getChannel().getBreakerState("primary"));
+
+    smsAdapter.sendNotification("+34666666666");
+    assertEquals(3, primary.calls.get()); //skipped while open
+    assertEquals(4, secondary.sent.get());
+
+    primary.failing = false;
+    when(clock.millis()).thenReturn(11_000L);
+    assertEquals(STATE.HALF_OPEN, smsAdapter.getChannel().getBreakerState("primary"));
+    smsAdapter.sendNotification("+34666666666");
+    assertEquals(1, primary.sent.get());
+    assertEquals(STATE.CLOSED, smsAdapter.getChannel().getBreakerState("primary"));
+    assertEquals(1, smsAdapter.getChannel().getBreakerOpened());
+  }
+
+  @Test
+  public void fastestProviderIsPreferred() {
+    primary.latencyMs = 5;
+    for (int i = 0; i < HedgedChannel.MIN_SAMPLES; i++) {
+      smsAdapter.sendNotification("+34666666666");
+    }
+    assertEquals(List.of("primary", "secondary"), smsAdapter.getChannel().getProviderOrder());
+
+    //the secondary gets measured while it takes over the primary failures
+    primary.failing = true;
+    for (int i = 0; i < HedgedChannel.MIN_SAMPLES; i++) {
+      smsAdapter.sendNotification("+34666666666");
+    }
+    primary.failing = false;
+    when(clock.millis()).thenReturn(11_000L);
+
+    assertEquals(List.of("secondary", "primary"), smsAdapter.getChannel().getProviderOrder());
+  }
+
+  @Test
+  public void halfOpenProviderKeepsItsTrialUntilItIsCalled() {
+    primary.failing = true;
+    secondary.failing = true;
+    for (int i = 0; i < 3; i++) {
+      try {
+        smsAdapter.sendNotification("+34666666666");
+        fail();
+      } catch (IllegalStateException e) {
+        //both open after 3 failures
+      }
+    }
+    primary.failing = false;
+    secondary.failing = false;
+    when(clock.millis()).thenReturn(11_000L);
+
+    assertEquals(List.of("primary", "secondary"), smsAdapter.getChannel().getProviderOrder());
+    smsAdapter.sendNotification("+34666666666");
+    assertEquals(STATE.CLOSED, smsAdapter.getChannel().getBreakerState("primary"));
+    assertEquals(STATE.HALF_OPEN, smsAdapter.getChannel().getBreakerState("secondary"));
+
+    //the secondary was not called, so its trial is still there for the failover
+    primary.failing = true;
+    smsAdapter.sendNotification("+34666666666");
+    assertEquals(1, secondary.sent.get());
+    assertEquals(STATE.CLOSED, smsAdapter.getChannel().getBreakerState("secondary"));
+  }
+
+  @Test
+  public void timedOutCallIsCountedOnceAsFailed() throws Exception {
+    HedgedChannel<SmsAdapter> channel = HedgedChannel.<SmsAdapter>builder()
+        .provider("primary", primary)
+        .clock(clock)
+        .timeoutMs(50L)
+        .failureThreshold(2)
+        .build();
+    primary.latencyMs = 200;
+    try {
+      for (int i = 0; i < 2; i++) {
+        try {
+          channel.send("+34666666666", SmsAdapter::sendNotification);
+          fail();
+        } catch (IllegalStateException e) {
+          //timed out
+        }
+        Thread.sleep(300); //the late success must not reset the breaker
+      }
+
+      assertEquals(2, primary.sent.get());
+      assertEquals(STATE.OPEN, channel.getBreakerState("primary"));
+    } finally {
+      channel.close();
+    }
+  }
+
+  @Test
+  public void failsWhenAllTheProvidersFail() {
+    primary.failing = true;
+    secondary.failing = true;
+    try {
+      smsAdapter.sendNotification("+34666666666");
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals(2, e.getSuppressed().length);
+    }
+  }
+
+  /** in-process SMS provider with injectable latency and failures */
+  private static class FakeSmsProvider implements SmsAdapter {
+    private volatile long latencyMs;
+    private volatile boolean failing;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger sent = new AtomicInteger();
+
+    @Override
+    public void sendNotification(String phone) {
+      calls.incrementAndGet();
+      if (latencyMs > 0) {
+        try {
+          Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      if (failing) {
+        throw new IllegalStateException("provider down");
+      }
+      sent.incrementAndGet();
+    }
+  }
+}
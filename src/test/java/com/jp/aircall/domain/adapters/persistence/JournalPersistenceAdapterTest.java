@@ -0,0 +1,176 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.jp.aircall.domain.adapters.persistence.JournalPersistenceAdapter.DURABILITY;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalPersistenceAdapterTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path directory;
+
+  @Before
+  public void setUp() {
+    directory = folder.getRoot().toPath();
+  }
+
+  @Test
+  public void stateIsReplayedOnRestart() throws IOException {
+    PagerAlert open;
+    PagerAlert otherService;
+    try (JournalPersistenceAdapter journal = open(1024 * 1024, 0)) {
+      journal.updateService(new Service("service1", SERVICE_STATUS.UNHEALTHY));
+      open = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+      journal.savePagerAlert(open);
+      otherService = new PagerAlert("service2", null, ALERT_STATUS.OPEN, 2, 1000, 2000);
+      journal.savePagerAlert(otherService);
+      otherService.setStatus(ALERT_STATUS.ACKNOWLEDGED);
+      otherService.setAcknowledgmentTs(3000);
+      journal.updatePagerAlert(otherService);
+      assertEquals(List.of(open.getId()), journal.closeAllServiceAlerts("service1"));
+    }
+
+    try (JournalPersistenceAdapter journal = open(1024 * 1024, 0)) {
+      assertEquals(SERVICE_STATUS.UNHEALTHY, journal.getService("service1").get().getStatus());
+      assertEquals(List.of("service1"), List.copyOf(journal.getUnhealthyServiceIds()));
+      PagerAlert closed = journal.getPagerAlert(open.getId()).get();
+      assertEquals(ALERT_STATUS.CLOSED, closed.getStatus());
+      assertTrue(closed.getClosedTs() > 0);
+      assertEquals(otherService, journal.getPagerAlert(otherService.getId()).get());
+      assertTrue(journal.closeAllServiceAlerts("service1").isEmpty());
+      assertEquals(List.of(otherService.getId()), journal.closeAllServiceAlerts("service2"));
+    }
+  }
+
+  @Test
+  public void bulkUpdatesAreReplayedOnRestart() throws IOException {
+    PagerAlert first = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    PagerAlert second = new PagerAlert("service2", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    try (JournalPersistenceAdapter journal = open(1024 * 1024, 0)) {
+      journal.updateServices(List.of(new Service("service1", SERVICE_STATUS.UNHEALTHY), new Service("service2", SERVICE_STATUS.UNHEALTHY)));
+      journal.savePagerAlert(first);
+      journal.savePagerAlert(second);
+      first.setStatus(ALERT_STATUS.ACKNOWLEDGED);
+      second.setStatus(ALERT_STATUS.ACKNOWLEDGED);
+      journal.updatePagerAlerts(List.of(first, second));
+      journal.updateServices(List.of());
+    }
+
+    try (JournalPersistenceAdapter journal = open(1024 * 1024, 0)) {
+      assertEquals(2, journal.getUnhealthyServiceIds().size());
+      assertEquals(first, journal.getPagerAlerts(List.of(first.getId())).get(first.getId()));
+      assertEquals(second, journal.getPagerAlert(second.getId()).get());
+    }
+  }
+
+  @Test
+  public void snapshotReplacesOldSegments() throws IOException {
+    List<PagerAlert> alerts;
+    try (JournalPersistenceAdapter journal = open(4096, 0)) {
+      alerts = saveAlerts(journal, 200); //several segments
+      journal.snapshot();
+      List<String> files = files();
+      assertEquals(2, files.size());
+      assertEquals(files.get(0).replace("journal-", "").replace(".log", ""), files.get(1).replace("snapshot-", "").replace(".snap", ""));
+      PagerAlert last = alerts.get(199);
+      last.setStatus(ALERT_STATUS.ACKNOWLEDGED);
+      journal.updatePagerAlert(last);
+    }
+
+    try (JournalPersistenceAdapter journal = open(4096, 0)) {
+      for (PagerAlert pagerAlert : alerts) {
+        assertEquals(pagerAlert, journal.getPagerAlert(pagerAlert.getId()).get());
+      }
+    }
+  }
+
+  @Test
+  public void snapshotsAreTakenEveryNSegments() throws IOException, InterruptedException {
+    try (JournalPersistenceAdapter journal = open(4096, 2)) {
+      saveAlerts(journal, 200);
+      for (int i = 0; i < 50 && files().stream().noneMatch(file -> file.endsWith(".snap")); i++) {
+        Thread.sleep(100);
+      }
+    }
+    assertTrue(files().stream().anyMatch(file -> file.endsWith(".snap")));
+  }
+
+  @Test
+  public void tornTailIsIgnored() throws IOException {
+    PagerAlert pagerAlert;
+    try (JournalPersistenceAdapter journal = open(4096, 0)) {
+      pagerAlert = saveAlerts(journal, 1).get(0);
+      journal.updateService(new Service("service1", SERVICE_STATUS.UNHEALTHY));
+    }
+    //corrupt the last record as a crash in the middle of the write would do
+    long serviceRecordStart = JournalCodec.RECORD_OVERHEAD + 4 + 36 + 4 + 8 + 4 + 12 + 1 + 4 + 4 * 8;
+    try (RandomAccessFile file = new RandomAccessFile(directory.resolve("journal-00000000000000000000.log").toFile(), "rw")) {
+      file.seek(serviceRecordStart + 10);
+      file.write(0x7f);
+    }
+
+    try (JournalPersistenceAdapter journal = open(4096, 0)) {
+      assertEquals(pagerAlert, journal.getPagerAlert(pagerAlert.getId()).get());
+      assertFalse(journal.getService("service1").isPresent());
+      journal.updateService(new Service("service2", SERVICE_STATUS.HEALTHY));
+    }
+    try (JournalPersistenceAdapter journal = open(4096, 0)) {
+      assertTrue(journal.getService("service2").isPresent());
+    }
+  }
+
+  @Test
+  public void semaphoresAreNotPersisted() throws IOException, ServiceAlertingAlreadyException {
+    try (JournalPersistenceAdapter journal = open(4096, 0)) {
+      journal.addAlertingService("service1");
+    }
+    try (JournalPersistenceAdapter journal = open(4096, 0)) {
+      journal.addAlertingService("service1");
+    }
+  }
+
+  private JournalPersistenceAdapter open(int segmentSize, int snapshotEverySegments) throws IOException {
+    return JournalPersistenceAdapter.builder()
+        .directory(directory)
+        .segmentSize(segmentSize)
+        .durability(DURABILITY.SYNC)
+        .snapshotEverySegments(snapshotEverySegments)
+        .build();
+  }
+
+  private static List<PagerAlert> saveAlerts(JournalPersistenceAdapter journal, int count) {
+    List<PagerAlert> alerts = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      PagerAlert pagerAlert = new PagerAlert("service" + (i % 10), "AlertMessage", ALERT_STATUS.OPEN, 1, 1000 + i, 1000 + i);
+      journal.savePagerAlert(pagerAlert);
+      alerts.add(pagerAlert);
+    }
+    return alerts;
+  }
+
+  private List<String> files() throws IOException {
+    try (Stream<Path> paths = Files.list(directory)) {
+      return paths.map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList());
+    }
+  }
+}
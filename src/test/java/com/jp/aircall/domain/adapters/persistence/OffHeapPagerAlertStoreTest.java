@@ -0,0 +1,156 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapPagerAlertStoreTest {
+
+  private OffHeapPagerAlertStore store;
+
+  @Before
+  public void setUp() {
+    store = new OffHeapPagerAlertStore(4, 2);
+  }
+
+  @Test
+  public void roundTripAcrossSlabsAndResizes() {
+    List<PagerAlert> pagerAlerts = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      PagerAlert pagerAlert = new PagerAlert("service" + (i % 3), "AlertMessage", ALERT_STATUS.OPEN, i, 1000 + i, 2000 + i);
+      pagerAlert.setAcknowledgmentTs(3000 + i);
+      store.put(pagerAlert);
+      pagerAlerts.add(pagerAlert);
+    }
+
+    assertEquals(50, store.size());
+    assertEquals(13 * 4 * PagerAlertCodec.RECORD_SIZE, store.getOffHeapBytes());
+    for (PagerAlert pagerAlert : pagerAlerts) {
+      assertEquals(pagerAlert, store.get(pagerAlert.getId()).get());
+    }
+  }
+
+  @Test
+  public void putReplacesTheRecord() {
+    PagerAlert pagerAlert = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    store.put(pagerAlert);
+    pagerAlert.setStatus(ALERT_STATUS.CLOSED);
+    pagerAlert.setClosedTs(5000);
+    store.put(pagerAlert);
+
+    assertEquals(1, store.size());
+    assertEquals(pagerAlert, store.get(pagerAlert.getId()).get());
+  }
+
+  @Test
+  public void viewWritesInPlace() {
+    PagerAlert pagerAlert = new PagerAlert("service1", null, ALERT_STATUS.OPEN, 1, 1000, 1000);
+    store.put(pagerAlert);
+    PagerAlertView view = store.newView();
+
+    assertTrue(store.view(pagerAlert.getId(), view));
+    assertEquals(pagerAlert, view);
+    view.setStatus(ALERT_STATUS.ACKNOWLEDGED);
+    view.setAcknowledgmentTs(4000);
+
+    PagerAlert stored = store.get(pagerAlert.getId()).get();
+    assertEquals(ALERT_STATUS.ACKNOWLEDGED, stored.getStatus());
+    assertEquals(4000, stored.getAcknowledgmentTs());
+    assertEquals(null, stored.getAlertMessage());
+  }
+
+  @Test
+  public void messagesAreKeptWhole() {
+    String multiByte = "caf\u00e9 \u20ac \ud83d\udea8";
+    PagerAlert pagerAlert = new PagerAlert("service1", multiByte, ALERT_STATUS.OPEN, 1, 1000, 1000);
+    store.put(pagerAlert);
+    assertEquals(multiByte, store.get(pagerAlert.getId()).get().getAlertMessage());
+
+    String longMessage = "x".repeat(10 * PagerAlertCodec.RECORD_SIZE) + "\u20ac";
+    PagerAlertView view = store.newView();
+    store.view(pagerAlert.getId(), view);
+    view.setAlertMessage(longMessage);
+
+    assertEquals(longMessage, store.get(pagerAlert.getId()).get().getAlertMessage());
+    assertEquals(longMessage, view.getAlertMessage());
+  }
+
+  @Test
+  public void messagesAreSharedAndEvictedWhenNoRecordReferencesThem() {
+    PagerAlert first = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    PagerAlert second = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    store.put(first);
+    store.put(second);
+    assertEquals(1, store.getMessageCount());
+
+    first.setAlertMessage("Other");
+    store.put(first);
+    assertEquals(2, store.getMessageCount());
+    second.setAlertMessage(null);
+    store.put(second);
+    assertEquals(1, store.getMessageCount());
+
+    PagerAlertView view = store.newView();
+    store.view(first.getId(), view);
+    view.setAlertMessage("AlertMessage");
+    assertEquals(1, store.getMessageCount());
+    assertEquals("AlertMessage", store.get(first.getId()).get().getAlertMessage());
+    assertEquals(null, store.get(second.getId()).get().getAlertMessage());
+  }
+
+  @Test
+  public void keepsTheGivenVersion() {
+    PagerAlert pagerAlert = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    store.put(pagerAlert, 7);
+
+    assertEquals(7, store.versionOf(pagerAlert.getId()));
+    assertEquals(7, store.get(pagerAlert.getId()).get().getVersion());
+    assertEquals(-1, store.versionOf("00000000-0000-0000-0000-000000000001"));
+  }
+
+  @Test
+  public void readersNeverSeeARecordNotWrittenYet() throws Exception {
+    store = new OffHeapPagerAlertStore(1024, 16);
+    List<PagerAlert> pagerAlerts = new ArrayList<>();
+    for (int i = 0; i < 20_000; i++) {
+      pagerAlerts.add(new PagerAlert("service" + (i % 7), "AlertMessage", ALERT_STATUS.ACKNOWLEDGED, 1, 1000, 1000));
+    }
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicReference<PagerAlert> torn = new AtomicReference<>();
+    Thread reader = new Thread(() -> {
+      while (!done.get() && torn.get() == null) {
+        for (PagerAlert pagerAlert : pagerAlerts) {
+          store.get(pagerAlert.getId()).filter(stored -> !stored.equals(pagerAlert)).ifPresent(torn::set);
+        }
+      }
+    });
+    reader.start();
+    pagerAlerts.forEach(store::put);
+    done.set(true);
+    reader.join();
+
+    assertEquals(null, torn.get());
+  }
+
+  @Test
+  public void unknownIds() {
+    assertFalse(store.get("not-a-uuid").isPresent());
+    assertFalse(store.view("00000000-0000-0000-0000-000000000001", store.newView()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNonUuidIds() {
+    PagerAlert pagerAlert = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    pagerAlert.setId("alert-1");
+    store.put(pagerAlert);
+  }
+}
@@ -0,0 +1,126 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import java.time.Clock;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OffHeapPersistenceAdapterTest {
+
+  private OffHeapPersistenceAdapter persistenceAdapter;
+
+  @Before
+  public void setUp() {
+    Clock clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(5000L);
+    persistenceAdapter = new OffHeapPersistenceAdapter(clock, new OffHeapPagerAlertStore(4, 2));
+  }
+
+  @Test
+  public void closeAllServiceAlertsOnlyClosesOpenAlertsOfTheService() {
+    PagerAlert open = saveAlert("service1", ALERT_STATUS.OPEN);
+    PagerAlert acknowledged = saveAlert("service1", ALERT_STATUS.ACKNOWLEDGED);
+    PagerAlert alreadyClosed = saveAlert("service1", ALERT_STATUS.CLOSED);
+    PagerAlert otherService = saveAlert("service2", ALERT_STATUS.OPEN);
+    assertEquals(2, persistenceAdapter.countOpenAlerts("service1"));
+
+    List<String> closed = persistenceAdapter.closeAllServiceAlerts("service1");
+
+    assertEquals(Set.of(open.getId(), acknowledged.getId()), Set.copyOf(closed));
+    PagerAlert closedAlert = persistenceAdapter.getPagerAlert(open.getId()).get();
+    assertEquals(ALERT_STATUS.CLOSED, closedAlert.getStatus());
+    assertEquals(5000L, closedAlert.getClosedTs());
+    assertEquals("AlertMessage", closedAlert.getAlertMessage());
+    assertEquals(0L, persistenceAdapter.getPagerAlert(alreadyClosed.getId()).get().getClosedTs());
+    assertEquals(ALERT_STATUS.OPEN, persistenceAdapter.getPagerAlert(otherService.getId()).get().getStatus());
+    assertEquals(0, persistenceAdapter.countOpenAlerts("service1"));
+    assertTrue(persistenceAdapter.closeAllServiceAlerts("service1").isEmpty());
+  }
+
+  @Test
+  public void returnsCopies() {
+    PagerAlert pagerAlert = saveAlert("service1", ALERT_STATUS.OPEN);
+    persistenceAdapter.getPagerAlert(pagerAlert.getId()).get().setStatus(ALERT_STATUS.CLOSED);
+
+    assertEquals(ALERT_STATUS.OPEN, persistenceAdapter.getPagerAlert(pagerAlert.getId()).get().getStatus());
+  }
+
+  @Test
+  public void pagesOpenAlertsById() {
+    Set<String> open = new HashSet<>();
+    for (int i = 0; i < 5; i++) {
+      open.add(saveAlert("service" + i, ALERT_STATUS.OPEN).getId());
+    }
+    saveAlert("service1", ALERT_STATUS.ACKNOWLEDGED);
+    PagerAlert closedLater = saveAlert("service9", ALERT_STATUS.OPEN);
+    persistenceAdapter.closeAllServiceAlerts("service9");
+
+    List<PagerAlert> first = persistenceAdapter.getOpenPagerAlerts(null, 3);
+    List<PagerAlert> second = persistenceAdapter.getOpenPagerAlerts(first.get(2).getId(), 3);
+
+    assertEquals(3, first.size());
+    assertEquals(2, second.size());
+    assertTrue(first.get(2).getId().compareTo(second.get(0).getId()) < 0);
+    Set<String> paged = new HashSet<>();
+    first.forEach(pagerAlert -> paged.add(pagerAlert.getId()));
+    second.forEach(pagerAlert -> paged.add(pagerAlert.getId()));
+    assertEquals(open, paged);
+    assertFalse(paged.contains(closedLater.getId()));
+  }
+
+  @Test
+  public void versionedUpdatesRejectStaleWrites() {
+    PagerAlert saved = saveAlert("service1", ALERT_STATUS.OPEN);
+    PagerAlert first = persistenceAdapter.getPagerAlert(saved.getId()).get();
+    PagerAlert second = persistenceAdapter.getPagerAlert(saved.getId()).get();
+    assertEquals(1, first.getVersion());
+
+    first.setStatus(ALERT_STATUS.ACKNOWLEDGED);
+    assertTrue(persistenceAdapter.updatePagerAlertIfVersion(first, 1));
+    assertEquals(2, first.getVersion());
+    second.setLevelNotified(2);
+    assertFalse(persistenceAdapter.updatePagerAlertIfVersion(second, second.getVersion()));
+
+    PagerAlert stored = persistenceAdapter.getPagerAlert(saved.getId()).get();
+    assertEquals(ALERT_STATUS.ACKNOWLEDGED, stored.getStatus());
+    assertEquals(1, stored.getLevelNotified());
+    persistenceAdapter.closeAllServiceAlerts("service1");
+    assertEquals(3, persistenceAdapter.getPagerAlert(saved.getId()).get().getVersion());
+    assertFalse(persistenceAdapter.updatePagerAlertIfVersion(new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000), 0));
+  }
+
+  @Test
+  public void keepsLongMessagesWholeAndSharesRepeatedOnes() {
+    String longMessage = "disk full on /var/log ".repeat(50);
+    PagerAlert first = new PagerAlert("service1", longMessage, ALERT_STATUS.OPEN, 1, 1000, 1000);
+    PagerAlert second = new PagerAlert("service1", longMessage, ALERT_STATUS.OPEN, 1, 1000, 1000);
+    persistenceAdapter.savePagerAlert(first);
+    persistenceAdapter.savePagerAlert(second);
+
+    assertEquals(longMessage, persistenceAdapter.getPagerAlert(first.getId()).get().getAlertMessage());
+    assertEquals(1, persistenceAdapter.getPagerAlertStore().getMessageCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNonUuidIds() {
+    PagerAlert pagerAlert = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    pagerAlert.setId("alert-1");
+    persistenceAdapter.savePagerAlert(pagerAlert);
+  }
+
+  private PagerAlert saveAlert(String serviceId, ALERT_STATUS status) {
+    PagerAlert pagerAlert = new PagerAlert(serviceId, "AlertMessage", status, 1, 1000, 1000);
+    persistenceAdapter.savePagerAlert(pagerAlert);
+    return pagerAlert;
+  }
+}
@@ -0,0 +1,177 @@
+package com.jp.aircall.domain.adapters.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.adapters.TimerAdapter;
+import com.jp.aircall.domain.adapters.persistence.WriteBehindPersistenceAdapter.DURABILITY;
+import com.jp.aircall.domain.adapters.semaphore.InMemorySemaphoreAdapter;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import com.jp.aircall.domain.service.AlertService;
+import java.util.List;
+import java.util.Optional;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class WriteBehindPersistenceAdapterTest {
+
+  private InMemoryPersistenceAdapter delegate;
+  private WriteBehindPersistenceAdapter persistenceAdapter;
+
+  @Before
+  public void setUp() {
+    delegate = spy(new InMemoryPersistenceAdapter());
+  }
+
+  @After
+  public void tearDown() {
+    persistenceAdapter.close();
+  }
+
+  @Test
+  public void coalescesWritesAndServesReadsFromTheBuffer() {
+    persistenceAdapter = build(DURABILITY.ASYNC, 100);
+    PagerAlert pagerAlert = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    persistenceAdapter.savePagerAlert(pagerAlert);
+    pagerAlert.setLevelNotified(2);
+    persistenceAdapter.updatePagerAlert(pagerAlert);
+    pagerAlert.setStatus(ALERT_STATUS.ACKNOWLEDGED);
+    persistenceAdapter.updatePagerAlert(pagerAlert);
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.UNHEALTHY));
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.HEALTHY));
+
+    assertEquals(pagerAlert, persistenceAdapter.getPagerAlert(pagerAlert.getId()).get());
+    assertEquals(SERVICE_STATUS.HEALTHY, persistenceAdapter.getService("service1").get().getStatus());
+    assertTrue(delegate.getPagerAlert(pagerAlert.getId()).isEmpty());
+    assertEquals(2, persistenceAdapter.getPending());
+
+    persistenceAdapter.flush();
+
+    verify(delegate, times(1)).savePagerAlert(pagerAlert);
+    verify(delegate, never()).updatePagerAlerts(any());
+    verify(delegate, times(1)).updateServices(List.of(new Service("service1", SERVICE_STATUS.HEALTHY)));
+    assertEquals(pagerAlert, delegate.getPagerAlert(pagerAlert.getId()).get());
+    assertEquals(0, persistenceAdapter.getPending());
+    assertEquals(5, persistenceAdapter.getWrites());
+    assertEquals(2, persistenceAdapter.getFlushedWrites());
+    assertEquals(0.6, persistenceAdapter.getCoalesceRatio(), 0.0001);
+    assertEquals(1, persistenceAdapter.getFlushLatency().getCount());
+
+    pagerAlert.setStatus(ALERT_STATUS.CLOSED);
+    persistenceAdapter.updatePagerAlert(pagerAlert);
+    persistenceAdapter.flush();
+    verify(delegate, times(1)).updatePagerAlerts(List.of(pagerAlert));
+  }
+
+  @Test
+  public void flushesBeforeReleasingTheSemaphore() throws ServiceAlertingAlreadyException {
+    persistenceAdapter = build(DURABILITY.ON_SEMAPHORE_RELEASE, 100);
+    persistenceAdapter.addAlertingService("service1");
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.UNHEALTHY));
+    persistenceAdapter.beforeSemaphoreRelease();
+    persistenceAdapter.removeAlertingService("service1");
+
+    InOrder inOrder = inOrder(delegate);
+    inOrder.verify(delegate).addAlertingService("service1");
+    inOrder.verify(delegate).updateServices(any());
+    inOrder.verify(delegate).removeAlertingService("service1");
+  }
+
+  @Test
+  public void flushesBeforeReleasingAnInMemorySemaphore() {
+    persistenceAdapter = build(DURABILITY.ON_SEMAPHORE_RELEASE, 100);
+    delegate.updateService(new Service("service1", SERVICE_STATUS.HEALTHY));
+    AlertService alertService = AlertService.builder()
+        .epAdapter(serviceId -> Optional.empty())
+        .persistenceAdapter(persistenceAdapter)
+        .mailAdapter(mock(MailAdapter.class))
+        .smsAdapter(mock(SmsAdapter.class))
+        .timerAdapter(mock(TimerAdapter.class))
+        .semaphoreAdapter(new InMemorySemaphoreAdapter())
+        .build();
+
+    alertService.newAlert(new AlertEvent("AlertMessage", "service1"));
+
+    assertEquals(0, persistenceAdapter.getPending());
+    assertEquals(SERVICE_STATUS.UNHEALTHY, delegate.getService("service1").get().getStatus());
+  }
+
+  @Test
+  public void asyncDurabilityDoesNotBlockTheRelease() throws ServiceAlertingAlreadyException {
+    persistenceAdapter = build(DURABILITY.ASYNC, 100);
+    persistenceAdapter.addAlertingService("service1");
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.UNHEALTHY));
+    persistenceAdapter.beforeSemaphoreRelease();
+    persistenceAdapter.removeAlertingService("service1");
+
+    verify(delegate, never()).updateServices(any());
+    assertEquals(1, persistenceAdapter.getPending());
+  }
+
+  @Test
+  public void flushesWhenFull() {
+    persistenceAdapter = build(DURABILITY.ASYNC, 2);
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.UNHEALTHY));
+    persistenceAdapter.updateService(new Service("service2", SERVICE_STATUS.UNHEALTHY));
+
+    verify(delegate, timeout(2000)).updateServices(any());
+  }
+
+  @Test
+  public void failedWritesAreRetriedOnTheNextFlush() {
+    persistenceAdapter = build(DURABILITY.ASYNC, 100);
+    PagerAlert pagerAlert = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    persistenceAdapter.savePagerAlert(pagerAlert);
+    doThrow(new IllegalStateException("database down")).doCallRealMethod().when(delegate).savePagerAlert(any());
+
+    try {
+      persistenceAdapter.flush();
+      fail("the error of the decorated adapter is expected");
+    } catch (IllegalStateException e) {
+      assertEquals(1, persistenceAdapter.getPending());
+    }
+    persistenceAdapter.flush();
+
+    assertEquals(0, persistenceAdapter.getPending());
+    assertEquals(pagerAlert, delegate.getPagerAlert(pagerAlert.getId()).get());
+  }
+
+  @Test
+  public void closingServiceAlertsSeesTheBufferedAlerts() {
+    persistenceAdapter = build(DURABILITY.ASYNC, 100);
+    PagerAlert pagerAlert = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    persistenceAdapter.savePagerAlert(pagerAlert);
+
+    assertEquals(List.of(pagerAlert.getId()), persistenceAdapter.closeAllServiceAlerts("service1"));
+    assertFalse(persistenceAdapter.getPagerAlert(pagerAlert.getId()).get().getStatus() == ALERT_STATUS.OPEN);
+  }
+
+  private WriteBehindPersistenceAdapter build(DURABILITY durability, int maxPending) {
+    return WriteBehindPersistenceAdapter.builder()
+        .persistenceAdapter(delegate)
+        .durability(durability)
+        .maxPending(maxPending)
+        .flushIntervalMs(60_000L)
+        .build();
+  }
+}
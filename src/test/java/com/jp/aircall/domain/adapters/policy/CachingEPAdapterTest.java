@@ -0,0 +1,150 @@
+package com.jp.aircall.domain.adapters.policy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.adapters.EPAdapter;
+import com.jp.aircall.domain.model.policy.CompiledPolicy;
+import com.jp.aircall.domain.model.policy.CompiledPolicy.CompiledLevel;
+import com.jp.aircall.domain.model.policy.EmailTarget;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Level;
+import com.jp.aircall.domain.model.policy.SmsTarget;
+import java.time.Clock;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingEPAdapterTest {
+
+  private EPAdapter epAdapter;
+  private Clock clock;
+  private CachingEPAdapter cachingEPAdapter;
+
+  @Before
+  public void setUp() {
+    epAdapter = mock(EPAdapter.class);
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(0L);
+    cachingEPAdapter = new CachingEPAdapter(epAdapter, 2, 1000, clock);
+    for (String serviceId : List.of("service1", "service2", "service3")) {
+      when(epAdapter.getEpByServiceId(serviceId)).thenReturn(Optional.of(new EscalationPolicy(serviceId,
+          List.of(
+              new Level(Set.of(new EmailTarget("user1@mail.com"), new SmsTarget("+34666666666"), new SmsTarget("678912345"))),
+              new Level(Set.of(new EmailTarget("user2@mail.com")))))));
+    }
+  }
+
+  @Test
+  public void compiledPlan() {
+    CompiledPolicy plan = cachingEPAdapter.getPlanByServiceId("service1").get();
+
+    assertEquals(2, plan.getLevelCount());
+    CompiledLevel level1 = plan.getLevel(1);
+    assertEquals(2, level1.getPhoneCount());
+    assertEquals(1, level1.getEmailCount());
+    assertEquals("user1@mail.com", level1.getEmail(0));
+    assertEquals("user2@mail.com", plan.getLevel(2).getEmail(0));
+    assertEquals(0, plan.getLevel(2).getPhoneCount());
+  }
+
+  @Test
+  public void policyIsLoadedOnce() {
+    Optional<CompiledPolicy> plan = cachingEPAdapter.getPlanByServiceId("service1");
+    assertSame(plan, cachingEPAdapter.getPlanByServiceId("service1"));
+    cachingEPAdapter.getEpByServiceId("service1");
+
+    verify(epAdapter, times(1)).getEpByServiceId("service1");
+  }
+
+  @Test
+  public void missingPoliciesAreCached() {
+    assertFalse(cachingEPAdapter.getPlanByServiceId("unknown").isPresent());
+    assertFalse(cachingEPAdapter.getPlanByServiceId("unknown").isPresent());
+
+    verify(epAdapter, times(1)).getEpByServiceId("unknown");
+  }
+
+  @Test
+  public void expiredAndInvalidatedEntriesAreReloaded() {
+    cachingEPAdapter.getPlanByServiceId("service1");
+    when(clock.millis()).thenReturn(1000L);
+    cachingEPAdapter.getPlanByServiceId("service1");
+    cachingEPAdapter.invalidate("service1");
+    cachingEPAdapter.getPlanByServiceId("service1");
+
+    verify(epAdapter, times(3)).getEpByServiceId("service1");
+  }
+
+  @Test
+  public void oldestEntriesAreEvicted() {
+    cachingEPAdapter.getPlanByServiceId("service1");
+    cachingEPAdapter.getPlanByServiceId("service2");
+    cachingEPAdapter.getPlanByServiceId("service3");
+    assertEquals(2, cachingEPAdapter.size());
+
+    cachingEPAdapter.getPlanByServiceId("service1");
+    verify(epAdapter, times(2)).getEpByServiceId("service1");
+  }
+
+  @Test(timeout = 5000)
+  public void concurrentMissesShareTheLoad() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch loaded = new CountDownLatch(1);
+    when(epAdapter.getEpByServiceId("slow")).thenAnswer(invocation -> {
+      loading.countDown();
+      loaded.await();
+      return Optional.empty();
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Optional<CompiledPolicy>> first = executor.submit(() -> cachingEPAdapter.getPlanByServiceId("slow"));
+      loading.await();
+      Future<Optional<CompiledPolicy>> second = executor.submit(() -> cachingEPAdapter.getPlanByServiceId("slow"));
+      //the other services don't wait for it
+      assertTrue(cachingEPAdapter.getPlanByServiceId("service1").isPresent());
+      loaded.countDown();
+
+      assertFalse(first.get().isPresent());
+      assertFalse(second.get().isPresent());
+    } finally {
+      executor.shutdownNow();
+    }
+    verify(epAdapter, times(1)).getEpByServiceId("slow");
+  }
+
+  @Test(timeout = 5000)
+  public void invalidatingWhileLoadingDoesNotWaitAndDropsTheLoad() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch loaded = new CountDownLatch(1);
+    when(epAdapter.getEpByServiceId("slow")).thenAnswer(invocation -> {
+      loading.countDown();
+      loaded.await();
+      return Optional.empty();
+    });
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Optional<CompiledPolicy>> first = executor.submit(() -> cachingEPAdapter.getPlanByServiceId("slow"));
+      loading.await();
+      cachingEPAdapter.invalidate("slow");
+      loaded.countDown();
+
+      assertFalse(first.get().isPresent());
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(0, cachingEPAdapter.size());
+  }
+}
@@ -0,0 +1,117 @@
+package com.jp.aircall.domain.adapters.semaphore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import java.time.Clock;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InMemorySemaphoreAdapterTest {
+
+  private Clock clock;
+  private InMemorySemaphoreAdapter semaphoreAdapter;
+
+  @Before
+  public void setUp() {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(1000L);
+    semaphoreAdapter = new InMemorySemaphoreAdapter(100, clock);
+  }
+
+  @Test(expected = ServiceAlertingAlreadyException.class)
+  public void alertingServiceAlreadyClosed() throws ServiceAlertingAlreadyException {
+    semaphoreAdapter.acquireAlertingService("service1");
+    semaphoreAdapter.acquireAlertingService("service1");
+  }
+
+  @Test
+  public void alertingServiceAndAckAreIndependent() throws ServiceAlertingAlreadyException, AckAlertingAlreadyException {
+    SemaphoreLease serviceLease = semaphoreAdapter.acquireAlertingService("id1");
+    SemaphoreLease ackLease = semaphoreAdapter.acquireAck("id1");
+
+    assertTrue(ackLease.getFencingToken() > serviceLease.getFencingToken());
+    assertEquals(2, semaphoreAdapter.getStats().getHeld());
+  }
+
+  @Test
+  public void releaseOpensTheSemaphore() throws AckAlertingAlreadyException {
+    SemaphoreLease lease = semaphoreAdapter.acquireAck("alert1");
+    semaphoreAdapter.release(lease);
+
+    SemaphoreLease newLease = semaphoreAdapter.acquireAck("alert1");
+    assertTrue(semaphoreAdapter.isHeld(newLease));
+    assertEquals(2, semaphoreAdapter.getStats().getAcquired());
+    assertEquals(0, semaphoreAdapter.getStats().getContended());
+  }
+
+  @Test
+  public void expiredLeaseIsTakenOverAndCantReleaseTheNewHolder() throws ServiceAlertingAlreadyException {
+    SemaphoreLease stuckLease = semaphoreAdapter.acquireAlertingService("service1");
+    try {
+      semaphoreAdapter.acquireAlertingService("service1");
+    } catch (ServiceAlertingAlreadyException e) {
+      //expected, lease not expired yet
+    }
+
+    when(clock.millis()).thenReturn(1100L);
+    SemaphoreLease newLease = semaphoreAdapter.acquireAlertingService("service1");
+    assertFalse(semaphoreAdapter.isHeld(stuckLease));
+
+    semaphoreAdapter.release(stuckLease);
+    assertTrue(semaphoreAdapter.isHeld(newLease));
+
+    InMemorySemaphoreAdapter.SemaphoreStats stats = semaphoreAdapter.getStats();
+    assertEquals(1, stats.getContended());
+    assertEquals(1, stats.getExpiredTakeovers());
+    assertEquals(1, stats.getStaleReleases());
+  }
+
+  @Test
+  public void purgeExpired() throws AckAlertingAlreadyException {
+    semaphoreAdapter.acquireAck("alert1");
+    when(clock.millis()).thenReturn(1050L);
+    semaphoreAdapter.acquireAck("alert2");
+
+    when(clock.millis()).thenReturn(1100L);
+    assertEquals(1, semaphoreAdapter.purgeExpired());
+    assertEquals(1, semaphoreAdapter.getStats().getHeld());
+  }
+
+  @Test
+  public void renewedLeaseIsNotTakenOver() throws AckAlertingAlreadyException {
+    SemaphoreLease lease = semaphoreAdapter.acquireAck("alert1");
+
+    when(clock.millis()).thenReturn(1090L);
+    assertTrue(semaphoreAdapter.renew(lease));
+    when(clock.millis()).thenReturn(1150L);
+    assertTrue(semaphoreAdapter.isHeld(lease));
+    try {
+      semaphoreAdapter.acquireAck("alert1");
+      fail("The renewed lease has not expired yet");
+    } catch (AckAlertingAlreadyException e) {
+      //expected
+    }
+
+    semaphoreAdapter.release(lease);
+    assertEquals(0, semaphoreAdapter.getStats().getHeld());
+    assertEquals(0, semaphoreAdapter.getStats().getStaleReleases());
+  }
+
+  @Test
+  public void takenOverLeaseCantBeRenewed() throws AckAlertingAlreadyException {
+    SemaphoreLease stuckLease = semaphoreAdapter.acquireAck("alert1");
+    when(clock.millis()).thenReturn(1100L);
+    SemaphoreLease newLease = semaphoreAdapter.acquireAck("alert1");
+
+    assertFalse(semaphoreAdapter.renew(stuckLease));
+    assertTrue(semaphoreAdapter.isHeld(newLease));
+    assertEquals(1, semaphoreAdapter.getStats().getLostLeases());
+  }
+}
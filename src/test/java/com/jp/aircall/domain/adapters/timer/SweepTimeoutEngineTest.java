@@ -0,0 +1,114 @@
+package com.jp.aircall.domain.adapters.timer;
+
+import static com.jp.aircall.domain.service.AlertService.ACK_TIMEOUT_MS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SweepTimeoutEngineTest {
+
+  private Clock clock;
+  private SweepTimeoutEngine engine;
+
+  @Before
+  public void setUp() {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(0L);
+    engine = new SweepTimeoutEngine(clock);
+  }
+
+  @Test
+  public void sweepsAllTheDueAlertsInDeadlineOrder() {
+    engine.track("a2", 300);
+    engine.track("a1", 250);
+    when(clock.millis()).thenReturn(280L);
+    engine.add15MinutesTimer("a3"); //notified now
+    engine.track("a4", 5000);
+
+    when(clock.millis()).thenReturn(ACK_TIMEOUT_MS + 249);
+    assertTrue(engine.sweep().isEmpty());
+
+    when(clock.millis()).thenReturn(ACK_TIMEOUT_MS + 300);
+    assertEquals(List.of("a1", "a3", "a2"), engine.sweep());
+    assertEquals(1, engine.size());
+    assertEquals(ACK_TIMEOUT_MS + 5000, engine.getNextDueTs());
+  }
+
+  @Test
+  public void trackingAgainReplacesTheDeadline() {
+    engine.track("a1", 100);
+    engine.track("a1", 100);
+    engine.track("a1", 1000);
+    assertEquals(1, engine.size());
+
+    when(clock.millis()).thenReturn(ACK_TIMEOUT_MS + 100);
+    assertTrue(engine.sweep().isEmpty());
+
+    when(clock.millis()).thenReturn(ACK_TIMEOUT_MS + 1000);
+    assertEquals(List.of("a1"), engine.sweep());
+    assertTrue(engine.sweep().isEmpty());
+    assertEquals(Long.MAX_VALUE, engine.getNextDueTs());
+  }
+
+  @Test
+  public void cancelledAndClosedAlertsAreNotDue() {
+    PagerAlert open = new PagerAlert("service1", "message", ALERT_STATUS.OPEN, 1, 0, 100);
+    PagerAlert acknowledged = new PagerAlert("service1", "message", ALERT_STATUS.ACKNOWLEDGED, 1, 0, 100);
+    engine.track(open);
+    engine.track(acknowledged);
+    engine.track("a1", 100);
+    engine.cancelTimer("a1");
+    engine.cancelTimer("unknown");
+
+    when(clock.millis()).thenReturn(ACK_TIMEOUT_MS + 100);
+    assertEquals(List.of(open.getId()), engine.sweep());
+  }
+
+  @Test
+  public void failedBatchIsRetriedOnTheNextSweep() throws InterruptedException {
+    engine.track("a1", 0);
+    engine.track("a2", 0);
+    when(clock.millis()).thenReturn(ACK_TIMEOUT_MS);
+    AtomicInteger batches = new AtomicInteger();
+    BlockingQueue<List<String>> handled = new LinkedBlockingQueue<>();
+
+    engine.start(10, due -> {
+      if (batches.getAndIncrement() == 0) {
+        throw new IllegalStateException("database down");
+      }
+      handled.add(due);
+    });
+    try {
+      assertEquals(List.of("a1", "a2"), handled.poll(2, TimeUnit.SECONDS));
+    } finally {
+      engine.close();
+    }
+    assertEquals(0, engine.size());
+  }
+
+  @Test
+  public void retryKeepsTheDeadlinesTrackedMeanwhile() {
+    engine.track("a1", 0);
+    engine.track("a2", 0);
+    when(clock.millis()).thenReturn(ACK_TIMEOUT_MS);
+    List<String> due = engine.sweep();
+    engine.add15MinutesTimer("a2"); //escalated by someone else meanwhile
+
+    engine.retry(due);
+
+    assertEquals(List.of("a1"), engine.sweep());
+    assertEquals(2 * ACK_TIMEOUT_MS, engine.getNextDueTs());
+  }
+}
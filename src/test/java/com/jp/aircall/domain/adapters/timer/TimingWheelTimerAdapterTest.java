@@ -0,0 +1,89 @@
+package com.jp.aircall.domain.adapters.timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.service.AlertService;
+import java.time.Clock;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimingWheelTimerAdapterTest {
+
+  private Clock clock;
+  private TimingWheelTimerAdapter timerAdapter;
+
+  @Before
+  public void setUp() {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(0L);
+    timerAdapter = new TimingWheelTimerAdapter(100, 8, clock);
+  }
+
+  @Test
+  public void expiresInBatchesPerTick() {
+    timerAdapter.schedule("a1", 250);
+    timerAdapter.schedule("a2", 300);
+    timerAdapter.schedule("a3", 300);
+
+    when(clock.millis()).thenReturn(200L);
+    assertTrue(timerAdapter.advance().isEmpty());
+
+    when(clock.millis()).thenReturn(300L);
+    assertEquals(List.of("a1", "a2", "a3"), timerAdapter.advance());
+    assertEquals(0, timerAdapter.size());
+  }
+
+  @Test
+  public void timersBeyondOneRevolution() {
+    //8 buckets of 100ms: 2000ms needs two extra rounds
+    timerAdapter.schedule("a1", 2000);
+    timerAdapter.schedule("a2", 500);
+
+    when(clock.millis()).thenReturn(1999L);
+    assertEquals(List.of("a2"), timerAdapter.advance());
+
+    when(clock.millis()).thenReturn(2000L);
+    assertEquals(List.of("a1"), timerAdapter.advance());
+  }
+
+  @Test
+  public void cancelledTimersDontExpire() {
+    timerAdapter.schedule("a1", 100);
+    timerAdapter.schedule("a2", 100);
+    when(clock.millis()).thenReturn(50L);
+    timerAdapter.advance(); //a1 and a2 are already in their bucket
+    timerAdapter.cancelTimer("a1");
+    timerAdapter.cancelTimer("unknown");
+
+    when(clock.millis()).thenReturn(100L);
+    assertEquals(List.of("a2"), timerAdapter.advance());
+  }
+
+  @Test
+  public void reschedulingReplacesThePendingTimer() {
+    timerAdapter.schedule("a1", 100);
+    timerAdapter.schedule("a1", 300);
+    assertEquals(1, timerAdapter.size());
+
+    when(clock.millis()).thenReturn(200L);
+    assertTrue(timerAdapter.advance().isEmpty());
+
+    when(clock.millis()).thenReturn(300L);
+    assertEquals(List.of("a1"), timerAdapter.advance());
+  }
+
+  @Test
+  public void add15MinutesTimer() {
+    timerAdapter.add15MinutesTimer("a1");
+
+    when(clock.millis()).thenReturn(AlertService.ACK_TIMEOUT_MS - 1);
+    assertTrue(timerAdapter.advance().isEmpty());
+
+    when(clock.millis()).thenReturn(AlertService.ACK_TIMEOUT_MS);
+    assertEquals(List.of("a1"), timerAdapter.advance());
+  }
+}
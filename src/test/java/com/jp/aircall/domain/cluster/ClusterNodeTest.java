@@ -0,0 +1,181 @@
+package com.jp.aircall.domain.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.adapters.EPAdapter;
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.adapters.TimerAdapter;
+import com.jp.aircall.domain.adapters.persistence.InMemoryPersistenceAdapter;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.AlertEvent.ALERT_DISPOSITION;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import com.jp.aircall.domain.service.AlertService;
+import com.jp.aircall.domain.simulation.VirtualClock;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClusterNodeTest {
+
+  private static final int PARTITIONS = 32;
+  private static final long LEASE_MS = 1000;
+
+  private VirtualClock clock;
+  private InMemoryPersistenceAdapter persistenceAdapter;
+  private InMemoryCoordinationStore coordinationStore;
+  private InProcessPagerTransport transport;
+  private List<ClusterNode> nodes;
+
+  @Before
+  public void setUp() {
+    clock = new VirtualClock(1_000_000);
+    persistenceAdapter = new InMemoryPersistenceAdapter(clock);
+    coordinationStore = new InMemoryCoordinationStore();
+    transport = new InProcessPagerTransport();
+    nodes = new ArrayList<>();
+    for (int i = 1; i <= 3; i++) {
+      nodes.add(node("node" + i));
+    }
+    rebalanceAll();
+  }
+
+  @Test
+  public void everyPartitionIsOwnedByOneNode() {
+    assertPartitionsOwnedOnce(nodes);
+    for (ClusterNode node : nodes) {
+      assertTrue(node.getOwnedPartitions() > 0);
+    }
+  }
+
+  @Test
+  public void eventsAreForwardedToTheOwner() {
+    String serviceId = "service1";
+    persistenceAdapter.updateService(new Service(serviceId, SERVICE_STATUS.HEALTHY));
+    ClusterNode owner = ownerOf(serviceId);
+    ClusterNode other = nodes.stream().filter(node -> node != owner).findFirst().get();
+
+    assertEquals(ALERT_DISPOSITION.PROCESSED, other.newAlert(new AlertEvent("Alert1", serviceId)));
+    assertEquals(1, transport.getForwarded());
+    assertEquals(ALERT_DISPOSITION.SERVICE_UNHEALTHY, owner.newAlert(new AlertEvent("Alert2", serviceId)));
+    assertEquals(1, transport.getForwarded());
+
+    PagerAlert pagerAlert = new PagerAlert(serviceId, "Alert1", ALERT_STATUS.OPEN, 1, clock.millis(), clock.millis());
+    persistenceAdapter.savePagerAlert(pagerAlert);
+    other.alertAcknowledgement(pagerAlert.getId());
+    other.serviceHealthy(serviceId);
+    assertEquals(3, transport.getForwarded());
+    assertEquals(ALERT_STATUS.CLOSED, persistenceAdapter.getPagerAlert(pagerAlert.getId()).get().getStatus());
+    assertEquals(SERVICE_STATUS.HEALTHY, persistenceAdapter.getService(serviceId).get().getStatus());
+  }
+
+  @Test
+  public void errorsOfTheOwnerAreNotProcessedAgainLocally() {
+    String serviceId = "service1";
+    persistenceAdapter.updateService(new Service(serviceId, SERVICE_STATUS.HEALTHY));
+    ClusterNode owner = ownerOf(serviceId);
+    ClusterNode other = nodes.stream().filter(node -> node != owner).findFirst().get();
+    AlertService failing = mock(AlertService.class);
+    when(failing.newAlert(any())).thenThrow(new IllegalStateException("database down"));
+    transport.register(owner.getNodeId(), failing);
+
+    assertThrows(IllegalStateException.class, () -> other.newAlert(new AlertEvent("Alert1", serviceId)));
+    assertEquals(SERVICE_STATUS.HEALTHY, persistenceAdapter.getService(serviceId).get().getStatus());
+  }
+
+  @Test
+  public void partitionsMoveWhenANodeLeavesOrJoins() {
+    int ownedByNode3 = nodes.get(2).getOwnedPartitions();
+    nodes.get(2).close();
+    List<ClusterNode> remaining = nodes.subList(0, 2);
+    rebalance(remaining);
+    assertPartitionsOwnedOnce(remaining);
+
+    ClusterNode node4 = node("node4");
+    remaining = List.of(nodes.get(0), nodes.get(1), node4);
+    rebalance(remaining);
+    assertPartitionsOwnedOnce(remaining);
+    assertTrue(node4.getOwnedPartitions() > 0);
+    assertNotEquals(PARTITIONS, ownedByNode3 + node4.getOwnedPartitions());
+  }
+
+  @Test
+  public void partitionsOfADeadNodeAreTakenOverWhenItsLeasesExpire() {
+    ClusterNode dead = nodes.get(2);
+    transport.unregister(dead.getNodeId());
+    String serviceId = serviceOwnedBy(dead);
+    persistenceAdapter.updateService(new Service(serviceId, SERVICE_STATUS.HEALTHY));
+
+    //the owner is unreachable, so the event is processed locally
+    assertEquals(ALERT_DISPOSITION.PROCESSED, nodes.get(0).newAlert(new AlertEvent("Alert1", serviceId)));
+
+    List<ClusterNode> remaining = nodes.subList(0, 2);
+    rebalance(remaining);
+    assertEquals(PARTITIONS, remaining.get(0).getOwnedPartitions() + remaining.get(1).getOwnedPartitions()
+        + dead.getOwnedPartitions());
+
+    clock.advance(LEASE_MS);
+    rebalance(remaining);
+    assertPartitionsOwnedOnce(remaining);
+  }
+
+  private ClusterNode node(String nodeId) {
+    AlertService alertService = new AlertService(mock(EPAdapter.class), persistenceAdapter, mock(MailAdapter.class),
+        mock(SmsAdapter.class), mock(TimerAdapter.class));
+    transport.register(nodeId, alertService);
+    return ClusterNode.builder()
+        .nodeId(nodeId)
+        .alertService(alertService)
+        .persistenceAdapter(persistenceAdapter)
+        .coordinationStore(coordinationStore)
+        .transport(transport)
+        .clock(clock)
+        .partitions(PARTITIONS)
+        .leaseMs(LEASE_MS)
+        .build();
+  }
+
+  private void rebalanceAll() {
+    rebalance(nodes);
+  }
+
+  /** the first round releases the partitions given to other nodes, the second one acquires them */
+  private static void rebalance(List<ClusterNode> nodes) {
+    for (int round = 0; round < 2; round++) {
+      nodes.forEach(ClusterNode::rebalance);
+    }
+  }
+
+  private static void assertPartitionsOwnedOnce(List<ClusterNode> nodes) {
+    for (int partition = 0; partition < PARTITIONS; partition++) {
+      int owners = 0;
+      for (ClusterNode node : nodes) {
+        owners += node.owns(partition) ? 1 : 0;
+      }
+      assertEquals("owners of partition " + partition, 1, owners);
+    }
+  }
+
+  private ClusterNode ownerOf(String serviceId) {
+    return nodes.stream().filter(node -> node.owns(node.partitionOf(serviceId))).findFirst().get();
+  }
+
+  private static String serviceOwnedBy(ClusterNode node) {
+    for (int i = 0; ; i++) {
+      String serviceId = "service" + i;
+      if (node.owns(node.partitionOf(serviceId))) {
+        return serviceId;
+      }
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.jp.aircall.domain.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void bucketsAreContiguous() {
+    for (int index = 1; index <= LatencyHistogram.indexOf(LatencyHistogram.MAX_TRACKABLE_NANOS); index++) {
+      long lowest = LatencyHistogram.highestEquivalentValue(index - 1) + 1;
+      assertEquals(index, LatencyHistogram.indexOf(lowest));
+      assertEquals(index, LatencyHistogram.indexOf(LatencyHistogram.highestEquivalentValue(index)));
+    }
+  }
+
+  @Test
+  public void percentilesWithinPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 100_000; value++) {
+      histogram.recordNanos(value * 1000);
+    }
+
+    HistogramSnapshot snapshot = histogram.snapshot();
+    assertEquals(100_000, snapshot.getCount());
+    assertEquals(100_000_000L, snapshot.getMaxNanos());
+    assertEquals(50_000_500.0, snapshot.getMeanNanos(), 0.001);
+    assertWithin(50_000_000, snapshot.getP50Nanos());
+    assertWithin(90_000_000, snapshot.getP90Nanos());
+    assertWithin(99_000_000, snapshot.getP99Nanos());
+    assertWithin(99_900_000, snapshot.getP999Nanos());
+  }
+
+  @Test
+  public void emptyAndOutOfRange() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0), histogram.snapshot());
+
+    histogram.recordNanos(-5);
+    histogram.recordNanos(Long.MAX_VALUE);
+    HistogramSnapshot snapshot = histogram.snapshot();
+    assertEquals(0, snapshot.getP50Nanos());
+    assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, snapshot.getMaxNanos());
+    assertEquals(LatencyHistogram.MAX_TRACKABLE_NANOS, snapshot.getP999Nanos());
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(expected + " vs " + actual, actual >= expected && actual <= expected * 1.016);
+  }
+}
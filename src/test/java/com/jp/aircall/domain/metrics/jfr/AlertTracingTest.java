@@ -0,0 +1,124 @@
+package com.jp.aircall.domain.metrics.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.adapters.TimerAdapter;
+import com.jp.aircall.domain.adapters.metrics.InstrumentedPersistenceAdapter;
+import com.jp.aircall.domain.adapters.persistence.InMemoryPersistenceAdapter;
+import com.jp.aircall.domain.metrics.MetricsRegistry;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.policy.EmailTarget;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Level;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import com.jp.aircall.domain.model.policy.SmsTarget;
+import com.jp.aircall.domain.service.AlertService;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+public class AlertTracingTest {
+
+  @Test
+  public void recordingRebuildsTheTimelineOfAnAlert() throws Exception {
+    Clock clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(1000L);
+    InMemoryPersistenceAdapter persistenceAdapter = new InMemoryPersistenceAdapter(clock);
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.HEALTHY));
+    EscalationPolicy policy = new EscalationPolicy("service1", List.of(
+        new Level(Set.of(new EmailTarget("user1@mail.com"), new SmsTarget("+34666666666"))),
+        new Level(Set.of(new EmailTarget("user2@mail.com")))));
+    AlertService alertService = AlertService.builder()
+        .epAdapter(serviceId -> Optional.of(policy))
+        .persistenceAdapter(persistenceAdapter)
+        .smsAdapter(phone -> {})
+        .mailAdapter(mail -> {})
+        .timerAdapter(mock(TimerAdapter.class))
+        .clock(clock)
+        .build();
+
+    List<RecordedEvent> events;
+    Path file = Files.createTempFile("pager", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(AlertCreatedEvent.class);
+      recording.enable(LevelNotifiedEvent.class).withoutThreshold();
+      recording.enable(TimerSetEvent.class).withoutThreshold();
+      recording.enable(AcknowledgementTimeoutEvent.class).withoutThreshold();
+      recording.enable(AlertAcknowledgedEvent.class);
+      recording.enable(AlertClosedEvent.class);
+      recording.start();
+
+      alertService.newAlert(new AlertEvent("Alert1", "service1"));
+      String alertId = persistenceAdapter.getOpenPagerAlerts(null, 1).get(0).getId();
+      when(clock.millis()).thenReturn(1000L + AlertService.ACK_TIMEOUT_MS);
+      alertService.acknowledgementTimeout(alertId);
+      alertService.alertAcknowledgement(alertId);
+      alertService.serviceHealthy("service1");
+
+      recording.stop();
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file).stream()
+          .filter(event -> alertId.equals(event.getString("alertId")))
+          .sorted((event1, event2) -> event1.getStartTime().compareTo(event2.getStartTime()))
+          .collect(Collectors.toList());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+
+    //the escalation of the timeout is nested into it, so it starts later
+    assertEquals(List.of("com.jp.aircall.LevelNotified", "com.jp.aircall.AlertCreated", "com.jp.aircall.TimerSet",
+            "com.jp.aircall.AcknowledgementTimeout", "com.jp.aircall.LevelNotified", "com.jp.aircall.TimerSet",
+            "com.jp.aircall.AlertAcknowledged", "com.jp.aircall.AlertClosed"),
+        events.stream().map(event -> event.getEventType().getName()).collect(Collectors.toList()));
+    events.forEach(event -> assertEquals("service1", event.getString("serviceId")));
+    assertEquals(2, events.get(0).getInt("targets"));
+    assertEquals(1, events.get(1).getInt("levelNotified"));
+    assertEquals("OPEN", events.get(3).getString("status"));
+    assertEquals(2, events.get(3).getInt("escalatedLevel"));
+    assertEquals(2, events.get(4).getInt("level"));
+    assertEquals(1, events.get(4).getInt("targets"));
+  }
+
+  @Test
+  public void instrumentedAdaptersRecordTheirCalls() throws Exception {
+    InstrumentedPersistenceAdapter persistenceAdapter =
+        new InstrumentedPersistenceAdapter(new InMemoryPersistenceAdapter(), new MetricsRegistry());
+
+    List<RecordedEvent> events;
+    Path file = Files.createTempFile("pager", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(AdapterCallEvent.class).withoutThreshold();
+      recording.start();
+
+      persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.HEALTHY));
+      persistenceAdapter.getService("service1");
+      persistenceAdapter.getServices(List.of("service1"));
+
+      recording.stop();
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file).stream()
+          .sorted((event1, event2) -> event1.getStartTime().compareTo(event2.getStartTime()))
+          .collect(Collectors.toList());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+
+    assertEquals(List.of("persistence.updateService", "persistence.getService", "persistence.getServices"),
+        events.stream().map(event -> event.getString("call")).collect(Collectors.toList()));
+    assertEquals("service1", events.get(0).getString("key"));
+    assertEquals("service1", events.get(1).getString("key"));
+    assertNull(events.get(2).getString("key"));
+  }
+}
@@ -0,0 +1,178 @@
+package com.jp.aircall.domain.service;
+
+import static com.jp.aircall.domain.service.AlertService.ACK_TIMEOUT_MS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.adapters.TimerAdapter;
+import com.jp.aircall.domain.adapters.persistence.InMemoryPersistenceAdapter;
+import com.jp.aircall.domain.adapters.semaphore.NoOpSemaphoreAdapter;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.EmailTarget;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Level;
+import com.jp.aircall.domain.service.AlertRecovery.RecoveryResult;
+import com.jp.aircall.domain.service.AlertService.TimeoutsResult;
+import java.time.Clock;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AlertRecoveryTest {
+
+  private static final long NOW = 10 * ACK_TIMEOUT_MS;
+
+  private InMemoryPersistenceAdapter persistenceAdapter;
+  private TimerAdapter timerAdapter;
+  private AlertService alertService;
+  private Clock clock;
+
+  @Before
+  public void setUp() {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(NOW);
+    persistenceAdapter = new InMemoryPersistenceAdapter(clock);
+    timerAdapter = mock(TimerAdapter.class);
+    alertService = mock(AlertService.class);
+  }
+
+  @Test
+  public void rearmsPendingTimersAndEscalatesOverdueAlerts() throws Exception {
+    Set<String> pending = ConcurrentHashMap.newKeySet();
+    for (int i = 0; i < 25; i++) {
+      pending.add(saveAlert(ALERT_STATUS.OPEN, NOW - 1000).getId());
+    }
+    Set<String> overdue = ConcurrentHashMap.newKeySet();
+    for (int i = 0; i < 12; i++) {
+      overdue.add(saveAlert(ALERT_STATUS.OPEN, NOW - ACK_TIMEOUT_MS).getId());
+    }
+    saveAlert(ALERT_STATUS.ACKNOWLEDGED, NOW - ACK_TIMEOUT_MS);
+    persistenceAdapter.addAlertingService("service1");
+    persistenceAdapter.addAckSempahore("orphan");
+
+    Set<String> rearmed = ConcurrentHashMap.newKeySet();
+    doAnswer(invocation -> rearmed.add(invocation.getArgument(0)))
+        .when(timerAdapter).addTimerAt(anyString(),
+            eq(NOW - 1000 + ACK_TIMEOUT_MS));
+    Set<String> escalated = ConcurrentHashMap.newKeySet();
+    doAnswer(invocation -> {
+      escalated.addAll(invocation.<Collection<String>>getArgument(0));
+      return new TimeoutsResult(List.of(), List.of());
+    }).when(alertService).acknowledgementTimeouts(anyCollection());
+
+    RecoveryResult result = recovery(true).recover();
+
+    assertEquals(2, result.getSemaphoresRemoved());
+    assertEquals(37, result.getOpenAlerts());
+    assertEquals(25, result.getRearmed());
+    assertEquals(12, result.getOverdue());
+    assertEquals(0, result.getFailed());
+    assertEquals(pending, rearmed);
+    assertEquals(overdue, escalated);
+    persistenceAdapter.addAlertingService("service1");
+  }
+
+  @Test
+  public void keepsTheSemaphoresOfOtherNodesAndCountsFailedTimers() throws Exception {
+    PagerAlert pagerAlert = saveAlert(ALERT_STATUS.OPEN, NOW);
+    persistenceAdapter.addAckSempahore("held");
+    doThrow(new IllegalStateException("stopped")).when(timerAdapter)
+        .addTimerAt(pagerAlert.getId(), NOW + ACK_TIMEOUT_MS);
+
+    RecoveryResult result = recovery(false).recover();
+
+    assertEquals(0, result.getSemaphoresRemoved());
+    assertEquals(1, result.getFailed());
+    verify(timerAdapter).addTimerAt(pagerAlert.getId(), NOW + ACK_TIMEOUT_MS);
+    assertEquals(1, persistenceAdapter.removeAllSemaphores());
+  }
+
+  @Test
+  public void rearmsTheOverdueAlertsWhoseSemaphoreIsHeld() {
+    PagerAlert held = saveAlert(ALERT_STATUS.OPEN, NOW - ACK_TIMEOUT_MS);
+    PagerAlert escalated = saveAlert(ALERT_STATUS.OPEN, NOW - ACK_TIMEOUT_MS);
+    when(alertService.acknowledgementTimeouts(anyCollection()))
+        .thenReturn(new TimeoutsResult(List.of(held.getId()), List.of()));
+
+    RecoveryResult result = recovery(false).recover();
+
+    assertEquals(1, result.getOverdue());
+    assertEquals(1, result.getDeferred());
+    verify(timerAdapter).addTimerAt(held.getId(), NOW + ACK_TIMEOUT_MS);
+    verify(timerAdapter, never()).addTimerAt(eq(escalated.getId()), anyLong());
+  }
+
+  @Test
+  public void rearmsAndCountsTheOverdueAlertsWhoseEscalationFails() {
+    PagerAlert pagerAlert = saveAlert(ALERT_STATUS.OPEN, NOW - ACK_TIMEOUT_MS);
+    when(clock.millis()).thenReturn(NOW);
+    alertService = AlertService.builder()
+        .epAdapter(serviceId -> Optional.of(new EscalationPolicy(serviceId, List.of(
+            new Level(Set.of(new EmailTarget("user1@mail.com"))), new Level(Set.of(new EmailTarget("user2@mail.com")))))))
+        .persistenceAdapter(persistenceAdapter)
+        .notificationDispatcher(level -> {
+          throw new IllegalStateException("dispatcher down");
+        })
+        .timerAdapter(timerAdapter)
+        .semaphoreAdapter(new NoOpSemaphoreAdapter())
+        .clock(clock)
+        .build();
+
+    RecoveryResult result = recovery(false).recover();
+
+    assertEquals(0, result.getOverdue());
+    assertEquals(1, result.getFailed());
+    verify(timerAdapter).addTimerAt(pagerAlert.getId(), NOW + ACK_TIMEOUT_MS);
+    //the level is tried again by the next timeout
+    assertEquals(1, persistenceAdapter.getPagerAlert(pagerAlert.getId()).get().getLevelNotified());
+  }
+
+  @Test
+  public void failsOverAnAdapterNotPagingTheOpenAlerts() {
+    PersistenceAdapter notPaging = mock(PersistenceAdapter.class, CALLS_REAL_METHODS);
+
+    assertThrows(UnsupportedOperationException.class, () -> AlertRecovery.builder()
+        .alertService(alertService)
+        .persistenceAdapter(notPaging)
+        .timerAdapter(timerAdapter)
+        .removeSemaphores(true)
+        .build()
+        .recover());
+  }
+
+  private AlertRecovery recovery(boolean removeSemaphores) {
+    return AlertRecovery.builder()
+        .alertService(alertService)
+        .persistenceAdapter(persistenceAdapter)
+        .timerAdapter(timerAdapter)
+        .clock(clock)
+        .pageSize(5)
+        .parallelism(3)
+        .removeSemaphores(removeSemaphores)
+        .build();
+  }
+
+  private PagerAlert saveAlert(ALERT_STATUS status, long lastNotificationTs) {
+    PagerAlert pagerAlert = new PagerAlert("service1", "AlertMessage", status, 1, lastNotificationTs,
+        lastNotificationTs);
+    persistenceAdapter.savePagerAlert(pagerAlert);
+    return pagerAlert;
+  }
+}
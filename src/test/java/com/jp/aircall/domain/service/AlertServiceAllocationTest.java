@@ -0,0 +1,167 @@
+package com.jp.aircall.domain.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.jp.aircall.domain.adapters.persistence.InMemoryPersistenceAdapter;
+import com.jp.aircall.domain.adapters.policy.CachingEPAdapter;
+import com.jp.aircall.domain.adapters.semaphore.InMemorySemaphoreAdapter;
+import com.jp.aircall.domain.adapters.timer.TimingWheelTimerAdapter;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.metrics.MetricsRegistry;
+import com.jp.aircall.domain.metrics.RecordingAlertMetrics;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.AlertEvent.ALERT_DISPOSITION;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.EmailTarget;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Level;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Guards the steady-state hot paths against allocation regressions (e.g. eager logging). Only the short-circuits (an
+ * alert of an unhealthy service, an ack or a timeout of an alert already acknowledged, a contended semaphore) don't
+ * allocate beyond the persistence copy; raising, escalating and acknowledging an alert allocate the alert, its copies
+ * and its timer, so they are held to an allocation budget instead
+ */
+public class AlertServiceAllocationTest {
+
+  private static final int WARM_UP = 20_000;
+  private static final int OPERATIONS = 100_000;
+  /** the alert, its id, the copies of the in-memory adapter, the timer and the notification results */
+  private static final long RAISE_AND_CLOSE_BUDGET = 2048;
+  /** the copies of the in-memory adapter, the timer and the notification results */
+  private static final long ESCALATION_BUDGET = 512;
+  /** the copies of the in-memory adapter and the cancelled timer */
+  private static final long ACKNOWLEDGEMENT_BUDGET = 384;
+
+  private final com.sun.management.ThreadMXBean threadMXBean =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private InMemoryPersistenceAdapter persistenceAdapter;
+  private AlertService alertService;
+
+  @Before
+  public void setUp() {
+    assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    persistenceAdapter = new InMemoryPersistenceAdapter();
+    alertService = AlertService.builder()
+        .epAdapter(new CachingEPAdapter(serviceId -> Optional.of(new EscalationPolicy(serviceId, List.of(
+            new Level(Set.of(new EmailTarget("user1@mail.com"))), new Level(Set.of(new EmailTarget("user2@mail.com")))))),
+            100, 60_000))
+        .persistenceAdapter(persistenceAdapter)
+        .smsAdapter(phone -> {})
+        .mailAdapter(mail -> {})
+        .timerAdapter(new TimingWheelTimerAdapter())
+        .semaphoreAdapter(new InMemorySemaphoreAdapter())
+        .serviceHealthIndex(new ServiceHealthIndex(60_000))
+        .alertMetrics(new RecordingAlertMetrics(new MetricsRegistry()))
+        .build();
+  }
+
+  @Test
+  public void newAlertOfUnhealthyServiceDoesNotAllocate() {
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.HEALTHY));
+    AlertEvent alertEvent = new AlertEvent("Alert1", "service1");
+    assertEquals(ALERT_DISPOSITION.PROCESSED, alertService.newAlert(alertEvent));
+
+    assertEquals(0, bytesPerOperation(() -> alertService.newAlert(alertEvent)));
+  }
+
+  @Test
+  public void repeatedAcknowledgementsOnlyAllocateThePersistenceCopy() {
+    PagerAlert pagerAlert = new PagerAlert("service1", "Alert1", ALERT_STATUS.ACKNOWLEDGED, 1, 1000, 1000);
+    persistenceAdapter.savePagerAlert(pagerAlert);
+    String pagerAlertId = pagerAlert.getId();
+
+    //the in-memory adapter returns a copy of the stored alert, which is all the allocation allowed
+    long readBytes = bytesPerOperation(() -> persistenceAdapter.getPagerAlert(pagerAlertId));
+    assertEquals(readBytes, bytesPerOperation(() -> alertService.alertAcknowledgement(pagerAlertId)));
+    assertEquals(readBytes, bytesPerOperation(() -> alertService.acknowledgementTimeout(pagerAlertId)));
+  }
+
+  @Test
+  public void contendedSemaphoreDoesNotAllocate() throws AckAlertingAlreadyException {
+    InMemorySemaphoreAdapter semaphoreAdapter = new InMemorySemaphoreAdapter();
+    semaphoreAdapter.acquireAck("alert1");
+
+    assertEquals(0, bytesPerOperation(() -> {
+      try {
+        semaphoreAdapter.acquireAck("alert1");
+      } catch (AckAlertingAlreadyException e) {
+        //contended, as expected
+      }
+    }));
+    assertEquals(1, semaphoreAdapter.getStats().getAcquired());
+  }
+
+  @Test
+  public void acknowledgingAnAlertStaysWithinItsBudget() {
+    PagerAlert pagerAlert = new PagerAlert("service1", "Alert1", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    persistenceAdapter.savePagerAlert(pagerAlert);
+    Runnable open = () -> {
+      pagerAlert.setStatus(ALERT_STATUS.OPEN);
+      persistenceAdapter.updatePagerAlert(pagerAlert);
+    };
+
+    long openBytes = bytesPerOperation(open);
+    long bytes = bytesPerOperation(() -> {
+      open.run();
+      alertService.alertAcknowledgement(pagerAlert.getId());
+    }) - openBytes;
+    assertEquals(ALERT_STATUS.ACKNOWLEDGED, persistenceAdapter.getPagerAlert(pagerAlert.getId()).get().getStatus());
+    assertTrue("acknowledging an alert allocated " + bytes + " bytes", bytes <= ACKNOWLEDGEMENT_BUDGET);
+  }
+
+  @Test
+  public void raisingAnAlertStaysWithinItsBudget() {
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.HEALTHY));
+    AlertEvent alertEvent = new AlertEvent("Alert1", "service1");
+
+    long bytes = bytesPerOperation(() -> {
+      alertService.newAlert(alertEvent);
+      alertService.serviceHealthy("service1");
+    });
+    assertTrue("raising and closing an alert allocated " + bytes + " bytes", bytes <= RAISE_AND_CLOSE_BUDGET);
+  }
+
+  @Test
+  public void escalatingAnAlertStaysWithinItsBudget() {
+    PagerAlert pagerAlert = new PagerAlert("service1", "Alert1", ALERT_STATUS.OPEN, 0, 0, 0);
+    persistenceAdapter.savePagerAlert(pagerAlert);
+    Runnable overdue = () -> {
+      pagerAlert.setLevelNotified(0);
+      pagerAlert.setLastNotificationTs(0);
+      persistenceAdapter.updatePagerAlert(pagerAlert);
+    };
+
+    long overdueBytes = bytesPerOperation(overdue);
+    long bytes = bytesPerOperation(() -> {
+      overdue.run();
+      alertService.acknowledgementTimeout(pagerAlert.getId());
+    }) - overdueBytes;
+    assertEquals(1, persistenceAdapter.getPagerAlert(pagerAlert.getId()).get().getLevelNotified());
+    assertTrue("escalating an alert allocated " + bytes + " bytes", bytes <= ESCALATION_BUDGET);
+  }
+
+  private long bytesPerOperation(Runnable operation) {
+    for (int i = 0; i < WARM_UP; i++) {
+      operation.run();
+    }
+    long threadId = Thread.currentThread().getId();
+    long before = threadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < OPERATIONS; i++) {
+      operation.run();
+    }
+    return (threadMXBean.getThreadAllocatedBytes(threadId) - before) / OPERATIONS;
+  }
+}
@@ -0,0 +1,352 @@
+package com.jp.aircall.domain.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+import com.jp.aircall.domain.adapters.EPAdapter;
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.adapters.TimerAdapter;
+import com.jp.aircall.domain.adapters.metrics.InstrumentedPersistenceAdapter;
+import com.jp.aircall.domain.adapters.semaphore.InMemorySemaphoreAdapter;
+import com.jp.aircall.domain.adapters.semaphore.SemaphoreLease;
+import com.jp.aircall.domain.error.AckAlertingAlreadyException;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.metrics.AlertMetrics.OPERATION;
+import com.jp.aircall.domain.metrics.AlertMetrics.OUTCOME;
+import com.jp.aircall.domain.metrics.MetricsRegistry;
+import com.jp.aircall.domain.metrics.MetricsSnapshot;
+import com.jp.aircall.domain.metrics.RecordingAlertMetrics;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.AlertEvent.ALERT_DISPOSITION;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ACK_DISPOSITION;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.EmailTarget;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Level;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.HEALTHY_DISPOSITION;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import com.jp.aircall.domain.model.policy.SmsTarget;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+
+/**
+ * The AlertService features the {@link AsyncAlertService} doesn't have (batches, health index, metrics and lease
+ * renewal), so they are kept out of the {@link AlertServiceTest} scenarios that run against both
+ */
+public class AlertServiceFeaturesTest {
+
+  @Mock private EPAdapter epAdapter;
+  @Mock private MailAdapter mailAdapter;
+  @Mock private PersistenceAdapter persistenceAdapter;
+  @Mock private SmsAdapter smsAdapter;
+  @Mock private TimerAdapter timerAdapter;
+
+  private AlertService alertService;
+
+  @Before
+  public void setUp() {
+    openMocks(this);
+    alertService = new AlertService(epAdapter, persistenceAdapter, mailAdapter, smsAdapter, timerAdapter);
+  }
+
+  @Test
+  public void newAlertsBatch() throws ServiceAlertingAlreadyException {
+    Service healthy = new Service("healthy", SERVICE_STATUS.HEALTHY);
+    Service unhealthy = new Service("unhealthy", SERVICE_STATUS.UNHEALTHY);
+    when(persistenceAdapter.getServices(any())).thenReturn(Map.of(healthy.getId(), healthy, unhealthy.getId(), unhealthy));
+    EscalationPolicy policy1 = new EscalationPolicy(healthy.getId(),
+        List.of(new Level(Set.of(new EmailTarget("user1@mail.com"), new SmsTarget("+34666666666")))));
+    when(epAdapter.getEpByServiceId(healthy.getId())).thenReturn(Optional.of(policy1));
+
+    List<ALERT_DISPOSITION> dispositions = alertService.newAlerts(List.of(
+        new AlertEvent("Alert1", "healthy"),
+        new AlertEvent("Alert2", "unhealthy"),
+        new AlertEvent("Alert3", "healthy"),
+        new AlertEvent("Alert4", "unknown")));
+
+    assertEquals(List.of(ALERT_DISPOSITION.PROCESSED, ALERT_DISPOSITION.SERVICE_UNHEALTHY, ALERT_DISPOSITION.COALESCED,
+        ALERT_DISPOSITION.SERVICE_NOT_FOUND), dispositions);
+    verify(persistenceAdapter, times(1)).getServices(argThat(ids -> ids.size() == 3));
+    verify(persistenceAdapter, never()).getService(any());
+    verify(persistenceAdapter, times(1)).updateServices(List.of(new Service("healthy", SERVICE_STATUS.UNHEALTHY)));
+    verify(persistenceAdapter, times(1)).savePagerAlert(argThat(pagerAlert1 -> pagerAlert1.getAlertMessage().equals("Alert1")));
+    verify(mailAdapter, times(1)).sendNotification("user1@mail.com");
+    verify(smsAdapter, times(1)).sendNotification("+34666666666");
+    verify(timerAdapter, times(1)).add15MinutesTimer(ArgumentMatchers.anyString());
+    verify(persistenceAdapter, times(1)).addAlertingService("healthy");
+    verify(persistenceAdapter, times(1)).removeAlertingService("healthy");
+  }
+
+  @Test
+  public void newAlertsBatchSemaphoreClosed() throws ServiceAlertingAlreadyException {
+    when(persistenceAdapter.getServices(any())).thenReturn(Map.of("service1", new Service("service1", SERVICE_STATUS.HEALTHY)));
+    doThrow(new ServiceAlertingAlreadyException("Duplicated PK:service1")).when(persistenceAdapter).addAlertingService("service1");
+
+    List<ALERT_DISPOSITION> dispositions = alertService.newAlerts(List.of(
+        new AlertEvent("Alert1", "service1"),
+        new AlertEvent("Alert2", "service1")));
+
+    assertEquals(List.of(ALERT_DISPOSITION.ALREADY_PROCESSING, ALERT_DISPOSITION.ALREADY_PROCESSING), dispositions);
+    verify(persistenceAdapter, never()).updateServices(any());
+    verify(persistenceAdapter, never()).savePagerAlert(any());
+    verify(persistenceAdapter, never()).removeAlertingService(any());
+  }
+
+  @Test
+  public void alertAcknowledgementsBatch() {
+    PagerAlert open1 = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    PagerAlert open2 = new PagerAlert("service2", "AlertMessage", ALERT_STATUS.OPEN, 1, 1000, 1000);
+    PagerAlert closed = new PagerAlert("service3", "AlertMessage", ALERT_STATUS.CLOSED, 1, 1000, 1000);
+    when(persistenceAdapter.getPagerAlerts(any()))
+        .thenReturn(Map.of(open1.getId(), open1, open2.getId(), open2, closed.getId(), closed));
+
+    Map<String, ACK_DISPOSITION> dispositions =
+        alertService.alertAcknowledgements(List.of(open1.getId(), closed.getId(), "unknown", open2.getId(), open1.getId()));
+
+    assertEquals(List.of(open1.getId(), closed.getId(), "unknown", open2.getId()), List.copyOf(dispositions.keySet()));
+    assertEquals(List.of(ACK_DISPOSITION.ACKNOWLEDGED, ACK_DISPOSITION.ALREADY_CLOSED, ACK_DISPOSITION.NOT_FOUND,
+        ACK_DISPOSITION.ACKNOWLEDGED), List.copyOf(dispositions.values()));
+    verify(persistenceAdapter, times(1)).updatePagerAlerts(argThat(pagerAlerts -> pagerAlerts.size() == 2 &&
+        pagerAlerts.stream().allMatch(pagerAlert -> pagerAlert.getStatus() == ALERT_STATUS.ACKNOWLEDGED)));
+    verify(persistenceAdapter, never()).getPagerAlert(any());
+    verify(persistenceAdapter, never()).updatePagerAlert(any());
+    verify(timerAdapter, times(1)).cancelTimer(open1.getId());
+    verify(timerAdapter, times(1)).cancelTimer(open2.getId());
+  }
+
+  @Test
+  public void servicesHealthyBatch() {
+    when(persistenceAdapter.getServices(any())).thenReturn(Map.of(
+        "unhealthy1", new Service("unhealthy1", SERVICE_STATUS.UNHEALTHY),
+        "unhealthy2", new Service("unhealthy2", SERVICE_STATUS.UNHEALTHY),
+        "broken", new Service("broken", SERVICE_STATUS.UNHEALTHY),
+        "healthy", new Service("healthy", SERVICE_STATUS.HEALTHY)));
+    when(persistenceAdapter.closeAllServiceAlerts("unhealthy1")).thenReturn(List.of("alert1"));
+    when(persistenceAdapter.closeAllServiceAlerts("unhealthy2")).thenReturn(List.of("alert2", "alert3"));
+    when(persistenceAdapter.closeAllServiceAlerts("broken")).thenThrow(new IllegalStateException("database down"));
+
+    Map<String, HEALTHY_DISPOSITION> dispositions =
+        alertService.servicesHealthy(List.of("unhealthy1", "healthy", "unknown", "broken", "unhealthy2"));
+
+    assertEquals(Map.of("unhealthy1", HEALTHY_DISPOSITION.SET_HEALTHY, "healthy", HEALTHY_DISPOSITION.ALREADY_HEALTHY,
+        "unknown", HEALTHY_DISPOSITION.SERVICE_NOT_FOUND, "broken", HEALTHY_DISPOSITION.FAILED,
+        "unhealthy2", HEALTHY_DISPOSITION.SET_HEALTHY), dispositions);
+    verify(persistenceAdapter, times(1)).updateServices(List.of(
+        new Service("unhealthy1", SERVICE_STATUS.HEALTHY), new Service("unhealthy2", SERVICE_STATUS.HEALTHY)));
+    verify(persistenceAdapter, never()).getService(any());
+    verify(persistenceAdapter, never()).updateService(any());
+    verify(timerAdapter, times(3)).cancelTimer(any());
+  }
+
+  @Test
+  public void healthIndexShortCircuitsUnhealthyServices() throws ServiceAlertingAlreadyException {
+    ServiceHealthIndex serviceHealthIndex = new ServiceHealthIndex(60000);
+    alertService = AlertService.builder()
+        .epAdapter(epAdapter)
+        .persistenceAdapter(persistenceAdapter)
+        .mailAdapter(mailAdapter)
+        .smsAdapter(smsAdapter)
+        .timerAdapter(timerAdapter)
+        .serviceHealthIndex(serviceHealthIndex)
+        .build();
+    String serviceId = "Service1";
+    when(persistenceAdapter.getService(serviceId)).thenReturn(Optional.of(new Service(serviceId, SERVICE_STATUS.HEALTHY)));
+
+    assertEquals(ALERT_DISPOSITION.PROCESSED, alertService.newAlert(new AlertEvent("Alert1", serviceId)));
+    assertEquals(ALERT_DISPOSITION.SERVICE_UNHEALTHY, alertService.newAlert(new AlertEvent("Alert2", serviceId)));
+    verify(persistenceAdapter, times(1)).getService(serviceId);
+
+    alertService.serviceHealthy(serviceId);
+    assertFalse(serviceHealthIndex.isUnhealthy(serviceId));
+    verify(persistenceAdapter, times(1)).addAlertingService(serviceId);
+  }
+
+  @Test
+  public void healthIndexIgnoresAnUnhealthyStatusReadBeforeTheServiceWasSetHealthy() {
+    ServiceHealthIndex serviceHealthIndex = new ServiceHealthIndex(60000);
+    alertService = AlertService.builder()
+        .epAdapter(epAdapter)
+        .persistenceAdapter(persistenceAdapter)
+        .mailAdapter(mailAdapter)
+        .smsAdapter(smsAdapter)
+        .timerAdapter(timerAdapter)
+        .serviceHealthIndex(serviceHealthIndex)
+        .build();
+    String serviceId = "Service1";
+    AtomicReference<Service> stored = new AtomicReference<>(new Service(serviceId, SERVICE_STATUS.UNHEALTHY));
+    AtomicBoolean healthyMeanwhile = new AtomicBoolean(true);
+    when(persistenceAdapter.getService(serviceId)).thenAnswer(invocation -> {
+      Service read = new Service(serviceId, stored.get().getStatus());
+      if (healthyMeanwhile.getAndSet(false)) {
+        //the service is set healthy right after the alert read it unhealthy
+        alertService.serviceHealthy(serviceId);
+      }
+      return Optional.of(read);
+    });
+    doAnswer(invocation -> {
+      stored.set(invocation.getArgument(0));
+      return null;
+    }).when(persistenceAdapter).updateService(any());
+
+    assertEquals(ALERT_DISPOSITION.SERVICE_UNHEALTHY, alertService.newAlert(new AlertEvent("Alert1", serviceId)));
+    assertFalse(serviceHealthIndex.isUnhealthy(serviceId));
+    assertEquals(ALERT_DISPOSITION.PROCESSED, alertService.newAlert(new AlertEvent("Alert2", serviceId)));
+  }
+
+  @Test
+  public void metricsRecordLatenciesAndOutcomes() throws ServiceAlertingAlreadyException {
+    MetricsRegistry registry = new MetricsRegistry();
+    alertService = AlertService.builder()
+        .epAdapter(epAdapter)
+        .persistenceAdapter(new InstrumentedPersistenceAdapter(persistenceAdapter, registry))
+        .mailAdapter(mailAdapter)
+        .smsAdapter(smsAdapter)
+        .timerAdapter(timerAdapter)
+        .alertMetrics(new RecordingAlertMetrics(registry))
+        .build();
+    String serviceId = "Service1";
+    when(persistenceAdapter.getService(serviceId))
+        .thenAnswer(invocation -> Optional.of(new Service(serviceId, SERVICE_STATUS.HEALTHY)));
+    PagerAlert closedAlert = new PagerAlert(serviceId, "AlertMessage", ALERT_STATUS.CLOSED, 1, 1000, 1000);
+    when(persistenceAdapter.getPagerAlert(closedAlert.getId())).thenReturn(Optional.of(closedAlert));
+
+    alertService.newAlert(new AlertEvent("Alert1", serviceId)); //no policy
+    doThrow(new ServiceAlertingAlreadyException("Duplicated PK:" + serviceId)).when(persistenceAdapter).addAlertingService(serviceId);
+    alertService.newAlert(new AlertEvent("Alert2", serviceId));
+    when(persistenceAdapter.getService(serviceId)).thenReturn(Optional.of(new Service(serviceId, SERVICE_STATUS.UNHEALTHY)));
+    alertService.newAlert(new AlertEvent("Alert3", serviceId));
+    alertService.alertAcknowledgement(closedAlert.getId());
+
+    MetricsSnapshot snapshot = registry.snapshot();
+    assertEquals(3, snapshot.getLatency(RecordingAlertMetrics.nameOf(OPERATION.NEW_ALERT)).getCount());
+    assertEquals(1, snapshot.getLatency(RecordingAlertMetrics.nameOf(OPERATION.ALERT_ACKNOWLEDGEMENT)).getCount());
+    assertEquals(0, snapshot.getLatency(RecordingAlertMetrics.nameOf(OPERATION.SERVICE_HEALTHY)).getCount());
+    assertEquals(3, snapshot.getLatency("persistence.getService").getCount());
+    assertEquals(1, snapshot.getLatency("persistence.savePagerAlert").getCount());
+    assertEquals(1, snapshot.getCounter(RecordingAlertMetrics.nameOf(OUTCOME.POLICY_MISSING)));
+    assertEquals(1, snapshot.getCounter(RecordingAlertMetrics.nameOf(OUTCOME.ALERT_RAISED)));
+    assertEquals(1, snapshot.getCounter(RecordingAlertMetrics.nameOf(OUTCOME.SEMAPHORE_CONTENDED)));
+    assertEquals(1, snapshot.getCounter(RecordingAlertMetrics.nameOf(OUTCOME.IGNORED_UNHEALTHY)));
+    assertEquals(1, snapshot.getCounter(RecordingAlertMetrics.nameOf(OUTCOME.ACK_ALREADY_CLOSED)));
+    assertEquals(0, snapshot.getCounter(RecordingAlertMetrics.nameOf(OUTCOME.ALL_LEVELS_NOTIFIED)));
+  }
+
+  @Test
+  public void ackSemaphoreTakenOverWhileNotifyingLeavesTheEscalationToItsNewHolder() throws AckAlertingAlreadyException {
+    AtomicLong now = new AtomicLong(10 * AlertService.ACK_TIMEOUT_MS);
+    Clock clock = mock(Clock.class);
+    when(clock.millis()).thenAnswer(invocation -> now.get());
+    InMemorySemaphoreAdapter semaphoreAdapter = new InMemorySemaphoreAdapter(100, clock);
+    alertService = AlertService.builder()
+        .epAdapter(epAdapter)
+        .persistenceAdapter(persistenceAdapter)
+        .mailAdapter(mailAdapter)
+        .smsAdapter(smsAdapter)
+        .timerAdapter(timerAdapter)
+        .semaphoreAdapter(semaphoreAdapter)
+        .clock(clock)
+        .build();
+    String serviceId = "Service1";
+    PagerAlert pagerAlert = new PagerAlert(serviceId, "AlertMessage", ALERT_STATUS.OPEN, 1, 0, 0);
+    when(persistenceAdapter.getPagerAlert(pagerAlert.getId())).thenReturn(Optional.of(pagerAlert));
+    when(epAdapter.getEpByServiceId(serviceId)).thenReturn(Optional.of(new EscalationPolicy(serviceId, List.of(
+        new Level(Set.of(new EmailTarget("user1@mail.com"))), new Level(Set.of(new EmailTarget("user2@mail.com")))))));
+    AtomicReference<SemaphoreLease> newHolder = new AtomicReference<>();
+    doAnswer(invocation -> {
+      //the notification outlives the lease, which is taken over by someone else
+      now.addAndGet(200);
+      newHolder.set(semaphoreAdapter.acquireAck(pagerAlert.getId()));
+      return null;
+    }).when(mailAdapter).sendNotification("user2@mail.com");
+
+    alertService.acknowledgementTimeout(pagerAlert.getId());
+
+    verify(persistenceAdapter, never()).updatePagerAlert(any());
+    verify(timerAdapter, never()).add15MinutesTimer(any());
+    assertEquals(1, pagerAlert.getLevelNotified());
+    assertTrue(semaphoreAdapter.isHeld(newHolder.get()));
+    assertEquals(1, semaphoreAdapter.getStats().getLostLeases());
+  }
+
+  @Test
+  public void alertingServiceSemaphoreTakenOverWhileNotifyingDoesNotSaveTheAlert() throws ServiceAlertingAlreadyException {
+    String serviceId = "Service1";
+    InMemorySemaphoreAdapter semaphoreAdapter = takenOverWhileNotifying(serviceId);
+    when(persistenceAdapter.getService(serviceId)).thenReturn(Optional.of(new Service(serviceId, SERVICE_STATUS.HEALTHY)));
+
+    assertEquals(ALERT_DISPOSITION.ALREADY_PROCESSING, alertService.newAlert(new AlertEvent("AlertMessage", serviceId)));
+
+    verify(persistenceAdapter, never()).savePagerAlert(any());
+    verify(timerAdapter, never()).add15MinutesTimer(any());
+    assertEquals(1, semaphoreAdapter.getStats().getLostLeases());
+  }
+
+  @Test
+  public void alertingServiceSemaphoreTakenOverWhileNotifyingABatchDoesNotSaveTheAlert()
+      throws ServiceAlertingAlreadyException {
+    String serviceId = "Service1";
+    InMemorySemaphoreAdapter semaphoreAdapter = takenOverWhileNotifying(serviceId);
+    when(persistenceAdapter.getServices(any()))
+        .thenReturn(Map.of(serviceId, new Service(serviceId, SERVICE_STATUS.HEALTHY)));
+
+    assertEquals(List.of(ALERT_DISPOSITION.ALREADY_PROCESSING),
+        alertService.newAlerts(List.of(new AlertEvent("AlertMessage", serviceId))));
+
+    verify(persistenceAdapter, never()).savePagerAlert(any());
+    verify(timerAdapter, never()).add15MinutesTimer(any());
+    assertEquals(1, semaphoreAdapter.getStats().getLostLeases());
+  }
+
+  /**
+   * builds the alertService on an in memory semaphore whose alerting service lease of the given service is taken over
+   * while notifying its first level
+   */
+  private InMemorySemaphoreAdapter takenOverWhileNotifying(String serviceId) {
+    AtomicLong now = new AtomicLong(10 * AlertService.ACK_TIMEOUT_MS);
+    Clock clock = mock(Clock.class);
+    when(clock.millis()).thenAnswer(invocation -> now.get());
+    InMemorySemaphoreAdapter semaphoreAdapter = new InMemorySemaphoreAdapter(100, clock);
+    alertService = AlertService.builder()
+        .epAdapter(epAdapter)
+        .persistenceAdapter(persistenceAdapter)
+        .mailAdapter(mailAdapter)
+        .smsAdapter(smsAdapter)
+        .timerAdapter(timerAdapter)
+        .semaphoreAdapter(semaphoreAdapter)
+        .clock(clock)
+        .build();
+    when(epAdapter.getEpByServiceId(serviceId)).thenReturn(Optional.of(new EscalationPolicy(serviceId, List.of(
+        new Level(Set.of(new EmailTarget("user1@mail.com")))))));
+    doAnswer(invocation -> {
+      now.addAndGet(200);
+      semaphoreAdapter.acquireAlertingService(serviceId);
+      return null;
+    }).when(mailAdapter).sendNotification("user1@mail.com");
+    return semaphoreAdapter;
+  }
+}
@@ -18,6 +18,7 @@ import com.jp.aircall.domain.adapters.TimerAdapter;
 import com.jp.aircall.domain.error.AckAlertingAlreadyException;
 import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
 import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.AlertEvent.ALERT_DISPOSITION;
 import com.jp.aircall.domain.model.alert.PagerAlert;
 import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
 import com.jp.aircall.domain.model.policy.EmailTarget;
@@ -37,18 +38,42 @@ import org.mockito.Mock;
 
 public class AlertServiceTest {
 
-  @Mock private EPAdapter epAdapter;
-  @Mock private MailAdapter mailAdapter;
-  @Mock private PersistenceAdapter persistenceAdapter;
-  @Mock private SmsAdapter smsAdapter;
-  @Mock private TimerAdapter timerAdapter;
+  /**
+   * The pager events of the scenarios, so they can run against every flavour of the service
+   */
+  protected interface Pager {
+    ALERT_DISPOSITION newAlert(AlertEvent alertEvent);
+    void alertAcknowledgement(String pagerAlertId);
+    void serviceHealthy(String serviceId);
+    void acknowledgementTimeout(String pagerAlertId);
+  }
+
+  @Mock protected EPAdapter epAdapter;
+  @Mock protected MailAdapter mailAdapter;
+  @Mock protected PersistenceAdapter persistenceAdapter;
+  @Mock protected SmsAdapter smsAdapter;
+  @Mock protected TimerAdapter timerAdapter;
 
   private AlertService alertService;
+  private Pager pager;
 
   @Before
   public void setUp() {
     openMocks(this);
     alertService = new AlertService(epAdapter, persistenceAdapter, mailAdapter, smsAdapter,timerAdapter);
+    pager = createPager();
+  }
+
+  /**
+   * @return the service under test of the scenarios, built over the mocked adapters
+   */
+  protected Pager createPager() {
+    return new Pager() {
+      @Override public ALERT_DISPOSITION newAlert(AlertEvent alertEvent) { return alertService.newAlert(alertEvent); }
+      @Override public void alertAcknowledgement(String pagerAlertId) { alertService.alertAcknowledgement(pagerAlertId); }
+      @Override public void serviceHealthy(String serviceId) { alertService.serviceHealthy(serviceId); }
+      @Override public void acknowledgementTimeout(String pagerAlertId) { alertService.acknowledgementTimeout(pagerAlertId); }
+    };
   }
 
 
@@ -72,7 +97,7 @@ public class AlertServiceTest {
             new Level(Set.of(new EmailTarget("user2@mail.com")))));
     when(epAdapter.getEpByServiceId(serviceId)).thenReturn(Optional.of(policy1));
 
-    alertService.newAlert(new AlertEvent("Alert1 Message", serviceId));
+    pager.newAlert(new AlertEvent("Alert1 Message", serviceId));
 
     verify(mailAdapter, times(1)).sendNotification("user1@mail.com");
     verify(smsAdapter, times(2)).sendNotification(ArgumentMatchers.anyString());
@@ -118,7 +143,7 @@ public class AlertServiceTest {
             new Level(Set.of(new EmailTarget("user2@mail.com")))));
     when(epAdapter.getEpByServiceId(serviceId)).thenReturn(Optional.of(policy1));
 
-    alertService.acknowledgementTimeout(pagerAlertId);
+    pager.acknowledgementTimeout(pagerAlertId);
 
     verify(mailAdapter, times(1)).sendNotification("user2@mail.com");
     verify(smsAdapter, never()).sendNotification(ArgumentMatchers.anyString());
@@ -156,14 +181,15 @@ public class AlertServiceTest {
     pagerAlert.setId(pagerAlertId);
     when(persistenceAdapter.getPagerAlert(pagerAlertId)).thenReturn(Optional.of(pagerAlert));
 
-    alertService.alertAcknowledgement(pagerAlertId);
+    pager.alertAcknowledgement(pagerAlertId);
     verify(persistenceAdapter, times(1)).updatePagerAlert(argThat(pagerAlert1 ->
         pagerAlert1.getStatus() == ALERT_STATUS.ACKNOWLEDGED &&
         pagerAlert1.getLevelNotified() == 1 &&
         pagerAlert1.getAcknowledgmentTs() > 0 &&
         pagerAlert1.getLastNotificationTs() == someTsInThePast));
+    verify(timerAdapter, times(1)).cancelTimer(pagerAlertId);
 
-    alertService.acknowledgementTimeout(pagerAlertId);
+    pager.acknowledgementTimeout(pagerAlertId);
 
     verify(mailAdapter,  never()).sendNotification(ArgumentMatchers.anyString());
     verify(smsAdapter, never()).sendNotification(ArgumentMatchers.anyString());
@@ -189,7 +215,7 @@ public class AlertServiceTest {
     Service service = new Service(serviceId, SERVICE_STATUS.UNHEALTHY);
     when(persistenceAdapter.getService(serviceId)).thenReturn(Optional.of(service));
 
-    alertService.newAlert(new AlertEvent("AlertMessage", serviceId));
+    pager.newAlert(new AlertEvent("AlertMessage", serviceId));
 
     verify(mailAdapter,  never()).sendNotification(ArgumentMatchers.anyString());
     verify(smsAdapter, never()).sendNotification(ArgumentMatchers.anyString());
@@ -218,16 +244,18 @@ public class AlertServiceTest {
     String pagerAlertId = UUID.randomUUID().toString();
 
     when(persistenceAdapter.getService(serviceId)).thenReturn(Optional.of(new Service(serviceId, SERVICE_STATUS.UNHEALTHY)));
+    when(persistenceAdapter.closeAllServiceAlerts(serviceId)).thenReturn(List.of(pagerAlertId));
 
-    alertService.serviceHealthy(serviceId);
+    pager.serviceHealthy(serviceId);
     verify(persistenceAdapter, times(1)).updateService(ArgumentMatchers.eq(new Service(serviceId, SERVICE_STATUS.HEALTHY)));
     verify(persistenceAdapter, times(1)).closeAllServiceAlerts(serviceId);
+    verify(timerAdapter, times(1)).cancelTimer(pagerAlertId);
 
     long someTsInThePast = System.currentTimeMillis() - (15 * 60 * 1000);
     PagerAlert pagerAlert =
         new PagerAlert(serviceId, "AlertMessage", ALERT_STATUS.CLOSED, 1, someTsInThePast, someTsInThePast);
     pagerAlert.setId(pagerAlertId);
-    alertService.acknowledgementTimeout(pagerAlertId);
+    pager.acknowledgementTimeout(pagerAlertId);
     verify(mailAdapter,  never()).sendNotification(ArgumentMatchers.anyString());
     verify(smsAdapter, never()).sendNotification(ArgumentMatchers.anyString());
     verify(timerAdapter, never()).add15MinutesTimer(ArgumentMatchers.anyString());
@@ -245,7 +273,7 @@ public class AlertServiceTest {
     when(persistenceAdapter.getService(serviceId)).thenReturn(Optional.of(service));
     doThrow(new ServiceAlertingAlreadyException("Duplicated PK:"+serviceId)).when(persistenceAdapter).addAlertingService(serviceId);
 
-    alertService.newAlert(new AlertEvent("AlertMessage1", serviceId));
+    pager.newAlert(new AlertEvent("AlertMessage1", serviceId));
 
     verify(mailAdapter,  never()).sendNotification(ArgumentMatchers.anyString());
     verify(smsAdapter, never()).sendNotification(ArgumentMatchers.anyString());
@@ -280,11 +308,30 @@ public class AlertServiceTest {
             new Level(Set.of(new EmailTarget("user2@mail.com")))));
     when(epAdapter.getEpByServiceId(serviceId)).thenReturn(Optional.of(policy1));
 
-    alertService.acknowledgementTimeout(pagerAlertId);
+    pager.acknowledgementTimeout(pagerAlertId);
 
     verify(mailAdapter,  never()).sendNotification(ArgumentMatchers.anyString());
     verify(smsAdapter, never()).sendNotification(ArgumentMatchers.anyString());
     verify(persistenceAdapter, never()).updateService( ArgumentMatchers.any());
     verify(timerAdapter, times(1)).add15MinutesTimer(ArgumentMatchers.anyString()); //time is set anyway
   }
+
+  @Test
+  public void noTargetNotified() {
+    String serviceId = "Service1";
+    when(persistenceAdapter.getService(serviceId)).thenReturn(Optional.of(new Service(serviceId, SERVICE_STATUS.HEALTHY)));
+    EscalationPolicy policy1 = new EscalationPolicy(serviceId,
+        List.of(new Level(Set.of(new EmailTarget("user1@mail.com"), new SmsTarget("+34666666666")))));
+    when(epAdapter.getEpByServiceId(serviceId)).thenReturn(Optional.of(policy1));
+    doThrow(new IllegalStateException("gateway down")).when(mailAdapter).sendNotification(ArgumentMatchers.anyString());
+    doThrow(new IllegalStateException("gateway down")).when(smsAdapter).sendNotification(ArgumentMatchers.anyString());
+
+    pager.newAlert(new AlertEvent("Alert1 Message", serviceId));
+
+    //level 1 will be notified again on the acknowledgement timeout
+    verify(persistenceAdapter, times(1)).savePagerAlert(argThat(pagerAlert1 ->
+        pagerAlert1.getLevelNotified() == 0 &&
+        pagerAlert1.getLastNotificationTs() == 0));
+    verify(timerAdapter, times(1)).add15MinutesTimer(ArgumentMatchers.anyString());
+  }
 }
@@ -0,0 +1,136 @@
+package com.jp.aircall.domain.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.adapters.async.AsyncEPAdapterBridge;
+import com.jp.aircall.domain.adapters.async.AsyncMailAdapterBridge;
+import com.jp.aircall.domain.adapters.async.AsyncPersistenceAdapterBridge;
+import com.jp.aircall.domain.adapters.async.AsyncSemaphoreAdapterBridge;
+import com.jp.aircall.domain.adapters.async.AsyncSmsAdapterBridge;
+import com.jp.aircall.domain.adapters.semaphore.InMemorySemaphoreAdapter;
+import com.jp.aircall.domain.error.ServiceAlertingAlreadyException;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.AlertEvent.ALERT_DISPOSITION;
+import com.jp.aircall.domain.model.policy.EmailTarget;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Level;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import java.time.Clock;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Runs the {@link AlertServiceTest} scenarios against the {@link AsyncAlertService}, bridging the same mocked adapters
+ * on a thread pool so every step of the composition completes on a different thread
+ */
+public class AsyncAlertServiceTest extends AlertServiceTest {
+
+  private ExecutorService executor;
+  private AsyncAlertService asyncAlertService;
+
+  @Override
+  protected Pager createPager() {
+    executor = Executors.newFixedThreadPool(4);
+    asyncAlertService = new AsyncAlertService(
+        new AsyncEPAdapterBridge(epAdapter, executor),
+        new AsyncPersistenceAdapterBridge(persistenceAdapter, executor),
+        new AsyncMailAdapterBridge(mailAdapter, executor),
+        new AsyncSmsAdapterBridge(smsAdapter, executor),
+        timerAdapter);
+    return new Pager() {
+      @Override public ALERT_DISPOSITION newAlert(AlertEvent alertEvent) {
+        return asyncAlertService.newAlert(alertEvent).toCompletableFuture().join();
+      }
+      @Override public void alertAcknowledgement(String pagerAlertId) {
+        asyncAlertService.alertAcknowledgement(pagerAlertId).toCompletableFuture().join();
+      }
+      @Override public void serviceHealthy(String serviceId) {
+        asyncAlertService.serviceHealthy(serviceId).toCompletableFuture().join();
+      }
+      @Override public void acknowledgementTimeout(String pagerAlertId) {
+        asyncAlertService.acknowledgementTimeout(pagerAlertId).toCompletableFuture().join();
+      }
+    };
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void semaphoreReleasedWhenProcessingFails() throws ServiceAlertingAlreadyException {
+    String serviceId = "Service1";
+    when(persistenceAdapter.getService(serviceId)).thenReturn(Optional.of(new Service(serviceId, SERVICE_STATUS.HEALTHY)));
+    doThrow(new IllegalStateException("database down")).when(persistenceAdapter).updateService(any());
+
+    CompletionException error = assertThrows(CompletionException.class,
+        () -> asyncAlertService.newAlert(new AlertEvent("Alert1", serviceId)).toCompletableFuture().join());
+    assertTrue(error.getCause() instanceof IllegalStateException);
+
+    verify(persistenceAdapter, times(1)).addAlertingService(serviceId);
+    verify(persistenceAdapter, times(1)).removeAlertingService(serviceId);
+  }
+
+  @Test
+  public void semaphoreClosedDisposition() throws ServiceAlertingAlreadyException {
+    String serviceId = "Service1";
+    when(persistenceAdapter.getService(serviceId)).thenReturn(Optional.of(new Service(serviceId, SERVICE_STATUS.HEALTHY)));
+    doThrow(new ServiceAlertingAlreadyException("Duplicated PK:" + serviceId)).when(persistenceAdapter).addAlertingService(serviceId);
+
+    assertEquals(ALERT_DISPOSITION.ALREADY_PROCESSING,
+        asyncAlertService.newAlert(new AlertEvent("Alert1", serviceId)).toCompletableFuture().join());
+  }
+
+  @Test
+  public void alertingServiceSemaphoreTakenOverWhileNotifyingDoesNotSaveTheAlert() {
+    String serviceId = "Service1";
+    AtomicLong now = new AtomicLong(1000);
+    Clock clock = mock(Clock.class);
+    when(clock.millis()).thenAnswer(invocation -> now.get());
+    InMemorySemaphoreAdapter semaphoreAdapter = new InMemorySemaphoreAdapter(100, clock);
+    asyncAlertService = AsyncAlertService.builder()
+        .epAdapter(new AsyncEPAdapterBridge(epAdapter, executor))
+        .persistenceAdapter(new AsyncPersistenceAdapterBridge(persistenceAdapter, executor))
+        .mailAdapter(new AsyncMailAdapterBridge(mailAdapter, executor))
+        .smsAdapter(new AsyncSmsAdapterBridge(smsAdapter, executor))
+        .timerAdapter(timerAdapter)
+        .semaphoreAdapter(new AsyncSemaphoreAdapterBridge(semaphoreAdapter, executor))
+        .clock(clock)
+        .build();
+    when(persistenceAdapter.getService(serviceId)).thenReturn(Optional.of(new Service(serviceId, SERVICE_STATUS.HEALTHY)));
+    when(epAdapter.getEpByServiceId(serviceId)).thenReturn(Optional.of(new EscalationPolicy(serviceId, List.of(
+        new Level(Set.of(new EmailTarget("user1@mail.com")))))));
+    doAnswer(invocation -> {
+      //the notification outlives the lease, which is taken over by someone else
+      now.addAndGet(200);
+      semaphoreAdapter.acquireAlertingService(serviceId);
+      return null;
+    }).when(mailAdapter).sendNotification("user1@mail.com");
+
+    assertEquals(ALERT_DISPOSITION.ALREADY_PROCESSING,
+        asyncAlertService.newAlert(new AlertEvent("Alert1", serviceId)).toCompletableFuture().join());
+
+    verify(persistenceAdapter, never()).savePagerAlert(any());
+    verify(timerAdapter, never()).add15MinutesTimer(any());
+    assertEquals(1, semaphoreAdapter.getStats().getLostLeases());
+  }
+}
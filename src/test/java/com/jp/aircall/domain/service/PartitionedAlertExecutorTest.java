@@ -0,0 +1,159 @@
+package com.jp.aircall.domain.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.service.PartitionedAlertExecutor.SUBMIT_RESULT;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PartitionedAlertExecutorTest {
+
+  private AlertService alertService;
+  private PersistenceAdapter persistenceAdapter;
+  private PartitionedAlertExecutor executor;
+
+  @Before
+  public void setUp() {
+    alertService = mock(AlertService.class);
+    persistenceAdapter = mock(PersistenceAdapter.class);
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    executor.close();
+  }
+
+  @Test
+  public void eventsOfAServiceAreProcessedInOrderOnItsPartition() throws InterruptedException {
+    executor = new PartitionedAlertExecutor(alertService, persistenceAdapter, 4, 100, 0);
+    PagerAlert pagerAlert = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 0, 0);
+    when(persistenceAdapter.getPagerAlert(pagerAlert.getId())).thenReturn(Optional.of(pagerAlert));
+    List<String> events = new CopyOnWriteArrayList<>();
+    Map<String, String> threads = new ConcurrentHashMap<>();
+    doAnswer(invocation -> {
+      events.add("alert");
+      threads.put("alert", Thread.currentThread().getName());
+      return null;
+    }).when(alertService).newAlert(any());
+    doAnswer(invocation -> {
+      events.add("ack");
+      threads.put("ack", Thread.currentThread().getName());
+      return null;
+    }).when(alertService).alertAcknowledgement(pagerAlert.getId());
+    doAnswer(invocation -> {
+      events.add("healthy");
+      threads.put("healthy", Thread.currentThread().getName());
+      return null;
+    }).when(alertService).serviceHealthy("service1");
+
+    assertEquals(SUBMIT_RESULT.ACCEPTED, executor.newAlert(new AlertEvent("AlertMessage", "service1")));
+    assertEquals(SUBMIT_RESULT.ACCEPTED, executor.serviceHealthy("service1"));
+    //handed over by the partition of the alert id, so it is queued after the events already submitted
+    assertEquals(SUBMIT_RESULT.ACCEPTED, executor.alertAcknowledgement(pagerAlert.getId()));
+    executor.close();
+
+    assertEquals(List.of("alert", "healthy", "ack"), events);
+    assertEquals(1, threads.values().stream().distinct().count());
+    assertEquals("alert-partition-" + executor.partitionOf("service1"), threads.get("alert"));
+    assertEquals(3, executor.getProcessed(executor.partitionOf("service1")));
+  }
+
+  @Test
+  public void saturatedPartitionRejects() throws InterruptedException {
+    executor = new PartitionedAlertExecutor(alertService, persistenceAdapter, 1, 1, 0);
+    CountDownLatch processing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      processing.countDown();
+      release.await();
+      return null;
+    }).when(alertService).serviceHealthy("service1");
+
+    assertEquals(SUBMIT_RESULT.ACCEPTED, executor.serviceHealthy("service1"));
+    assertTrue(processing.await(5, TimeUnit.SECONDS));
+    assertEquals(SUBMIT_RESULT.ACCEPTED, executor.serviceHealthy("service2"));
+    assertEquals(1, executor.getQueueDepth(0));
+    assertEquals(SUBMIT_RESULT.REJECTED_SATURATED, executor.serviceHealthy("service3"));
+    assertEquals(1, executor.getRejected(0));
+
+    release.countDown();
+    verify(alertService, timeout(5000)).serviceHealthy("service2");
+    executor.close();
+    assertEquals(SUBMIT_RESULT.REJECTED_SHUTDOWN, executor.serviceHealthy("service1"));
+  }
+
+  @Test
+  public void alertsOfAcksAndTimeoutsAreReadByThePartitions() throws InterruptedException {
+    executor = new PartitionedAlertExecutor(alertService, persistenceAdapter, 4, 100, 0);
+    PagerAlert pagerAlert = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 0, 0);
+    Map<String, String> threads = new ConcurrentHashMap<>();
+    when(persistenceAdapter.getPagerAlert(pagerAlert.getId())).thenAnswer(invocation -> {
+      threads.put("lookup", Thread.currentThread().getName());
+      return Optional.of(pagerAlert);
+    });
+    doAnswer(invocation -> {
+      threads.put("timeout", Thread.currentThread().getName());
+      return null;
+    }).when(alertService).acknowledgementTimeout(pagerAlert.getId());
+
+    assertEquals(0, executor.acknowledgementTimeouts(List.of(pagerAlert.getId())));
+    executor.close();
+
+    assertEquals("alert-partition-" + executor.partitionOf(pagerAlert.getId()), threads.get("lookup"));
+    assertEquals("alert-partition-" + executor.partitionOf("service1"), threads.get("timeout"));
+  }
+
+  @Test
+  public void ackHandedOverToASaturatedPartitionIsNotLost() throws InterruptedException {
+    executor = new PartitionedAlertExecutor(alertService, persistenceAdapter, 2, 1, 0);
+    PagerAlert pagerAlert = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 0, 0);
+    while (executor.partitionOf(pagerAlert.getId()) == executor.partitionOf("service1")) {
+      pagerAlert = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, 0, 0);
+    }
+    when(persistenceAdapter.getPagerAlert(pagerAlert.getId())).thenReturn(Optional.of(pagerAlert));
+    CountDownLatch processing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      processing.countDown();
+      release.await();
+      return null;
+    }).when(alertService).serviceHealthy("service1");
+
+    assertEquals(SUBMIT_RESULT.ACCEPTED, executor.serviceHealthy("service1"));
+    assertTrue(processing.await(5, TimeUnit.SECONDS));
+    assertEquals(SUBMIT_RESULT.ACCEPTED, executor.newAlert(new AlertEvent("AlertMessage", "service1")));
+    assertEquals(SUBMIT_RESULT.REJECTED_SATURATED, executor.newAlert(new AlertEvent("AlertMessage", "service1")));
+    assertEquals(SUBMIT_RESULT.ACCEPTED, executor.alertAcknowledgement(pagerAlert.getId()));
+    int partition = executor.partitionOf("service1");
+    long deadline = System.currentTimeMillis() + 5000;
+    while (executor.getQueueDepth(partition) < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    //the ack is queued over the capacity of the partition
+    assertEquals(2, executor.getQueueDepth(partition));
+
+    release.countDown();
+    executor.close();
+    verify(alertService).alertAcknowledgement(pagerAlert.getId());
+    assertEquals(1, executor.getRejected(partition));
+  }
+}
@@ -0,0 +1,57 @@
+package com.jp.aircall.domain.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.adapters.PersistenceAdapter;
+import java.time.Clock;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ServiceHealthIndexTest {
+
+  private Clock clock;
+  private ServiceHealthIndex serviceHealthIndex;
+
+  @Before
+  public void setUp() {
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(0L);
+    serviceHealthIndex = new ServiceHealthIndex(1000, clock);
+  }
+
+  @Test
+  public void staleEntriesAreNotTrusted() {
+    serviceHealthIndex.markUnhealthy("service1");
+    when(clock.millis()).thenReturn(999L);
+    assertTrue(serviceHealthIndex.isUnhealthy("service1"));
+
+    when(clock.millis()).thenReturn(1000L);
+    assertFalse(serviceHealthIndex.isUnhealthy("service1"));
+  }
+
+  @Test
+  public void markHealthy() {
+    serviceHealthIndex.markUnhealthy("service1");
+    serviceHealthIndex.markHealthy("service1");
+
+    assertFalse(serviceHealthIndex.isUnhealthy("service1"));
+  }
+
+  @Test
+  public void resync() {
+    PersistenceAdapter persistenceAdapter = mock(PersistenceAdapter.class);
+    when(persistenceAdapter.getUnhealthyServiceIds()).thenReturn(List.of("service2", "service3"));
+    serviceHealthIndex.markUnhealthy("service1");
+
+    serviceHealthIndex.resync(persistenceAdapter);
+
+    assertEquals(2, serviceHealthIndex.size());
+    assertFalse(serviceHealthIndex.isUnhealthy("service1"));
+    assertTrue(serviceHealthIndex.isUnhealthy("service2"));
+  }
+}
@@ -0,0 +1,252 @@
+package com.jp.aircall.domain.service;
+
+import static com.jp.aircall.domain.service.AlertService.ACK_TIMEOUT_MS;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.jp.aircall.domain.adapters.EPAdapter;
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.adapters.TimerAdapter;
+import com.jp.aircall.domain.adapters.persistence.InMemoryPersistenceAdapter;
+import com.jp.aircall.domain.model.alert.AlertEvent;
+import com.jp.aircall.domain.model.alert.AlertEvent.ALERT_DISPOSITION;
+import com.jp.aircall.domain.model.alert.PagerAlert;
+import com.jp.aircall.domain.model.alert.PagerAlert.ACK_DISPOSITION;
+import com.jp.aircall.domain.model.alert.PagerAlert.ALERT_STATUS;
+import com.jp.aircall.domain.model.policy.EmailTarget;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Level;
+import com.jp.aircall.domain.model.policy.Service;
+import com.jp.aircall.domain.model.policy.Service.HEALTHY_DISPOSITION;
+import com.jp.aircall.domain.model.policy.Service.SERVICE_STATUS;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The scenarios of {@link AlertService} racing with concurrent writers over a persistence supporting versioned updates
+ */
+public class VersionedAlertServiceTest {
+
+  private static final long NOW = 10 * ACK_TIMEOUT_MS;
+
+  private InMemoryPersistenceAdapter persistenceAdapter;
+  private MailAdapter mailAdapter;
+  private TimerAdapter timerAdapter;
+  private AlertService alertService;
+
+  @Before
+  public void setUp() {
+    Clock clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(NOW);
+    persistenceAdapter = spy(new InMemoryPersistenceAdapter(clock));
+    mailAdapter = mock(MailAdapter.class);
+    timerAdapter = mock(TimerAdapter.class);
+    EPAdapter epAdapter = mock(EPAdapter.class);
+    when(epAdapter.getEpByServiceId("service1")).thenReturn(Optional.of(new EscalationPolicy("service1",
+        List.of(new Level(Set.of(new EmailTarget("user1@mail.com"))), new Level(Set.of(new EmailTarget("user2@mail.com")))))));
+    alertService = AlertService.builder()
+        .epAdapter(epAdapter)
+        .persistenceAdapter(persistenceAdapter)
+        .mailAdapter(mailAdapter)
+        .smsAdapter(mock(SmsAdapter.class))
+        .timerAdapter(timerAdapter)
+        .clock(clock)
+        .build();
+  }
+
+  @Test
+  public void escalationIsClaimedWithOneConditionalWriteAndNoSemaphore() throws Exception {
+    PagerAlert pagerAlert = saveOpenAlert();
+    clearInvocations(persistenceAdapter);
+
+    alertService.acknowledgementTimeout(pagerAlert.getId());
+
+    verify(mailAdapter).sendNotification("user2@mail.com");
+    verify(persistenceAdapter, times(1)).updatePagerAlertIfVersion(any(), anyLong());
+    verify(persistenceAdapter, never()).addAckSempahore(anyString());
+    verify(persistenceAdapter, never()).updatePagerAlert(any());
+    verify(timerAdapter).add15MinutesTimer(pagerAlert.getId());
+    PagerAlert stored = persistenceAdapter.getPagerAlert(pagerAlert.getId()).get();
+    assertEquals(2, stored.getLevelNotified());
+    assertEquals(NOW, stored.getLastNotificationTs());
+  }
+
+  @Test
+  public void escalationLosesToAnAcknowledgementWrittenMeanwhile() {
+    PagerAlert pagerAlert = saveOpenAlert();
+    doAnswer(invocation -> {
+      Optional<PagerAlert> read = persistenceAdapter.getPagerAlert(pagerAlert.getId());
+      alertService.alertAcknowledgement(pagerAlert.getId());
+      return read;
+    }).doCallRealMethod().when(persistenceAdapter).getPagerAlert(pagerAlert.getId());
+
+    alertService.acknowledgementTimeout(pagerAlert.getId());
+
+    verify(mailAdapter, never()).sendNotification("user2@mail.com");
+    PagerAlert stored = persistenceAdapter.getPagerAlert(pagerAlert.getId()).get();
+    assertEquals(ALERT_STATUS.ACKNOWLEDGED, stored.getStatus());
+    assertEquals(1, stored.getLevelNotified());
+  }
+
+  @Test
+  public void onlyOneOfTheConcurrentAlertsOfAServiceIsProcessed() throws Exception {
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.HEALTHY));
+    doAnswer(invocation -> {
+      Optional<Service> read = persistenceAdapter.getService("service1");
+      assertEquals(ALERT_DISPOSITION.PROCESSED, alertService.newAlert(new AlertEvent("first", "service1")));
+      return read;
+    }).doCallRealMethod().when(persistenceAdapter).getService("service1");
+
+    assertEquals(ALERT_DISPOSITION.ALREADY_PROCESSING, alertService.newAlert(new AlertEvent("second", "service1")));
+
+    verify(mailAdapter, times(1)).sendNotification("user1@mail.com");
+    verify(persistenceAdapter, times(1)).savePagerAlert(any());
+    verify(persistenceAdapter, never()).addAlertingService(anyString());
+    assertEquals(SERVICE_STATUS.UNHEALTHY, persistenceAdapter.getService("service1").get().getStatus());
+  }
+
+  @Test
+  public void healthyClosesTheAlertsRaisedMeanwhileBeforeRetrying() {
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.UNHEALTHY));
+    PagerAlert pagerAlert = saveOpenAlert();
+    PagerAlert raisedMeanwhile = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, NOW, NOW);
+    doAnswer(invocation -> {
+      Object closed = invocation.callRealMethod();
+      persistenceAdapter.updateService(persistenceAdapter.getService("service1").get());
+      persistenceAdapter.savePagerAlert(raisedMeanwhile);
+      return closed;
+    }).doCallRealMethod().when(persistenceAdapter).closeAllServiceAlerts("service1");
+
+    alertService.serviceHealthy("service1");
+
+    verify(persistenceAdapter, times(2)).updateServiceIfVersion(any(), anyLong());
+    assertEquals(SERVICE_STATUS.HEALTHY, persistenceAdapter.getService("service1").get().getStatus());
+    assertEquals(ALERT_STATUS.CLOSED, persistenceAdapter.getPagerAlert(pagerAlert.getId()).get().getStatus());
+    assertEquals(ALERT_STATUS.CLOSED, persistenceAdapter.getPagerAlert(raisedMeanwhile.getId()).get().getStatus());
+  }
+
+  @Test
+  public void aBatchAndASingleAlertOfTheSameServiceRaiseOneAlert() {
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.HEALTHY));
+    doAnswer(invocation -> {
+      Optional<Service> read = persistenceAdapter.getService("service1");
+      assertEquals(List.of(ALERT_DISPOSITION.PROCESSED),
+          alertService.newAlerts(List.of(new AlertEvent("batch", "service1"))));
+      return read;
+    }).doCallRealMethod().when(persistenceAdapter).getService("service1");
+
+    assertEquals(ALERT_DISPOSITION.ALREADY_PROCESSING, alertService.newAlert(new AlertEvent("single", "service1")));
+
+    verify(mailAdapter, times(1)).sendNotification("user1@mail.com");
+    verify(persistenceAdapter, times(1)).savePagerAlert(any());
+  }
+
+  @Test
+  public void aSingleAlertAndABatchOfTheSameServiceRaiseOneAlert() {
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.HEALTHY));
+    doAnswer(invocation -> {
+      Object read = invocation.callRealMethod();
+      assertEquals(ALERT_DISPOSITION.PROCESSED, alertService.newAlert(new AlertEvent("single", "service1")));
+      return read;
+    }).doCallRealMethod().when(persistenceAdapter).getServices(any());
+
+    assertEquals(List.of(ALERT_DISPOSITION.ALREADY_PROCESSING, ALERT_DISPOSITION.ALREADY_PROCESSING),
+        alertService.newAlerts(List.of(new AlertEvent("batch", "service1"), new AlertEvent("batch", "service1"))));
+
+    verify(mailAdapter, times(1)).sendNotification("user1@mail.com");
+    verify(persistenceAdapter, times(1)).savePagerAlert(any());
+    verify(persistenceAdapter, never()).updateServices(any());
+  }
+
+  @Test
+  public void concurrentSingleAndBatchAlertsOfTheSameServiceRaiseOneAlertPerOutage() throws Exception {
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.HEALTHY));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    int outages = 200;
+    try {
+      for (int i = 0; i < outages; i++) {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Future<?> single = executor.submit(() -> {
+          barrier.await();
+          return alertService.newAlert(new AlertEvent("single", "service1"));
+        });
+        Future<?> batch = executor.submit(() -> {
+          barrier.await();
+          return alertService.newAlerts(List.of(new AlertEvent("batch", "service1")));
+        });
+        single.get();
+        batch.get();
+        alertService.serviceHealthy("service1");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    verify(persistenceAdapter, times(outages)).savePagerAlert(any());
+    verify(mailAdapter, times(outages)).sendNotification("user1@mail.com");
+  }
+
+  @Test
+  public void batchHealthyClosesTheAlertsRaisedMeanwhile() {
+    persistenceAdapter.updateService(new Service("service1", SERVICE_STATUS.UNHEALTHY));
+    PagerAlert raisedMeanwhile = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, NOW, NOW);
+    doAnswer(invocation -> {
+      Object closed = invocation.callRealMethod();
+      persistenceAdapter.updateService(persistenceAdapter.getService("service1").get());
+      persistenceAdapter.savePagerAlert(raisedMeanwhile);
+      return closed;
+    }).doCallRealMethod().when(persistenceAdapter).closeAllServiceAlerts("service1");
+
+    assertEquals(Map.of("service1", HEALTHY_DISPOSITION.SET_HEALTHY), alertService.servicesHealthy(List.of("service1")));
+
+    assertEquals(SERVICE_STATUS.HEALTHY, persistenceAdapter.getService("service1").get().getStatus());
+    assertEquals(ALERT_STATUS.CLOSED, persistenceAdapter.getPagerAlert(raisedMeanwhile.getId()).get().getStatus());
+    verify(persistenceAdapter, never()).updateServices(any());
+  }
+
+  @Test
+  public void batchAcknowledgementKeepsTheEscalationClaimedMeanwhile() {
+    PagerAlert pagerAlert = saveOpenAlert();
+    doAnswer(invocation -> {
+      Object read = invocation.callRealMethod();
+      alertService.acknowledgementTimeout(pagerAlert.getId());
+      return read;
+    }).doCallRealMethod().when(persistenceAdapter).getPagerAlerts(any());
+
+    assertEquals(Map.of(pagerAlert.getId(), ACK_DISPOSITION.ACKNOWLEDGED),
+        alertService.alertAcknowledgements(List.of(pagerAlert.getId())));
+
+    verify(mailAdapter).sendNotification("user2@mail.com");
+    PagerAlert stored = persistenceAdapter.getPagerAlert(pagerAlert.getId()).get();
+    assertEquals(ALERT_STATUS.ACKNOWLEDGED, stored.getStatus());
+    assertEquals(2, stored.getLevelNotified());
+    verify(persistenceAdapter, never()).updatePagerAlerts(any());
+  }
+
+  private PagerAlert saveOpenAlert() {
+    PagerAlert pagerAlert = new PagerAlert("service1", "AlertMessage", ALERT_STATUS.OPEN, 1, NOW - ACK_TIMEOUT_MS,
+        NOW - ACK_TIMEOUT_MS);
+    persistenceAdapter.savePagerAlert(pagerAlert);
+    return pagerAlert;
+  }
+}
@@ -0,0 +1,132 @@
+package com.jp.aircall.domain.service.notification;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.model.policy.CompiledPolicy;
+import com.jp.aircall.domain.model.policy.CompiledPolicy.CompiledLevel;
+import com.jp.aircall.domain.model.policy.EmailTarget;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Level;
+import com.jp.aircall.domain.model.policy.SmsTarget;
+import com.jp.aircall.domain.service.notification.NotificationResult.DELIVERY_STATUS;
+import java.util.List;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DigestNotificationDispatcherTest {
+
+  private SmsAdapter smsAdapter;
+  private MailAdapter mailAdapter;
+  private DigestNotificationDispatcher dispatcher;
+
+  @Before
+  public void setUp() {
+    smsAdapter = mock(SmsAdapter.class);
+    mailAdapter = mock(MailAdapter.class);
+  }
+
+  @After
+  public void tearDown() {
+    dispatcher.close();
+  }
+
+  @Test
+  public void coalescesTheTargetsSharedByServices() {
+    dispatcher = new DigestNotificationDispatcher(smsAdapter, mailAdapter, 200);
+    CompiledLevel level = level("+34666666666", "user1@mail.com");
+
+    List<NotificationResult> first = dispatcher.dispatch("service1", level);
+    List<NotificationResult> second = dispatcher.dispatch("service2", level);
+    dispatcher.dispatch("service3", level("+34666666666"));
+
+    assertEquals(DELIVERY_STATUS.SENT, first.get(0).getStatus());
+    assertEquals(DELIVERY_STATUS.QUEUED, second.get(0).getStatus());
+    assertEquals(DELIVERY_STATUS.QUEUED, second.get(1).getStatus());
+    verify(smsAdapter, times(1)).sendNotification("+34666666666");
+    verify(mailAdapter, times(1)).sendNotification("user1@mail.com");
+
+    verify(smsAdapter, timeout(2000)).sendDigestNotification("+34666666666", Set.of("service2", "service3"));
+    verify(mailAdapter, timeout(2000)).sendDigestNotification("user1@mail.com", Set.of("service2"));
+    assertEquals(3, dispatcher.getCoalesced());
+
+    //the window is over so the next notification is sent right away
+    dispatcher.dispatch("service4", level("+34666666666"));
+    verify(smsAdapter, times(2)).sendNotification("+34666666666");
+  }
+
+  @Test
+  public void windowWithoutQueuedNotificationsSendsNoDigest() {
+    dispatcher = new DigestNotificationDispatcher(smsAdapter, mailAdapter, 60_000);
+    dispatcher.dispatch("service1", level("+34666666666"));
+
+    dispatcher.flush();
+
+    verify(smsAdapter, never()).sendDigestNotification(anyString(), any());
+    assertEquals(0, dispatcher.getDigestsSent());
+  }
+
+  @Test
+  public void closeSendsPendingDigests() {
+    dispatcher = new DigestNotificationDispatcher(smsAdapter, mailAdapter, 60_000);
+    dispatcher.dispatch("service1", level("+34666666666"));
+    dispatcher.dispatch("service2", level("+34666666666"));
+
+    dispatcher.close();
+
+    verify(smsAdapter, times(1)).sendDigestNotification("+34666666666", Set.of("service2"));
+    assertEquals(1, dispatcher.getDigestsSent());
+  }
+
+  @Test
+  public void failedDigestIsRetried() throws InterruptedException {
+    dispatcher = new DigestNotificationDispatcher(smsAdapter, mailAdapter, 50);
+    doThrow(new RuntimeException("SMS gateway down")).doNothing()
+        .when(smsAdapter).sendDigestNotification("+34666666666", Set.of("service2"));
+    dispatcher.dispatch("service1", level("+34666666666"));
+    dispatcher.dispatch("service2", level("+34666666666"));
+
+    verify(smsAdapter, timeout(2000).times(2)).sendDigestNotification("+34666666666", Set.of("service2"));
+    long deadline = System.currentTimeMillis() + 2000;
+    while (dispatcher.getDigestsSent() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1); //the retry is counted after the send returns
+    }
+    assertEquals(1, dispatcher.getDigestsSent());
+    assertEquals(0, dispatcher.getDigestsFailed());
+  }
+
+  @Test
+  public void digestFailingEveryAttemptIsGivenUp() {
+    dispatcher = new DigestNotificationDispatcher(smsAdapter, mailAdapter, 60_000);
+    doThrow(new RuntimeException("SMS gateway down"))
+        .when(smsAdapter).sendDigestNotification("+34666666666", Set.of("service2"));
+    dispatcher.dispatch("service1", level("+34666666666"));
+    dispatcher.dispatch("service2", level("+34666666666"));
+
+    dispatcher.flush(); //first attempt, the retry waits for a window
+    dispatcher.close(); //last attempt
+
+    verify(smsAdapter, times(2)).sendDigestNotification("+34666666666", Set.of("service2"));
+    assertEquals(0, dispatcher.getDigestsSent());
+    assertEquals(1, dispatcher.getDigestsFailed());
+  }
+
+  private static CompiledLevel level(String phone, String... emails) {
+    Level level = new Level(Set.of(new SmsTarget(phone)));
+    if (emails.length > 0) {
+      level = new Level(Set.of(new SmsTarget(phone), new EmailTarget(emails[0])));
+    }
+    return CompiledPolicy.compile(new EscalationPolicy("service", List.of(level))).getLevel(1);
+  }
+}
@@ -0,0 +1,120 @@
+package com.jp.aircall.domain.service.notification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.model.policy.CompiledPolicy;
+import com.jp.aircall.domain.model.policy.CompiledPolicy.CompiledLevel;
+import com.jp.aircall.domain.model.policy.EmailTarget;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Level;
+import com.jp.aircall.domain.model.policy.SmsTarget;
+import com.jp.aircall.domain.model.policy.Target;
+import com.jp.aircall.domain.service.notification.NotificationResult.DELIVERY_STATUS;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+
+public class ParallelNotificationDispatcherTest {
+
+  private SmsAdapter smsAdapter;
+  private MailAdapter mailAdapter;
+  private ParallelNotificationDispatcher dispatcher;
+
+  @Before
+  public void setUp() {
+    smsAdapter = mock(SmsAdapter.class);
+    mailAdapter = mock(MailAdapter.class);
+    dispatcher = new ParallelNotificationDispatcher(smsAdapter, mailAdapter, 30, 1000);
+  }
+
+  @After
+  public void tearDown() {
+    dispatcher.close();
+  }
+
+  @Test
+  public void targetsAreNotifiedInParallel() {
+    doAnswer(invocation -> {
+      Thread.sleep(300);
+      return null;
+    }).when(smsAdapter).sendNotification(ArgumentMatchers.anyString());
+    Set<Target> targets = new HashSet<>();
+    for (int i = 0; i < 30; i++) {
+      targets.add(new SmsTarget("+3466666660" + i));
+    }
+
+    long start = System.currentTimeMillis();
+    List<NotificationResult> results = dispatcher.dispatch(level(targets));
+
+    assertTrue(System.currentTimeMillis() - start < 1000);
+    assertEquals(30, results.size());
+    assertTrue(results.stream().allMatch(NotificationResult::isSent));
+  }
+
+  @Test
+  public void failedAndTimedOutTargets() {
+    doThrow(new IllegalStateException("gateway down")).when(mailAdapter).sendNotification("fail@mail.com");
+    doAnswer(invocation -> {
+      Thread.sleep(5000);
+      return null;
+    }).when(smsAdapter).sendNotification("slow");
+
+    Map<String, DELIVERY_STATUS> results = dispatcher.dispatch(
+            level(Set.of(new EmailTarget("fail@mail.com"), new SmsTarget("slow"), new EmailTarget("ok@mail.com")))).stream()
+        .collect(Collectors.toMap(NotificationResult::getValue, NotificationResult::getStatus, (a, b) -> a));
+
+    assertEquals(DELIVERY_STATUS.FAILED, results.get("fail@mail.com"));
+    assertEquals(DELIVERY_STATUS.TIMED_OUT, results.get("slow"));
+    assertEquals(DELIVERY_STATUS.SENT, results.get("ok@mail.com"));
+  }
+
+  @Test
+  public void targetsRejectedBySaturatedPoolFailWithinTheDeadline() {
+    dispatcher.close();
+    dispatcher = new ParallelNotificationDispatcher(smsAdapter, mailAdapter, 1, 300);
+    doAnswer(invocation -> {
+      Thread.sleep(2000);
+      return null;
+    }).when(smsAdapter).sendNotification(ArgumentMatchers.anyString());
+    Set<Target> targets = new HashSet<>();
+    for (int i = 0; i < 20; i++) {
+      targets.add(new SmsTarget("+346666666" + i));
+    }
+
+    long start = System.currentTimeMillis();
+    Map<DELIVERY_STATUS, Long> statuses = dispatcher.dispatch(level(targets)).stream()
+        .collect(Collectors.groupingBy(NotificationResult::getStatus, Collectors.counting()));
+
+    assertTrue(System.currentTimeMillis() - start < 1000);
+    assertEquals(Map.of(DELIVERY_STATUS.TIMED_OUT, 17L, DELIVERY_STATUS.FAILED, 3L), statuses);
+  }
+
+  @Test
+  public void interruptedCallerKeepsItsInterruptFlag() {
+    Thread.currentThread().interrupt();
+    try {
+      List<NotificationResult> results = dispatcher.dispatch(level(Set.of(new EmailTarget("ok@mail.com"))));
+
+      assertTrue(Thread.currentThread().isInterrupted());
+      assertEquals(1, results.size());
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  private static CompiledLevel level(Set<Target> targets) {
+    return CompiledPolicy.compile(new EscalationPolicy("service1", List.of(new Level(targets)))).getLevel(1);
+  }
+}
@@ -0,0 +1,159 @@
+package com.jp.aircall.domain.service.notification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.jp.aircall.domain.adapters.MailAdapter;
+import com.jp.aircall.domain.adapters.SmsAdapter;
+import com.jp.aircall.domain.model.policy.CompiledPolicy;
+import com.jp.aircall.domain.model.policy.CompiledPolicy.CompiledLevel;
+import com.jp.aircall.domain.model.policy.EscalationPolicy;
+import com.jp.aircall.domain.model.policy.Level;
+import com.jp.aircall.domain.model.policy.SmsTarget;
+import com.jp.aircall.domain.service.notification.NotificationResult.DELIVERY_STATUS;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class RateLimitedNotificationDispatcherTest {
+
+  private SmsAdapter smsAdapter;
+  private MailAdapter mailAdapter;
+  private RateLimitedNotificationDispatcher dispatcher;
+
+  @Before
+  public void setUp() {
+    smsAdapter = mock(SmsAdapter.class);
+    mailAdapter = mock(MailAdapter.class);
+  }
+
+  @After
+  public void tearDown() {
+    dispatcher.close();
+  }
+
+  @Test
+  public void queuesWithoutBlockingAndSendsAtTheChannelRate() throws InterruptedException {
+    dispatcher = RateLimitedNotificationDispatcher.builder()
+        .smsAdapter(smsAdapter).mailAdapter(mailAdapter)
+        .smsRatePerSecond(10).channelBurst(1)
+        .build();
+
+    for (int i = 0; i < 10; i++) {
+      List<NotificationResult> results = dispatcher.dispatch("service" + i, 1, level("+3466666666" + i));
+      assertEquals(DELIVERY_STATUS.QUEUED, results.get(0).getStatus());
+    }
+    Thread.sleep(250);
+    assertTrue(dispatcher.getSent() <= 4);
+    assertTrue(dispatcher.getQueueDepth() >= 6);
+
+    verify(smsAdapter, timeout(3000).times(10)).sendNotification(anyString());
+    assertEquals(0, dispatcher.getShed());
+  }
+
+  @Test
+  public void shedsTheNewNotificationsWhenFull() throws InterruptedException {
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch gatewayBack = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      sending.countDown();
+      gatewayBack.await();
+      return null;
+    }).when(smsAdapter).sendNotification("blocking");
+    dispatcher = RateLimitedNotificationDispatcher.builder()
+        .smsAdapter(smsAdapter).mailAdapter(mailAdapter)
+        .smsRatePerSecond(1000).channelBurst(100).destinationRatePerSecond(1000).queueCapacity(2)
+        .build();
+    dispatcher.dispatch("service0", 1, level("blocking"));
+    sending.await();
+
+    dispatcher.dispatch("service1", 3, level("level3a"));
+    dispatcher.dispatch("service2", 2, level("level2"));
+    //the queued notifications were already accepted, so even a lower level is shed
+    assertEquals(DELIVERY_STATUS.FAILED, dispatcher.dispatch("service3", 1, level("level1")).get(0).getStatus());
+    assertEquals(DELIVERY_STATUS.FAILED, dispatcher.dispatch("service4", 3, level("level3b")).get(0).getStatus());
+    assertEquals(2, dispatcher.getShed());
+    assertEquals(2, dispatcher.getQueueDepth());
+    gatewayBack.countDown();
+
+    InOrder inOrder = inOrder(smsAdapter);
+    inOrder.verify(smsAdapter, timeout(2000)).sendNotification("level2");
+    inOrder.verify(smsAdapter, timeout(2000)).sendNotification("level3a");
+    verify(smsAdapter, times(0)).sendNotification("level1");
+    verify(smsAdapter, times(0)).sendNotification("level3b");
+  }
+
+  @Test
+  public void retriesFailedSends() {
+    doThrow(new IllegalStateException("gateway down"))
+        .doThrow(new IllegalStateException("gateway down"))
+        .doNothing()
+        .when(smsAdapter).sendNotification("+34666666666");
+    dispatcher = RateLimitedNotificationDispatcher.builder()
+        .smsAdapter(smsAdapter).mailAdapter(mailAdapter)
+        .maxAttempts(3).retryBaseDelayMs(10)
+        .build();
+
+    dispatcher.dispatch("service1", 1, level("+34666666666"));
+
+    verify(smsAdapter, timeout(2000).times(3)).sendNotification("+34666666666");
+    assertEquals(2, dispatcher.getRetried());
+    assertEquals(0, dispatcher.getFailed());
+  }
+
+  @Test
+  public void keepsRetryingAfterMaxAttempts() {
+    doThrow(new IllegalStateException("gateway down"))
+        .doThrow(new IllegalStateException("gateway down"))
+        .doThrow(new IllegalStateException("gateway down"))
+        .doThrow(new IllegalStateException("gateway down"))
+        .doNothing()
+        .when(smsAdapter).sendNotification("+34666666666");
+    dispatcher = RateLimitedNotificationDispatcher.builder()
+        .smsAdapter(smsAdapter).mailAdapter(mailAdapter)
+        .destinationRatePerSecond(1000)
+        .maxAttempts(2).retryBaseDelayMs(10)
+        .build();
+
+    dispatcher.dispatch("service1", 1, level("+34666666666"));
+
+    verify(smsAdapter, timeout(2000).times(5)).sendNotification("+34666666666");
+    assertEquals(4, dispatcher.getRetried());
+    assertEquals(1, dispatcher.getFailed());
+    assertEquals(1, dispatcher.getSent());
+  }
+
+  @Test
+  public void limitsEveryDestination() {
+    doNothing().when(smsAdapter).sendNotification(anyString());
+    dispatcher = RateLimitedNotificationDispatcher.builder()
+        .smsAdapter(smsAdapter).mailAdapter(mailAdapter)
+        .destinationBurst(1)
+        .build();
+
+    dispatcher.dispatch("service1", 1, level("+34666666666"));
+    dispatcher.dispatch("service2", 1, level("+34666666666"));
+    dispatcher.dispatch("service3", 1, level("+34777777777"));
+
+    verify(smsAdapter, timeout(2000)).sendNotification("+34777777777");
+    verify(smsAdapter, times(1)).sendNotification("+34666666666");
+    assertEquals(1, dispatcher.getQueueDepth());
+  }
+
+  private static CompiledLevel level(String phone) {
+    return CompiledPolicy.compile(new EscalationPolicy("service", List.of(new Level(Set.of(new SmsTarget(phone)))))).getLevel(1);
+  }
+}
@@ -0,0 +1,96 @@
+package com.jp.aircall.domain.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.jp.aircall.domain.metrics.AlertMetrics.OPERATION;
+import com.jp.aircall.domain.metrics.AlertMetrics.OUTCOME;
+import com.jp.aircall.domain.metrics.RecordingAlertMetrics;
+import com.jp.aircall.domain.simulation.SimulationEvent.EVENT_TYPE;
+import java.util.List;
+import org.junit.Test;
+
+public class SimulationTest {
+
+  private static final long MINUTE = 60 * 1000;
+
+  @Test
+  public void unacknowledgedAlertEscalatesEveryFifteenMinutes() {
+    Simulation simulation = Simulation.builder()
+        .epAdapter(SyntheticTrace.escalationPolicies(2, 2, 10))
+        .drainMs(40 * MINUTE)
+        .build();
+
+    SimulationReport report = simulation.run(List.of(SimulationEvent.alert(0, "service1", "Alert1")).iterator());
+
+    assertEquals(1, report.getEvents());
+    assertEquals(1, report.getAlertsRaised());
+    assertEquals(1, report.getEscalations()); //level 2 at 15 min, nothing left to notify at 30 min
+    assertEquals(2, report.getTimeoutsFired());
+    assertEquals(1, report.getMetrics().getCounter(RecordingAlertMetrics.nameOf(OUTCOME.ALL_LEVELS_NOTIFIED)));
+    assertEquals(2, report.getSmsSent());
+    assertEquals(2, report.getMailsSent());
+    assertEquals(40 * MINUTE, report.getSimulatedMs());
+  }
+
+  @Test
+  public void acknowledgedAlertIsNotEscalated() {
+    Simulation simulation = Simulation.builder()
+        .epAdapter(SyntheticTrace.escalationPolicies(2, 2, 10))
+        .startMs(1000L)
+        .build();
+
+    SimulationReport report = simulation.run(List.of(
+        SimulationEvent.alert(1000, "service1", "Alert1"),
+        SimulationEvent.alert(2000, "service1", "Alert2"),
+        SimulationEvent.ack(5 * MINUTE, "service1"),
+        SimulationEvent.healthy(60 * MINUTE, "service1")).iterator());
+
+    assertEquals(1, report.getAlertsRaised());
+    assertEquals(0, report.getEscalations());
+    assertEquals(0, report.getTimeoutsFired());
+    assertEquals(1, report.getMetrics().getCounter(RecordingAlertMetrics.nameOf(OUTCOME.IGNORED_UNHEALTHY)));
+    assertEquals(2, report.getMetrics().getLatency(RecordingAlertMetrics.nameOf(OPERATION.NEW_ALERT)).getCount());
+  }
+
+  @Test
+  public void syntheticTraceIsReproducible() {
+    SimulationReport first = runSynthetic(7);
+    SimulationReport second = runSynthetic(7);
+
+    assertTrue(first.getEvents() > 10_000);
+    assertTrue(first.getEscalations() > 0);
+    assertEquals(first.getEvents(), second.getEvents());
+    assertEquals(first.getAlertsRaised(), second.getAlertsRaised());
+    assertEquals(first.getEscalations(), second.getEscalations());
+    assertEquals(first.getSmsSent(), second.getSmsSent());
+    assertEquals(first.getSimulatedMs(), second.getSimulatedMs());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnorderedTraces() {
+    Simulation.builder().epAdapter(SyntheticTrace.escalationPolicies(1, 1, 1)).build().run(List.of(
+        SimulationEvent.alert(2000, "service1", "Alert1"),
+        SimulationEvent.alert(1000, "service1", "Alert2")).iterator());
+  }
+
+  @Test
+  public void csvRoundTrip() {
+    SimulationEvent event = new SimulationEvent(1000, EVENT_TYPE.TIMEOUT, null, "alert-1", null);
+    assertEquals(event, SimulationEvent.parse(event.toCsv()));
+    assertEquals(SimulationEvent.alert(5, "service1", "Disk full, 95%"), SimulationEvent.parse("5,ALERT,service1,,Disk full, 95%"));
+  }
+
+  private static SimulationReport runSynthetic(long seed) {
+    return Simulation.builder().epAdapter(SyntheticTrace.escalationPolicies(3, 2, 20)).build()
+        .run(SyntheticTrace.builder()
+            .seed(seed)
+            .services(100)
+            .alerts(10_000)
+            .meanAlertIntervalMs(500)
+            .ackProbability(0.3)
+            .meanAckDelayMs(10 * MINUTE)
+            .meanHealthyDelayMs(45 * MINUTE)
+            .build());
+  }
+}